@@ -1,49 +1,109 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
 public class AllTestsSuite {
+    private static final PrintStream err = System.err;
+    private static final List<String> missing = new ArrayList<>();
+    private static final List<String> crashed = new ArrayList<>();
+
     public static void main(String[] args) {
         System.out.println("Starting Test Suite for MedicalStorageSystem...\n");
+        FailureWatch watch = new FailureWatch();
+        System.setOut(watch.wrap(System.out));
+        System.setErr(watch.wrap(System.err));
 
         long start = System.currentTimeMillis();
 
         // === MODEL TESTS ===
-        try {
-            StorageItemTest.main(args);
-            StorageVehicleTest.main(args);
-            TaskTest.main(args);
-        } catch (Exception e) {
-            System.err.println("Model tests failed: " + e.getMessage());
-        }
+        run("Model", args, "StorageItemTest", "StorageVehicleTest", "TaskTest", "ChargingQueueTest");
+
+        // === REPOSITORY TESTS ===
+        run("Repository", args, "RepositoryTest");
 
         // === SERVICE TESTS ===
-        try {
-            StorageServiceTest.main(args);
-            DataExchangeSimulatorTest.main(args);
-        } catch (Exception e) {
-            System.err.println("Service tests failed: " + e.getMessage());
-        }
+        run("Service", args, "StorageServiceTest", "DataExchangeSimulatorTest", "IdleVehiclePoolTest",
+                "DispatchSchedulerTest");
 
         // === UTIL TESTS ===
-        try {
-            LogManagerTest.main(args);
-            MetadataManagerTest.main(args);
-        } catch (Exception e) {
-            System.err.println("Utility tests failed: " + e.getMessage());
-        }
+        run("Utility", args, "LogManagerTest", "MetadataManagerTest", "MetadataWriterTest", "MetadataIndexTest", "LogReaderTest", "LogSearchTest", "LogArchiverTest", "LogRotatorTest",
+                "BinaryLogTest", "LogFormatterTest", "DeliveryJournalTest", "DeliveryBufferTest", "DeliveryAnalyticsTest", "StateSnapshotTest", "StateEventLogTest",
+                "SimulationClockTest", "ExecutionModeTest");
 
         // === EXCEPTION TESTS ===
-        try {
-            ExceptionHandlerTest.main(args);
-        } catch (Exception e) {
-            System.err.println("ExceptionHandlerTest failed: " + e.getMessage());
-        }
+        run("Exception", args, "ExceptionHandlerTest");
 
         // === ADDITIONAL TESTS ===
-        try {
-            ChargingStationTest.main(args);
-        } catch (Exception e) {
-            System.err.println("ChargingStationTest failed: " + e.getMessage());
-        }
+        run("Additional", args, "ChargingStationTest");
+        run("Additional", new String[0], "ChargingStationStressTest");
 
         long end = System.currentTimeMillis();
         System.out.println("\nAllTestsSuite finished in " + (end - start) + " ms.");
+
+        int reported = watch.failedLines();
+        if (reported > 0 || !crashed.isEmpty() || !missing.isEmpty()) {
+            err.println("AllTestsSuite FAILED: " + reported + " failed test(s) reported, crashed: " + crashed +
+                    ", missing: " + missing);
+            System.exit(1);
+        }
+    }
+
+    // Tests are looked up by name so one that does not compile leaves the others running; it still
+    // fails the suite.
+    private static void run(String group, String[] args, String... tests) {
+        for (String name : tests) {
+            try {
+                Method main = Class.forName(name).getMethod("main", String[].class);
+                main.invoke(null, (Object) args);
+            } catch (ClassNotFoundException e) {
+                missing.add(name);
+                err.println(name + " missing: not compiled.");
+            } catch (InvocationTargetException e) {
+                crashed.add(name);
+                err.println(group + " test " + name + " threw:");
+                e.getCause().printStackTrace(err);
+            } catch (ReflectiveOperationException e) {
+                crashed.add(name);
+                err.println(group + " test " + name + " could not run: " + e);
+            }
+        }
+    }
+
+    /**
+     * The tests catch their own assertion errors and report each failed case with a "... failed"
+     * line (e.g. "Test 3 failed: ..."), so the suite counts those lines on the way to the console.
+     */
+    private static final class FailureWatch {
+        private int failedLines;
+
+        synchronized int failedLines() {
+            return failedLines;
+        }
+
+        PrintStream wrap(PrintStream target) {
+            StringBuilder line = new StringBuilder();
+            return new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    synchronized (FailureWatch.this) {
+                        target.write(b);
+                        if (b == '\n') {
+                            if (line.toString().matches(".*\\bfailed\\b.*")) failedLines++;
+                            line.setLength(0);
+                        } else {
+                            line.append((char) (b & 0xFF)); // the word itself is ASCII
+                        }
+                    }
+                }
+
+                @Override
+                public void flush() {
+                    target.flush();
+                }
+            }, true);
+        }
     }
 }
@@ -0,0 +1,167 @@
+import med.supply.system.util.BinaryLogDecoder;
+import med.supply.system.util.BinaryLogEncoder;
+import med.supply.system.util.BinaryLogFormat;
+import med.supply.system.util.DiscreteEventClock;
+import med.supply.system.util.LogManager;
+import med.supply.system.util.LogReader;
+import med.supply.system.util.LogSearch;
+import med.supply.system.util.PathsConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class BinaryLogTest {
+    public static void main(String[] args) {
+        System.out.println("Running BinaryLog tests...");
+
+        try {
+            testRendersLikeTextLog();
+            testSmallerThanText();
+            testReplacedFileAndTruncatedTail();
+            testLongUnicodeText();
+
+            System.out.println("All BinaryLog tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("BinaryLog test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.err.println("IOException during BinaryLog tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static List<String> read(Path file) throws IOException {
+        try (Stream<String> s = LogReader.lines(file)) {
+            return s.toList();
+        }
+    }
+
+    private static void writeSample(LogManager log, DiscreteEventClock clock, String vehicle) throws IOException {
+        log.logSystem("Vehicle added: " + vehicle);
+        log.logVehicle(vehicle, "created");
+        clock.advanceBy(1_234);
+        log.logVehicle(vehicle, BinaryLogFormat.Event.batteryDrop("update", 20, 15));
+        log.logVehicle(vehicle, BinaryLogFormat.Event.batteryLow(14, "Station_A"));
+        for (int pct = 19; pct <= 99; pct += 5) {
+            clock.advanceBy(20_000);
+            log.logVehicle(vehicle, BinaryLogFormat.Event.chargingStep("Station_A", pct));
+        }
+        log.logVehicle(vehicle, BinaryLogFormat.Event.fullyCharged());
+        log.logSystem(BinaryLogFormat.Event.taskStatus("T-1", "IN_PROGRESS"));
+        log.logSystem(BinaryLogFormat.Event.delivery("T-1", 50, "Gloves", vehicle));
+        log.logCharging("Station_A", "released by " + vehicle);
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testRendersLikeTextLog() throws IOException {
+        PathsConfig cfg = new PathsConfig();
+        cfg.ensure();
+        String vehicle = "Van_Blog" + (System.nanoTime() % 100_000);
+        long start = 1_735_725_600_123L; // 2025-01-01T10:00:00.123Z
+
+        LogManager text = new LogManager(cfg);
+        DiscreteEventClock c1 = new DiscreteEventClock(start);
+        text.attachClock(c1);
+        writeSample(text, c1, vehicle);
+        text.shutdown();
+
+        LogManager binary = new LogManager(cfg);
+        binary.enableBinary();
+        DiscreteEventClock c2 = new DiscreteEventClock(start);
+        binary.attachClock(c2);
+        writeSample(binary, c2, vehicle);
+        binary.shutdown();
+
+        Path textLog = cfg.logsVehicles.resolve(vehicle).resolve(c1.today() + ".log");
+        Path blog = BinaryLogFormat.binaryFileFor(textLog);
+        assert Files.exists(blog) : "No binary log written at " + blog;
+        assert read(blog).equals(read(textLog)) : "Binary log renders differently:\n" + read(blog) + "\nvs\n" + read(textLog);
+        assert read(blog).get(2).contains("Battery low (14%). " + vehicle + " going to Station_A") : "Typed event text";
+
+        // search decodes .blog files too: both copies of the delivery line are found
+        LogSearch.Result r;
+        try (LogSearch search = new LogSearch(cfg.logsRoot, null)) {
+            r = search.search(new LogSearch.Query().contains("from vehicle " + vehicle));
+        }
+        assert r.hits.size() == 2 : "Expected the delivery in the text and the binary system log, got " + r.hits;
+        System.out.println("Test 1 passed  (binary log renders exactly like the text log)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testSmallerThanText() throws IOException {
+        Path blog = Files.createTempFile("blog_size_", BinaryLogFormat.EXTENSION);
+        BinaryLogEncoder enc = new BinaryLogEncoder();
+        long textBytes = 0;
+        try (FileChannel ch = FileChannel.open(blog, StandardOpenOption.WRITE)) {
+            long micros = 1_735_725_600_000_000L;
+            for (int i = 0; i < 1_000; i++) {
+                micros += 20_000_000L;
+                BinaryLogFormat.Event e = BinaryLogFormat.Event.chargingStep("Station_" + (i % 3), i % 100);
+                ByteBuffer b = enc.encode(blog, i == 0, LogSearch.Kind.VEHICLE, "AGV-12", micros, 3600, e);
+                while (b.hasRemaining()) ch.write(b);
+            }
+        }
+        List<String> lines = read(blog);
+        for (String l : lines) textBytes += l.getBytes(StandardCharsets.UTF_8).length + 1;
+        long binBytes = Files.size(blog);
+        assert lines.size() == 1_000 : "Expected 1000 records, got " + lines.size();
+        assert binBytes * 5 < textBytes : "Binary log not compact: " + binBytes + " B vs " + textBytes + " B of text";
+        assert lines.get(0).startsWith("[VEHICLE:AGV-12] 2025-01-01T11:00:20+01:00 🔌 AGV-12 charging at Station_0") : lines.get(0);
+        assert enc.getResetCount() == 1 : "Encoder restarted its string table " + enc.getResetCount() + " times";
+        System.out.println("Test 2 passed  (" + binBytes + " B binary vs " + textBytes + " B text)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testReplacedFileAndTruncatedTail() throws IOException {
+        Path blog = Files.createTempFile("blog_reset_", BinaryLogFormat.EXTENSION);
+        BinaryLogEncoder enc = new BinaryLogEncoder();
+        BinaryLogFormat.Event e = BinaryLogFormat.Event.batteryDrop("update", 50, 45);
+
+        // an encoder picking up an existing file (e.g. after a restart) opens with a RESET, not stale ids
+        append(blog, enc.encode(blog, true, LogSearch.Kind.VEHICLE, "Van_A", 1_000_000, 0, e));
+        BinaryLogEncoder restarted = new BinaryLogEncoder();
+        append(blog, restarted.encode(blog, false, LogSearch.Kind.VEHICLE, "Van_B", 2_000_000, 0, e));
+        append(blog, restarted.encode(blog, false, LogSearch.Kind.VEHICLE, "Van_A", 3_000_000, 0, e));
+        List<String> lines = read(blog);
+        assert lines.get(0).startsWith("[VEHICLE:Van_A] 1970-01-01T00:00:01Z") : lines.get(0);
+        assert lines.get(1).startsWith("[VEHICLE:Van_B] 1970-01-01T00:00:02Z") : lines.get(1);
+        assert lines.get(2).startsWith("[VEHICLE:Van_A] 1970-01-01T00:00:03Z") : lines.get(2);
+        assert restarted.getResetCount() == 1 : "Only the first record of the restarted encoder needs a RESET";
+
+        // a record cut off mid-write ends the file quietly
+        ByteBuffer last = restarted.encode(blog, false, LogSearch.Kind.VEHICLE, "Van_B", 4_000_000, 0, e);
+        last.limit(last.limit() - 2);
+        append(blog, last);
+        try (BinaryLogDecoder d = BinaryLogDecoder.open(blog)) {
+            int n = 0;
+            while (d.next() != null) n++;
+            assert n == 3 : "Expected 3 complete records, got " + n;
+        }
+        System.out.println("Test 3 passed  (restart RESET + truncated tail)");
+    }
+
+    private static void append(Path file, ByteBuffer b) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+            out.write(b.array(), b.position(), b.remaining());
+        }
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testLongUnicodeText() throws IOException {
+        Path blog = Files.createTempFile("blog_text_", BinaryLogFormat.EXTENSION);
+        String text = "⚠️ ünïcödé 🔋 ".repeat(500);
+        BinaryLogEncoder enc = new BinaryLogEncoder();
+        append(blog, enc.encode(blog, true, LogSearch.Kind.SYSTEM, null, 0, 0, BinaryLogFormat.Event.text(text)));
+        List<String> lines = read(blog);
+        assert lines.equals(List.of("[SYSTEM] 1970-01-01T00:00:00Z " + text)) : "Free text did not survive the round trip";
+        System.out.println("Test 4 passed  (long UTF-8 text)");
+    }
+}
@@ -0,0 +1,90 @@
+import med.supply.system.model.ChargingQueue;
+import med.supply.system.model.ChargingStation;
+import med.supply.system.model.StorageVehicle;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ChargingQueueTest {
+    public static void main(String[] args) {
+        System.out.println("Running ChargingQueue tests...");
+
+        // Test 1: a released station is handed to the first waiter and never goes FREE
+        try {
+            ChargingStation s = new ChargingStation("CHG-Q1", "Queue_Station_1");
+            ChargingQueue queue = new ChargingQueue(new CopyOnWriteArrayList<>(List.of(s)), ChargingQueue.Policy.FIFO);
+            StorageVehicle a = new StorageVehicle("QA", "Van_QA");
+            StorageVehicle b = new StorageVehicle("QB", "Van_QB");
+            StorageVehicle c = new StorageVehicle("QC", "Van_QC");
+
+            assert queue.acquire(a) == s : "Free station not claimed";
+            assert queue.acquire(b) == null : "Busy station claimed twice";
+            assert queue.acquire(c) == null : "Busy station claimed twice";
+            assert queue.positionOf(b) == 1 && queue.positionOf(c) == 2 : "Queue is not FIFO";
+
+            s.release(a.getId());
+            assert s.isInUse() : "Station went FREE although vehicles were waiting";
+            assert b.isCharging() && b.getAssignedStation() == s : "Station not handed to first waiter";
+            assert queue.positionOf(c) == 1 : "Second waiter did not move up";
+
+            b.setBatteryLevelPct(95); // finishes charging, hands over to c
+            assert c.isCharging() && c.getAssignedStation() == s : "Station not handed to second waiter";
+            c.setBatteryLevelPct(95);
+            assert !s.isInUse() : "Station not freed with an empty queue";
+            System.out.println("Test 1 passed (FIFO hand-off)");
+        } catch (AssertionError e) {
+            System.out.println("Test 1 failed: " + e.getMessage());
+        }
+
+        // Test 2: lowest battery first, ties in arrival order
+        try {
+            ChargingStation s = new ChargingStation("CHG-Q2", "Queue_Station_2");
+            ChargingQueue queue = new ChargingQueue(new CopyOnWriteArrayList<>(List.of(s)), ChargingQueue.Policy.FIFO);
+            StorageVehicle holder = new StorageVehicle("QH", "Van_QH");
+            StorageVehicle high = new StorageVehicle("Q40", "Van_Q40");
+            StorageVehicle low = new StorageVehicle("Q15", "Van_Q15");
+            high.setBatteryLevelPct(40);
+            low.setBatteryLevelPct(15);
+
+            queue.acquire(holder);
+            queue.acquire(high);
+            queue.acquire(low);
+            assert queue.positionOf(high) == 1 : "FIFO should serve the first arrival";
+            queue.setPolicy(ChargingQueue.Policy.LOWEST_BATTERY_FIRST);
+            assert queue.positionOf(low) == 1 : "Emptiest battery should be served first";
+
+            s.release(holder.getId());
+            assert low.isCharging() : "Station not handed to the emptiest vehicle";
+            low.setBatteryLevelPct(95);
+            high.setBatteryLevelPct(95);
+            System.out.println("Test 2 passed (lowest battery first)");
+        } catch (AssertionError e) {
+            System.out.println("Test 2 failed: " + e.getMessage());
+        }
+
+        // Test 3: leaving the queue and metrics
+        try {
+            ChargingStation s = new ChargingStation("CHG-Q3", "Queue_Station_3");
+            ChargingQueue queue = new ChargingQueue(new CopyOnWriteArrayList<>(List.of(s)), ChargingQueue.Policy.FIFO);
+            StorageVehicle a = new StorageVehicle("QM1", "Van_QM1");
+            StorageVehicle b = new StorageVehicle("QM2", "Van_QM2");
+
+            queue.acquire(a);
+            queue.acquire(b);
+            assert queue.leave(b) : "Waiting vehicle could not leave";
+            assert !queue.leave(b) : "Vehicle left twice";
+            s.release(a.getId());
+            assert !s.isInUse() : "Station handed to a vehicle that left";
+
+            ChargingQueue.Metrics m = queue.metrics();
+            assert m.immediate == 1 && m.handOffs == 0 && m.timeouts == 1 : "Unexpected counters: " + m;
+            assert m.waiting == 0 : "Queue should be empty";
+            assert m.utilization.containsKey("Queue_Station_3") : "Station missing from utilization";
+            System.out.println("Test 3 passed (leave / metrics)");
+        } catch (AssertionError e) {
+            System.out.println("Test 3 failed: " + e.getMessage());
+        }
+
+        System.out.println("All ChargingQueue tests finished.");
+    }
+}
@@ -0,0 +1,123 @@
+import med.supply.system.model.ChargingStation;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.repository.Repository;
+import med.supply.system.service.StorageService;
+import med.supply.system.util.DiscreteEventClock;
+import med.supply.system.util.LogManager;
+import med.supply.system.util.PathsConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hammers tryClaim / release from many threads and checks that a station is never held by two
+ * vehicles at once and that only the owner can release it. Then checks that the operator's
+ * "free the station" command cannot take a station away from a charging vehicle.
+ * <p>
+ * Usage: java -ea ChargingStationStressTest [threads] [iterationsPerThread]
+ */
+public class ChargingStationStressTest {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        System.out.println("Running ChargingStation stress test (" + threads + " threads x " + iterations + ")...");
+
+        ChargingStation station = new ChargingStation("CHG-STRESS", "Stress_Station");
+        AtomicInteger holders = new AtomicInteger();     // vehicles currently inside the critical section
+        AtomicLong claims = new AtomicLong();
+        AtomicLong doubleOccupancy = new AtomicLong();
+        AtomicLong foreignReleases = new AtomicLong();
+        AtomicLong operatorWins = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String me = "AGV-" + t;
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < iterations; i++) {
+                    if (station.tryClaim(me)) {
+                        claims.incrementAndGet();
+                        if (holders.incrementAndGet() != 1 || !station.isOwnedBy(me)) doubleOccupancy.incrementAndGet();
+                        holders.decrementAndGet();
+                        if (!station.release(me)) doubleOccupancy.incrementAndGet();
+                    } else if (station.release(me)) {
+                        // we did not hold it, so this must never succeed
+                        foreignReleases.incrementAndGet();
+                    }
+                }
+            }, "stress-" + t);
+            workers.add(w);
+            w.start();
+        }
+
+        // an operator flipping the load at the same time, like StorageService.updateChargingLoad
+        Thread operator = new Thread(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int i = 0; i < iterations; i++) {
+                if (station.occupy()) {
+                    operatorWins.incrementAndGet();
+                    if (holders.incrementAndGet() != 1) doubleOccupancy.incrementAndGet();
+                    holders.decrementAndGet();
+                    station.release(ChargingStation.OPERATOR);
+                }
+            }
+        }, "stress-operator");
+        operator.start();
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread w : workers) w.join();
+        operator.join();
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+
+        System.out.println("Claims: " + claims.get() + " vehicle, " + operatorWins.get() + " operator in " + ms + " ms");
+        assert doubleOccupancy.get() == 0 : "Station held twice " + doubleOccupancy.get() + " time(s)";
+        assert foreignReleases.get() == 0 : "Non-owner released the station " + foreignReleases.get() + " time(s)";
+        assert !station.isInUse() : "Station left in use by " + station.getOwner();
+        assert claims.get() > 0 : "No vehicle ever claimed the station";
+        System.out.println("ChargingStation stress test finished: no double occupancy.");
+
+        operatorCannotEvictVehicle();
+    }
+
+    // the operator setting the load to 0 while a vehicle charges, as in the "update load" menu
+    private static void operatorCannotEvictVehicle() throws Exception {
+        PathsConfig cfg = new PathsConfig();
+        cfg.ensure();
+        StorageService storage = new StorageService(new Repository(), new LogManager(cfg), false);
+        DiscreteEventClock clock = new DiscreteEventClock(0);
+        StorageVehicle v = new StorageVehicle("STRESS-V1", "Stress_V1");
+        v.attachClock(clock);
+        v.setBatteryLevelPct(20);
+        v.setBatteryLevelPct(10);
+        ChargingStation held = v.getAssignedStation();
+        assert v.isCharging() && held != null : "Vehicle did not get a default station";
+
+        storage.updateChargingLoad(held.getId(), 0);
+        assert held.isOwnedBy(v.getId()) : "Operator release took the station from " + v.getName();
+        assert v.isCharging() && v.getAssignedStation() == held : "Vehicle stopped charging";
+        assert !held.tryClaim("STRESS-V2") : "Station double-booked after the operator release";
+        assert !held.release() : "release() freed a vehicle's claim";
+
+        clock.advanceBy(17 * 20_000); // charges to 95% and gives the station back
+        assert !v.isCharging() && !held.isInUse() : "Station not freed when charging finished";
+
+        storage.updateChargingLoad(held.getId(), 1);
+        assert ChargingStation.OPERATOR.equals(held.getOwner()) : "Operator could not occupy the station";
+        storage.updateChargingLoad(held.getId(), 0);
+        assert !held.isInUse() : "Operator could not free its own claim";
+        System.out.println("Operator release test finished: charging vehicle kept its station.");
+    }
+}
@@ -7,19 +7,20 @@ public class ChargingStationTest {
         // Test 1: valid construction and getters
         try {
             ChargingStation c = new ChargingStation("ST-001", "Station_1");
-            assert "1".equals(c.getId()) : "id mismatch";
+            assert "ST-001".equals(c.getId()) : "id mismatch";
             assert "Station_1".equals(c.getName()) : "name mismatch";
-            assert c.getCurrentLoadPct() == 0 : "default currentLoadPct should be 0";
+            assert !c.isInUse() && c.getOwner() == null : "new station should be free";
             System.out.println("Test 1 passed");
         } catch (Throwable t) {
             System.out.println("Test 1 failed: " + t.getMessage());
         }
 
-        //Test 2: set valid load
+        //Test 2: claim and release
         try {
             ChargingStation c = new ChargingStation("ST-002", "Station_2");
-            c.setCurrentLoadPct(45);
-            assert c.getCurrentLoadPct() == 45 : "currentLoadPct not set correctly";
+            assert c.tryClaim("V-45") : "free station not claimed";
+            assert c.isOwnedBy("V-45") && !c.tryClaim("V-46") : "claim not exclusive";
+            assert !c.release("V-46") && c.release("V-45") && !c.isInUse() : "release by owner only";
             System.out.println("Test 2 passed");
         } catch (Throwable t) {
             System.out.println("Test 2 failed: " + t.getMessage());
@@ -33,21 +34,21 @@ public class ChargingStationTest {
             System.out.println("Test 3 passed (caught: " + ok.getMessage() + ")");
         }
 
-        // Test 4: invalid load should throw exception
+        // Test 4: blank vehicle id should throw exception
         try {
             ChargingStation c = new ChargingStation("ST-004", "Station_4");
-            c.setCurrentLoadPct(200);
-            System.out.println("Test 4 failed: Expected exception for invalid load");
+            c.tryClaim(" ");
+            System.out.println("Test 4 failed: Expected exception for blank vehicle id");
         } catch (IllegalArgumentException ok) {
             System.out.println("Test 4 passed (caught: " + ok.getMessage() + ")");
         }
 
-        // Test 5: toString includes id, name, and load
+        // Test 5: toString includes id, name, and owner
         try {
             ChargingStation c = new ChargingStation("ST-005", "Alpha");
-            c.setCurrentLoadPct(20);
+            c.tryClaim("V-20");
             String s = c.toString();
-            assert s.contains("ST-005") && s.contains("Alpha") && s.contains("20")
+            assert s.contains("ST-005") && s.contains("Alpha") && s.contains("IN_USE by V-20")
                     : "toString missing expected fields";
             System.out.println("Test 5 passed");
         } catch (Throwable t) {
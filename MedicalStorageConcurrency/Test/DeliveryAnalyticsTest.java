@@ -0,0 +1,174 @@
+import med.supply.system.service.DestinationService;
+import med.supply.system.util.DeliveryAnalytics;
+import med.supply.system.util.DeliveryJournal;
+import med.supply.system.util.MetadataWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+
+public class DeliveryAnalyticsTest {
+    public static void main(String[] args) {
+        System.out.println("Running DeliveryAnalytics tests...");
+
+        try {
+            testQueries();
+            testParallelScanMatchesSequential();
+            testLegacyFileScan();
+            testAttachCountsEachRowOnce();
+            testDestinationServiceAnalytics();
+
+            System.out.println("All DeliveryAnalytics tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("DeliveryAnalytics test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Exception during DeliveryAnalytics tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path newFile(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).resolve("destination_log.csv");
+    }
+
+    private static LocalDateTime hour(int day, int h) {
+        return LocalDateTime.of(2025, 1, day, h, 0);
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testQueries() {
+        DeliveryAnalytics a = new DeliveryAnalytics();
+        a.add("2025-01-01T10:05:00", "Van_1", "SYR20", 5);
+        a.add("2025-01-01T10:55:10.123", "Van_1", "SYR20", 7);
+        a.add("2025-01-01T11:00:00", "Van_2", "SYR20", 3);
+        a.add("2025-01-01T13:30:00", "Van_2", "Gloves", 50);
+        a.add("not a time", "Van_2", "Gloves", 1);
+
+        SortedMap<String, SortedMap<LocalDateTime, Long>> perHour = a.unitsPerHourByVehicle("SYR20");
+        assert perHour.keySet().equals(Set.of("Van_1", "Van_2")) : "Vehicles: " + perHour.keySet();
+        assert perHour.get("Van_1").get(hour(1, 10)) == 12 : "Van_1 10:00: " + perHour.get("Van_1");
+        assert perHour.get("Van_2").get(hour(1, 11)) == 3 : "Van_2 11:00: " + perHour.get("Van_2");
+
+        assert a.item("SYR20").units == 15 && a.item("SYR20").deliveries == 3 : "SYR20: " + a.item("SYR20");
+        assert a.vehicle("Van_2").units == 53 : "Van_2: " + a.vehicle("Van_2");
+        assert a.total().deliveries == 4 && a.getUnparsable() == 1 : "Total: " + a.total();
+        assert a.byHour().size() == 3 : "Hours: " + a.byHour().keySet();
+        assert a.between(null, "Van_2", hour(1, 11), hour(1, 13)).units == 3 : "Van_2 11:00-13:00";
+        assert a.between("SYR20", null, null, hour(1, 11)).units == 12 : "SYR20 before 11:00";
+
+        SortedMap<LocalDateTime, DeliveryAnalytics.Totals> windows = a.perWindow(null, 4);
+        assert windows.get(hour(1, 8)).units == 15 && windows.get(hour(1, 12)).units == 50 : "Windows: " + windows;
+        System.out.println("Test 1 passed  (per item / vehicle / hour queries)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testParallelScanMatchesSequential() throws IOException {
+        Path file = newFile("analytics_scan_");
+        String[] items = {"SYR20", "Gloves", "Masks, N95", "Bandages"};
+        long expectedSyr = 0;
+        try (DeliveryJournal j = DeliveryJournal.open(file, MetadataWriter.FsyncPolicy.NONE)) {
+            List<DeliveryJournal.Delivery> batch = new ArrayList<>();
+            for (int i = 0; i < 120_000; i++) {
+                String item = items[i % items.length];
+                int qty = 1 + i % 9;
+                if (item.equals("SYR20")) expectedSyr += qty;
+                String ts = LocalDateTime.of(2025, 1, 1, 0, 0).plusSeconds(i * 3L) + ".250";
+                batch.add(new DeliveryJournal.Delivery(ts, "Van_" + (i % 7), item, qty));
+                if (batch.size() == 5_000) {
+                    j.appendAll(batch);
+                    batch.clear();
+                }
+            }
+        }
+        assert Files.size(file) > 4 * (1 << 20) : "Test file too small to split: " + Files.size(file);
+
+        DeliveryAnalytics one = new DeliveryAnalytics();
+        DeliveryAnalytics.ScanReport r1 = one.load(file, 1);
+        DeliveryAnalytics many = new DeliveryAnalytics();
+        DeliveryAnalytics.ScanReport r4 = many.load(file, 4);
+        System.out.println("  " + r4);
+
+        assert r4.chunks > 1 : "File was not split: " + r4;
+        assert r1.rows == 120_000 && r4.rows == 120_000 && r4.skipped == 0 : r1 + " / " + r4;
+        assert many.item("SYR20").units == expectedSyr : "SYR20 units " + many.item("SYR20").units + " != " + expectedSyr;
+        assert many.byItem().toString().equals(one.byItem().toString()) : "Per item differs between 1 and 4 threads";
+        assert many.byHour().toString().equals(one.byHour().toString()) : "Per hour differs between 1 and 4 threads";
+        assert many.unitsPerHourByVehicle("Masks, N95").equals(one.unitsPerHourByVehicle("Masks, N95")) : "Per vehicle differs";
+        assert many.getLastSeq() == 120_000 : "Last seq " + many.getLastSeq();
+        System.out.println("Test 2 passed  (parallel chunked scan = single-threaded scan)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testLegacyFileScan() throws IOException {
+        Path file = newFile("analytics_legacy_");
+        Files.writeString(file, "timestamp,vehicle,item,quantity\n" +
+                "2025-11-07T19:27:45.697395100,ww,SYR20,50\n" +
+                "2025-11-07T19:59:00,ee,SYR20,10\n" +
+                "broken row\n" +
+                "2025-11-07T20:01:00,ww,Gloves,4\n", StandardCharsets.UTF_8);
+        DeliveryAnalytics a = DeliveryAnalytics.scan(file, 2);
+        assert a.item("SYR20").units == 60 && a.total().deliveries == 3 : "Legacy totals: " + a.byItem();
+        assert a.unitsPerHourByVehicle("SYR20").get("ww").get(LocalDateTime.of(2025, 11, 7, 19, 0)) == 50 : "ww at 19:00";
+        System.out.println("Test 3 passed  (old four-column file)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testAttachCountsEachRowOnce() throws IOException, InterruptedException {
+        Path file = newFile("analytics_attach_");
+        try (DeliveryJournal j = DeliveryJournal.open(file, MetadataWriter.FsyncPolicy.NONE)) {
+            for (int i = 0; i < 1_000; i++) j.append("2025-01-01T10:00:00", "Van_A", "SYR20", 1);
+
+            // keep appending while the analytics attaches
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    try {
+                        j.append("2025-01-01T11:00:00", "Van_B", "SYR20", 1);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            writer.start();
+            DeliveryAnalytics a = new DeliveryAnalytics();
+            a.attach(j, 2);
+            writer.join();
+            j.flush();
+
+            assert a.total().deliveries == 6_000 : "Counted " + a.total().deliveries + " of 6000 rows";
+            assert a.vehicle("Van_B").units == 5_000 : "Van_B: " + a.vehicle("Van_B");
+            assert a.getLastSeq() == 6_000 : "Last seq " + a.getLastSeq();
+
+            a.detach(j);
+            j.append("2025-01-01T12:00:00", "Van_A", "SYR20", 1);
+            assert a.total().deliveries == 6_000 : "Counted after detach";
+        }
+        System.out.println("Test 4 passed  (attach while writing counts each row once)");
+    }
+
+    // ---------- TEST 5 ----------
+    private static void testDestinationServiceAnalytics() throws IOException {
+        Path file = newFile("analytics_service_");
+        DestinationService dst = new DestinationService(file);
+        dst.recordDelivery("Van_1", "SYR20", 4);
+        assert dst.getAnalyticsScan() == null : "Scanned before analytics were asked for";
+        DeliveryAnalytics a = dst.analytics();
+        assert a.item("SYR20").units == 4 : "Existing row not loaded";
+        assert dst.getAnalyticsScan().rows == 1 : "Scan report " + dst.getAnalyticsScan();
+
+        dst.enableBuffering(64, 1_024, 10_000);
+        dst.recordDelivery("Van_1", "SYR20", 6);
+        dst.recordDelivery("Van_2", "Gloves", 2);
+        dst.flush();
+        assert a.item("SYR20").units == 10 && a.vehicle("Van_2").units == 2 : "Buffered deliveries not counted: " + a.byItem();
+        assert dst.analytics() == a : "Analytics rebuilt on second call";
+        dst.close();
+        System.out.println("Test 5 passed  (DestinationService feeds the analytics)");
+    }
+}
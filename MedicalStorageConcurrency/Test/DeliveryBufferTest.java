@@ -0,0 +1,151 @@
+import med.supply.system.service.DestinationService;
+import med.supply.system.util.DeliveryBuffer;
+import med.supply.system.util.DeliveryJournal;
+import med.supply.system.util.MetadataWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class DeliveryBufferTest {
+    public static void main(String[] args) {
+        System.out.println("Running DeliveryBuffer tests...");
+
+        try {
+            testConcurrentRecordsMergedInOrder();
+            testSmallCapacityBlocksInsteadOfGrowing();
+            testCloseDrainsAndWritesThrough();
+            testDestinationServiceBuffering();
+
+            System.out.println("All DeliveryBuffer tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("DeliveryBuffer test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Exception during DeliveryBuffer tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path newFile(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).resolve("destination_log.csv");
+    }
+
+    private static List<DeliveryJournal.Entry> entries(Path file) throws IOException {
+        try (Stream<DeliveryJournal.Entry> s = DeliveryJournal.read(file)) {
+            return s.toList();
+        }
+    }
+
+    private static List<Thread> startRecorders(DeliveryBuffer buffer, int threads, int perThread) {
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String vehicle = "Van_" + t;
+            Thread w = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        buffer.record("2025-01-01T10:00:00", vehicle, "Gloves", i);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        return workers;
+    }
+
+    // each vehicle's rows must appear in the order its thread recorded them
+    private static void assertPerThreadOrder(List<DeliveryJournal.Entry> all, int perThread) {
+        Map<String, Integer> nextQty = new HashMap<>();
+        for (int i = 0; i < all.size(); i++) {
+            DeliveryJournal.Entry e = all.get(i);
+            assert e.seq == i + 1 : "File order is not sequence order at row " + i + ": " + e;
+            int expected = nextQty.getOrDefault(e.vehicle, 0);
+            assert e.quantity == expected : "Out of order for " + e.vehicle + ": expected " + expected + ", got " + e;
+            nextQty.put(e.vehicle, expected + 1);
+        }
+        for (int q : nextQty.values()) assert q == perThread : "Missing rows: " + nextQty;
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testConcurrentRecordsMergedInOrder() throws IOException, InterruptedException {
+        Path file = newFile("buffer_concurrent_");
+        int threads = 16;
+        int perThread = 2_000;
+        try (DeliveryJournal journal = DeliveryJournal.open(file, MetadataWriter.FsyncPolicy.PER_BATCH)) {
+            DeliveryBuffer buffer = new DeliveryBuffer(journal, 8, 256, 65_536, 20);
+            for (Thread w : startRecorders(buffer, threads, perThread)) w.join();
+            buffer.flush();
+
+            assert buffer.getPending() == 0 : "Pending after flush: " + buffer.getPending();
+            assert buffer.getMerged() == threads * perThread : "Merged " + buffer.getMerged();
+            assert journal.getRowCount() == threads * perThread : "Rows written: " + journal.getRowCount();
+            assert journal.getBatchCount() == buffer.getBatchCount() : "Merger should be the only writer";
+            System.out.println("  " + buffer.getMerged() + " deliveries in " + buffer.getBatchCount()
+                    + " batch(es) over " + buffer.getStripeCount() + " stripe(s)");
+            buffer.close();
+        }
+        assertPerThreadOrder(entries(file), perThread);
+        System.out.println("Test 1 passed  (striped records merged in recording order)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testSmallCapacityBlocksInsteadOfGrowing() throws IOException, InterruptedException {
+        Path file = newFile("buffer_capacity_");
+        int threads = 4;
+        int perThread = 1_000;
+        try (DeliveryJournal journal = DeliveryJournal.open(file, MetadataWriter.FsyncPolicy.NONE)) {
+            // long interval: only the batch-size wake-up and full-buffer waits keep things moving
+            DeliveryBuffer buffer = new DeliveryBuffer(journal, 2, 16, 64, 10_000);
+            for (Thread w : startRecorders(buffer, threads, perThread)) w.join();
+            assert buffer.getPending() <= 64 + threads : "Buffer grew past its capacity: " + buffer.getPending();
+            buffer.close();
+            assert journal.getRowCount() == threads * perThread : "Rows written: " + journal.getRowCount();
+        }
+        assertPerThreadOrder(entries(file), perThread);
+        System.out.println("Test 2 passed  (recorders wait when the buffer is full)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testCloseDrainsAndWritesThrough() throws IOException {
+        Path file = newFile("buffer_close_");
+        try (DeliveryJournal journal = DeliveryJournal.open(file)) {
+            DeliveryBuffer buffer = new DeliveryBuffer(journal, 4, 1_000, 10_000, 10_000);
+            for (int i = 0; i < 10; i++) buffer.record("2025-01-01T10:00:00", "Van_C", "Masks", i);
+            assert journal.getRowCount() == 0 : "Written before the merge interval";
+
+            buffer.close();
+            assert journal.getRowCount() == 10 : "Close did not drain: " + journal.getRowCount();
+
+            buffer.record("2025-01-01T10:00:01", "Van_C", "Masks", 10);
+            assert journal.getLastSeq() == 11 : "Record after close not written through";
+        }
+        assertPerThreadOrder(entries(file), 11);
+        System.out.println("Test 3 passed  (close drains, later records write through)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testDestinationServiceBuffering() throws IOException {
+        Path file = newFile("buffer_service_");
+        DestinationService dst = new DestinationService(file);
+        dst.enableBuffering(64, 1_024, 10_000);
+        assert dst.isBuffered() : "Buffering not enabled";
+        dst.recordDelivery("Van_1", "Gloves", 50);
+        dst.recordDelivery("Van_2", "Syringes", 5);
+        dst.flush();
+        assert entries(file).size() == 2 : "Flush did not write buffered deliveries";
+
+        dst.recordDelivery("Van_1", "Masks", 7);
+        dst.close();
+        List<DeliveryJournal.Entry> all = entries(file);
+        assert all.size() == 3 && all.get(2).item.equals("Masks") : "Close lost a buffered delivery: " + all;
+        System.out.println("Test 4 passed  (DestinationService with buffering)");
+    }
+}
@@ -0,0 +1,168 @@
+import med.supply.system.service.DestinationService;
+import med.supply.system.util.DeliveryJournal;
+import med.supply.system.util.MetadataWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class DeliveryJournalTest {
+    public static void main(String[] args) {
+        System.out.println("Running DeliveryJournal tests...");
+
+        try {
+            testConcurrentAppendsInSequence();
+            testRestartResumesNumbering();
+            testTornTailIsDropped();
+            testLongDamagedTail();
+            testLegacyFileIsConverted();
+
+            System.out.println("All DeliveryJournal tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("DeliveryJournal test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Exception during DeliveryJournal tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path newFile(String prefix) throws IOException {
+        Path dir = Files.createTempDirectory(prefix);
+        return dir.resolve("destination_log.csv");
+    }
+
+    private static List<DeliveryJournal.Entry> entries(Path file) throws IOException {
+        try (Stream<DeliveryJournal.Entry> s = DeliveryJournal.read(file)) {
+            return s.toList();
+        }
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testConcurrentAppendsInSequence() throws IOException, InterruptedException {
+        Path file = newFile("journal_concurrent_");
+        int threads = 8;
+        int perThread = 500;
+        try (DeliveryJournal j = DeliveryJournal.open(file, MetadataWriter.FsyncPolicy.PER_BATCH)) {
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                Thread w = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        try {
+                            j.append("2025-01-01T10:00:00", "Van_" + id, "Item, \"special\" " + i, i);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+                workers.add(w);
+                w.start();
+            }
+            for (Thread w : workers) w.join();
+
+            assert j.getRowCount() == threads * perThread : "Rows written: " + j.getRowCount();
+            assert j.getSyncCount() == j.getBatchCount() : "Expected one fsync per batch";
+            System.out.println("  " + j.getRowCount() + " rows in " + j.getBatchCount() + " batch(es)");
+        }
+
+        List<DeliveryJournal.Entry> all = entries(file);
+        assert all.size() == threads * perThread : "Valid rows in file: " + all.size();
+        for (int i = 0; i < all.size(); i++) {
+            assert all.get(i).seq == i + 1 : "File order is not sequence order at row " + i + ": " + all.get(i);
+        }
+        assert all.get(0).item.startsWith("Item, \"special\"") : "Quoted item did not round trip: " + all.get(0).item;
+        System.out.println("Test 1 passed  (concurrent appends, group commit, seq order)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testRestartResumesNumbering() throws IOException {
+        Path file = newFile("journal_restart_");
+        DestinationService first = new DestinationService(file);
+        first.recordDelivery("Van_1", "Gloves", 50);
+        first.recordDelivery("Van_2", "Masks", 20);
+        first.close();
+
+        DestinationService second = new DestinationService(file);
+        assert second.getJournal().getRecovery().lastSeq == 2 : "Recovery: " + second.getJournal().getRecovery();
+        second.recordDelivery("Van_1", "Syringes", 5);
+        second.close();
+
+        List<DeliveryJournal.Entry> all = entries(file);
+        assert all.size() == 3 : "History lost on restart: " + all;
+        assert all.get(2).seq == 3 && all.get(2).item.equals("Syringes") : "Numbering did not resume: " + all;
+        System.out.println("Test 2 passed  (restart keeps history and numbering)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testTornTailIsDropped() throws IOException {
+        Path file = newFile("journal_torn_");
+        try (DeliveryJournal j = DeliveryJournal.open(file)) {
+            for (int i = 0; i < 10; i++) j.append("2025-01-01T10:00:0" + i, "Van_T", "Gloves", i + 1);
+        }
+        long goodSize = Files.size(file);
+
+        // a row cut off mid-write
+        append(file, "11,2025-01-01T10:00:10,Van_T,Glo");
+        try (DeliveryJournal j = DeliveryJournal.open(file)) {
+            assert j.getRecovery().lastSeq == 10 : "Recovery: " + j.getRecovery();
+            assert j.getRecovery().discardedBytes > 0 : "Torn row not dropped";
+            assert Files.size(file) == goodSize : "File not cut back to the last good row";
+        }
+
+        // a complete-looking row with a bad checksum, then zeros (lost page after power failure)
+        append(file, "11,2025-01-01T10:00:10,Van_T,Gloves,11,deadbeef\n");
+        Files.write(file, new byte[512], StandardOpenOption.APPEND);
+        try (DeliveryJournal j = DeliveryJournal.open(file)) {
+            assert j.getRecovery().lastSeq == 10 : "Recovery: " + j.getRecovery();
+            assert j.append("2025-01-01T10:00:11", "Van_T", "Gloves", 11) == 11 : "Numbering after recovery";
+        }
+        List<DeliveryJournal.Entry> all = entries(file);
+        assert all.size() == 11 && all.get(10).seq == 11 : "Rows after recovery: " + all;
+        System.out.println("Test 3 passed  (torn row, bad checksum and zero fill dropped)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testLongDamagedTail() throws IOException {
+        Path file = newFile("journal_long_tail_");
+        try (DeliveryJournal j = DeliveryJournal.open(file)) {
+            for (int i = 0; i < 3_000; i++) j.append("2025-01-01T10:00:00", "Van_L", "Bandages", i);
+        }
+        long goodSize = Files.size(file);
+        StringBuilder junk = new StringBuilder();
+        for (int i = 0; i < 3_000; i++) junk.append("garbage line ").append(i).append(",not,a,row\n"); // more than one read chunk
+        append(file, junk.toString());
+
+        try (DeliveryJournal j = DeliveryJournal.open(file)) {
+            assert j.getRecovery().lastSeq == 3_000 : "Recovery: " + j.getRecovery();
+            assert j.getRecovery().discardedBytes == junk.length() : "Discarded " + j.getRecovery().discardedBytes;
+        }
+        assert Files.size(file) == goodSize : "Damaged tail longer than a chunk not removed";
+        System.out.println("Test 4 passed  (damaged tail longer than one read chunk)");
+    }
+
+    // ---------- TEST 5 ----------
+    private static void testLegacyFileIsConverted() throws IOException {
+        Path file = newFile("journal_legacy_");
+        Files.writeString(file, "timestamp,vehicle,item,quantity\n" +
+                "2025-11-07T19:27:45.697395100,ww,Gloves,50\n" +
+                "2025-11-07T19:27:45.720473500,ee,Gloves,50\n");
+        try (DeliveryJournal j = DeliveryJournal.open(file)) {
+            assert j.getRecovery().migratedRows == 2 : "Recovery: " + j.getRecovery();
+            assert j.append("2025-11-08T08:00:00", "ww", "Masks", 3) == 3 : "Numbering after conversion";
+        }
+        List<DeliveryJournal.Entry> all = entries(file);
+        assert all.size() == 3 && all.get(0).vehicle.equals("ww") && all.get(0).quantity == 50 : "Converted rows: " + all;
+        assert Files.readAllLines(file).get(0).equals(DeliveryJournal.HEADER) : "Header not updated";
+        System.out.println("Test 5 passed  (old four-column file converted)");
+    }
+}
@@ -0,0 +1,62 @@
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.TaskPriority;
+import med.supply.system.service.*;
+
+import java.util.List;
+
+public class DispatchSchedulerTest {
+    public static void main(String[] args) {
+        System.out.println("Running DispatchScheduler tests...");
+
+        StorageVehicle low = vehicle("V1", 30);
+        StorageVehicle high = vehicle("V2", 90);
+        StorageVehicle mid = vehicle("V3", 60);
+        List<StorageVehicle> idle = List.of(low, high, mid);
+
+        DeliveryRequest normal = new DeliveryRequest("SKU1", "Gloves", 50, TaskPriority.NORMAL, 0);
+        DeliveryRequest urgent = new DeliveryRequest("SKU2", "IV Fluids", 50, TaskPriority.URGENT, 1);
+
+        // Test 1: round-robin keeps arrival and idle order
+        try {
+            List<DispatchScheduler.Assignment> a = new RoundRobinScheduler().schedule(List.of(normal, urgent), idle);
+            assert a.size() == 2 : "Expected two assignments";
+            assert a.get(0).request == normal && a.get(0).vehicle == low : "Round-robin reordered requests";
+            assert a.get(1).vehicle == high : "Round-robin reordered vehicles";
+            System.out.println("Test 1 passed (round-robin)");
+        } catch (AssertionError e) {
+            System.out.println("Test 1 failed: " + e.getMessage());
+        }
+
+        // Test 2: battery-weighted uses the fullest batteries and can hold back the reserve
+        try {
+            List<DispatchScheduler.Assignment> a = new BatteryWeightedScheduler().schedule(List.of(normal, urgent), idle);
+            assert a.get(0).vehicle == high && a.get(1).vehicle == mid : "Fullest vehicles not chosen first";
+
+            StorageVehicle drained = vehicle("V4", 20);
+            List<DispatchScheduler.Assignment> strict = new BatteryWeightedScheduler(25, false)
+                    .schedule(List.of(normal), List.of(drained));
+            assert strict.isEmpty() : "Vehicle under the reserve was dispatched";
+            System.out.println("Test 2 passed (battery-weighted)");
+        } catch (AssertionError e) {
+            System.out.println("Test 2 failed: " + e.getMessage());
+        }
+
+        // Test 3: priority queue serves URGENT first with the fullest vehicle
+        try {
+            List<DispatchScheduler.Assignment> a = new PriorityQueueScheduler().schedule(List.of(normal, urgent), idle);
+            assert a.get(0).request == urgent && a.get(0).vehicle == high : "URGENT not served first";
+            assert a.get(1).request == normal : "NORMAL request missing";
+            System.out.println("Test 3 passed (priority queue)");
+        } catch (AssertionError e) {
+            System.out.println("Test 3 failed: " + e.getMessage());
+        }
+
+        System.out.println("All DispatchScheduler tests finished.");
+    }
+
+    private static StorageVehicle vehicle(String id, int battery) {
+        StorageVehicle v = new StorageVehicle(id, "Van_" + id);
+        v.setBatteryLevelPct(battery);
+        return v;
+    }
+}
@@ -0,0 +1,138 @@
+import med.supply.system.util.ExecutionMode;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExecutionModeTest {
+    public static void main(String[] args) {
+        System.out.println("Running ExecutionMode tests...");
+
+        // Test 1: POOLED runs tasks on at most poolSize named platform threads
+        try {
+            ExecutorService ex = ExecutionMode.POOLED.newExecutor(2, "exec-pooled");
+            Set<String> names = ConcurrentHashMap.newKeySet();
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(8);
+            for (int i = 0; i < 8; i++) {
+                ex.execute(() -> {
+                    int now = running.incrementAndGet();
+                    peak.accumulateAndGet(now, Math::max);
+                    names.add(Thread.currentThread().getName());
+                    assert !isVirtual(Thread.currentThread()) : "POOLED task on a virtual thread";
+                    sleep(20);
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+            assert done.await(5, TimeUnit.SECONDS) : "Pooled tasks did not finish";
+            shutdown(ex);
+            assert peak.get() <= 2 : "More tasks at once than the pool size: " + peak.get();
+            assert names.size() <= 2 : "More threads than the pool size: " + names;
+            for (String n : names) assert n.startsWith("exec-pooled-") : "Thread not named after the prefix: " + n;
+            System.out.println("Test 1 passed (pooled: " + names.size() + " thread(s), peak " + peak.get() + ")");
+        } catch (AssertionError e) {
+            System.out.println("Test 1 failed: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Test 1 failed: " + e.getMessage());
+        }
+
+        // Test 2: VIRTUAL gives every task its own thread, whatever the pool size
+        try {
+            ExecutorService ex = ExecutionMode.VIRTUAL.newExecutor(2, "exec-virtual");
+            int tasks = 50;
+            CountDownLatch started = new CountDownLatch(tasks);
+            CountDownLatch release = new CountDownLatch(1);
+            Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            for (int i = 0; i < tasks; i++) {
+                ex.execute(() -> {
+                    threads.add(Thread.currentThread());
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            // with a bounded pool the blocked tasks could never all start
+            assert started.await(5, TimeUnit.SECONDS) : "Only " + (tasks - started.getCount()) + " task(s) started";
+            release.countDown();
+            shutdown(ex);
+            assert threads.size() == tasks : "Tasks shared threads: " + threads.size();
+            for (Thread t : threads) {
+                if (ExecutionMode.virtualThreadsAvailable()) {
+                    assert isVirtual(t) : "Not a virtual thread: " + t;
+                } else {
+                    assert t.getName().startsWith("exec-virtual-") : "Fallback thread not named after the prefix: " + t;
+                }
+            }
+            System.out.println("Test 2 passed (virtual: " + tasks + " blocked tasks at once, "
+                    + (ExecutionMode.virtualThreadsAvailable() ? "virtual threads" : "cached pool fallback") + ")");
+        } catch (AssertionError e) {
+            System.out.println("Test 2 failed: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Test 2 failed: " + e.getMessage());
+        }
+
+        // Test 3: the default follows -Dmed.exec.mode and setDefault
+        String property = System.getProperty("med.exec.mode");
+        ExecutionMode previous = ExecutionMode.getDefault();
+        try {
+            System.setProperty("med.exec.mode", " Virtual ");
+            assert ExecutionMode.fromSystemProperty() == ExecutionMode.VIRTUAL : "Property not read";
+            System.setProperty("med.exec.mode", "threads");
+            assert ExecutionMode.fromSystemProperty() == ExecutionMode.POOLED : "Unknown value not POOLED";
+            System.clearProperty("med.exec.mode");
+            assert ExecutionMode.fromSystemProperty() == ExecutionMode.POOLED : "Missing property not POOLED";
+
+            for (ExecutionMode m : ExecutionMode.values()) {
+                ExecutionMode.setDefault(m);
+                assert ExecutionMode.getDefault() == m : "Default not set to " + m;
+            }
+            try {
+                ExecutionMode.setDefault(null);
+                assert false : "Null default accepted";
+            } catch (IllegalArgumentException expected) {
+                // ok
+            }
+            System.out.println("Test 3 passed (default mode)");
+        } catch (AssertionError e) {
+            System.out.println("Test 3 failed: " + e.getMessage());
+        } finally {
+            ExecutionMode.setDefault(previous);
+            if (property != null) System.setProperty("med.exec.mode", property);
+            else System.clearProperty("med.exec.mode");
+        }
+
+        System.out.println("All ExecutionMode tests finished.");
+    }
+
+    // Thread.isVirtual() is JDK 21+, the project builds on 17
+    private static boolean isVirtual(Thread t) {
+        try {
+            Method m = Thread.class.getMethod("isVirtual");
+            return (Boolean) m.invoke(t);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void shutdown(ExecutorService ex) throws InterruptedException {
+        ex.shutdown();
+        assert ex.awaitTermination(5, TimeUnit.SECONDS) : "Executor did not terminate";
+    }
+}
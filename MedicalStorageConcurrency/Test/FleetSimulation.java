@@ -0,0 +1,114 @@
+import med.supply.system.model.ChargingQueue;
+import med.supply.system.model.ChargingStation;
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.TaskStatus;
+import med.supply.system.repository.Repository;
+import med.supply.system.service.DestinationService;
+import med.supply.system.service.StorageService;
+import med.supply.system.service.TaskService;
+import med.supply.system.util.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the real services (dispatch, deliveries, charging queue, logging) for a whole fleet on a
+ * discrete-event clock, so a simulated day finishes in seconds. Console chatter from the services
+ * is muted; one line per simulated hour is printed.
+ * <p>
+ * Usage: java FleetSimulation [vehicles] [hours] [requestsPerMinute]
+ */
+public class FleetSimulation {
+
+    public static void main(String[] args) throws Exception {
+        int fleet = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        int perMinute = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        PrintStream out = System.out;
+        long startOfDay = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        DiscreteEventClock clock = new DiscreteEventClock(startOfDay);
+        SimulationClock previousDefault = SimulationClock.getDefault();
+        SimulationClock.setDefault(clock);
+
+        // one station per three vehicles keeps charging from being the only bottleneck
+        List<ChargingStation> extraStations = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, fleet / 3); i++) {
+            extraStations.add(new ChargingStation("CHG-SIM-" + i, "Sim_Station_" + i));
+        }
+
+        PathsConfig cfg = new PathsConfig();
+        cfg.ensure();
+        LogManager logs = new LogManager(cfg);
+        logs.enableAsync(65_536, 1024, 200, AsyncLogWriter.Backpressure.BLOCK);
+        TaskService tasks = null;
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            ChargingStation.DEFAULT_STATIONS.addAll(extraStations);
+
+            Repository repo = new Repository();
+            StorageService storage = new StorageService(repo, logs);
+            tasks = new TaskService(repo, logs, ExecutionMode.POOLED, clock);
+            storage.attachTaskService(tasks);
+            tasks.attachStorage(storage);
+            tasks.attachDestination(new DestinationService());
+            tasks.enableTaskArchive(cfg.tasksArchive, cfg.metaIndex, 5_000);
+            storage.getUnassignedItemsRef().clear();
+
+            Random rnd = new Random(42);
+            for (int i = 0; i < fleet; i++) {
+                StorageVehicle v = new StorageVehicle("SIM-" + i, "Sim_" + i);
+                v.setBatteryLevelPct(20 + rnd.nextInt(81));
+                storage.addVehicle(v);
+            }
+
+            // new demand every minute; the idle pool resumes distribution as vehicles free up
+            long[] seq = {0};
+            TaskService t = tasks;
+            clock.scheduleAtFixedRate(() -> {
+                try {
+                    for (int i = 0; i < perMinute; i++) {
+                        long n = seq[0]++;
+                        storage.addItem(new StorageItem("REQ-" + n, "Item_" + (n % 20), 50));
+                    }
+                    t.autoDistribute("SIM");
+                } catch (Exception e) {
+                    System.err.println("[SIM] " + e.getMessage());
+                }
+            }, 0, 60_000);
+
+            out.println("Fleet simulation: " + fleet + " vehicles, " + ChargingStation.DEFAULT_STATIONS.size() +
+                    " stations, " + perMinute + " requests/min, " + hours + " simulated hour(s)\n");
+            out.printf("%5s %12s %10s %10s %8s %10s%n", "hour", "delivered", "charging", "queued", "idle", "backlog");
+
+            long wallStart = System.nanoTime();
+            for (int h = 1; h <= hours; h++) {
+                clock.advanceBy(3_600_000);
+                // DONE tasks leave the repository when they are archived
+                long delivered = repo.taskStore().countWithStatus(TaskStatus.DONE) + tasks.getArchivedTaskCount();
+                int charging = 0;
+                for (StorageVehicle v : repo.vehicles()) if (v.isCharging()) charging++;
+                out.printf("%5d %12d %10d %10d %8d %10d%n", h, delivered, charging,
+                        ChargingQueue.shared().waitingCount(), tasks.getIdleVehicles().size(),
+                        storage.getUnassignedItemsRef().size());
+            }
+            long wallMs = (System.nanoTime() - wallStart) / 1_000_000;
+
+            out.println("\n" + hours + " simulated hour(s) in " + wallMs + " ms wall time, " +
+                    clock.executedEvents() + " events");
+            out.println(ChargingQueue.shared().metrics().toString().split("\n")[0]);
+        } finally {
+            System.setOut(out);
+            if (tasks != null) tasks.shutdown();
+            else logs.shutdown();
+            ChargingStation.DEFAULT_STATIONS.removeAll(extraStations);
+            SimulationClock.setDefault(previousDefault);
+        }
+    }
+}
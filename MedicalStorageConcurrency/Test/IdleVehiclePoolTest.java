@@ -0,0 +1,55 @@
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.service.IdleVehiclePool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IdleVehiclePoolTest {
+    public static void main(String[] args) {
+        System.out.println("Running IdleVehiclePool tests...");
+
+        // Test 1: empty vehicles are idle as soon as they are tracked, in FIFO order
+        try {
+            IdleVehiclePool pool = new IdleVehiclePool();
+            StorageVehicle a = new StorageVehicle("VA", "Van_A");
+            StorageVehicle b = new StorageVehicle("VB", "Van_B");
+            pool.track(a);
+            pool.track(b);
+            assert pool.size() == 2 : "Expected two idle vehicles";
+            assert pool.poll() == a : "Pool is not FIFO";
+            assert pool.poll() == b : "Pool is not FIFO";
+            assert pool.poll() == null : "Pool should be empty";
+            System.out.println("Test 1 passed (track / poll)");
+        } catch (AssertionError e) {
+            System.out.println("Test 1 failed: " + e.getMessage());
+        }
+
+        // Test 2: transitions move vehicles in and out without rescans
+        try {
+            IdleVehiclePool pool = new IdleVehiclePool();
+            AtomicInteger idleEvents = new AtomicInteger();
+            pool.setOnBecameIdle(idleEvents::incrementAndGet);
+
+            StorageVehicle v = new StorageVehicle("VC", "Van_C");
+            pool.track(v);
+            v.addItem(new StorageItem("SKU1", "Gloves", 5)); // loaded -> not idle
+            assert pool.isEmpty() : "Loaded vehicle still in pool";
+            assert pool.poll() == null : "Stale entry returned";
+
+            v.removeItem("SKU1");                              // empty again -> idle
+            assert pool.size() == 1 : "Emptied vehicle not back in pool";
+
+            StorageVehicle taken = pool.poll();
+            taken.setOnDelivery(true);
+            assert pool.isEmpty() : "Dispatched vehicle must not be idle";
+            taken.setOnDelivery(false);
+            assert pool.poll() == v : "Vehicle not idle after delivery";
+            assert idleEvents.get() == 3 : "Expected 3 idle transitions, got " + idleEvents.get();
+            System.out.println("Test 2 passed (event-driven transitions)");
+        } catch (AssertionError e) {
+            System.out.println("Test 2 failed: " + e.getMessage());
+        }
+
+        System.out.println("All IdleVehiclePool tests finished.");
+    }
+}
@@ -0,0 +1,179 @@
+import med.supply.system.util.DiscreteEventClock;
+import med.supply.system.util.LogArchiver;
+import med.supply.system.util.LogManager;
+import med.supply.system.util.MetadataIndex;
+import med.supply.system.util.PathsConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+public class LogArchiverTest {
+    public static void main(String[] args) {
+        System.out.println("Running LogArchiver tests...");
+
+        try {
+            testParallelZipMatchesSources();
+            testIncrementalAndDelete();
+            testLargeFileStreamed();
+            testDeleteFollowsLogClock();
+
+            System.out.println("All LogArchiver tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("LogArchiver test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.err.println("IOException during LogArchiver tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path newCsv() throws IOException {
+        Path csv = Files.createTempFile("archiver_meta_", ".csv");
+        Files.writeString(csv, "path,createdUtc,kind,notes\n");
+        return csv;
+    }
+
+    private static Map<String, String> unzip(Path zip) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            Enumeration<? extends ZipEntry> en = zf.entries();
+            while (en.hasMoreElements()) {
+                ZipEntry e = en.nextElement();
+                try (InputStream in = zf.getInputStream(e)) { // checks the CRC as it reads
+                    entries.put(e.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return entries;
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testParallelZipMatchesSources() throws IOException {
+        Path src = Files.createTempDirectory("archiver_src_");
+        Map<String, String> expected = new HashMap<>();
+        for (int v = 0; v < 20; v++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 2_000 * (v + 1); i++) sb.append("[VEHICLE:Van_").append(v).append("] line ").append(i).append('\n');
+            String name = "vehicles/Van_" + v + "/2025-01-01.log";
+            Files.createDirectories(src.resolve(name).getParent());
+            Files.writeString(src.resolve(name), sb);
+            expected.put(name, sb.toString());
+        }
+        Files.writeString(src.resolve("empty.log"), "");
+        expected.put("empty.log", "");
+
+        Path zip = Files.createTempDirectory("archiver_out_").resolve("logs.zip");
+        LogArchiver.Report r = new LogArchiver(newCsv()).parallelism(4).archive(src, zip);
+        assert r.parallel : "Small archive should use the parallel writer";
+        assert r.files == 21 : "Expected 21 files, got " + r.files;
+        assert r.bytesOut < r.bytesIn : "Nothing was compressed: " + r;
+        assert unzip(zip).equals(expected) : "ZIP contents differ from the sources";
+        System.out.println("Test 1 passed  (" + r + ")");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testIncrementalAndDelete() throws IOException {
+        Path csv = newCsv();
+        Path src = Files.createTempDirectory("archiver_inc_");
+        Path out = Files.createTempDirectory("archiver_inc_out_");
+        Path old = src.resolve("vehicles/Van_A/2025-01-01.log");
+        Path today = src.resolve("vehicles/Van_A/" + LocalDate.now() + ".log");
+        Files.createDirectories(old.getParent());
+        Files.writeString(old, "old day\n");
+        Files.writeString(today, "today\n");
+        Instant past = Instant.now().minusSeconds(3_600);
+        Files.setLastModifiedTime(old, FileTime.from(past));
+        Files.setLastModifiedTime(today, FileTime.from(past));
+
+        LogArchiver archiver = new LogArchiver(csv).incremental(true);
+        LogArchiver.Report first = archiver.archive(src, out.resolve("first.zip"));
+        assert first.files == 2 : "First incremental run should take everything, took " + first.files;
+
+        LogArchiver.Report second = archiver.archive(src, out.resolve("second.zip"));
+        assert second.files == 0 : "Nothing changed, yet " + second.files + " file(s) archived";
+
+        Files.writeString(today, "more\n", StandardOpenOption.APPEND);
+        LogArchiver.Report third = archiver.deleteSources(true).archive(src, out.resolve("third.zip"));
+        assert third.files == 1 && unzip(third.zip).containsKey("vehicles/Van_A/" + LocalDate.now() + ".log")
+                : "Only the changed file should be archived: " + unzip(third.zip).keySet();
+        assert third.deleted == 0 && Files.exists(today) : "Today's file must not be deleted";
+
+        // a full run with delete removes the old day and records it
+        LogArchiver.Report full = new LogArchiver(csv).deleteSources(true).archive(src, out.resolve("full.zip"));
+        assert full.deleted == 1 && !Files.exists(old) && Files.exists(today) : "Old file not deleted: " + full;
+        assert MetadataIndex.forFile(csv).byKind("ARCHIVE").size() == 4 : "Archives not recorded";
+        System.out.println("Test 2 passed  (incremental + delete)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testLargeFileStreamed() throws IOException {
+        Path src = Files.createTempDirectory("archiver_large_");
+        Map<String, String> expected = new HashMap<>();
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) big.append("[VEHICLE:Van_Big] 2025-01-01 line ").append(i).append('\n');
+        for (String name : new String[] {"a.log", "b_big.log", "c.log"}) {
+            String text = name.contains("big") ? big.toString() : name + " small\n";
+            Files.writeString(src.resolve(name), text);
+            expected.put(name, text);
+        }
+        assert Files.size(src.resolve("b_big.log")) > (4 << 20) : "Test file too small to be streamed";
+
+        Path zip = Files.createTempDirectory("archiver_large_out_").resolve("logs.zip");
+        LogArchiver.Report r = new LogArchiver(newCsv()).parallelism(2).archive(src, zip);
+        assert r.parallel && r.files == 3 : "Unexpected report: " + r;
+        assert unzip(zip).equals(expected) : "ZIP contents differ from the sources";
+        // ZipInputStream goes by the local headers, which the streamed entry fills in afterwards
+        Map<String, String> local = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            for (ZipEntry e; (e = in.getNextEntry()) != null; ) {
+                local.put(e.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assert local.equals(expected) : "Local headers do not match the entries";
+        System.out.println("Test 3 passed  (large file streamed, " + r + ")");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testDeleteFollowsLogClock() throws IOException {
+        PathsConfig cfg = new PathsConfig();
+        cfg.ensure();
+        LocalDate day = LocalDate.of(2031, 3, 14);
+        DiscreteEventClock clock = new DiscreteEventClock(day.atTime(23, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        LogManager logs = new LogManager(cfg);
+        logs.attachClock(clock);
+        String van = "Van_ArchClock";
+        logs.logVehicle(van, "yesterday");
+        clock.advanceBy(2 * 3_600_000L); // past midnight, nothing written since: the handle is still cached
+        int open = logs.getHandleCache().getOpenCount();
+
+        Path vehicleDir = cfg.logsVehicles.resolve(van);
+        Path yesterday = vehicleDir.resolve(day + ".log");
+        Path today = cfg.logsCharging.resolve("Station_ArchClock").resolve(day.plusDays(1) + ".log");
+        Files.createDirectories(today.getParent());
+        Files.writeString(today, "today\n");
+        Path zip = Files.createTempDirectory("archiver_clock_out_").resolve("logs.zip");
+        LogArchiver.Report r = new LogArchiver(newCsv()).deleteSources(true).logs(logs)
+                .archive(today.getParent(), zip);
+        assert r.deleted == 0 && Files.exists(today) : "Today's file on the log clock was deleted";
+
+        r = new LogArchiver(newCsv()).deleteSources(true).logs(logs).archive(vehicleDir, zip);
+        assert r.deleted == 1 && !Files.exists(yesterday) : "Yesterday's file not deleted: " + r;
+        assert logs.getHandleCache().getOpenCount() == open - 1 : "Handle of the deleted file still cached";
+        logs.shutdown();
+        System.out.println("Test 4 passed  (delete follows the log clock)");
+    }
+}
@@ -0,0 +1,109 @@
+import med.supply.system.util.DiscreteEventClock;
+import med.supply.system.util.LogFormatter;
+import med.supply.system.util.LogManager;
+import med.supply.system.util.PathsConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public class LogFormatterTest {
+    public static void main(String[] args) {
+        System.out.println("Running LogFormatter tests...");
+
+        try {
+            testTemplates();
+            testStampCache();
+            testEncodeLine();
+            testLinesUnchanged();
+
+            System.out.println("All LogFormatter tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("LogFormatter test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.err.println("IOException during LogFormatter tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testTemplates() {
+        assert LogFormatter.format("Task {} -> {}", "T-1", "DONE").equals("Task T-1 -> DONE") : "Two placeholders";
+        assert LogFormatter.format("{}% → {}%", 80, 70L).equals("80% → 70%") : "Numbers";
+        assert LogFormatter.format("no args {}").equals("no args {}") : "Missing argument must stay visible";
+        assert LogFormatter.format("extra", 1, 2).equals("extra") : "Extra arguments are ignored";
+        assert LogFormatter.format("literal \\{} and {}", "x").equals("literal {} and x") : "Escaped placeholder";
+        assert LogFormatter.format("null {}", (Object) null).equals("null null") : "Null argument";
+        assert LogFormatter.format("{}{}", "a", "{}").equals("a{}") : "Arguments are not re-scanned";
+        assert LogFormatter.format("ends with {").equals("ends with {") : "Lone brace at the end";
+        System.out.println("Test 1 passed  (templates)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testStampCache() {
+        LogFormatter f = new LogFormatter();
+        long t = 1_735_725_600_123L;
+        LogFormatter.Stamp a = f.stamp(t);
+        String expected = ZonedDateTime.ofInstant(Instant.ofEpochMilli(t), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        assert a.text.equals(expected) : "Stamp " + a.text + " != " + expected;
+        assert a.date.equals(ZonedDateTime.ofInstant(Instant.ofEpochMilli(t), ZoneId.systemDefault()).toLocalDate()) : "Stamp date";
+        for (int i = 0; i < 1_000; i++) {
+            assert f.stamp(t) == a : "Same millisecond must reuse the stamp";
+        }
+        assert f.stamp(t + 1) != a : "Next millisecond must be formatted again";
+        assert f.getStampMisses() == 2 : "Expected 2 formats, got " + f.getStampMisses();
+        System.out.println("Test 2 passed  (per-millisecond timestamp cache)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testEncodeLine() {
+        StringBuilder sb = LogFormatter.builder().append("🔋 Van_1 ünïcödé");
+        assert LogFormatter.builder() == sb : "Builder is reused on the same thread";
+        sb.append("🔋 Van_1 ünïcödé");
+        ByteBuffer b = LogFormatter.encodeLine(sb);
+        byte[] bytes = new byte[b.remaining()];
+        b.get(bytes);
+        assert new String(bytes, StandardCharsets.UTF_8).equals("🔋 Van_1 ünïcödé") : "UTF-8 round trip";
+
+        String big = "x".repeat(100_000);
+        LogFormatter.builder().append(big);
+        assert LogFormatter.encodeLine(big).remaining() == big.length() : "Long line";
+        assert LogFormatter.builder().capacity() < 100_000 : "Oversized builder was kept";
+        System.out.println("Test 3 passed  (per-thread builders and UTF-8 buffers)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testLinesUnchanged() throws IOException {
+        PathsConfig cfg = new PathsConfig();
+        cfg.ensure();
+        String vehicle = "Van_Fmt" + (System.nanoTime() % 100_000);
+        long t = 1_735_725_600_120L;
+        DiscreteEventClock clock = new DiscreteEventClock(t);
+        LogManager logs = new LogManager(cfg);
+        logs.attachClock(clock);
+        logs.logVehicle(vehicle, "Assigned task {}", "T-7");
+        logs.logVehicle(vehicle, "plain {} line");
+        clock.advanceBy(1);
+        logs.logVehicle(vehicle, "Battery drop after {}: {}% → {}%", "update", 20, 15);
+        logs.shutdown();
+
+        String ts0 = ZonedDateTime.ofInstant(Instant.ofEpochMilli(t), ZoneId.systemDefault()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        String ts1 = ZonedDateTime.ofInstant(Instant.ofEpochMilli(t + 1), ZoneId.systemDefault()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        Path file = cfg.logsVehicles.resolve(vehicle).resolve(clock.today() + ".log");
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assert lines.equals(List.of(
+                "[VEHICLE:" + vehicle + "] " + ts0 + " Assigned task T-7",
+                "[VEHICLE:" + vehicle + "] " + ts0 + " plain {} line",
+                "[VEHICLE:" + vehicle + "] " + ts1 + " Battery drop after update: 20% → 15%")) : "Lines: " + lines;
+        System.out.println("Test 4 passed  (templated lines match the old format)");
+    }
+}
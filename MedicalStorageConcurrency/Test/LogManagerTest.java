@@ -1,7 +1,10 @@
 import med.supply.system.util.*;
 import java.io.IOException;
 import java.nio.file.*;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 public class LogManagerTest {
@@ -18,6 +21,10 @@ public class LogManagerTest {
             testChargingLogging(logManager, cfg);
             testFindByEquipment(logManager, cfg);
             testReadLog(logManager, cfg);
+            testAsyncLogging(cfg);
+            testHandleCacheEviction(cfg);
+            testSpillKeepsOrder();
+            testCacheFollowsClock();
 
             System.out.println(" All LogManager tests finished.");
         } catch (Exception e) {
@@ -77,4 +84,135 @@ public class LogManagerTest {
         assert read.contains("Sample log line") : "readLog() did not read file content correctly";
         System.out.println("Test 5 passed (readLog)");
     }
+
+    // ---------- TEST 6 ----------
+    private static void testAsyncLogging(PathsConfig cfg) throws IOException {
+        LogManager asyncLogs = new LogManager(cfg);
+        asyncLogs.enableAsync(16, 4, 50, AsyncLogWriter.Backpressure.BLOCK);
+        for (int i = 0; i < 100; i++) {
+            asyncLogs.logVehicle("Van_Async", "async line " + i);
+        }
+        asyncLogs.shutdown(); // must drain everything still queued
+
+        Path expected = cfg.logsVehicles.resolve("Van_Async").resolve(LocalDate.now().toString() + ".log");
+        String content = Files.readString(expected);
+        assert content.contains("async line 0") : "First async line missing";
+        assert content.contains("async line 99") : "Last async line missing after shutdown";
+        assert !asyncLogs.isAsync() : "LogManager should be synchronous after shutdown";
+        System.out.println("Test 6 passed (async logging drains on shutdown)");
+    }
+
+    // ---------- TEST 7 ----------
+    private static void testHandleCacheEviction(PathsConfig cfg) throws IOException {
+        LogManager small = new LogManager(cfg, 2);
+        small.logVehicle("Van_Cache1", "one");
+        small.logVehicle("Van_Cache1", "two");   // hit
+        small.logVehicle("Van_Cache2", "one");
+        small.logVehicle("Van_Cache3", "one");   // evicts Van_Cache1
+
+        LogHandleCache cache = small.getHandleCache();
+        assert cache.getHits() == 1 : "Expected one cache hit, got " + cache.getHits();
+        assert cache.getMisses() == 3 : "Expected three cache misses, got " + cache.getMisses();
+        assert cache.getEvictions() == 1 : "Expected one eviction, got " + cache.getEvictions();
+        assert cache.getOpenCount() == 2 : "Cache exceeded its max-open cap";
+
+        small.logVehicle("Van_Cache1", "three"); // reopened after eviction
+        Path first = cfg.logsVehicles.resolve("Van_Cache1").resolve(LocalDate.now().toString() + ".log");
+        String content = Files.readString(first);
+        assert content.contains("two") && content.contains("three") : "Lines lost across eviction";
+        small.shutdown();
+        assert cache.getOpenCount() == 0 : "shutdown() should close cached handles";
+        System.out.println("Test 7 passed (handle cache LRU eviction)");
+    }
+
+    // ---------- TEST 8 ----------
+    private static void testSpillKeepsOrder() throws Exception {
+        Path file = Files.createTempDirectory("async_spill_").resolve("spill.log");
+        LogHandleCache cache = new LogHandleCache(4, null);
+        AsyncLogWriter writer = new AsyncLogWriter(cache, 2, 1_000, 1_000, AsyncLogWriter.Backpressure.SPILL);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 5_000; i++) writer.submit(file, id + " " + i);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        writer.close();
+        writer.submit(file, "after close");
+        cache.closeAll();
+
+        List<String> lines = Files.readAllLines(file);
+        assert lines.size() == 20_001 : "Expected 20001 lines, got " + lines.size();
+        assert lines.get(20_000).equals("after close") : "Line submitted after close missing";
+        int[] next = new int[threads.length];
+        for (String l : lines.subList(0, 20_000)) {
+            String[] f = l.split(" ");
+            int id = Integer.parseInt(f[0]);
+            assert Integer.parseInt(f[1]) == next[id]++ : "Thread " + id + " out of order at " + l;
+        }
+        assert writer.getSpilled() > 0 : "Queue never filled up";
+        System.out.println("Test 8 passed (SPILL keeps per-file order, " + writer.getSpilled() + " spilled)");
+    }
+
+    // ---------- TEST 9 ----------
+    private static void testCacheFollowsClock() throws Exception {
+        Path dir = Files.createTempDirectory("cache_clock_");
+        long start = LocalDateTime.of(2025, 1, 1, 22, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        DiscreteEventClock clock = new DiscreteEventClock(start);
+        LogHandleCache cache = new LogHandleCache(16, null);
+        cache.attachClock(clock);
+        LogRotator rotator = new LogRotator(cache, dir.resolve("meta.csv"), new LogRotator.Policy(0, Duration.ofHours(1), 0));
+        cache.attachRotator(rotator);
+
+        Path file = dir.resolve("2025-01-01.log");
+        cache.write(file, "a\n".getBytes());
+        clock.advanceBy(Duration.ofMinutes(30).toMillis());
+        cache.write(file, "b\n".getBytes());
+        assert rotator.getRollCount() == 0 : "Rolled before the segment was an hour old on the clock";
+        clock.advanceBy(Duration.ofMinutes(31).toMillis());
+        cache.write(file, "c\n".getBytes());
+        assert rotator.getRollCount() == 1 : "Segment age should follow the clock, rolls=" + rotator.getRollCount();
+        assert Files.readString(file).equals("c\n") : "New segment should only hold the last line";
+
+        assert cache.getRollovers() == 0 : "Rolled over to a new day too early";
+        clock.advanceBy(Duration.ofHours(2).toMillis()); // past midnight on the clock
+        cache.write(dir.resolve("2025-01-02.log"), "d\n".getBytes());
+        assert cache.getRollovers() == 1 : "Day rollover should follow the clock, got " + cache.getRollovers();
+
+        // writers to different files, while the cache keeps evicting
+        LogHandleCache small = new LogHandleCache(2, null);
+        Thread[] threads = new Thread[6];
+        for (int t = 0; t < threads.length; t++) {
+            Path own = dir.resolve("writer" + t + ".log");
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2_000; i++) small.write(own, (i + "\n").getBytes());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        small.closeAll();
+        for (int t = 0; t < threads.length; t++) {
+            List<String> lines = Files.readAllLines(dir.resolve("writer" + t + ".log"));
+            assert lines.size() == 2_000 : "Writer " + t + " lost lines, got " + lines.size();
+            for (int i = 0; i < lines.size(); i++) {
+                assert lines.get(i).equals(String.valueOf(i)) : "Writer " + t + " out of order at line " + i;
+            }
+        }
+        assert small.getEvictions() > 0 : "Cache never evicted a handle in use";
+
+        rotator.awaitIdle();
+        rotator.close();
+        cache.closeAll();
+        System.out.println("Test 9 passed (rollover and segment age follow the clock, per-file writers)");
+    }
 }
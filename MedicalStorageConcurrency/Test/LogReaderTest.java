@@ -0,0 +1,264 @@
+import med.supply.system.util.BinaryLogEncoder;
+import med.supply.system.util.BinaryLogFormat;
+import med.supply.system.util.LogReader;
+import med.supply.system.util.LogSearch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+public class LogReaderTest {
+    public static void main(String[] args) {
+        System.out.println("Running LogReader tests...");
+
+        try {
+            Path big = writeLines(200_000); // ~5 MB, several read buffers
+            testStreamLines(big);
+            testTail(big);
+            testPages(big);
+            testFollow();
+            testCompressedSegment();
+            testBinaryLog();
+            testBinaryFollowIncremental();
+
+            System.out.println("All LogReader tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("LogReader test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.err.println("IOException during LogReader tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path writeLines(int count) throws IOException {
+        Path f = Files.createTempFile("logreader_", ".log");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) sb.append("[VEHICLE:Van] line ").append(i).append(" ✓\n");
+        Files.writeString(f, sb, StandardCharsets.UTF_8);
+        return f;
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testStreamLines(Path big) throws IOException {
+        try (Stream<String> s = LogReader.lines(big)) {
+            long[] expected = {0};
+            s.forEach(l -> {
+                assert l.equals("[VEHICLE:Van] line " + expected[0] + " ✓") : "Line " + expected[0] + " read as: " + l;
+                expected[0]++;
+            });
+            assert expected[0] == 200_000 : "Expected 200000 lines, got " + expected[0];
+        }
+        Path noNewline = Files.createTempFile("logreader_last_", ".log");
+        Files.writeString(noNewline, "a\r\nb");
+        try (Stream<String> s = LogReader.lines(noNewline)) {
+            assert s.collect(Collectors.toList()).equals(List.of("a", "b")) : "Last line / CRLF handling";
+        }
+        System.out.println("Test 1 passed  (streamed lines)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testTail(Path big) throws IOException {
+        List<String> last = LogReader.tail(big, 3);
+        assert last.equals(List.of("[VEHICLE:Van] line 199997 ✓", "[VEHICLE:Van] line 199998 ✓",
+                "[VEHICLE:Van] line 199999 ✓")) : "Tail returned " + last;
+        assert LogReader.tail(big, 250_000).size() == 200_000 : "Tail longer than the file";
+        System.out.println("Test 2 passed  (tail)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testPages(Path big) throws IOException {
+        long offset = 0;
+        int pages = 0;
+        int lines = 0;
+        while (true) {
+            LogReader.Page p = LogReader.page(big, offset, 10_000);
+            for (String l : p.lines) {
+                assert l.equals("[VEHICLE:Van] line " + lines + " ✓") : "Page " + pages + " broke a line: " + l;
+                lines++;
+            }
+            pages++;
+            if (p.isLast()) break;
+            assert p.nextOffset > offset : "Page did not advance";
+            offset = p.nextOffset;
+        }
+        assert lines == 200_000 : "Pages covered " + lines + " lines";
+        assert pages > 100 : "Pages were not bounded: " + pages;
+        System.out.println("Test 3 passed  (" + pages + " pages)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testFollow() throws IOException {
+        Path f = Files.createTempFile("logreader_follow_", ".log");
+        Files.writeString(f, "old\n");
+        try (LogReader.Follower follower = LogReader.follow(f, Files.size(f))) {
+            assert follower.poll().isEmpty() : "Follower returned old lines";
+
+            Files.writeString(f, "one\ntw", StandardOpenOption.APPEND);
+            assert follower.poll().equals(List.of("one")) : "Half-written line returned";
+            Files.writeString(f, "o\n", StandardOpenOption.APPEND);
+            assert follower.poll().equals(List.of("two")) : "Completed line not returned";
+
+            // rotated: a shorter file takes its place
+            Files.writeString(f, "new\n", StandardOpenOption.TRUNCATE_EXISTING);
+            List<String> after = new ArrayList<>(follower.poll());
+            assert after.equals(List.of("new")) : "Did not restart after truncation: " + after;
+            assert follower.getRestartCount() == 1 : "Restart not counted";
+        }
+        System.out.println("Test 4 passed  (follow)");
+    }
+
+    // ---------- TEST 5 ----------
+    private static void testCompressedSegment() throws IOException {
+        Path gz = Files.createTempFile("logreader_", ".1.log.gz");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) sb.append("[VEHICLE:Van] line ").append(i).append(" ✓\n");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        long offset = 0;
+        int pages = 0;
+        int lines = 0;
+        while (true) {
+            LogReader.Page p = LogReader.page(gz, offset, 2_000);
+            for (String l : p.lines) {
+                assert l.equals("[VEHICLE:Van] line " + lines + " ✓") : "Page " + pages + " of the segment read: " + l;
+                lines++;
+            }
+            pages++;
+            if (p.isLast()) break;
+            assert p.nextOffset > offset : "Page did not advance";
+            try (Stream<String> s = LogReader.lines(gz, p.nextOffset)) {
+                assert s.findFirst().orElse("").equals("[VEHICLE:Van] line " + lines + " ✓") : "Offset is not a line start";
+            }
+            offset = p.nextOffset;
+        }
+        assert lines == 5_000 : "Pages covered " + lines + " lines";
+        assert pages > 10 : "Pages were not bounded: " + pages;
+        assert LogReader.length(gz) == sb.length() : "Length in chars " + LogReader.length(gz);
+
+        try (LogReader.Follower follower = LogReader.follow(gz, 0)) {
+            assert follower.poll().size() == 5_000 : "Follower did not decompress the segment";
+            assert follower.poll().isEmpty() : "Unchanged segment read again";
+            assert follower.getPosition() == sb.length() : "Position " + follower.getPosition();
+        }
+        System.out.println("Test 5 passed  (.gz segment paged in " + pages + " pages and followed)");
+    }
+
+    // ---------- TEST 6 ----------
+    private static void testBinaryLog() throws IOException {
+        Path blog = Files.createTempFile("logreader_", BinaryLogFormat.EXTENSION);
+        BinaryLogEncoder enc = new BinaryLogEncoder();
+        long micros = 1_735_725_600_000_000L;
+        for (int i = 0; i < 2_000; i++)
+            append(blog, enc.encode(blog, i == 0, LogSearch.Kind.VEHICLE, "Van", micros + i * 1_000_000L, 0,
+                    BinaryLogFormat.Event.batteryDrop("step " + i, 100, 99)));
+        List<String> expected;
+        try (Stream<String> s = LogReader.lines(blog)) {
+            expected = s.collect(Collectors.toList());
+        }
+
+        long offset = 0;
+        int pages = 0;
+        List<String> paged = new ArrayList<>();
+        while (true) {
+            LogReader.Page p = LogReader.page(blog, offset, 4_000);
+            paged.addAll(p.lines);
+            pages++;
+            assert p.nextOffset == paged.size() : "Offset " + p.nextOffset + " is not a record count";
+            assert p.unit.equals("records") : "Unit " + p.unit;
+            if (p.isLast()) break;
+            offset = p.nextOffset;
+        }
+        assert paged.equals(expected) : "Pages differ from the decoded log";
+        assert pages > 10 : "Pages were not bounded: " + pages;
+        assert paged.get(0).startsWith("[VEHICLE:Van] ") : "Not rendered as text: " + paged.get(0);
+
+        try (LogReader.Follower follower = LogReader.follow(blog, LogReader.length(blog))) {
+            assert follower.poll().isEmpty() : "Follower returned old records";
+            append(blog, enc.encode(blog, false, LogSearch.Kind.VEHICLE, "Van", micros, 0,
+                    BinaryLogFormat.Event.batteryDrop("new", 99, 98)));
+            ByteBuffer torn = enc.encode(blog, false, LogSearch.Kind.VEHICLE, "Van", micros, 0,
+                    BinaryLogFormat.Event.batteryDrop("later", 98, 97));
+            ByteBuffer head = torn.duplicate();
+            head.limit(head.limit() - 2);
+            append(blog, head);
+            List<String> got = follower.poll();
+            assert got.size() == 1 && got.get(0).contains("new") : "Follower read " + got;
+            torn.position(torn.limit() - 2);
+            append(blog, torn);
+            got = follower.poll();
+            assert got.size() == 1 && got.get(0).contains("later") : "Completed record not returned: " + got;
+            assert follower.getPosition() == 2_002 : "Position " + follower.getPosition();
+        }
+        System.out.println("Test 6 passed  (.blog paged in " + pages + " pages and followed)");
+    }
+
+    // ---------- TEST 7 ----------
+    private static void testBinaryFollowIncremental() throws IOException {
+        Path blog = Files.createTempFile("logreader_", BinaryLogFormat.EXTENSION);
+        BinaryLogEncoder enc = new BinaryLogEncoder();
+        long micros = 1_735_725_600_000_000L;
+        for (int i = 0; i < 3; i++)
+            append(blog, enc.encode(blog, i == 0, LogSearch.Kind.VEHICLE, "Van", micros + i * 1_000_000L, 0,
+                    BinaryLogFormat.Event.batteryDrop("step " + i, 100, 99)));
+
+        try (LogReader.Follower follower = LogReader.follow(blog, 0)) {
+            assert follower.poll().size() == 3 : "First poll did not read the whole file";
+
+            // spoil the header that was already read: a poll that decodes from the start would fail
+            try (FileChannel ch = FileChannel.open(blog, StandardOpenOption.WRITE)) {
+                ch.write(ByteBuffer.wrap(new byte[] {'X'}), 1);
+            }
+            // reuses "Van" and "step 0", defined in the string table by the first poll
+            ByteBuffer torn = enc.encode(blog, false, LogSearch.Kind.VEHICLE, "Van", micros + 3_000_000L, 0,
+                    BinaryLogFormat.Event.batteryDrop("step 0", 99, 98));
+            ByteBuffer head = torn.duplicate();
+            head.limit(head.limit() - 1);
+            append(blog, head);
+            assert follower.poll().isEmpty() : "Torn record returned";
+            torn.position(torn.limit() - 1);
+            append(blog, torn);
+            List<String> got = follower.poll();
+            assert got.size() == 1 && got.get(0).contains("step 0") && got.get(0).contains("99") : "Follower read " + got;
+            assert follower.getPosition() == 4 : "Position " + follower.getPosition();
+            assert follower.getRestartCount() == 0 : "Follower restarted";
+
+            boolean fullDecodeFails = false;
+            try (Stream<String> s = LogReader.lines(blog)) {
+                s.count();
+            } catch (UncheckedIOException | IOException e) {
+                fullDecodeFails = true;
+            }
+            assert fullDecodeFails : "Header was not spoiled, the test proves nothing";
+
+            // a shorter file is a new file: read again from its start
+            Files.write(blog, new byte[0]);
+            BinaryLogEncoder fresh = new BinaryLogEncoder();
+            append(blog, fresh.encode(blog, true, LogSearch.Kind.VEHICLE, "Van", micros, 0,
+                    BinaryLogFormat.Event.batteryDrop("again", 100, 99)));
+            got = follower.poll();
+            assert got.size() == 1 && got.get(0).contains("again") : "Replaced file read as " + got;
+            assert follower.getRestartCount() == 1 : "Restarts " + follower.getRestartCount();
+        }
+        System.out.println("Test 7 passed  (.blog follow decodes only appended bytes)");
+    }
+
+    private static void append(Path file, ByteBuffer b) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+            out.write(b.array(), b.position(), b.remaining());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import med.supply.system.util.DiscreteEventClock;
+import med.supply.system.util.LogHandleCache;
+import med.supply.system.util.LogReader;
+import med.supply.system.util.LogRotator;
+import med.supply.system.util.MetadataIndex;
+import med.supply.system.util.MetadataManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+public class LogRotatorTest {
+    public static void main(String[] args) {
+        System.out.println("Running LogRotator tests...");
+
+        try {
+            testSizeRollingKeepsEveryLine();
+            testDiskCap();
+            testAgeRolling();
+            testSweepCompressesOldDays();
+            testSweepFollowsClock();
+
+            System.out.println("All LogRotator tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("LogRotator test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Exception during LogRotator tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path newCsv() throws IOException {
+        Path csv = Files.createTempFile("rotate_meta_", ".csv");
+        Files.writeString(csv, "path,createdUtc,kind,notes\n");
+        return csv;
+    }
+
+    private static LogHandleCache cache(Path csv) {
+        return new LogHandleCache(16, f -> MetadataManager.append(csv, f, "LOG", "created"));
+    }
+
+    private static List<String> files(Path dir, String suffix) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            s.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(suffix)).sorted().forEach(names::add);
+        }
+        return names;
+    }
+
+    private static List<String> gunzip(Path gz) throws IOException {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(gz)), StandardCharsets.UTF_8))) {
+            return r.lines().toList();
+        }
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testSizeRollingKeepsEveryLine() throws IOException, InterruptedException {
+        Path csv = newCsv();
+        Path dir = Files.createTempDirectory("rotate_size_").resolve("vehicles").resolve("Van_R");
+        Path active = dir.resolve("2025-01-01.log");
+        LogHandleCache handles = cache(csv);
+        LogRotator rotator = new LogRotator(handles, csv, new LogRotator.Policy(4_096, null, 0));
+        handles.attachRotator(rotator);
+
+        int threads = 4;
+        int perThread = 500;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread w = new Thread(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        handles.write(active, ("[VEHICLE:Van_R] writer " + id + " line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+        rotator.awaitIdle();
+
+        List<String> segments = files(dir, ".log.gz");
+        assert segments.size() == rotator.getRollCount() && rotator.getRollCount() > 5 : "Segments: " + segments;
+        assert files(dir, ".log").equals(List.of("2025-01-01.log")) : "Uncompressed segments left: " + files(dir, ".log");
+        assert Files.size(active) < 4_096 + 64 : "Active file was not rolled: " + Files.size(active);
+
+        Set<String> seen = new HashSet<>();
+        for (String gz : segments) seen.addAll(gunzip(dir.resolve(gz)));
+        try (Stream<String> s = LogReader.lines(active)) {
+            s.forEach(seen::add);
+        }
+        assert seen.size() == threads * perThread : "Lines lost across rolls: " + seen.size();
+
+        MetadataIndex index = MetadataIndex.forFile(csv);
+        assert index.byKind("ROTATE").size() == segments.size() : "Rotations not recorded";
+        assert index.byEquipment("Van_R").size() == segments.size() + 1 : "Index out of sync: " + index.byEquipment("Van_R");
+        handles.closeAll();
+        rotator.close();
+        System.out.println("Test 1 passed  (" + segments.size() + " segments, no lines lost)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testDiskCap() throws IOException {
+        Path csv = newCsv();
+        Path dir = Files.createTempDirectory("rotate_cap_").resolve("vehicles").resolve("Van_C");
+        Path active = dir.resolve("2025-01-01.log");
+        LogHandleCache handles = cache(csv);
+        LogRotator rotator = new LogRotator(handles, csv, new LogRotator.Policy(2_048, null, 3_000));
+        handles.attachRotator(rotator);
+
+        Random rnd = new Random(7); // random text so the segments stay big after gzip
+        for (int i = 0; i < 1_000; i++) {
+            handles.write(active, ("[VEHICLE:Van_C] " + Long.toHexString(rnd.nextLong()) + Long.toHexString(rnd.nextLong()) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        rotator.awaitIdle();
+        handles.closeAll();
+
+        long total = 0;
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) s::iterator) total += Files.size(p);
+        }
+        assert rotator.getCapDeleteCount() > 0 : "Cap never deleted anything";
+        assert total <= 3_000 + 2_048 : "Directory over the cap: " + total + " bytes";
+        rotator.close();
+        System.out.println("Test 2 passed  (cap kept " + total + " bytes, deleted " + rotator.getCapDeleteCount() + ")");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testAgeRolling() throws IOException, InterruptedException {
+        Path csv = newCsv();
+        Path dir = Files.createTempDirectory("rotate_age_").resolve("system");
+        Path active = dir.resolve("2025-01-01.log");
+        LogHandleCache handles = cache(csv);
+        LogRotator rotator = new LogRotator(handles, csv, new LogRotator.Policy(0, Duration.ofMillis(50), 0));
+        handles.attachRotator(rotator);
+
+        handles.write(active, "[SYSTEM] first\n".getBytes(StandardCharsets.UTF_8));
+        handles.write(active, "[SYSTEM] second\n".getBytes(StandardCharsets.UTF_8));
+        assert rotator.getRollCount() == 0 : "Rolled too early";
+        Thread.sleep(80);
+        handles.write(active, "[SYSTEM] third\n".getBytes(StandardCharsets.UTF_8));
+        rotator.awaitIdle();
+        handles.closeAll();
+
+        assert rotator.getRollCount() == 1 : "Expected one age-based roll, got " + rotator.getRollCount();
+        assert gunzip(dir.resolve("2025-01-01.1.log.gz")).equals(List.of("[SYSTEM] first", "[SYSTEM] second")) : "Segment content";
+        assert Files.readString(active).equals("[SYSTEM] third\n") : "Active file should start fresh";
+        rotator.close();
+        System.out.println("Test 3 passed  (age-based roll)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testSweepCompressesOldDays() throws IOException {
+        Path csv = newCsv();
+        Path root = Files.createTempDirectory("rotate_sweep_");
+        Path old = root.resolve("vehicles").resolve("Van_S").resolve("2020-01-01.log");
+        Files.createDirectories(old.getParent());
+        Files.writeString(old, "[VEHICLE:Van_S] long ago\n");
+        LogHandleCache handles = cache(csv);
+        LogRotator rotator = new LogRotator(handles, csv, LogRotator.Policy.defaults());
+        handles.attachRotator(rotator);
+
+        rotator.sweep(root);
+        rotator.awaitIdle();
+        assert !Files.exists(old) : "Old day not rolled";
+        assert gunzip(old.resolveSibling("2020-01-01.1.log.gz")).equals(List.of("[VEHICLE:Van_S] long ago")) : "Old day not compressed";
+        rotator.close();
+        System.out.println("Test 4 passed  (sweep compresses old days)");
+    }
+
+    // ---------- TEST 5 ----------
+    private static void testSweepFollowsClock() throws IOException {
+        Path csv = newCsv();
+        Path root = Files.createTempDirectory("rotate_sweep_clock_");
+        LocalDate today = LocalDate.of(2031, 1, 10);
+        Path dir = root.resolve("vehicles").resolve("Van_C");
+        Path finished = dir.resolve(today.minusDays(1) + ".log");
+        Path live = dir.resolve(today + ".log");
+        Files.createDirectories(dir);
+        Files.writeString(finished, "[VEHICLE:Van_C] yesterday\n");
+        Files.writeString(live, "[VEHICLE:Van_C] today\n");
+        LogHandleCache handles = cache(csv);
+        handles.attachClock(new DiscreteEventClock(today.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        LogRotator rotator = new LogRotator(handles, csv, LogRotator.Policy.defaults());
+        handles.attachRotator(rotator);
+
+        rotator.sweep(root);
+        rotator.awaitIdle();
+        assert !Files.exists(finished) : "Finished day (on the clock) not rolled";
+        assert Files.exists(finished.resolveSibling(today.minusDays(1) + ".1.log.gz")) : "Finished day not compressed";
+        assert Files.exists(live) && rotator.getRollCount() == 1 : "Live day (on the clock) was rolled";
+        rotator.close();
+        System.out.println("Test 5 passed  (sweep follows the clock)");
+    }
+}
@@ -0,0 +1,154 @@
+import med.supply.system.util.LogSearch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class LogSearchTest {
+    private static final Instant DAY1 = Instant.parse("2025-01-01T00:00:00Z");
+    private static final String LONG_NAME = "Station_" + "L".repeat(32); // 40 characters, the longest allowed
+    // how LogManager stamps lines: milliseconds and an offset
+    private static final DateTimeFormatter MILLIS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+    public static void main(String[] args) {
+        System.out.println("Running LogSearch tests...");
+
+        try {
+            Path root = Files.createTempDirectory("logsearch_");
+            Path logs = root.resolve("logs");
+            Path archive = root.resolve("archive");
+            // one day of AGV-12 at one line per second: battery drains 100% -> 0% every 101 lines
+            writeDay(logs.resolve("vehicles/AGV-12/2025-01-01.log"), "[VEHICLE:AGV-12]", DAY1, 86_400);
+            writeDay(logs.resolve("vehicles/AGV-7/2025-01-01.log"), "[VEHICLE:AGV-7]", DAY1, 1_000);
+            writeDay(logs.resolve("charging/Station_1/2025-01-01.log"), "[CHARGING:Station_1]", DAY1, 1_000);
+            writeDay(logs.resolve("system/2025-01-01.log"), "[SYSTEM]", DAY1, 1_000);
+            writeZip(archive.resolve("logs-20250101.zip"), "vehicles/AGV-12/2024-12-31.log", "[VEHICLE:AGV-12]",
+                    DAY1.minusSeconds(86_400), 500);
+
+            try (LogSearch search = new LogSearch(logs, archive, 4)) {
+                testTimeRangeRegex(search);
+                testSeekReadsLittle(search);
+                testArchiveAndKind(search);
+                testLimitKeepsEarliest(search);
+            }
+            testSeekWithLongName(root.resolve("long"));
+            System.out.println("All LogSearch tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("LogSearch test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.err.println("IOException during LogSearch tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static String line(String tag, Instant t, int i) {
+        return line(tag, OffsetDateTime.ofInstant(t, ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME), i);
+    }
+
+    private static String line(String tag, String stamp, int i) {
+        return tag + " " + stamp + " battery " + (100 - i % 101) + "% seq=" + i + "\n";
+    }
+
+    private static void writeDay(Path file, String tag, Instant start, int lines) throws IOException {
+        writeDay(file, tag, start, lines, null);
+    }
+
+    private static void writeDay(Path file, String tag, Instant start, int lines, DateTimeFormatter stamp) throws IOException {
+        Files.createDirectories(file.getParent());
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            Instant t = start.plusSeconds(i);
+            sb.append(stamp == null ? line(tag, t, i) : line(tag, stamp.format(t), i));
+        }
+        Files.writeString(file, sb, StandardCharsets.UTF_8);
+    }
+
+    private static void writeZip(Path zip, String entry, String tag, Instant start, int lines) throws IOException {
+        Files.createDirectories(zip.getParent());
+        try (OutputStream out = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(out)) {
+            zos.putNextEntry(new ZipEntry(entry));
+            for (int i = 0; i < lines; i++) zos.write(line(tag, start.plusSeconds(i), i).getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testTimeRangeRegex(LogSearch search) throws IOException {
+        // battery below 15% for AGV-12 between 01:00 and 02:00
+        LogSearch.Result r = search.search(new LogSearch.Query()
+                .equipment("AGV-12")
+                .from(DAY1.plusSeconds(3_600))
+                .to(DAY1.plusSeconds(7_199))
+                .regex("battery ([0-9]|1[0-4])% "));
+        int expected = 0;
+        for (int i = 3_600; i < 7_200; i++) if (100 - i % 101 < 15) expected++;
+        assert r.hits.size() == expected : "Expected " + expected + " hits, got " + r.hits.size();
+        for (LogSearch.Hit h : r.hits) {
+            assert h.line.startsWith("[VEHICLE:AGV-12]") : "Wrong equipment: " + h.line;
+            assert !h.time.isBefore(DAY1.plusSeconds(3_600)) && !h.time.isAfter(DAY1.plusSeconds(7_199)) : "Out of range: " + h.line;
+        }
+        assert r.sourcesSkipped >= 3 : "Other equipment was not pruned by path: " + r;
+        System.out.println("Test 1 passed  (" + r + ")");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testSeekReadsLittle(LogSearch search) throws IOException {
+        LogSearch.Result r = search.search(new LogSearch.Query()
+                .equipment("AGV-12")
+                .from(DAY1.plusSeconds(80_000))
+                .to(DAY1.plusSeconds(80_010)));
+        assert r.hits.size() == 11 : "Expected 11 hits, got " + r.hits.size();
+        assert r.linesRead < 5_000 : "Block index did not seek, read " + r.linesRead + " lines";
+        System.out.println("Test 2 passed  (seek read " + r.linesRead + " of 86400 lines)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testArchiveAndKind(LogSearch search) throws IOException {
+        LogSearch.Result r = search.search(new LogSearch.Query().equipment("AGV-12").regex("seq=42$"));
+        assert r.hits.size() == 2 : "Expected a live and an archived hit, got " + r.hits;
+        assert r.hits.get(0).source.contains(".zip!vehicles/AGV-12/2024-12-31.log") : "Archived hit not first: " + r.hits.get(0);
+
+        r = search.search(new LogSearch.Query().kind(LogSearch.Kind.CHARGING).regex("seq=5$"));
+        assert r.hits.size() == 1 && r.hits.get(0).line.startsWith("[CHARGING:Station_1]") : "Kind filter: " + r.hits;
+        r = search.search(new LogSearch.Query().equipment("system").regex("seq=5$"));
+        assert r.hits.size() == 1 && r.hits.get(0).line.startsWith("[SYSTEM]") : "System filter: " + r.hits;
+        System.out.println("Test 3 passed  (archives + kind)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testLimitKeepsEarliest(LogSearch search) throws IOException {
+        LogSearch.Result r = search.search(new LogSearch.Query().contains("battery 100%").limit(3));
+        assert r.hits.size() == 3 : "Limit not applied";
+        assert r.hits.get(0).time.equals(DAY1.minusSeconds(86_400)) : "Earliest hit should come from the archive";
+        for (int i = 1; i < r.hits.size(); i++) {
+            assert !r.hits.get(i).time.isBefore(r.hits.get(i - 1).time) : "Hits not in time order";
+        }
+        System.out.println("Test 4 passed  (limit keeps the earliest hits)");
+    }
+
+    // ---------- TEST 5 ----------
+    private static void testSeekWithLongName(Path logs) throws IOException {
+        // "[CHARGING:" + 40 characters + "] " + a millisecond timestamp is longer than 64 bytes
+        writeDay(logs.resolve("charging/" + LONG_NAME + "/2025-01-01.log"), "[CHARGING:" + LONG_NAME + "]", DAY1,
+                86_400, MILLIS.withZone(ZoneOffset.ofHours(1)));
+        LogSearch.Result r;
+        try (LogSearch search = new LogSearch(logs, null, 2)) {
+            r = search.search(new LogSearch.Query()
+                    .equipment(LONG_NAME)
+                    .from(DAY1.plusSeconds(80_000))
+                    .to(DAY1.plusSeconds(80_010)));
+        }
+        assert r.hits.size() == 11 : "Expected 11 hits, got " + r.hits.size();
+        assert r.linesRead < 5_000 : "Block index did not seek for a 40-character name, read " + r.linesRead + " lines";
+        System.out.println("Test 5 passed  (seek with a 40-character name read " + r.linesRead + " of 86400 lines)");
+    }
+}
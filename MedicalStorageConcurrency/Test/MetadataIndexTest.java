@@ -0,0 +1,118 @@
+import med.supply.system.util.MetadataIndex;
+import med.supply.system.util.MetadataManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+public class MetadataIndexTest {
+    public static void main(String[] args) {
+        System.out.println("Running MetadataIndex tests...");
+
+        try {
+            testLookupsAndIncrementalReload();
+            testMoveAndDelete();
+            testPartialRowAndRebuild();
+            testReconcileExistingFiles();
+
+            System.out.println("All MetadataIndex tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("MetadataIndex test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.err.println("IOException during MetadataIndex tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path newCsv(String prefix) throws IOException {
+        Path csv = Files.createTempFile(prefix, ".csv");
+        Files.writeString(csv, "path,createdUtc,kind,notes\n");
+        return csv;
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testLookupsAndIncrementalReload() throws IOException {
+        Path csv = newCsv("index_lookup_");
+        Path logs = Path.of("data", "logs");
+        Path v1 = logs.resolve("vehicles").resolve("Van_Idx").resolve("2025-01-01.log");
+        Path v2 = logs.resolve("vehicles").resolve("Van_Idx").resolve("2025-01-02.log");
+        Path c1 = logs.resolve("charging").resolve("Station_Idx").resolve("2025-01-01.log");
+        Path s1 = logs.resolve("system").resolve("2025-01-01.log");
+        for (Path p : List.of(v1, v2, c1, s1)) MetadataManager.append(csv, p, "LOG", "created");
+
+        MetadataIndex index = MetadataIndex.forFile(csv);
+        assert index.byEquipment("Van_Idx").equals(List.of(v1, v2)) : "Vehicle lookup: " + index.byEquipment("Van_Idx");
+        assert index.byEquipment("Station_Idx").equals(List.of(c1)) : "Station lookup";
+        assert index.byEquipment("system").equals(List.of(s1)) : "System lookup";
+        assert index.byDate(LocalDate.of(2025, 1, 1)).size() == 3 : "Date lookup: " + index.byDate(LocalDate.of(2025, 1, 1));
+        assert index.byKind("LOG").size() == 4 : "Kind lookup";
+        assert index.getRowsRead() == 4 : "Expected 4 rows read, got " + index.getRowsRead();
+
+        // only the new row is read on the next query
+        Path v3 = logs.resolve("vehicles").resolve("Van_Idx").resolve("2025-01-03.log");
+        MetadataManager.append(csv, v3, "LOG", "created");
+        assert index.byEquipment("Van_Idx").size() == 3 : "Appended row not picked up";
+        assert index.getRowsRead() == 5 : "Reload was not incremental: " + index.getRowsRead() + " rows read";
+        assert index.getRebuildCount() == 0 : "Index rebuilt without a reason";
+        System.out.println("Test 1 passed  (lookups + incremental reload)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testMoveAndDelete() throws IOException {
+        Path csv = newCsv("index_events_");
+        Path from = Path.of("data", "logs", "vehicles", "Van_Mv", "2025-02-01.log");
+        Path to = Path.of("data", "archive", "2025-02-01-Van_Mv.log");
+        Path gone = Path.of("data", "logs", "vehicles", "Van_Mv", "2025-02-02.log");
+        MetadataManager.append(csv, from, "LOG", "created");
+        MetadataManager.append(csv, gone, "LOG", "created");
+        MetadataManager.append(csv, to, "MOVE", "moved from " + from);
+        MetadataManager.append(csv, gone, "DELETE", "deleted");
+
+        MetadataIndex index = MetadataIndex.forFile(csv);
+        assert index.byEquipment("Van_Mv").isEmpty() : "Moved / deleted files still listed: " + index.byEquipment("Van_Mv");
+        assert index.byKind("MOVE").equals(List.of(to)) : "Move target missing";
+        assert index.get(to).date.equals(LocalDate.of(2025, 2, 1)) : "Date not taken from the moved name";
+        assert index.size() == 1 : "Expected one live file, got " + index.size();
+        System.out.println("Test 2 passed  (move and delete rows)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testPartialRowAndRebuild() throws IOException {
+        Path csv = newCsv("index_partial_");
+        MetadataIndex index = MetadataIndex.forFile(csv);
+        Path p = Path.of("data", "logs", "system", "2025-03-01.log");
+
+        Files.writeString(csv, p + ",2025-03-01T00:00:00Z,LO", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        assert index.size() == 0 : "Half-written row was applied";
+        Files.writeString(csv, "G,created\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        assert index.byKind("LOG").equals(List.of(p)) : "Completed row not applied";
+
+        // truncated (e.g. rotated by hand): start over
+        Files.writeString(csv, "path,createdUtc,kind,notes\n", StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+        assert index.size() == 0 : "Entries survived a truncated CSV";
+        assert index.getRebuildCount() == 1 : "Expected one rebuild, got " + index.getRebuildCount();
+        System.out.println("Test 3 passed  (partial row + rebuild)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testReconcileExistingFiles() throws IOException {
+        Path csv = newCsv("index_reconcile_");
+        Path root = Files.createTempDirectory("index_logs_");
+        Path existing = root.resolve("vehicles").resolve("Van_Old").resolve("2024-12-31.log");
+        Files.createDirectories(existing.getParent());
+        Files.writeString(existing, "line\n");
+        Path vanished = root.resolve("vehicles").resolve("Van_Old").resolve("2024-12-30.log");
+        MetadataManager.append(csv, vanished, "LOG", "created");
+
+        MetadataIndex index = MetadataIndex.forFile(csv);
+        assert index.reconcile(root) == 2 : "Expected one LOG and one DELETE row";
+        assert index.byEquipment("Van_Old").size() == 1 : "Reconcile result: " + index.byEquipment("Van_Old");
+        assert index.reconcile(root) == 0 : "Second reconcile walked the tree again";
+        System.out.println("Test 4 passed  (reconcile unrecorded files)");
+    }
+}
@@ -0,0 +1,173 @@
+import med.supply.system.util.MetadataManager;
+import med.supply.system.util.MetadataWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+public class MetadataWriterTest {
+    public static void main(String[] args) {
+        System.out.println("Running MetadataWriter tests...");
+
+        try {
+            testConcurrentAppendsKeepRowsWhole();
+            testPerRowPolicySyncsEveryRow();
+            testReopensReplacedFile();
+            testRowsGroupWhileLeaderWrites();
+
+            System.out.println("All MetadataWriter tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("MetadataWriter test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Exception during MetadataWriter tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testConcurrentAppendsKeepRowsWhole() throws IOException, InterruptedException {
+        Path meta = Files.createTempFile("meta_group_", ".csv");
+        Path f = Files.createTempFile("sample_", ".txt");
+        int threads = 16;
+        int perThread = 500;
+        String padding = "x".repeat(200); // long rows make torn writes visible
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Throwable> errors = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        MetadataManager.append(meta, f, "LOG", "t" + id + "-" + i + "-" + padding);
+                    }
+                } catch (Exception e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        start.countDown();
+        for (Thread w : workers) w.join();
+
+        assert errors.isEmpty() : "Append failed: " + errors.get(0);
+        List<String> lines = Files.readAllLines(meta, StandardCharsets.UTF_8);
+        assert lines.size() == threads * perThread : "Expected " + threads * perThread + " rows, got " + lines.size();
+        Set<String> seen = new HashSet<>();
+        for (String line : lines) {
+            assert line.endsWith("-" + padding) && line.contains(",LOG,") : "Torn row: " + line;
+            assert seen.add(line.substring(line.lastIndexOf(",t") + 1)) : "Duplicate row: " + line;
+        }
+
+        MetadataWriter w = MetadataWriter.forFile(meta);
+        assert w.getRowCount() == threads * perThread : "Row counter off: " + w.getRowCount();
+        assert w.getBatchCount() <= w.getRowCount() : "More batches than rows";
+        System.out.println("Test 1 passed  (" + lines.size() + " rows in " + w.getBatchCount() + " batches)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testPerRowPolicySyncsEveryRow() throws IOException {
+        Path meta = Files.createTempFile("meta_fsync_", ".csv");
+        MetadataWriter w = MetadataWriter.forFile(meta);
+        w.setFsyncPolicy(MetadataWriter.FsyncPolicy.PER_ROW);
+        for (int i = 0; i < 10; i++) w.append("row-" + i);
+        assert w.getSyncCount() == 10 : "Expected one fsync per row, got " + w.getSyncCount();
+
+        w.setFsyncPolicy(MetadataWriter.FsyncPolicy.PER_BATCH);
+        w.append("row-10");
+        assert w.getSyncCount() == 11 : "Expected one fsync for the batch, got " + w.getSyncCount();
+
+        w.setFsyncPolicy(MetadataWriter.FsyncPolicy.NONE);
+        w.append("row-11");
+        assert w.getSyncCount() == 11 : "NONE policy still synced";
+        assert Files.readAllLines(meta).size() == 12 : "Rows missing";
+        System.out.println("Test 2 passed  (fsync policies)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testReopensReplacedFile() throws IOException {
+        Path meta = Files.createTempFile("meta_reopen_", ".csv");
+        MetadataWriter w = MetadataWriter.forFile(meta);
+        w.append("before");
+
+        // rotated away behind the writer's back
+        Files.delete(meta);
+        w.append("after-delete");
+        assert Files.readAllLines(meta).equals(List.of("after-delete")) : "Row not written to the new file";
+
+        Path replacement = Files.createTempFile("meta_swap_", ".csv");
+        Files.writeString(replacement, "header\n");
+        Files.move(replacement, meta, StandardCopyOption.REPLACE_EXISTING);
+        w.append("after-swap");
+        assert Files.readAllLines(meta).equals(List.of("header", "after-swap")) : "Row not written to the replaced file";
+
+        w.close();
+        w.append("after-close");
+        assert Files.readAllLines(meta).size() == 3 : "Append after close did not reopen";
+        w.close();
+        System.out.println("Test 3 passed  (reopens deleted / replaced file)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testRowsGroupWhileLeaderWrites() throws IOException, InterruptedException {
+        Path meta = Files.createTempFile("meta_coalesce_", ".csv");
+        MetadataWriter w = MetadataWriter.forFile(meta);
+        int followers = 15;
+        CountDownLatch leaderWriting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> sizes = new ArrayList<>();
+        // the first batch stalls like a slow fsync; every row appended meanwhile must wait for one batch
+        w.setBatchListener(rows -> {
+            synchronized (sizes) {
+                sizes.add(rows);
+            }
+            if (leaderWriting.getCount() > 0) {
+                leaderWriting.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t <= followers; t++) {
+            String row = "row-" + t;
+            Thread th = new Thread(() -> {
+                try {
+                    w.append(row);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers.add(th);
+            th.start();
+            if (t == 0) leaderWriting.await();
+        }
+        for (Thread th : workers.subList(1, workers.size())) {
+            while (th.getState() != Thread.State.WAITING) Thread.sleep(1);
+        }
+        release.countDown();
+        for (Thread th : workers) th.join();
+        w.setBatchListener(null);
+
+        assert Files.readAllLines(meta).size() == followers + 1 : "Rows missing";
+        assert sizes.equals(List.of(1, followers)) : "Expected batches of 1 and " + followers + ", got " + sizes;
+        assert w.getBatchCount() == 2 && w.getRowCount() == followers + 1 : "Counters " + w.getBatchCount() + "/" + w.getRowCount();
+        System.out.println("Test 4 passed  (" + followers + " rows grouped behind a slow write)");
+    }
+}
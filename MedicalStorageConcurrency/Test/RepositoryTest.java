@@ -0,0 +1,95 @@
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskStatus;
+import med.supply.system.repository.Repository;
+import med.supply.system.repository.TaskStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class RepositoryTest {
+    public static void main(String[] args) {
+        System.out.println("Running Repository tests...");
+
+        // Test 1: tasks keep insertion order, replacing keeps the original position
+        try {
+            Repository repo = new Repository();
+            repo.putTask(new Task("T1", "first", null));
+            repo.putTask(new Task("T2", "second", null));
+            repo.putTask(new Task("T1", "first again", null));
+            List<String> ids = new ArrayList<>();
+            repo.tasks().forEach(t -> ids.add(t.id));
+            assert ids.equals(List.of("T1", "T2")) : "Unexpected order: " + ids;
+            assert repo.getTask("T1").description.equals("first again") : "Replace did not update task";
+            System.out.println("Test 1 passed (insertion order)");
+        } catch (AssertionError e) {
+            System.out.println("Test 1 failed: " + e.getMessage());
+        }
+
+        // Test 2: concurrent writers from many threads lose no updates
+        try {
+            Repository repo = new Repository();
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 2000; i++) {
+                int n = i;
+                pool.submit(() -> {
+                    repo.putVehicle(new StorageVehicle("V" + n, "Van_" + n));
+                    repo.putTask(new Task("T" + n, "task " + n, "V" + n));
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(30, TimeUnit.SECONDS);
+            assert repo.vehicleCount() == 2000 : "Lost vehicle inserts: " + repo.vehicleCount();
+            assert repo.taskCount() == 2000 : "Lost task inserts: " + repo.taskCount();
+            assert repo.tasks().size() == 2000 : "Ordered view out of sync";
+            System.out.println("Test 2 passed (concurrent inserts)");
+        } catch (AssertionError | InterruptedException e) {
+            System.out.println("Test 2 failed: " + e.getMessage());
+        }
+
+        // Test 3: updateTask mutates in place and reports missing ids
+        try {
+            Repository repo = new Repository();
+            repo.putTask(new Task("T9", "update me", null));
+            Task t = repo.updateTask("T9", task -> task.status = TaskStatus.DONE);
+            assert t != null && t.status == TaskStatus.DONE : "updateTask did not apply";
+            assert repo.updateTask("missing", task -> task.status = TaskStatus.DONE) == null
+                    : "updateTask should return null for unknown ids";
+            assert repo.removeTask("T9") != null && !repo.hasTask("T9") : "removeTask failed";
+            System.out.println("Test 3 passed (updateTask / removeTask)");
+        } catch (AssertionError e) {
+            System.out.println("Test 3 failed: " + e.getMessage());
+        }
+
+        // Test 4: status/assignee indexes follow updates and removeDone() compacts
+        try {
+            TaskStore store = new TaskStore();
+            store.put(new Task("A", "a", "V1"));
+            store.put(new Task("B", "b", "V1"));
+            store.put(new Task("C", "c", "V2"));
+            store.setStatus("A", TaskStatus.IN_PROGRESS);
+            store.setStatus("C", TaskStatus.DONE);
+
+            assert store.forVehicle("V1", TaskStatus.IN_PROGRESS).size() == 1 : "IN_PROGRESS index wrong";
+            assert store.forVehicle("V1", TaskStatus.PENDING).get(0).id.equals("B") : "PENDING index wrong";
+            assert store.countWithStatus(TaskStatus.DONE) == 1 : "DONE count wrong";
+
+            store.assign("B", "V2");
+            assert store.forVehicle("V1").size() == 1 : "Reassignment left a stale index entry";
+            assert store.forVehicle("V2").size() == 2 : "Reassignment not indexed";
+
+            List<Task> archived = store.removeDone();
+            assert archived.size() == 1 && archived.get(0).id.equals("C") : "removeDone returned " + archived;
+            assert !store.contains("C") && store.countWithStatus(TaskStatus.DONE) == 0 : "DONE task not compacted";
+            assert store.size() == 2 : "Active tasks lost during compaction";
+            System.out.println("Test 4 passed (task indexes and compaction)");
+        } catch (AssertionError e) {
+            System.out.println("Test 4 failed: " + e.getMessage());
+        }
+
+        System.out.println("All Repository tests finished.");
+    }
+}
@@ -0,0 +1,145 @@
+import med.supply.system.model.ChargingEngine;
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskStatus;
+import med.supply.system.repository.Repository;
+import med.supply.system.service.DestinationService;
+import med.supply.system.service.StorageService;
+import med.supply.system.service.TaskService;
+import med.supply.system.util.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SimulationClockTest {
+    public static void main(String[] args) {
+        System.out.println("Running SimulationClock tests...");
+
+        // Test 1: events run in time order, ties in scheduling order, only when advanced
+        try {
+            DiscreteEventClock clock = new DiscreteEventClock(0);
+            List<String> order = new ArrayList<>();
+            clock.schedule(() -> order.add("b@20"), 20);
+            clock.schedule(() -> order.add("a@10"), 10);
+            clock.schedule(() -> order.add("c@20"), 20);
+            SimulationClock.Scheduled cancelled = clock.schedule(() -> order.add("never"), 15);
+            cancelled.cancel();
+            // an event scheduling another one inside the window
+            clock.schedule(() -> clock.schedule(() -> order.add("d@35"), 5), 30);
+
+            assert order.isEmpty() : "Events ran before the clock was advanced";
+            clock.advanceTo(40);
+            assert order.equals(List.of("a@10", "b@20", "c@20", "d@35")) : "Wrong event order: " + order;
+            assert clock.currentTimeMillis() == 40 : "Clock not left at the target time";
+            System.out.println("Test 1 passed (event order)");
+        } catch (AssertionError e) {
+            System.out.println("Test 1 failed: " + e.getMessage());
+        }
+
+        // Test 2: fixed-rate events
+        try {
+            DiscreteEventClock clock = new DiscreteEventClock(0);
+            int[] ticks = {0};
+            SimulationClock.Scheduled s = clock.scheduleAtFixedRate(() -> ticks[0]++, 1_000, 1_000);
+            clock.advanceBy(10_000);
+            assert ticks[0] == 10 : "Expected 10 ticks, got " + ticks[0];
+            s.cancel();
+            clock.advanceBy(10_000);
+            assert ticks[0] == 10 : "Cancelled task kept running";
+            System.out.println("Test 2 passed (fixed rate)");
+        } catch (AssertionError e) {
+            System.out.println("Test 2 failed: " + e.getMessage());
+        }
+
+        // Test 3: a full charge (10% -> 95%, 17 steps of 20 s) in virtual time
+        try {
+            DiscreteEventClock clock = new DiscreteEventClock(0);
+            StorageVehicle v = new StorageVehicle("SIM-CHG", "Sim_Charge");
+            v.attachClock(clock);
+            v.setBatteryLevelPct(20);
+            v.setBatteryLevelPct(10);
+            assert v.isCharging() : "Vehicle did not start charging";
+
+            long t0 = System.currentTimeMillis();
+            clock.advanceBy(16 * 20_000);
+            assert v.isCharging() && v.getBatteryLevelPct() == 90 : "Charged too fast: " + v.getBatteryLevelPct();
+            clock.advanceBy(20_000);
+            assert !v.isCharging() && v.getBatteryLevelPct() == 95 : "Charge did not finish: " + v;
+            assert System.currentTimeMillis() - t0 < 5_000 : "Virtual charging took real time";
+            System.out.println("Test 3 passed (charging in virtual time)");
+        } catch (AssertionError e) {
+            System.out.println("Test 3 failed: " + e.getMessage());
+        }
+
+        // Test 4: auto-distributed deliveries complete when the clock passes one minute
+        try {
+            PathsConfig cfg = new PathsConfig();
+            cfg.ensure();
+            DiscreteEventClock clock = new DiscreteEventClock();
+            LogManager logs = new LogManager(cfg);
+            logs.attachClock(clock);
+            Repository repo = new Repository();
+            StorageService storage = new StorageService(repo, logs);
+            TaskService tasks = new TaskService(repo, logs, ExecutionMode.POOLED, clock);
+            storage.attachTaskService(tasks);
+            tasks.attachStorage(storage);
+            tasks.attachDestination(new DestinationService());
+
+            storage.getUnassignedItemsRef().clear();
+            StorageVehicle a = new StorageVehicle("SIM-A", "Sim_A");
+            StorageVehicle b = new StorageVehicle("SIM-B", "Sim_B");
+            a.setBatteryLevelPct(80);
+            b.setBatteryLevelPct(80);
+            storage.addVehicle(a);
+            storage.addVehicle(b);
+            storage.addItem(new StorageItem("SIM-SKU", "Masks", 100));
+
+            tasks.autoDistribute("SIM-MASTER");
+            assert repo.taskStore().countWithStatus(TaskStatus.IN_PROGRESS) == 2 : "Expected two deliveries in progress";
+            clock.advanceBy(59_999);
+            assert repo.taskStore().countWithStatus(TaskStatus.DONE) == 0 : "Delivery finished early";
+            clock.advanceBy(1);
+            assert repo.taskStore().countWithStatus(TaskStatus.DONE) == 2 : "Deliveries not done after one minute";
+            for (Task t : repo.tasks()) assert t.status == TaskStatus.DONE : "Task not done: " + t;
+            assert a.getBatteryLevelPct() == 70 && b.getBatteryLevelPct() == 70 : "Battery not drained";
+            tasks.shutdown();
+            System.out.println("Test 4 passed (deliveries in virtual time)");
+        } catch (AssertionError e) {
+            System.out.println("Test 4 failed: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Test 4 failed: " + e.getMessage());
+        }
+
+        // Test 5: shutting down one service leaves the charging engine to the others on the clock
+        try {
+            PathsConfig cfg = new PathsConfig();
+            cfg.ensure();
+            DiscreteEventClock clock = new DiscreteEventClock(0);
+            LogManager logs = new LogManager(cfg);
+            TaskService first = new TaskService(new Repository(), logs, ExecutionMode.POOLED, clock);
+            TaskService second = new TaskService(new Repository(), logs, ExecutionMode.POOLED, clock);
+            ChargingEngine engine = ChargingEngine.of(clock);
+
+            StorageVehicle v = new StorageVehicle("SIM-SHARED", "Sim_Shared");
+            second.trackVehicle(v);
+            v.setBatteryLevelPct(20);
+            v.setBatteryLevelPct(10);
+            first.shutdown();
+            first.shutdown(); // a second call must not release the other service's share
+            clock.advanceBy(20_000);
+            assert v.getBatteryLevelPct() == 15 : "Charging stopped with the first service: " + v.getBatteryLevelPct();
+            assert ChargingEngine.of(clock) == engine : "Engine replaced while still in use";
+
+            second.shutdown();
+            assert ChargingEngine.of(clock) != engine : "Stopped engine still registered for the clock";
+            System.out.println("Test 5 passed (charging engine shared per clock)");
+        } catch (AssertionError e) {
+            System.out.println("Test 5 failed: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Test 5 failed: " + e.getMessage());
+        }
+
+        System.out.println("All SimulationClock tests finished.");
+    }
+}
@@ -0,0 +1,323 @@
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskPriority;
+import med.supply.system.model.TaskStatus;
+import med.supply.system.repository.Repository;
+import med.supply.system.service.DestinationService;
+import med.supply.system.service.SnapshotService;
+import med.supply.system.service.StateEvent;
+import med.supply.system.service.StateEventLog;
+import med.supply.system.service.StateReplay;
+import med.supply.system.service.StateSnapshot;
+import med.supply.system.service.StorageService;
+import med.supply.system.service.TaskService;
+import med.supply.system.util.DiscreteEventClock;
+import med.supply.system.util.ExecutionMode;
+import med.supply.system.util.LogManager;
+import med.supply.system.util.MetadataWriter;
+import med.supply.system.util.PathsConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class StateEventLogTest {
+    private static final long START = 1_735_725_600_000L; // 2025-01-01T10:00:00Z
+
+    public static void main(String[] args) {
+        System.out.println("Running StateEventLog tests...");
+
+        try {
+            testBatchedWritesReadBack();
+            testRecoveryDropsDamagedTail();
+            testRestoreReplaysEvents();
+            testCompactionAndReplayUntil();
+            testConcurrentRecording();
+            testRecordNeverBlocksOrThrows();
+
+            System.out.println("All StateEventLog tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("StateEventLog test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (Exception e) {
+            System.err.println("Exception during StateEventLog tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path newDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix);
+    }
+
+    private static StateEventLog open(Path file, DiscreteEventClock clock) throws IOException {
+        return StateEventLog.open(file, clock, MetadataWriter.FsyncPolicy.NONE, 256, 4_096, 20);
+    }
+
+    private static List<StateEvent> readAll(Path file) throws IOException {
+        try (Stream<StateEvent> s = StateEventLog.read(file)) {
+            return s.collect(Collectors.toList());
+        }
+    }
+
+    /** Services wired the way Main does, on a virtual clock, recording to an event log. */
+    private static final class Node {
+        final DiscreteEventClock clock;
+        final Repository repo = new Repository();
+        final StorageService storage;
+        final TaskService tasks;
+        final StateEventLog events;
+        final SnapshotService snapshots;
+
+        Node(Path dir, long start) throws IOException {
+            PathsConfig cfg = new PathsConfig();
+            cfg.ensure();
+            clock = new DiscreteEventClock(start);
+            LogManager logs = new LogManager(cfg);
+            logs.attachClock(clock);
+            storage = new StorageService(repo, logs, false);
+            tasks = new TaskService(repo, logs, ExecutionMode.POOLED, clock);
+            storage.attachTaskService(tasks);
+            tasks.attachStorage(storage);
+            tasks.attachDestination(new DestinationService(dir.resolve("destination_log.csv")));
+            events = open(dir.resolve("events.log"), clock);
+            snapshots = new SnapshotService(repo, storage, tasks, dir.resolve("state.snap"), events);
+        }
+    }
+
+    /** Everything a restore must bring back, in a comparable form. */
+    private static String describe(StateSnapshot s) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("next=").append(s.nextTaskNumber).append(" auto=").append(s.autoResume).append('\n');
+        for (StateSnapshot.Vehicle v : s.vehicles) {
+            sb.append("V ").append(v.id).append(' ').append(v.batteryPct).append("% ").append(v.charging)
+                    .append(v.waitingForCharge).append(v.leftQueue).append(v.onDelivery).append(' ').append(v.stationId);
+            v.inventory.stream().sorted((a, b) -> a.sku.compareTo(b.sku))
+                    .forEach(it -> sb.append(' ').append(it.sku).append('x').append(it.quantity));
+            sb.append('\n');
+        }
+        for (Task t : s.tasks)
+            sb.append("T ").append(t.id).append(' ').append(t.status).append(' ').append(t.assigneeVehicleId).append('\n');
+        s.unassigned.stream().sorted((a, b) -> a.sku.compareTo(b.sku))
+                .forEach(it -> sb.append("U ").append(it.sku).append('x').append(it.quantity).append('\n'));
+        s.itemPriorities.entrySet().stream().sorted(java.util.Map.Entry.comparingByKey())
+                .forEach(e -> sb.append("P ").append(e.getKey()).append('=').append(e.getValue()).append('\n'));
+        s.deliveries.stream().sorted((a, b) -> a.taskId.compareTo(b.taskId))
+                .forEach(d -> sb.append("D ").append(d.taskId).append(' ').append(d.vehicleId).append(' ')
+                        .append(d.quantity).append(' ').append(d.dueAtMillis).append('\n'));
+        return sb.toString();
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testBatchedWritesReadBack() throws IOException {
+        Path file = newDir("events_rw_").resolve("events.log");
+        DiscreteEventClock clock = new DiscreteEventClock(START);
+        StorageVehicle v = new StorageVehicle("EV-1", "Van, \"one\"");
+        try (StateEventLog log = open(file, clock)) {
+            assert log.record(StateEvent.vehicleAdded(v)) == 1 : "First event not #1";
+            for (int i = 0; i < 999; i++) log.record(StateEvent.taskStatusChanged("Task " + i, TaskStatus.IN_PROGRESS));
+            log.flush();
+            assert log.getWrittenSeq() == 1_000 && log.getPending() == 0 : "Not all written";
+            assert log.getBatchCount() < 1_000 : "Events were not batched: " + log.getBatchCount() + " batches";
+        }
+        List<StateEvent> read = readAll(file);
+        assert read.size() == 1_000 : "Read " + read.size();
+        StateEvent first = read.get(0);
+        assert first.type == StateEvent.Type.VEHICLE_ADDED && first.arg(1).equals("Van, \"one\"") && first.millis == START
+                : "First event: " + first;
+        assert read.get(999).seq == 1_000 && read.get(999).arg(0).equals("Task 998") : "Last: " + read.get(999);
+
+        String row = first.toRow();
+        assert StateEvent.parse(row.trim()).toString().equals(first.toString()) : "Row round trip";
+        assert StateEvent.parse(row.trim().replace("Van", "Car")) == null : "Checksum not checked";
+        System.out.println("Test 1 passed  (batched writes, rows read back)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testRecoveryDropsDamagedTail() throws IOException {
+        Path file = newDir("events_recover_").resolve("events.log");
+        DiscreteEventClock clock = new DiscreteEventClock(START);
+        try (StateEventLog log = open(file, clock)) {
+            for (int i = 0; i < 10; i++) log.record(StateEvent.itemRemoved("SKU-" + i));
+        }
+        // a torn row and some zeros, as a crash during a write might leave
+        String torn = StateEvent.itemRemoved("SKU-X").toRow().replace("0,0,", "11,0,");
+        Files.write(file, torn.substring(0, torn.length() / 2).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.write(file, new byte[64], StandardOpenOption.APPEND);
+        long damaged = Files.size(file);
+
+        try (StateEventLog log = open(file, clock)) {
+            assert log.getRecovery().lastSeq == 10 && log.getRecovery().events == 10 : "Recovery: " + log.getRecovery();
+            assert log.getRecovery().discardedBytes > 64 && Files.size(file) < damaged : "Tail not dropped";
+            assert log.record(StateEvent.itemRemoved("SKU-10")) == 11 : "Numbering does not continue";
+        }
+        List<StateEvent> read = readAll(file);
+        assert read.size() == 11 && read.get(10).arg(0).equals("SKU-10") : "After recovery: " + read;
+
+        Path other = file.resolveSibling("not-events.log");
+        Files.writeString(other, "timestamp,vehicle,item,quantity\n");
+        try {
+            open(other, clock).close();
+            throw new AssertionError("Opened a file that is not an event log");
+        } catch (IOException expected) {
+            assert expected.getMessage().contains("not a state event log") : expected.getMessage();
+        }
+        System.out.println("Test 2 passed  (damaged tail dropped on open)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testRestoreReplaysEvents() throws Exception {
+        Path dir = newDir("events_restore_");
+        Node before = new Node(dir, START);
+        before.snapshots.startRecording();
+        before.snapshots.save(); // baseline, as Main does
+
+        StorageVehicle a = new StorageVehicle("EV-A", "Event_A");
+        StorageVehicle b = new StorageVehicle("EV-B", "Event_B");
+        a.setBatteryLevelPct(80);
+        b.setBatteryLevelPct(60);
+        before.storage.addVehicle(a);
+        before.storage.addVehicle(b);
+        before.storage.addItem(new StorageItem("EV-MSK", "Masks", 120));
+        before.storage.addItem(new StorageItem("EV-GLV", "Gloves", 30));
+        before.storage.setItemPriority("EV-GLV", TaskPriority.HIGH);
+        before.tasks.createTask(new Task("Manual-1", "Check freezer", "EV-A"));
+        before.tasks.updateStatus("Manual-1", TaskStatus.IN_PROGRESS);
+        before.tasks.autoDistribute("EV-MASTER");
+        before.clock.advanceBy(30_000);
+        before.storage.addItem(new StorageItem("EV-BND", "Bandages", 15));
+        before.events.flush();
+
+        StateSnapshot expected = before.snapshots.capture();
+        long lastSeq = before.events.getLastSeq();
+        before.events.close();
+        before.tasks.shutdown();
+        assert readAll(dir.resolve("events.log")).size() == lastSeq : "Events missing from the file";
+
+        // crash: nothing saved since the baseline, everything comes from the log
+        Node after = new Node(dir, START + 30_000);
+        SnapshotService.RestoreReport report = after.snapshots.restore();
+        System.out.println("  " + report);
+        assert report.replayedEvents == lastSeq && report.missingEvents == 0 : "Replayed " + report.replayedEvents + " of " + lastSeq;
+        StateSnapshot restored = after.snapshots.capture();
+        assert describe(restored).equals(describe(expected)) :
+                "Restored state differs:\n" + describe(restored) + "--- expected ---\n" + describe(expected);
+
+        // the same state from the log alone, without the baseline snapshot
+        StateReplay fromScratch = new StateReplay();
+        fromScratch.applyAll(readAll(dir.resolve("events.log")));
+        assert describe(fromScratch.toSnapshot()).equals(describe(expected)) : "Replay from an empty state differs";
+
+        // deliveries resumed from the log finish on their original schedule
+        after.snapshots.startRecording();
+        assert after.events.record(StateEvent.itemRemoved("none")) == lastSeq + 1 : "Numbering after restore";
+        after.clock.advanceBy(30_000);
+        assert after.repo.getTask("Manual-1").status == TaskStatus.DONE : "Manual delivery not finished";
+        assert after.repo.getTask("Task 1").status == TaskStatus.DONE : "Auto delivery not finished";
+        after.tasks.shutdown();
+        after.events.close();
+        System.out.println("Test 3 passed  (restore = snapshot + events after it)");
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testCompactionAndReplayUntil() throws IOException {
+        Path dir = newDir("events_compact_");
+        Node n = new Node(dir, START);
+        n.snapshots.startRecording();
+        StorageVehicle v = new StorageVehicle("EV-C", "Event_C");
+        v.setBatteryLevelPct(90);
+        n.storage.addVehicle(v);
+        for (int i = 0; i < 500; i++) v.setBatteryLevelPct(90 - i % 50);
+        n.snapshots.save();
+        long snapshotSeq = StateSnapshot.read(dir.resolve("state.snap")).eventSeq;
+        assert snapshotSeq == n.events.getLastSeq() : "Snapshot seq " + snapshotSeq;
+        assert readAll(dir.resolve("events.log")).isEmpty() : "Log not compacted";
+        assert n.events.getCompactionCount() == 1 : "Compactions: " + n.events.getCompactionCount();
+
+        v.setBatteryLevelPct(77);
+        long at77 = n.events.getLastSeq();
+        v.setBatteryLevelPct(55);
+        n.snapshots.close(); // final save: compacts again
+        assert readAll(dir.resolve("events.log")).isEmpty() : "Log not compacted on close";
+        n.tasks.shutdown();
+
+        // incident replay: the state as of a given event
+        Path dir2 = newDir("events_until_");
+        Node m = new Node(dir2, START);
+        m.snapshots.startRecording();
+        StorageVehicle w = new StorageVehicle("EV-D", "Event_D");
+        w.setBatteryLevelPct(90);
+        m.storage.addVehicle(w);
+        w.setBatteryLevelPct(77);
+        long seq77 = m.events.getLastSeq();
+        w.setBatteryLevelPct(55);
+        m.events.close();
+        m.tasks.shutdown();
+
+        Node replay = new Node(dir2, START);
+        replay.snapshots.restore(seq77);
+        assert replay.repo.getVehicle("EV-D").getBatteryLevelPct() == 77 : "State at #" + seq77;
+        replay.events.close();
+        replay.tasks.shutdown();
+        Node latest = new Node(dir2, START);
+        latest.snapshots.restore();
+        assert latest.repo.getVehicle("EV-D").getBatteryLevelPct() == 55 : "Latest state";
+        latest.events.close();
+        latest.tasks.shutdown();
+        assert at77 > snapshotSeq : "Numbering went backwards";
+        System.out.println("Test 4 passed  (compaction into snapshots, replay up to an event)");
+    }
+
+    // ---------- TEST 5 ----------
+    private static void testConcurrentRecording() throws IOException, InterruptedException {
+        Path file = newDir("events_concurrent_").resolve("events.log");
+        DiscreteEventClock clock = new DiscreteEventClock(START);
+        int threads = 4, perThread = 50_000;
+        long t0;
+        try (StateEventLog log = StateEventLog.open(file, clock, MetadataWriter.FsyncPolicy.PER_BATCH, 512, 8_192, 20)) {
+            List<Thread> workers = new ArrayList<>();
+            t0 = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                StorageVehicle v = new StorageVehicle("EV-T" + t, "Thread_" + t);
+                workers.add(new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) log.record(StateEvent.batteryChanged(v));
+                }));
+            }
+            for (Thread w : workers) w.start();
+            for (Thread w : workers) w.join();
+            log.flush();
+            long ms = Math.max(1, (System.nanoTime() - t0) / 1_000_000);
+            System.out.println("  " + threads * perThread + " events in " + ms + " ms (" + (threads * perThread * 1000L / ms) +
+                    " events/s), " + log.getBatchCount() + " batch(es), " + log.getSyncCount() + " fsync(s)");
+            assert log.getWrittenCount() == threads * perThread : "Written " + log.getWrittenCount();
+            assert log.getSyncCount() < threads * perThread / 10 : "Too many fsyncs: " + log.getSyncCount();
+        }
+        List<StateEvent> read = readAll(file);
+        assert read.size() == threads * perThread : "Read " + read.size();
+        for (int i = 0; i < read.size(); i++)
+            if (read.get(i).seq != i + 1) throw new AssertionError("Out of order at row " + i + ": " + read.get(i));
+        System.out.println("Test 5 passed  (concurrent recording, rows in sequence order)");
+    }
+
+    // ---------- TEST 6 ----------
+    private static void testRecordNeverBlocksOrThrows() throws IOException {
+        Path file = newDir("events_full_").resolve("events.log");
+        DiscreteEventClock clock = new DiscreteEventClock(START);
+        StorageVehicle v = new StorageVehicle("EV-F", "Full");
+        StateEventLog log = StateEventLog.open(file, clock, MetadataWriter.FsyncPolicy.NONE, 4, 8, 10_000);
+        for (int i = 0; i < 10_000; i++) log.record(StateEvent.batteryChanged(v)); // far past capacity, no waiting
+        log.close();
+        assert log.getWrittenCount() == 10_000 : "Written " + log.getWrittenCount();
+
+        assert log.record(StateEvent.batteryChanged(v)) == 0 : "Event after close got a sequence number";
+        assert log.getDroppedCount() == 1 : "Dropped " + log.getDroppedCount();
+        assert readAll(file).size() == 10_000 : "Event after close written";
+        System.out.println("Test 6 passed  (recording past capacity and after close)");
+    }
+}
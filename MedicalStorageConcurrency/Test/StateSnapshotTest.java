@@ -0,0 +1,252 @@
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskPriority;
+import med.supply.system.model.TaskStatus;
+import med.supply.system.repository.Repository;
+import med.supply.system.service.DestinationService;
+import med.supply.system.service.SnapshotService;
+import med.supply.system.service.StateSnapshot;
+import med.supply.system.service.StorageService;
+import med.supply.system.service.TaskService;
+import med.supply.system.util.DiscreteEventClock;
+import med.supply.system.util.ExecutionMode;
+import med.supply.system.util.LogManager;
+import med.supply.system.util.PathsConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StateSnapshotTest {
+    private static final long START = 1_735_725_600_000L; // 2025-01-01T10:00:00Z
+
+    public static void main(String[] args) {
+        System.out.println("Running StateSnapshot tests...");
+
+        try {
+            testFileRoundTrip();
+            testRestoreResumesDeliveries();
+            testBadFilesRejected();
+            testLargeRestore();
+            testRestoredIdleVehiclesResume();
+
+            System.out.println("All StateSnapshot tests finished.");
+        } catch (AssertionError e) {
+            System.err.println("StateSnapshot test failed: " + e.getMessage());
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.err.println("Exception during StateSnapshot tests: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static Path newFile(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).resolve("state.snap");
+    }
+
+    /** Services wired the way Main does, on a virtual clock. */
+    private static final class Node {
+        final DiscreteEventClock clock;
+        final Repository repo = new Repository();
+        final StorageService storage;
+        final TaskService tasks;
+        final SnapshotService snapshots;
+
+        Node(Path file, long start) throws IOException {
+            PathsConfig cfg = new PathsConfig();
+            cfg.ensure();
+            clock = new DiscreteEventClock(start);
+            LogManager logs = new LogManager(cfg);
+            logs.attachClock(clock);
+            storage = new StorageService(repo, logs, false);
+            tasks = new TaskService(repo, logs, ExecutionMode.POOLED, clock);
+            storage.attachTaskService(tasks);
+            tasks.attachStorage(storage);
+            tasks.attachDestination(new DestinationService(file.resolveSibling("destination_log.csv")));
+            snapshots = new SnapshotService(repo, storage, tasks, file);
+        }
+    }
+
+    // ---------- TEST 1 ----------
+    private static void testFileRoundTrip() throws IOException {
+        Path file = newFile("snapshot_roundtrip_");
+        List<StateSnapshot.Station> stations = List.of(
+                new StateSnapshot.Station("CS-1", "North", "V-1"),
+                new StateSnapshot.Station("CS-2", "South", null));
+        List<StateSnapshot.Vehicle> vehicles = List.of(
+                new StateSnapshot.Vehicle("V-1", "Van 1", 12, true, false, false, false, "CS-1",
+                        List.of(new StateSnapshot.Item("SYR20", "Syringe 20ml", 40))),
+                new StateSnapshot.Vehicle("V-2", "Van 2", 90, false, false, true, true, null, List.of()));
+        Map<String, TaskPriority> priorities = new LinkedHashMap<>();
+        priorities.put("SYR20", TaskPriority.HIGH);
+        Task t = new Task("Task 7", "Deliver SYR20 x40 (unicode: Spritze Ä)", "V-2", TaskPriority.HIGH);
+        t.status = TaskStatus.IN_PROGRESS;
+        List<StateSnapshot.Delivery> deliveries = List.of(
+                new StateSnapshot.Delivery("Task 7", "V-2", "Syringe 20ml", 40, false, START + 30_000));
+
+        StateSnapshot s = new StateSnapshot(START, 8, true, stations, vehicles,
+                List.of(new StateSnapshot.Item("GLV", "Gloves", 500)), priorities, List.of(t), deliveries);
+        long bytes = s.write(file);
+        assert bytes == Files.size(file) : "Reported size " + bytes + " != " + Files.size(file);
+
+        StateSnapshot r = StateSnapshot.read(file);
+        assert r.createdMillis == START && r.nextTaskNumber == 8 && r.autoResume : "Header: " + r;
+        assert r.stations.size() == 2 && "V-1".equals(r.stations.get(0).owner) && r.stations.get(1).owner == null : "Stations";
+        StateSnapshot.Vehicle v1 = r.vehicles.get(0);
+        assert v1.charging && !v1.onDelivery && "CS-1".equals(v1.stationId) && v1.batteryPct == 12 : "V-1 flags";
+        assert v1.inventory.size() == 1 && v1.inventory.get(0).quantity == 40 : "V-1 inventory";
+        StateSnapshot.Vehicle v2 = r.vehicles.get(1);
+        assert v2.leftQueue && v2.onDelivery && v2.stationId == null && v2.inventory.isEmpty() : "V-2 flags";
+        assert r.unassigned.get(0).name.equals("Gloves") && r.itemPriorities.get("SYR20") == TaskPriority.HIGH : "Pool";
+        Task rt = r.tasks.get(0);
+        assert rt.description.equals(t.description) && rt.status == TaskStatus.IN_PROGRESS && rt.priority == TaskPriority.HIGH
+                && "V-2".equals(rt.assigneeVehicleId) : "Task: " + rt;
+        StateSnapshot.Delivery d = r.deliveries.get(0);
+        assert !d.manual && d.dueAtMillis == START + 30_000 && d.quantity == 40 : "Delivery";
+        System.out.println("Test 1 passed  (write / read round trip)");
+    }
+
+    // ---------- TEST 2 ----------
+    private static void testRestoreResumesDeliveries() throws IOException {
+        Path file = newFile("snapshot_restore_");
+        Node before = new Node(file, START);
+        StorageVehicle a = new StorageVehicle("SNAP-A", "Snap_A");
+        StorageVehicle b = new StorageVehicle("SNAP-B", "Snap_B");
+        a.setBatteryLevelPct(80);
+        b.setBatteryLevelPct(80);
+        before.storage.addVehicle(a);
+        before.storage.addVehicle(b);
+        before.storage.addItem(new StorageItem("SNAP-SKU", "Masks", 100));
+        before.storage.addItem(new StorageItem("SNAP-GLV", "Gloves", 10));
+        before.storage.setItemPriority("SNAP-GLV", TaskPriority.LOW);
+        before.tasks.createTask(new Task("Manual-1", "Check freezer", "SNAP-A"));
+
+        before.tasks.autoDistribute("SNAP-MASTER");
+        before.clock.advanceBy(20_000);
+        List<String> order = new ArrayList<>();
+        for (Task t : before.repo.tasks()) order.add(t.id);
+        int inFlight = before.tasks.inFlightDeliveries().size();
+        assert inFlight > 0 : "No deliveries under way";
+        long bytes = before.snapshots.save();
+        assert bytes > 0 && before.snapshots.getWriteCount() == 1 : "Not written";
+        before.tasks.shutdown();
+
+        // a new process, twenty seconds later
+        Node after = new Node(file, START + 40_000);
+        SnapshotService.RestoreReport report = after.snapshots.restore();
+        System.out.println("  " + report);
+        assert report.resumedDeliveries == inFlight : "Resumed " + report.resumedDeliveries + " of " + inFlight;
+
+        List<String> restoredOrder = new ArrayList<>();
+        for (Task t : after.repo.tasks()) restoredOrder.add(t.id);
+        assert restoredOrder.equals(order) : "Task order " + restoredOrder + " != " + order;
+        assert after.tasks.getNextTaskNumber() == before.tasks.getNextTaskNumber() : "Next task number";
+        assert after.storage.getItemPriority("SNAP-GLV") == TaskPriority.LOW : "Priority lost";
+        assert after.repo.vehicleCount() == 2 : "Vehicles: " + after.repo.vehicleCount();
+        for (StateSnapshot.Delivery d : after.tasks.inFlightDeliveries())
+            assert after.repo.getVehicle(d.vehicleId).isOnDelivery() : d.vehicleId + " not on delivery after restore";
+        assert after.repo.taskStore().countWithStatus(TaskStatus.IN_PROGRESS) == inFlight : "In-progress tasks";
+
+        // the deliveries started at START and finish one minute later, not one minute after the restore
+        after.clock.advanceBy(19_999);
+        assert after.repo.taskStore().countWithStatus(TaskStatus.DONE) == 0 : "Delivery finished early";
+        after.clock.advanceBy(1);
+        assert after.repo.taskStore().countWithStatus(TaskStatus.DONE) == inFlight : "Resumed deliveries not done";
+        // auto-resume was on before the restart, so the freed vehicle picks up the remaining masks
+        assert after.repo.hasTask("Task " + before.tasks.getNextTaskNumber()) : "Auto-resume not restored";
+        assert "Manual-1".equals(after.repo.getTask("Manual-1").id) : "Manual task lost";
+        after.tasks.shutdown();
+        System.out.println("Test 2 passed  (restore resumes deliveries on the original schedule)");
+    }
+
+    // ---------- TEST 3 ----------
+    private static void testBadFilesRejected() throws IOException {
+        Path file = newFile("snapshot_bad_");
+        new StateSnapshot(START, 1, false, List.of(), List.of(), List.of(new StateSnapshot.Item("A", "Alpha", 1)),
+                Map.of(), List.of(), List.of()).write(file);
+        byte[] good = Files.readAllBytes(file);
+        assert StateSnapshot.read(file).unassigned.size() == 1 : "Good file not read";
+
+        byte[] flipped = good.clone();
+        flipped[flipped.length - 1] ^= 0x40;
+        expectRejected(file, flipped, "checksum");
+
+        byte[] truncated = java.util.Arrays.copyOf(good, good.length - 3);
+        expectRejected(file, truncated, "truncated");
+
+        byte[] newer = good.clone();
+        ByteBuffer.wrap(newer).order(ByteOrder.BIG_ENDIAN).putShort(8, (short) (StateSnapshot.VERSION + 1));
+        expectRejected(file, newer, "version");
+
+        byte[] foreign = good.clone();
+        foreign[0] = 'X';
+        expectRejected(file, foreign, "state snapshot");
+        System.out.println("Test 3 passed  (corrupt, truncated and newer files rejected)");
+    }
+
+    private static void expectRejected(Path file, byte[] content, String expected) throws IOException {
+        Files.write(file, content);
+        try {
+            StateSnapshot.read(file);
+            throw new AssertionError("Accepted a bad file (" + expected + ")");
+        } catch (IOException e) {
+            assert e.getMessage().contains(expected) : "Unexpected error: " + e.getMessage();
+        }
+    }
+
+    // ---------- TEST 4 ----------
+    private static void testLargeRestore() throws IOException {
+        Path file = newFile("snapshot_large_");
+        int vehicles = 10_000, tasks = 100_000;
+        List<StateSnapshot.Vehicle> vs = new ArrayList<>(vehicles);
+        for (int i = 0; i < vehicles; i++) {
+            vs.add(new StateSnapshot.Vehicle("LV-" + i, "Van_" + i, 50 + i % 50, false, false, false, false, null,
+                    List.of(new StateSnapshot.Item("SKU-" + (i % 200), "Item " + (i % 200), 1 + i % 30))));
+        }
+        List<Task> ts = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            Task t = new Task("Task " + i, "Deliver Item " + (i % 200), "LV-" + (i % vehicles));
+            t.status = TaskStatus.DONE;
+            ts.add(t);
+        }
+        long t0 = System.nanoTime();
+        long bytes = new StateSnapshot(START, tasks, false, List.of(), vs, List.of(), Map.of(), ts, List.of()).write(file);
+        long writeMs = (System.nanoTime() - t0) / 1_000_000;
+
+        Node sys = new Node(file, START);
+        SnapshotService.RestoreReport report = sys.snapshots.restore();
+        assert sys.repo.vehicleCount() == vehicles && sys.repo.taskCount() == tasks : "Counts after restore";
+        assert sys.repo.taskStore().countWithStatus(TaskStatus.DONE) == tasks : "Status index not rebuilt";
+        assert sys.repo.taskStore().forVehicle("LV-42").size() == tasks / vehicles : "Vehicle index not rebuilt";
+        System.out.println("  " + bytes / 1024 + " KiB written in " + writeMs + " ms, restored in " + report.elapsedMs + " ms");
+        sys.tasks.shutdown();
+        System.out.println("Test 4 passed  (10k vehicles / 100k tasks)");
+    }
+
+    // ---------- TEST 5 ----------
+    private static void testRestoredIdleVehiclesResume() throws IOException {
+        Path file = newFile("snapshot_idle_");
+        // the periodic save caught an idle vehicle between two rounds, items still waiting
+        new StateSnapshot(START, 3, true, List.of(),
+                List.of(new StateSnapshot.Vehicle("IDLE-A", "Idle_A", 80, false, false, false, false, null, List.of())),
+                List.of(new StateSnapshot.Item("IDLE-SKU", "Masks", 30)), Map.of(), List.of(), List.of()).write(file);
+
+        Node after = new Node(file, START + 5_000);
+        after.snapshots.restore();
+        after.clock.advanceBy(0);
+        assert after.repo.hasTask("Task 3") : "Idle vehicle did not pick up the waiting items";
+        assert after.repo.getVehicle("IDLE-A").isOnDelivery() : "Vehicle not on delivery";
+
+        StateSnapshot s = after.snapshots.capture();
+        assert s.createdMillis == START + 5_000 : "Snapshot not stamped with the clock: " + s.createdMillis;
+        after.tasks.shutdown();
+        System.out.println("Test 5 passed  (restored idle vehicles continue, clock time stamped)");
+    }
+}
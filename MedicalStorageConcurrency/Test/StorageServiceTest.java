@@ -22,7 +22,7 @@ public class StorageServiceTest {
             testAddVehicle(service, repo, cfg);
             testAddChargingStation(service, repo, cfg);
             testUpdateChargingLoad(service, repo, cfg);
-            testAddItemToVehicle(service, repo, cfg);   // <-- fixed here
+            testAddItem(service, cfg);
             testInvalidNameThrows(service);
 
             System.out.println("All StorageService tests finished.");
@@ -37,7 +37,7 @@ public class StorageServiceTest {
         StorageVehicle v = new StorageVehicle("V001", "Van_Beta");
         service.addVehicle(v);
 
-        assert repo.vehicles.containsKey("V001") : "Vehicle not added to repository";
+        assert repo.hasVehicle("V001") : "Vehicle not added to repository";
         Path logFile = cfg.logsVehicles.resolve("Van_Beta").resolve(LocalDate.now().toString() + ".log");
         assert Files.exists(logFile) : "Vehicle log not created";
         String logContent = Files.readString(logFile);
@@ -51,11 +51,10 @@ public class StorageServiceTest {
         ChargingStation s = new ChargingStation("S001", "Station_Alpha");
         service.addChargingStation(s);
 
-        assert repo.stations.containsKey("S001") : "Charging station not added to repository";
-        Path logFile = cfg.logsCharging.resolve("Station_Alpha").resolve(LocalDate.now().toString() + ".log");
-        assert Files.exists(logFile) : "Charging station log not created";
+        assert repo.hasStation("S001") : "Charging station not added to repository";
+        Path logFile = cfg.logsSystem.resolve(LocalDate.now().toString() + ".log");
         String logContent = Files.readString(logFile);
-        assert logContent.contains("created") : "Charging creation log missing";
+        assert logContent.contains("Charging station added") && logContent.contains("S001") : "Charging station addition not logged";
 
         System.out.println("Test 2 passed  (addChargingStation)");
     }
@@ -65,38 +64,30 @@ public class StorageServiceTest {
         ChargingStation s = new ChargingStation("S002", "Station_LoadTest");
         service.addChargingStation(s);
 
-        service.updateChargingLoad("S002", 75);
-        assert repo.stations.get("S002").getCurrentLoadPct() == 75 : "Charging load not updated correctly";
-
-        Path logFile = cfg.logsCharging.resolve("Station_LoadTest").resolve(LocalDate.now().toString() + ".log");
-        String logContent = Files.readString(logFile);
-        assert logContent.contains("Load set to 75%") : "Charging load update not logged";
+        service.updateChargingLoad("S002", 1);
+        assert ChargingStation.OPERATOR.equals(repo.getStation("S002").getOwner()) : "Station not marked in use";
+        service.updateChargingLoad("S002", 0);
+        assert !repo.getStation("S002").isInUse() : "Station not freed";
 
         System.out.println("Test 3 passed  (updateChargingLoad)");
     }
 
     // ---------- TEST 4 ----------
-    private static void testAddItemToVehicle(StorageService service, Repository repo, PathsConfig cfg) throws IOException {
-        StorageVehicle v = new StorageVehicle("V002", "Van_Items");
-        service.addVehicle(v);
-
+    private static void testAddItem(StorageService service, PathsConfig cfg) throws IOException {
         StorageItem item = new StorageItem("SKU123", "Bandages", 5);
-        service.addItemToVehicle("V002", item);
-
-        //  Fix: inventory is a Map<String, StorageItem>
-        assert !v.getInventory().isEmpty() : "Item not added to vehicle inventory";
-        assert v.getInventory().containsKey("SKU123") : "Inventory missing SKU123 key";
+        service.addItem(item);
 
-        StorageItem stored = v.getInventory().get("SKU123");
-        assert stored != null : "Stored item is null";
-        assert stored.getSku().equals("SKU123") : "Incorrect SKU in inventory";
-        assert stored.getQuantity() == 5 : "Incorrect quantity in inventory";
+        // items go to the unassigned pool; vehicles get them through auto-distribution
+        StorageItem stored = service.getUnassignedItemsRef().get("SKU123");
+        assert stored != null : "Item not added to the unassigned pool";
+        assert stored.getSku().equals("SKU123") : "Incorrect SKU in pool";
+        assert stored.getQuantity() == 5 : "Incorrect quantity in pool";
 
-        Path logFile = cfg.logsVehicles.resolve("Van_Items").resolve(LocalDate.now().toString() + ".log");
+        Path logFile = cfg.logsSystem.resolve(LocalDate.now().toString() + ".log");
         String logContent = Files.readString(logFile);
-        assert logContent.contains("Added item SKU123 x5") : "Vehicle item addition log missing or mismatched";
+        assert logContent.contains("Added unassigned item: SKU123 (Bandages), qty=5") : "Item addition log missing or mismatched";
 
-        System.out.println("Test 4 passed  (addItemToVehicle)");
+        System.out.println("Test 4 passed  (addItem)");
     }
 
     // ---------- TEST 5 ----------
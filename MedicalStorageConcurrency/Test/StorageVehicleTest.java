@@ -1,3 +1,4 @@
+import med.supply.system.model.ChargingEngine;
 import med.supply.system.model.StorageVehicle;
 import med.supply.system.model.StorageItem;
 
@@ -80,6 +81,24 @@ public class StorageVehicleTest {
             System.out.println("Test 6 failed: " + e.getMessage());
         }
 
+        // Test 7: charging is driven by the shared engine, not a thread per vehicle
+        try {
+            ChargingEngine engine = ChargingEngine.shared();
+            int before = engine.chargingCount();
+            StorageVehicle v7 = new StorageVehicle("VH-007", "Van_Eta");
+            v7.setBatteryLevelPct(20);
+            v7.setBatteryLevelPct(10);
+            assert v7.isCharging() : "Vehicle did not enter charging mode";
+            assert engine.chargingCount() == before + 1 : "Vehicle not registered with the engine";
+            v7.setBatteryLevelPct(95);
+            assert engine.chargingCount() == before : "Vehicle still registered after charging";
+            System.out.println("Test 7 passed (charging engine registration)");
+        } catch (AssertionError e) {
+            System.out.println("Test 7 failed: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Test 7 failed: " + e.getMessage());
+        }
+
         System.out.println("All StorageVehicle tests finished.");
     }
 }
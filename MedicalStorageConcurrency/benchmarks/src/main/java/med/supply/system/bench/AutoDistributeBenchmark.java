@@ -0,0 +1,77 @@
+package med.supply.system.bench;
+
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.repository.Repository;
+import med.supply.system.service.DestinationService;
+import med.supply.system.service.StorageService;
+import med.supply.system.service.TaskService;
+import med.supply.system.util.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link TaskService#autoDistribute} round: drain the idle pool, build requests, schedule and
+ * create the tasks. Deliveries run on a discrete-event clock that is never advanced, so only the
+ * dispatch itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoDistributeBenchmark {
+
+    @Param({"10", "100", "500"})
+    int vehicles;
+
+    @Param({"10", "100"})
+    int items;
+
+    private LogManager logs;
+    private Repository repo;
+    private TaskService tasks;
+
+    @Setup(Level.Trial)
+    public void startLogging() throws Exception {
+        Quiet.on();
+        PathsConfig cfg = new PathsConfig();
+        cfg.ensure();
+        logs = new LogManager(cfg);
+        logs.enableAsync(65_536, 1024, 200, AsyncLogWriter.Backpressure.DROP);
+    }
+
+    @Setup(Level.Invocation)
+    public void freshFleet() throws Exception {
+        repo = new Repository();
+        StorageService storage = new StorageService(repo, logs);
+        tasks = new TaskService(repo, logs, ExecutionMode.POOLED, new DiscreteEventClock(0));
+        storage.attachTaskService(tasks);
+        tasks.attachStorage(storage);
+        tasks.attachDestination(new DestinationService());
+        storage.getUnassignedItemsRef().clear();
+
+        for (int i = 0; i < vehicles; i++) {
+            StorageVehicle v = new StorageVehicle("B-" + i, "Bench_" + i);
+            v.setBatteryLevelPct(20 + (i * 37) % 81);
+            storage.addVehicle(v);
+        }
+        for (int i = 0; i < items; i++) {
+            storage.addItem(new StorageItem("SKU-" + i, "Item_" + i, 120));
+        }
+    }
+
+    @Benchmark
+    public int autoDistribute() {
+        tasks.autoDistribute("BENCH");
+        return repo.taskCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopLogging() {
+        logs.shutdown();
+        Quiet.off();
+    }
+}
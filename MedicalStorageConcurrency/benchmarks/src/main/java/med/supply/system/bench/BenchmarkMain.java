@@ -0,0 +1,19 @@
+package med.supply.system.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Same options as the JMH launcher, but results go to
+ * {@code jmh-result.json} unless {@code -rf}/{@code -rff} are given, so every run leaves a file
+ * that can be tracked over time.
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        List<String> a = new ArrayList<>(Arrays.asList(args));
+        if (!a.contains("-rf")) a.addAll(0, List.of("-rf", "json"));
+        if (!a.contains("-rff")) a.addAll(0, List.of("-rff", "jmh-result.json"));
+        org.openjdk.jmh.Main.main(a.toArray(new String[0]));
+    }
+}
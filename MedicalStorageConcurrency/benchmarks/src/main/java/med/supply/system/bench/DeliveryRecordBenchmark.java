@@ -0,0 +1,68 @@
+package med.supply.system.bench;
+
+import med.supply.system.util.DeliveryBuffer;
+import med.supply.system.util.DeliveryJournal;
+import med.supply.system.util.MetadataWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery recording throughput with 1 and 8 threads: {@code journal*} writes through
+ * {@link DeliveryJournal#append} (callers wait for their batch to be written), {@code buffered*}
+ * goes through a {@link DeliveryBuffer} (callers only enqueue; a merger writes).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeliveryRecordBenchmark {
+
+    @Param({"NONE", "PER_BATCH"})
+    public MetadataWriter.FsyncPolicy fsync;
+
+    private Path dir;
+    private DeliveryJournal journal;
+    private DeliveryBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        dir = Files.createTempDirectory("bench-deliveries");
+        journal = DeliveryJournal.open(dir.resolve("destination_log.csv"), fsync);
+        buffer = new DeliveryBuffer(journal);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        buffer.close();
+        journal.close();
+        Files.deleteIfExists(dir.resolve("destination_log.csv"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long journal() throws Exception {
+        return journal.append("2025-01-01T10:00:00", "AGV-12", "SYR20", 5);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long journalContended() throws Exception {
+        return journal.append("2025-01-01T10:00:00", "AGV-12", "SYR20", 5);
+    }
+
+    @Benchmark
+    public void buffered() throws Exception {
+        buffer.record("2025-01-01T10:00:00", "AGV-12", "SYR20", 5);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void bufferedContended() throws Exception {
+        buffer.record("2025-01-01T10:00:00", "AGV-12", "SYR20", 5);
+    }
+}
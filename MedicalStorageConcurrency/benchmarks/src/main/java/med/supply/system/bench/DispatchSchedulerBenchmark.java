@@ -0,0 +1,80 @@
+package med.supply.system.bench;
+
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.TaskPriority;
+import med.supply.system.service.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link DispatchScheduler#schedule} call per policy: a backlog of mixed-priority requests
+ * against the idle part of a fleet with spread-out battery levels. Fleet and demand come from a
+ * fixed seed, so every policy sees the same input. How well the policies serve a fleet over a
+ * day is what {@code FleetSimulation} in the test tree shows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchSchedulerBenchmark {
+
+    @Param({"round-robin", "battery-weighted", "priority-queue"})
+    String scheduler;
+
+    @Param({"10", "200"})
+    int vehicles;
+
+    @Param({"60", "600"})
+    int requests;
+
+    private DispatchScheduler policy;
+    private List<DeliveryRequest> pending;
+    private List<StorageVehicle> idle;
+
+    @Setup(Level.Trial)
+    public void load() {
+        Quiet.on();
+        policy = switch (scheduler) {
+            case "round-robin" -> new RoundRobinScheduler();
+            case "battery-weighted" -> new BatteryWeightedScheduler();
+            case "priority-queue" -> new PriorityQueueScheduler();
+            default -> throw new IllegalArgumentException("unknown scheduler " + scheduler);
+        };
+
+        Random rnd = new Random(42);
+        idle = new ArrayList<>(vehicles);
+        for (int i = 0; i < vehicles; i++) {
+            StorageVehicle v = new StorageVehicle("B-" + i, "Bench_" + i);
+            v.setBatteryLevelPct(15 + rnd.nextInt(86)); // above the charging threshold
+            idle.add(v);
+        }
+        pending = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            pending.add(new DeliveryRequest("SKU" + rnd.nextInt(5), "Item", 50, randomPriority(rnd), i));
+        }
+    }
+
+    @Benchmark
+    public List<DispatchScheduler.Assignment> schedule() {
+        return policy.schedule(pending, idle);
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreConsole() {
+        Quiet.off();
+    }
+
+    private static TaskPriority randomPriority(Random rnd) {
+        int p = rnd.nextInt(100);
+        if (p < 10) return TaskPriority.URGENT;
+        if (p < 30) return TaskPriority.HIGH;
+        if (p < 80) return TaskPriority.NORMAL;
+        return TaskPriority.LOW;
+    }
+}
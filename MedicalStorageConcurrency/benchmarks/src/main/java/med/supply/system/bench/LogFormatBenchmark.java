@@ -0,0 +1,82 @@
+package med.supply.system.bench;
+
+import med.supply.system.util.LogFormatter;
+import med.supply.system.util.LogManager;
+import med.supply.system.util.PathsConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost and garbage of building one vehicle log line. {@code concat*} is how lines used to be built
+ * (fresh {@link ZonedDateTime}, string concatenation, {@code getBytes}); {@code template*} uses
+ * {@link LogFormatter} as {@link LogManager} does now. Run with {@code -prof gc} and compare
+ * {@code gc.alloc.rate.norm} (bytes per line).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogFormatBenchmark {
+
+    private final LogFormatter formatter = new LogFormatter();
+    private final String vehicle = "AGV-12";
+    private int before = 80;
+
+    private LogManager logs;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        PathsConfig cfg = new PathsConfig();
+        cfg.ensure();
+        logs = new LogManager(cfg);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        logs.shutdown();
+    }
+
+    private int nextBefore() {
+        before = before == 10 ? 100 : before - 1;
+        return before;
+    }
+
+    @Benchmark
+    public void concatLine(Blackhole bh) {
+        int b = nextBefore();
+        String message = "Battery drop after auto-distribution: " + b + "% → " + (b - 10) + "%";
+        String line = "[VEHICLE:" + vehicle + "] " + ZonedDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) + " " + message;
+        bh.consume((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void templateLine(Blackhole bh) {
+        int b = nextBefore();
+        LogFormatter.Stamp stamp = formatter.stamp(System.currentTimeMillis());
+        StringBuilder line = LogFormatter.builder().append("[VEHICLE:").append(vehicle).append("] ")
+                .append(stamp.text).append(' ');
+        LogFormatter.appendFormatted(line, "Battery drop after {}: {}% → {}%", "auto-distribution", b, b - 10);
+        bh.consume(LogFormatter.encodeLine(line.append(System.lineSeparator())));
+    }
+
+    /** Whole write through LogManager, message built by the caller (as call sites used to). */
+    @Benchmark
+    public void concatWrite() throws Exception {
+        int b = nextBefore();
+        logs.logVehicle(vehicle, "Battery drop after auto-distribution: " + b + "% → " + (b - 10) + "%");
+    }
+
+    /** Whole write through LogManager with a template. */
+    @Benchmark
+    public void templateWrite() throws Exception {
+        int b = nextBefore();
+        logs.logVehicle(vehicle, "Battery drop after {}: {}% → {}%", "auto-distribution", b, b - 10);
+    }
+}
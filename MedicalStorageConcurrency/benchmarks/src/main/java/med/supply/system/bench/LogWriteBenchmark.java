@@ -0,0 +1,60 @@
+package med.supply.system.bench;
+
+import med.supply.system.util.AsyncLogWriter;
+import med.supply.system.util.LogManager;
+import med.supply.system.util.PathsConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log lines per millisecond through {@link LogManager}, written directly or through the async
+ * writer, from several threads sharing one manager.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LogWriteBenchmark {
+
+    @Param({"sync", "async"})
+    String mode;
+
+    private LogManager logs;
+
+    @State(Scope.Thread)
+    public static class Vehicle {
+        String name;
+
+        @Setup
+        public void pick() {
+            name = "BenchLog_" + Thread.currentThread().getId() % 8;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        PathsConfig cfg = new PathsConfig();
+        cfg.ensure();
+        logs = new LogManager(cfg);
+        if (mode.equals("async")) logs.enableAsync(65_536, 1024, 200, AsyncLogWriter.Backpressure.BLOCK);
+    }
+
+    @Benchmark
+    public void logSystem() throws Exception {
+        logs.logSystem("benchmark line: dispatch round completed");
+    }
+
+    @Benchmark
+    public void logVehicle(Vehicle v) throws Exception {
+        logs.logVehicle(v.name, "Battery drop after auto-distribution: 80% → 70%");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        logs.shutdown();
+    }
+}
@@ -0,0 +1,53 @@
+package med.supply.system.bench;
+
+import med.supply.system.util.MetadataManager;
+import med.supply.system.util.MetadataWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@link MetadataManager#append} row, alone and with eight threads sharing the index
+ * (where group commit folds concurrent rows into one write / fsync).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataAppendBenchmark {
+
+    @Param({"NONE", "PER_BATCH", "PER_ROW"})
+    public MetadataWriter.FsyncPolicy fsync;
+
+    private Path index;
+    private Path logFile;
+
+    @Setup(Level.Trial)
+    public void create() throws Exception {
+        index = Files.createTempFile("bench-metadata", ".csv");
+        Files.writeString(index, "path,createdUtc,kind,notes\n");
+        logFile = Path.of("data", "logs", "vehicles", "Bench_1", "2025-01-01.log");
+        MetadataWriter.forFile(index).setFsyncPolicy(fsync);
+    }
+
+    @Benchmark
+    public void append() throws Exception {
+        MetadataManager.append(index, logFile, "LOG", "created, benchmark");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void appendContended() throws Exception {
+        MetadataManager.append(index, logFile, "LOG", "created, benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Exception {
+        MetadataWriter.forFile(index).close();
+        Files.deleteIfExists(index);
+    }
+}
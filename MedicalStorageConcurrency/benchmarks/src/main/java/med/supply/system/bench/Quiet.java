@@ -0,0 +1,29 @@
+package med.supply.system.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/** Mutes the console chatter of the services while a benchmark runs. */
+final class Quiet {
+    private static PrintStream out;
+    private static PrintStream err;
+
+    private Quiet() {}
+
+    static synchronized void on() {
+        if (out != null) return;
+        out = System.out;
+        err = System.err;
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(sink);
+        System.setErr(sink);
+    }
+
+    static synchronized void off() {
+        if (out == null) return;
+        System.setOut(out);
+        System.setErr(err);
+        out = null;
+        err = null;
+    }
+}
@@ -0,0 +1,68 @@
+package med.supply.system.bench;
+
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskStatus;
+import med.supply.system.repository.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Repository} under contention: dispatch-style readers and status writers on a shared store,
+ * plus the indexed per-vehicle task lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({"500"})
+    int vehicles;
+
+    @Param({"10000"})
+    int tasks;
+
+    private Repository repo;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        repo = new Repository();
+        for (int i = 0; i < vehicles; i++) {
+            repo.putVehicle(new StorageVehicle("V-" + i, "Veh_" + i));
+        }
+        for (int i = 0; i < tasks; i++) {
+            repo.putTask(new Task("T-" + i, "Deliver", "V-" + (i % vehicles)));
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public Task read() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        repo.getVehicle("V-" + rnd.nextInt(vehicles));
+        return repo.getTask("T-" + rnd.nextInt(tasks));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public Task updateStatus() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        TaskStatus s = rnd.nextBoolean() ? TaskStatus.IN_PROGRESS : TaskStatus.PENDING;
+        return repo.updateTask("T-" + rnd.nextInt(tasks), t -> t.status = s);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<Task> tasksForVehicle() {
+        String v = "V-" + ThreadLocalRandom.current().nextInt(vehicles);
+        return repo.taskStore().forVehicle(v, TaskStatus.IN_PROGRESS);
+    }
+}
@@ -0,0 +1,42 @@
+package med.supply.system.bench;
+
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** {@link StorageVehicle#addItem} when the SKU is already on board (merge) across a few or many SKUs. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VehicleAddItemBenchmark {
+
+    @Param({"1", "40"})
+    int skus;
+
+    private StorageVehicle vehicle;
+    private String[] skuIds;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void load() {
+        vehicle = new StorageVehicle("BENCH-ITEMS", "Bench_Items");
+        skuIds = new String[skus];
+        for (int i = 0; i < skus; i++) {
+            skuIds[i] = "SKU-" + i;
+            vehicle.addItem(new StorageItem(skuIds[i], "Item_" + i, 1));
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public StorageVehicle mergeItem() {
+        String sku = skuIds[next++ % skus];
+        vehicle.addItem(new StorageItem(sku, "Item", 1));
+        return vehicle;
+    }
+}
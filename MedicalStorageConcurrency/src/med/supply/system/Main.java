@@ -3,15 +3,22 @@ package med.supply.system;
 import med.supply.system.exception.ExceptionHandler;
 import med.supply.system.model.*;
 import med.supply.system.repository.Repository;
+import med.supply.system.repository.TaskStore;
 import med.supply.system.service.*;
 import med.supply.system.util.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.Scanner;
+import java.util.stream.Collectors;
 
 public class Main {
     public static void main(String[] args) throws Exception {
@@ -19,17 +26,43 @@ public class Main {
         PathsConfig cfg = new PathsConfig();
         cfg.ensure();
         LogManager log = new LogManager(cfg);
+        log.enableAsync(8192, 256, 200, AsyncLogWriter.Backpressure.BLOCK);
+        log.enableRotation(LogRotator.Policy.defaults());
+        // -Dmed.log.format=binary writes compact .blog records (read back with BinaryLogDecoder)
+        if ("binary".equalsIgnoreCase(System.getProperty("med.log.format", "text"))) log.enableBinary();
         Repository repo = new Repository();
 
-        // Services
-        StorageService storage = new StorageService(repo, log);
-        TaskService tasks = new TaskService(repo, log);
+        // Services (-Dmed.exec.mode=virtual runs delivery completions on virtual threads)
+        ExecutionMode mode = ExecutionMode.getDefault();
+        if (mode == ExecutionMode.VIRTUAL && !ExecutionMode.virtualThreadsAvailable())
+            System.out.println("Virtual threads need JDK 21+, falling back to a cached thread pool.");
+        // a saved snapshot (plus the events logged after it) replaces default_items.csv and brings
+        // back vehicles, stations and tasks
+        StateEventLog events = StateEventLog.open(cfg.stateEvents, SimulationClock.getDefault());
+        boolean restoring = Files.isRegularFile(cfg.stateSnapshot) || events.getRecovery().events > 0;
+        StorageService storage = new StorageService(repo, log, !restoring);
+        TaskService tasks = new TaskService(repo, log, mode);
         DestinationService dst = new DestinationService();
+        dst.enableBuffering(256, 65_536, 50);
 
         // Wire services
         tasks.attachStorage(storage);
         tasks.attachDestination(dst);
         storage.attachTaskService(tasks);
+        tasks.enableTaskArchive(cfg.tasksArchive, cfg.metaIndex, 500);
+
+        SnapshotService snapshots = new SnapshotService(repo, storage, tasks, cfg.stateSnapshot, events);
+        if (restoring) {
+            try {
+                System.out.println(snapshots.restore());
+            } catch (IOException e) {
+                System.err.println("[SNAPSHOT] ERROR restoring " + cfg.stateSnapshot + ": " + e.getMessage() + " (starting from defaults)");
+                storage.loadDefaultItems();
+            }
+        }
+        snapshots.startRecording();
+        snapshots.save(); // the event log starts from here
+        snapshots.startPeriodic(60_000);
 
         DataExchangeSimulator exchange = new DataExchangeSimulator(cfg, log);
 
@@ -52,6 +85,13 @@ public class Main {
                 System.out.println("14) List all tasks");
                 System.out.println("15) Assign vehicle to charging station");
                 System.out.println("16) Test auto-charge");
+                System.out.println("17) Archive completed tasks");
+                System.out.println("18) Choose dispatch scheduler");
+                System.out.println("19) Charging queue status");
+                System.out.println("20) View log");
+                System.out.println("21) Search logs");
+                System.out.println("22) Delivery analytics");
+                System.out.println("23) Save state snapshot");
                 System.out.println("0) Exit");
                 System.out.print("Choose: ");
 
@@ -69,15 +109,24 @@ public class Main {
                         case "8" -> createTaskUI(sc, tasks);
                         case "9" -> updateTaskUI(sc, tasks);
                         case "10" -> simulateExchange(sc, repo, cfg, exchange);
-                        case "11" -> archiveLogs(cfg);
+                        case "11" -> archiveLogs(sc, cfg, log);
                         case "12" -> moveFileUI(sc, cfg);
                         case "13" -> deleteFileUI(sc, cfg);
                         case "14" -> listTasks(repo);
                         case "15" -> assignVehicleToStation(sc, repo);
                         case "16" -> testCharging(sc, repo);
+                        case "17" -> System.out.println("Archived " + tasks.archiveDoneTasks() + " completed task(s).");
+                        case "18" -> chooseSchedulerUI(sc, tasks);
+                        case "19" -> chargingQueueUI(sc);
+                        case "20" -> viewLogUI(sc, log);
+                        case "21" -> searchLogsUI(sc, log);
+                        case "22" -> deliveryAnalyticsUI(sc, dst);
+                        case "23" -> System.out.println("Saved " + snapshots.save() + " bytes to " + snapshots.getFile() + ".");
                         case "0" -> {
                             System.out.println("Bye.");
-                            tasks.shutdown();
+                            tasks.shutdown(); // first, so deliveries still under way stay in the last snapshot
+                            snapshots.close();
+                            dst.close();
                             return;
                         }
                         default -> System.out.println("Invalid choice.");
@@ -166,10 +215,148 @@ public class Main {
         System.out.print("Quantity: ");
         int qty = Integer.parseInt(sc.nextLine().trim());
 
+        String valid = Arrays.stream(TaskPriority.values()).map(Enum::name).collect(Collectors.joining(", "));
+        System.out.print("Priority (" + valid + "; blank = NORMAL): ");
+        String pr = sc.nextLine().trim().toUpperCase(Locale.ROOT);
+        TaskPriority priority = null;
+        if (!pr.isEmpty()) {
+            try {
+                priority = TaskPriority.valueOf(pr);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid priority '" + pr + "'. Valid values: " + valid + ". Item not created.");
+                return;
+            }
+        }
+
         storage.addItem(new StorageItem(sku, nm, qty));
+        if (priority != null) storage.setItemPriority(sku, priority);
         System.out.println("Item created successfully.");
     }
 
+    private static void chooseSchedulerUI(Scanner sc, TaskService tasks) {
+        System.out.println("Current scheduler: " + tasks.getScheduler().name());
+        System.out.println("  1) Round-robin");
+        System.out.println("  2) Battery-weighted");
+        System.out.println("  3) Priority queue");
+        System.out.print("Choose: ");
+        switch (sc.nextLine().trim()) {
+            case "1" -> tasks.setScheduler(new RoundRobinScheduler());
+            case "2" -> tasks.setScheduler(new BatteryWeightedScheduler());
+            case "3" -> tasks.setScheduler(new PriorityQueueScheduler());
+            default -> {
+                System.out.println("Invalid option.");
+                return;
+            }
+        }
+        System.out.println("Scheduler set to " + tasks.getScheduler().name() + ".");
+    }
+
+    private static void chargingQueueUI(Scanner sc) {
+        ChargingQueue queue = ChargingQueue.shared();
+        System.out.println(queue.metrics());
+        System.out.println("Queue order: " + queue.getPolicy());
+        System.out.print("Change to 1) FIFO  2) Lowest battery first  (Enter = keep): ");
+        switch (sc.nextLine().trim()) {
+            case "1" -> queue.setPolicy(ChargingQueue.Policy.FIFO);
+            case "2" -> queue.setPolicy(ChargingQueue.Policy.LOWEST_BATTERY_FIRST);
+            default -> {
+                return;
+            }
+        }
+        System.out.println("Queue order set to " + queue.getPolicy() + ".");
+    }
+
+    private static void viewLogUI(Scanner sc, LogManager log) throws IOException {
+        System.out.print("Equipment name, date (yyyy-MM-dd) or 'system': ");
+        List<Path> files = log.findByEquipmentOrDate(sc.nextLine().trim());
+        if (files.isEmpty()) {
+            System.out.println("(no logs)");
+            return;
+        }
+        for (int i = 0; i < files.size(); i++) System.out.println((i + 1) + ") " + files.get(i));
+        System.out.print("Log #: ");
+        int n;
+        try {
+            n = Integer.parseInt(sc.nextLine().trim());
+        } catch (NumberFormatException e) {
+            n = 0;
+        }
+        if (n < 1 || n > files.size()) {
+            System.out.println("Invalid option.");
+            return;
+        }
+        Path file = files.get(n - 1);
+
+        System.out.print("1) Last 50 lines  2) Page through  3) Follow: ");
+        switch (sc.nextLine().trim()) {
+            case "1" -> log.tailLog(file, 50).forEach(System.out::println);
+            case "2" -> {
+                long offset = 0;
+                while (true) {
+                    LogReader.Page page = log.readLogPage(file, offset, 16 * 1024);
+                    page.lines.forEach(System.out::println);
+                    if (page.isLast()) break;
+                    System.out.print("-- " + page.nextOffset + (page.fileSize < 0 ? "" : "/" + page.fileSize) + " " + page.unit +
+                            ", Enter = more, q = quit -- ");
+                    if (sc.nextLine().trim().equalsIgnoreCase("q")) break;
+                    offset = page.nextOffset;
+                }
+            }
+            case "3" -> {
+                log.tailLog(file, 10).forEach(System.out::println);
+                System.out.println("-- following, Enter to stop --");
+                LogReader.Follower f = log.followLog(file).start(System.out::println, 500);
+                try {
+                    sc.nextLine();
+                } finally {
+                    f.close();
+                }
+            }
+            default -> System.out.println("Invalid option.");
+        }
+    }
+
+    private static void searchLogsUI(Scanner sc, LogManager log) throws IOException {
+        LogSearch.Query q = new LogSearch.Query().limit(200);
+        System.out.print("Equipment (Enter = any): ");
+        String eq = sc.nextLine().trim();
+        if (!eq.isEmpty()) q.equipment(eq);
+        System.out.print("From date yyyy-MM-dd (Enter = any): ");
+        String from = sc.nextLine().trim();
+        if (!from.isEmpty()) q.from(LocalDate.parse(from).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        System.out.print("To date yyyy-MM-dd, inclusive (Enter = any): ");
+        String to = sc.nextLine().trim();
+        if (!to.isEmpty()) q.to(LocalDate.parse(to).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusMillis(1));
+        System.out.print("Kind 1) system 2) vehicle 3) charging (Enter = any): ");
+        switch (sc.nextLine().trim()) {
+            case "1" -> q.kind(LogSearch.Kind.SYSTEM);
+            case "2" -> q.kind(LogSearch.Kind.VEHICLE);
+            case "3" -> q.kind(LogSearch.Kind.CHARGING);
+            default -> { }
+        }
+        System.out.print("Text or /regex/ (Enter = any): ");
+        String text = sc.nextLine().trim();
+        if (text.length() > 1 && text.startsWith("/") && text.endsWith("/")) q.regex(text.substring(1, text.length() - 1));
+        else if (!text.isEmpty()) q.contains(text);
+
+        LogSearch.Result r = log.search(q);
+        r.hits.forEach(System.out::println);
+        System.out.println(r);
+    }
+
+    private static void deliveryAnalyticsUI(Scanner sc, DestinationService dst) throws IOException {
+        boolean loaded = dst.getAnalyticsScan() != null;
+        DeliveryAnalytics a = dst.analytics();
+        if (a == null) {
+            System.out.println("Delivery log is not available.");
+            return;
+        }
+        if (!loaded) System.out.println("[DESTINATION] " + dst.getAnalyticsScan());
+        System.out.print("Item for units per hour by vehicle (Enter = totals): ");
+        String item = sc.nextLine().trim();
+        a.print(item.isEmpty() ? null : item, System.out);
+    }
+
     private static void updateLoadUI(Scanner sc, StorageService storage) throws IOException {
         System.out.print("Station ID: ");
         String sid = sc.nextLine().trim();
@@ -182,7 +369,7 @@ public class Main {
         System.out.print("Vehicle ID: ");
         String vid = sc.nextLine().trim();
 
-        StorageVehicle v = repo.vehicles.get(vid);
+        StorageVehicle v = repo.getVehicle(vid);
         if (v == null) {
             ExceptionHandler.handleVehicleNotFound(vid);
             return;
@@ -197,11 +384,16 @@ public class Main {
         System.out.println("Data exchange simulated.");
     }
 
-    private static void archiveLogs(PathsConfig cfg) throws IOException {
+    private static void archiveLogs(Scanner sc, PathsConfig cfg, LogManager log) throws IOException {
         Path p = cfg.archiveRoot.resolve("logs-" +
                 LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".zip");
-        MetadataManager.archiveZip(cfg.logsRoot, p, cfg.metaIndex);
-        System.out.println("Archived: " + p);
+        System.out.print("Only files changed since the last archive? (y/N): ");
+        boolean incremental = sc.nextLine().trim().equalsIgnoreCase("y");
+        System.out.print("Delete archived logs (today's are kept)? (y/N): ");
+        boolean delete = sc.nextLine().trim().equalsIgnoreCase("y");
+        LogArchiver.Report r = new LogArchiver(cfg.metaIndex).incremental(incremental).deleteSources(delete)
+                .logs(log).archive(cfg.logsRoot, p);
+        System.out.println("Archived: " + p + " - " + r);
     }
 
     private static void moveFileUI(Scanner sc, PathsConfig cfg) throws IOException {
@@ -219,11 +411,11 @@ public class Main {
     }
 
     private static void listVehicles(Repository repo) {
-        if (repo.vehicles.isEmpty()) {
+        if (repo.vehicleCount() == 0) {
             System.out.println("(none)");
             return;
         }
-        for (StorageVehicle v : repo.vehicles.values()) {
+        for (StorageVehicle v : repo.vehicles()) {
             System.out.println(" - " + v);
             for (StorageItem it : v.getInventory().values()) {
                 System.out.println("    * " + it);
@@ -232,27 +424,31 @@ public class Main {
     }
 
     private static void listStations(Repository repo) {
-        if (repo.stations.isEmpty()) {
+        if (repo.stationCount() == 0) {
             System.out.println("(none)");
             return;
         }
-        repo.stations.values().forEach(System.out::println);
+        repo.stations().forEach(System.out::println);
     }
 
     private static void listTasks(Repository repo) {
-        if (repo.tasks.isEmpty()) {
+        if (repo.taskCount() == 0) {
             System.out.println("(none)");
             return;
         }
-        for (Task t : repo.tasks.values()) {
+        for (Task t : repo.tasks()) {
             System.out.println(" - " + t);
         }
+        TaskStore store = repo.taskStore();
+        System.out.println("PENDING=" + store.countWithStatus(TaskStatus.PENDING) +
+                ", IN_PROGRESS=" + store.countWithStatus(TaskStatus.IN_PROGRESS) +
+                ", DONE=" + store.countWithStatus(TaskStatus.DONE));
     }
 
     private static void assignVehicleToStation(Scanner sc, Repository repo) {
         System.out.print("Vehicle ID: ");
         String vid = sc.nextLine().trim();
-        StorageVehicle v = repo.vehicles.get(vid);
+        StorageVehicle v = repo.getVehicle(vid);
         if (v == null) {
             System.out.println("Not found.");
             return;
@@ -260,7 +456,7 @@ public class Main {
 
         System.out.print("Station ID: ");
         String sid = sc.nextLine().trim();
-        ChargingStation s = repo.stations.get(sid);
+        ChargingStation s = repo.getStation(sid);
         if (s == null) {
             System.out.println("Station not found.");
             return;
@@ -273,7 +469,7 @@ public class Main {
     private static void testCharging(Scanner sc, Repository repo) {
         System.out.print("Vehicle ID: ");
         String vid = sc.nextLine().trim();
-        StorageVehicle v = repo.vehicles.get(vid);
+        StorageVehicle v = repo.getVehicle(vid);
         if (v == null) {
             System.out.println("Not found.");
             return;
@@ -0,0 +1,174 @@
+package med.supply.system.model;
+
+import med.supply.system.util.SimulationClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drives charging and charge-queue waits for every vehicle from one scheduler thread.
+ * <p>
+ * Instead of a sleeping thread per charging vehicle (and another per queued vehicle), vehicles
+ * register here with the time their next step is due. A single tick walks the registered vehicles,
+ * runs every step that is due and prints one summary line per tick, so the number of threads stays
+ * the same whatever the fleet size. Each vehicle still advances on its own 20 s rhythm; queued
+ * vehicles are only looked at here when their queue timeout runs out.
+ * <p>
+ * Ticks are scheduled on a {@link SimulationClock}; there is one engine per clock, so a vehicle
+ * on a discrete-event clock charges in virtual time. Services sharing a clock {@link #acquire} its
+ * engine and {@link #release} it when they shut down; the last release stops the engine and drops
+ * it, so a later user of the clock gets a fresh one.
+ */
+public class ChargingEngine {
+
+    public static final long CHARGE_STEP_MS = 20_000;   // +5% every 20 seconds
+    public static final long TICK_MS = 1_000;
+
+    private static final Map<SimulationClock, ChargingEngine> ENGINES = new ConcurrentHashMap<>();
+
+    /** Engine on the default clock. */
+    public static ChargingEngine shared() {
+        return of(SimulationClock.getDefault());
+    }
+
+    public static ChargingEngine of(SimulationClock clock) {
+        return ENGINES.computeIfAbsent(clock, c -> new ChargingEngine(c, TICK_MS));
+    }
+
+    /** Engine on {@code clock}, kept running until every acquirer has called {@link #release}. */
+    public static ChargingEngine acquire(SimulationClock clock) {
+        return ENGINES.compute(clock, (c, e) -> {
+            if (e == null) e = new ChargingEngine(c, TICK_MS);
+            e.users++;
+            return e;
+        });
+    }
+
+    private static final class Waiter {
+        final long since;
+        final long deadline;
+
+        Waiter(long since, long timeoutMs) {
+            this.since = since;
+            this.deadline = since + timeoutMs;
+        }
+    }
+
+    private final SimulationClock clock;
+    private final long tickMs;
+    private final Map<StorageVehicle, Long> charging = new ConcurrentHashMap<>(); // vehicle -> next step due
+    private final Map<StorageVehicle, Waiter> waiting = new ConcurrentHashMap<>();
+    private SimulationClock.Scheduled ticking; // started on first use
+    private int users; // acquire() calls not released yet; changed only inside ENGINES.compute
+
+    public ChargingEngine(SimulationClock clock, long tickMs) {
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
+        if (tickMs <= 0) throw new IllegalArgumentException("tickMs must be positive");
+        this.clock = clock;
+        this.tickMs = tickMs;
+    }
+
+    // ------------------------------------------------------------
+    // Registration (called by StorageVehicle)
+    // ------------------------------------------------------------
+    void startCharging(StorageVehicle v) {
+        charging.put(v, clock.currentTimeMillis() + CHARGE_STEP_MS);
+        ensureStarted();
+    }
+
+    void stopCharging(StorageVehicle v) {
+        charging.remove(v);
+    }
+
+    /** Time out a queued vehicle; stations themselves are handed over by the {@link ChargingQueue}. */
+    void waitForStation(StorageVehicle v, long timeoutMs) {
+        waiting.putIfAbsent(v, new Waiter(clock.currentTimeMillis(), timeoutMs));
+        ensureStarted();
+    }
+
+    void stopWaiting(StorageVehicle v) {
+        waiting.remove(v);
+    }
+
+    public int chargingCount() {
+        return charging.size();
+    }
+
+    public int waitingCount() {
+        return waiting.size();
+    }
+
+    // ------------------------------------------------------------
+    // Tick
+    // ------------------------------------------------------------
+    private synchronized void ensureStarted() {
+        if (ticking != null) return;
+        ticking = clock.scheduleAtFixedRate(this::tick, tickMs, tickMs);
+    }
+
+    void tick() {
+        try {
+            long now = clock.currentTimeMillis();
+            List<String> progress = new ArrayList<>();
+
+            for (Map.Entry<StorageVehicle, Long> e : charging.entrySet()) {
+                if (e.getValue() > now) continue;
+                StorageVehicle v = e.getKey();
+                if (v.chargeStep()) {
+                    charging.replace(v, e.getValue(), e.getValue() + CHARGE_STEP_MS);
+                    progress.add(v.getName() + "=" + v.getBatteryLevelPct() + "%");
+                } else {
+                    charging.remove(v);
+                }
+            }
+
+            for (Map.Entry<StorageVehicle, Waiter> e : waiting.entrySet()) {
+                Waiter w = e.getValue();
+                if (w.deadline > now) continue;
+                if (waiting.remove(e.getKey(), w)) {
+                    e.getKey().chargeQueueTimedOut(now - w.since);
+                }
+            }
+
+            if (!progress.isEmpty()) {
+                System.out.println("🔌 Charging: " + String.join(", ", progress));
+            }
+            if (charging.isEmpty() && waiting.isEmpty()) stopIfIdle();
+        } catch (RuntimeException e) {
+            // never let one bad vehicle kill the periodic task
+            System.err.println("[CHARGING ENGINE] " + e.getMessage());
+        }
+    }
+
+    // nothing to do: stop ticking until the next registration (keeps virtual-time runs cheap)
+    private synchronized void stopIfIdle() {
+        if (ticking != null && charging.isEmpty() && waiting.isEmpty()) {
+            ticking.cancel();
+            ticking = null;
+        }
+    }
+
+    /** Give back an {@link #acquire}d engine; the last release shuts it down. */
+    public void release() {
+        ENGINES.computeIfPresent(clock, (c, e) -> {
+            if (e != this || --users > 0) return e;
+            stopTicking();
+            return null;
+        });
+    }
+
+    /** Stop ticking and drop this engine, whoever else still uses it. */
+    public void shutdown() {
+        stopTicking();
+        ENGINES.remove(clock, this);
+    }
+
+    private synchronized void stopTicking() {
+        if (ticking != null) {
+            ticking.cancel();
+            ticking = null;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package med.supply.system.model;
+
+import med.supply.system.util.SimulationClock;
+
+import java.util.*;
+
+/**
+ * Queue of vehicles waiting for a charging station.
+ * <p>
+ * A vehicle asks for a station with {@link #acquire(StorageVehicle)}. If one is free and nobody is
+ * waiting it gets it at once; otherwise it takes a ticket. When a station is released it is handed
+ * straight to the next ticket instead of going back to FREE, so there is no gap between one
+ * vehicle leaving and the next one plugging in, and a newcomer can never jump the queue.
+ * Tickets are served in arrival order ({@link Policy#FIFO}) or emptiest battery first
+ * ({@link Policy#LOWEST_BATTERY_FIRST}, arrival order among equal levels).
+ */
+public class ChargingQueue {
+
+    public enum Policy { FIFO, LOWEST_BATTERY_FIRST }
+
+    private static final ChargingQueue SHARED = new ChargingQueue(ChargingStation.DEFAULT_STATIONS, Policy.FIFO);
+
+    /** Queue in front of {@link ChargingStation#DEFAULT_STATIONS}, used by every vehicle. */
+    public static ChargingQueue shared() {
+        return SHARED;
+    }
+
+    private static final class Ticket {
+        final StorageVehicle vehicle;
+        final long seq;
+        final int battery;       // level when the vehicle joined the queue
+        final long enqueuedAt;
+
+        Ticket(StorageVehicle vehicle, long seq, int battery, long enqueuedAt) {
+            this.vehicle = vehicle;
+            this.seq = seq;
+            this.battery = battery;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final List<ChargingStation> stations;
+    private final SimulationClock clock; // null = follow the default clock
+    private long createdAt = -1;          // first acquire; utilization is measured from here
+    private Policy policy;
+    private PriorityQueue<Ticket> waiters;
+    private final Map<StorageVehicle, Ticket> tickets = new HashMap<>();
+    private long nextSeq;
+
+    // metrics, guarded by this
+    private long immediate;
+    private long handOffs;
+    private long timeouts;
+    private long totalWaitMs;
+    private long maxWaitMs;
+    private final Map<ChargingStation, Long> busySince = new HashMap<>();
+    private final Map<ChargingStation, Long> busyMs = new HashMap<>();
+
+    /** @param stations live list of stations; stations added later are picked up on the next acquire */
+    public ChargingQueue(List<ChargingStation> stations, Policy policy) {
+        this(stations, policy, null);
+    }
+
+    /** @param clock time source for wait and utilization metrics; null follows the default clock */
+    public ChargingQueue(List<ChargingStation> stations, Policy policy, SimulationClock clock) {
+        if (stations == null) throw new IllegalArgumentException("stations must not be null");
+        this.stations = stations;
+        this.clock = clock;
+        this.policy = policy == null ? Policy.FIFO : policy;
+        this.waiters = new PriorityQueue<>(comparator(this.policy));
+    }
+
+    private long now() {
+        return (clock != null ? clock : SimulationClock.getDefault()).currentTimeMillis();
+    }
+
+    public synchronized Policy getPolicy() {
+        return policy;
+    }
+
+    /** Change the ordering; vehicles already waiting are re-sorted under the new policy. */
+    public synchronized void setPolicy(Policy policy) {
+        if (policy == null) throw new IllegalArgumentException("policy must not be null");
+        if (policy == this.policy) return;
+        PriorityQueue<Ticket> resorted = new PriorityQueue<>(comparator(policy));
+        resorted.addAll(waiters);
+        this.waiters = resorted;
+        this.policy = policy;
+    }
+
+    private static Comparator<Ticket> comparator(Policy policy) {
+        Comparator<Ticket> bySeq = Comparator.comparingLong(t -> t.seq);
+        return policy == Policy.LOWEST_BATTERY_FIRST
+                ? Comparator.<Ticket>comparingInt(t -> t.battery).thenComparing(bySeq)
+                : bySeq;
+    }
+
+    // ------------------------------------------------------------
+    // Vehicles
+    // ------------------------------------------------------------
+    /**
+     * Claim a free station, or join the queue.
+     * @return the claimed station, or null if the vehicle is now waiting; it will be handed a
+     *         station through {@link StorageVehicle#stationGranted} unless it {@link #leave}s first
+     */
+    public synchronized ChargingStation acquire(StorageVehicle v) {
+        if (v == null) throw new IllegalArgumentException("vehicle must not be null");
+        if (tickets.containsKey(v)) return null; // already waiting
+        if (createdAt < 0) createdAt = now();
+
+        if (waiters.isEmpty()) {
+            for (ChargingStation s : stations) {
+                if (s.tryClaim(v.getId())) {
+                    s.bindQueue(this);
+                    markBusy(s);
+                    immediate++;
+                    return s;
+                }
+            }
+        }
+        Ticket t = new Ticket(v, nextSeq++, v.getBatteryLevelPct(), now());
+        tickets.put(v, t);
+        waiters.add(t);
+        return null;
+    }
+
+    /**
+     * Give up waiting (queue timeout).
+     * @return false if the vehicle was not waiting, e.g. a station has just been handed to it
+     */
+    public synchronized boolean leave(StorageVehicle v) {
+        Ticket t = tickets.remove(v);
+        if (t == null) return false;
+        waiters.remove(t);
+        timeouts++;
+        return true;
+    }
+
+    public synchronized boolean isWaiting(StorageVehicle v) {
+        return tickets.containsKey(v);
+    }
+
+    public synchronized int waitingCount() {
+        return waiters.size();
+    }
+
+    /** 1-based place in the queue, or 0 if the vehicle is not waiting. */
+    public synchronized int positionOf(StorageVehicle v) {
+        Ticket mine = tickets.get(v);
+        if (mine == null) return 0;
+        Comparator<? super Ticket> c = waiters.comparator();
+        int ahead = 0;
+        for (Ticket t : waiters) {
+            if (c.compare(t, mine) < 0) ahead++;
+        }
+        return ahead + 1;
+    }
+
+    // ------------------------------------------------------------
+    // Stations
+    // ------------------------------------------------------------
+    /**
+     * Called by {@link ChargingStation#release(String)}: hand the station to the next waiting
+     * vehicle, or free it if nobody is waiting. The vehicle is notified outside the queue lock.
+     * @return false if {@code ownerId} does not hold the station
+     */
+    boolean release(ChargingStation station, String ownerId) {
+        Ticket next;
+        long waited;
+        synchronized (this) {
+            if (!station.isOwnedBy(ownerId)) return false;
+            next = waiters.poll();
+            if (next == null) {
+                station.transfer(ownerId, null);
+                markIdle(station);
+                return true;
+            }
+            tickets.remove(next.vehicle);
+            station.transfer(ownerId, next.vehicle.getId());
+            waited = now() - next.enqueuedAt;
+            handOffs++;
+            totalWaitMs += waited;
+            maxWaitMs = Math.max(maxWaitMs, waited);
+        }
+        next.vehicle.stationGranted(station, waited);
+        return true;
+    }
+
+    private void markBusy(ChargingStation s) {
+        busySince.putIfAbsent(s, now());
+    }
+
+    private void markIdle(ChargingStation s) {
+        Long since = busySince.remove(s);
+        if (since != null) busyMs.merge(s, now() - since, Long::sum);
+    }
+
+    // ------------------------------------------------------------
+    // Metrics
+    // ------------------------------------------------------------
+    /** Point-in-time view of the queue counters. */
+    public static final class Metrics {
+        public final int waiting;
+        public final long immediate;      // served without waiting
+        public final long handOffs;       // served by a station hand-off after waiting
+        public final long timeouts;       // left the queue unserved
+        public final long avgWaitMs;      // over hand-offs
+        public final long maxWaitMs;
+        public final Map<String, Double> utilization; // station name -> busy fraction 0..1
+
+        Metrics(int waiting, long immediate, long handOffs, long timeouts, long avgWaitMs,
+                long maxWaitMs, Map<String, Double> utilization) {
+            this.waiting = waiting;
+            this.immediate = immediate;
+            this.handOffs = handOffs;
+            this.timeouts = timeouts;
+            this.avgWaitMs = avgWaitMs;
+            this.maxWaitMs = maxWaitMs;
+            this.utilization = utilization;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Waiting now: ").append(waiting)
+                    .append(" | served at once: ").append(immediate)
+                    .append(" | after waiting: ").append(handOffs)
+                    .append(" | timed out: ").append(timeouts)
+                    .append("\nWait time: avg ").append(avgWaitMs / 1000.0).append(" s, max ")
+                    .append(maxWaitMs / 1000.0).append(" s");
+            utilization.forEach((name, u) ->
+                    sb.append("\n  ").append(name).append(": ")
+                            .append(String.format(Locale.ROOT, "%.1f", u * 100)).append("% busy"));
+            return sb.toString();
+        }
+    }
+
+    public synchronized Metrics metrics() {
+        long now = now();
+        long elapsed = createdAt < 0 ? 1 : Math.max(1, now - createdAt);
+        Map<String, Double> utilization = new LinkedHashMap<>();
+        for (ChargingStation s : stations) {
+            long busy = busyMs.getOrDefault(s, 0L);
+            Long since = busySince.get(s);
+            if (since != null) busy += now - since;
+            utilization.put(s.getName(), Math.min(1.0, busy / (double) elapsed));
+        }
+        return new Metrics(waiters.size(), immediate, handOffs, timeouts,
+                handOffs == 0 ? 0 : totalWaitMs / handOffs, maxWaitMs, utilization);
+    }
+}
@@ -2,16 +2,22 @@ package med.supply.system.model;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents a charging station used by storage vehicles.
- * Tracks whether the station is free or currently in use.
+ * Tracks which vehicle (if any) holds the station. Claims are a single compare-and-set on the
+ * owner, so two vehicles can never hold the same station at once.
  */
 public class ChargingStation {
 
     private final String id;
     private final String name;
-    private boolean inUse; // true = vehicle is charging, false = free
+    /** Owner id used when an operator marks the station busy by hand. */
+    public static final String OPERATOR = "<operator>";
+
+    private final AtomicReference<String> owner = new AtomicReference<>(); // null = free
+    private volatile ChargingQueue queue; // set when claimed through a queue
 
 
 
@@ -30,22 +36,68 @@ public class ChargingStation {
 
         this.id = id.trim();
         this.name = name.trim();
-        this.inUse = false;
     }
 
     public String getId() { return id; }
     public String getName() { return name; }
-    public boolean isInUse() { return inUse; }
+    public boolean isInUse() { return owner.get() != null; }
+
+    /** Id of the vehicle holding the station, {@link #OPERATOR}, or null if free. */
+    public String getOwner() { return owner.get(); }
+
+    public boolean isOwnedBy(String vehicleId) {
+        return vehicleId != null && vehicleId.equals(owner.get());
+    }
+
+    /**
+     * Take the station if it is free.
+     * @return true if {@code vehicleId} now owns the station
+     */
+    public boolean tryClaim(String vehicleId) {
+        if (vehicleId == null || vehicleId.isBlank())
+            throw new IllegalArgumentException("vehicleId must not be blank");
+        return owner.compareAndSet(null, vehicleId);
+    }
+
+    /**
+     * Give the station up. A station claimed through a {@link ChargingQueue} goes straight to the
+     * next waiting vehicle instead and stays in use.
+     * @return false if {@code vehicleId} did not own the station
+     */
+    public boolean release(String vehicleId) {
+        if (vehicleId == null) return false;
+        ChargingQueue q = queue;
+        if (q != null) return q.release(this, vehicleId);
+        return owner.compareAndSet(vehicleId, null);
+    }
+
+    /** Operator override: mark the station busy if it is free. */
+    public boolean occupy() {
+        return tryClaim(OPERATOR);
+    }
+
+    /**
+     * Operator override: undo {@link #occupy()}. A station held by a vehicle is left alone; only the
+     * vehicle gives it up, when it finishes charging.
+     * @return false if the operator did not hold the station
+     */
+    public boolean release() {
+        return release(OPERATOR);
+    }
+
+    /** Move ownership from {@code from} to {@code to}; used for queue hand-offs. */
+    boolean transfer(String from, String to) {
+        return owner.compareAndSet(from, to);
+    }
 
-    public synchronized void occupy() { this.inUse = true; }
-    public synchronized void release() { this.inUse = false; }
+    void bindQueue(ChargingQueue q) { this.queue = q; }
 
     @Override
     public String toString() {
         return "ChargingStation{" +
                 "id='" + id + '\'' +
                 ", name='" + name + '\'' +
-                ", status=" + (inUse ? "IN_USE" : "FREE") +
+                ", status=" + (isInUse() ? "IN_USE by " + owner.get() : "FREE") +
                 "}";
     }
 
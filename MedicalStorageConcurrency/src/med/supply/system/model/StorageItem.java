@@ -8,7 +8,7 @@ package med.supply.system.model;
 public class StorageItem {
     private final String sku;
     private final String name;
-    private int quantity;
+    private volatile int quantity;
 
     public StorageItem(String sku, String name, int quantity) {
         if (sku != null && !sku.isBlank()) {
@@ -1,29 +1,38 @@
 package med.supply.system.model;
 
+import med.supply.system.util.BinaryLogFormat;
 import med.supply.system.util.LogManager;
-import java.util.HashMap;
+import med.supply.system.util.SimulationClock;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents an automated storage vehicle that can store and transfer items.
  * Includes automatic charging behavior with multiple default charging stations.
  */
-public class StorageVehicle implements Runnable {
+public class StorageVehicle {
     private final String id;
     private final String name;
-    private int batteryLevelPct = 20;
-    private ChargingStation assignedStation;
-    private final Map<String, StorageItem> inventory = new HashMap<>();
-    private boolean isCharging = false;
+    private volatile int batteryLevelPct = 20;
+    private volatile ChargingStation assignedStation;
+    // read by delivery/dispatch threads while the owner mutates it
+    private final Map<String, StorageItem> inventory = new ConcurrentHashMap<>();
+    private volatile boolean isCharging = false;
     private transient LogManager logger;
-    private Thread chargingThread;
-    private boolean waitingForCharge = false;
-    private boolean leftQueue = false;
+    private volatile boolean waitingForCharge = false;
+    private volatile boolean leftQueue = false;
+    private volatile boolean onDelivery = false;
+    private transient volatile VehicleStateListener stateListener;
+    private transient volatile VehicleEventListener eventListener;
+    private transient volatile SimulationClock clock; // null = follow the default clock
 
 
     // Maximum capacity of items a vehicle can carry
     private static final int MAX_CAPACITY = 50;  // Maximum number of items a vehicle can hold
 
+    // How long a vehicle waits for a free station before leaving the queue
+    private static final long QUEUE_TIMEOUT_MS = 40_000;
+
     public StorageVehicle(String id, String name) {
         if (id == null || id.isBlank())
             throw new IllegalArgumentException("id must not be blank");
@@ -37,6 +46,49 @@ public class StorageVehicle implements Runnable {
         this.logger = logManager;
     }
 
+    /** Charge and time out of the charging queue on {@code clock} instead of the default clock. */
+    public void attachClock(SimulationClock clock) {
+        this.clock = clock;
+    }
+
+    public SimulationClock getClock() {
+        SimulationClock c = clock;
+        return c != null ? c : SimulationClock.getDefault();
+    }
+
+    private ChargingEngine engine() {
+        return ChargingEngine.of(getClock());
+    }
+
+    public void attachStateListener(VehicleStateListener listener) {
+        this.stateListener = listener;
+    }
+
+    private void fireStateChanged() {
+        VehicleStateListener l = stateListener;
+        if (l != null) l.onStateChanged(this);
+    }
+
+    /** Report battery, charging and inventory changes to {@code listener} (null = nobody). */
+    public void attachEventListener(VehicleEventListener listener) {
+        this.eventListener = listener;
+    }
+
+    private void fireBatteryChanged() {
+        VehicleEventListener l = eventListener;
+        if (l != null) l.onBatteryChanged(this);
+    }
+
+    private void fireChargingChanged() {
+        VehicleEventListener l = eventListener;
+        if (l != null) l.onChargingChanged(this);
+    }
+
+    private void fireInventoryChanged(String sku) {
+        VehicleEventListener l = eventListener;
+        if (l != null) l.onInventoryChanged(this, sku);
+    }
+
     public String getId() { return id; }
     public String getName() { return name; }
     public int getBatteryLevelPct() { return batteryLevelPct; }
@@ -44,6 +96,17 @@ public class StorageVehicle implements Runnable {
     public ChargingStation getAssignedStation() { return assignedStation; }
     public boolean isWaitingForCharge() { return waitingForCharge; }
     public boolean hasLeftQueue() { return leftQueue; }
+    public boolean isOnDelivery() { return onDelivery; }
+
+    /** Ready for a new delivery: empty, not charging or queued for charging, not already dispatched. */
+    public boolean isIdle() {
+        return inventory.isEmpty() && !isCharging && !waitingForCharge && !leftQueue && !onDelivery;
+    }
+
+    public void setOnDelivery(boolean onDelivery) {
+        this.onDelivery = onDelivery;
+        fireStateChanged();
+    }
 
     public Map<String, StorageItem> getInventory() {
         return inventory;
@@ -52,13 +115,14 @@ public class StorageVehicle implements Runnable {
     // --------------------------------------------
     // Battery & Charging Logic
     // --------------------------------------------
-    public void setBatteryLevelPct(int pct) {
+    public synchronized void setBatteryLevelPct(int pct) {
         if (pct < 0 || pct > 100)
             throw new IllegalArgumentException("Battery level must be 0–100");
 
         this.batteryLevelPct = pct;
+        fireBatteryChanged();
 
-        if (pct <= 14 && !isCharging) {
+        if (pct <= 14 && !isCharging && !waitingForCharge) {
             goCharge();
         } else if (isCharging && pct >= 95) {
             finishCharging();
@@ -66,11 +130,17 @@ public class StorageVehicle implements Runnable {
     }
 
     private void goCharge() {
-        // find first available station
-        ChargingStation freeStation = findFreeStation();
+        // first free station, unless others are already queued
+        ChargingStation freeStation = ChargingQueue.shared().acquire(this);
         if (freeStation == null) {
             System.out.println("⏳ All charging stations are currently in use. " + name + " will wait...");
-            new Thread(this::waitForFreeStation).start();
+            waitingForCharge = true;   // mark waiting
+            leftQueue = false;
+            fireStateChanged();
+            fireChargingChanged();
+            System.out.println(" " + name + " entered queue at position " +
+                    ChargingQueue.shared().positionOf(this) + ", waiting for a free charging station...");
+            engine().waitForStation(this, QUEUE_TIMEOUT_MS);
             return;
         }
 
@@ -78,105 +148,92 @@ public class StorageVehicle implements Runnable {
     }
 
     private void startCharging(ChargingStation station) {
-        this.assignedStation = station;
-        station.occupy();
+        this.assignedStation = station; // already claimed for this vehicle by the queue
         isCharging = true;
+        fireStateChanged();
+        fireChargingChanged();
 
-        String msg = "⚠️ Battery low (" + batteryLevelPct + "%). " + name +
-                " going to " + station.getName() + " for charging...";
-        System.out.println(msg);
-        log(msg);
-
-        chargingThread = new Thread(this);
-        chargingThread.start();
-    }
-
-    private void waitForFreeStation() {
-        long startWait = System.currentTimeMillis();
-        waitingForCharge = true;   // mark waiting
-        leftQueue = false;
-
-        System.out.println(" " + name + " entered queue, waiting for a free charging station...");
-        try {
-            while (true) {
-                Thread.sleep(5000);
-                long waited = System.currentTimeMillis() - startWait;
-
-                // 15-minute timeout
-                if (waited > 40_000) {
-                    leftQueue = true;
-                    waitingForCharge = false;
-                    System.out.println("🚫 " + name + " waited more than 15 minutes (" +
-                            (waited / 1000 / 60) + " min) and left the queue.");
-                    log(name + " left queue after waiting " + (waited / 1000 / 60) + " minutes (timeout).");
-                    return;
-                }
-
-                ChargingStation freeStation = findFreeStation();
-                if (freeStation != null) {
-                    waitingForCharge = false;
-                    System.out.println(" " + name + " found free " + freeStation.getName() +
-                            " after waiting " + (waited / 1000) + " sec and will start charging.");
-                    log(name + " started charging after waiting " + (waited / 1000) + " seconds.");
-                    startCharging(freeStation);
-                    break;
-                }
-            }
-        } catch (InterruptedException e) {
-            System.err.println(" " + name + " interrupted while waiting for a free charging station.");
-        }
-    }
+        BinaryLogFormat.Event event = BinaryLogFormat.Event.batteryLow(batteryLevelPct, station.getName());
+        System.out.println(event.message(name));
+        log(event);
 
+        engine().startCharging(this);
+    }
 
+    /** Called by the {@link ChargingQueue} when a released station is handed to this vehicle. */
+    synchronized void stationGranted(ChargingStation station, long waitedMs) {
+        waitingForCharge = false;
+        engine().stopWaiting(this);
+        System.out.println(" " + name + " was handed " + station.getName() +
+                " after waiting " + (waitedMs / 1000) + " sec and will start charging.");
+        log("{} started charging after waiting {} seconds.", name, waitedMs / 1000);
+        startCharging(station);
+    }
 
-    private ChargingStation findFreeStation() {
-        for (ChargingStation s : ChargingStation.DEFAULT_STATIONS) {
-            if (!s.isInUse()) {
-                return s;
-            }
-        }
-        return null;
+    /** Called by the {@link ChargingEngine} once the queue timeout has passed. */
+    synchronized void chargeQueueTimedOut(long waitedMs) {
+        if (!waitingForCharge) return;
+        if (!ChargingQueue.shared().leave(this)) return; // a station is being handed over right now
+
+        leftQueue = true;
+        waitingForCharge = false;
+        fireStateChanged();
+        fireChargingChanged();
+        System.out.println("🚫 " + name + " waited more than " + (QUEUE_TIMEOUT_MS / 1000) + " seconds (" +
+                (waitedMs / 1000 / 60) + " min) and left the queue.");
+        log("{} left queue after waiting {} minutes (timeout).", name, waitedMs / 1000 / 60);
     }
 
     private void finishCharging() {
         isCharging = false;
+        engine().stopCharging(this);
         if (assignedStation != null) {
-            assignedStation.release();
-            System.out.println(" " + assignedStation.getName() + " is now FREE.");
+            assignedStation.release(id); // hands it to the next queued vehicle, if any
+            if (!assignedStation.isInUse())
+                System.out.println(" " + assignedStation.getName() + " is now FREE.");
         }
-        String msg = "🔋 " + name + " fully charged and ready to resume tasks.";
-        System.out.println(msg);
-        log(msg);
+        BinaryLogFormat.Event event = BinaryLogFormat.Event.fullyCharged();
+        System.out.println(event.message(name));
+        log(event);
         assignedStation = null;
+        fireStateChanged();
+        fireChargingChanged();
     }
 
-    @Override
-    public void run() {
-        try {
-            while (isCharging && batteryLevelPct < 100) {
-                Thread.sleep(20000); // every 20 seconds increase 5%
-                if (!isCharging) break;
-
-                batteryLevelPct = Math.min(100, batteryLevelPct + 5);
-                String msg = "🔌 " + name + " charging at " + assignedStation.getName() +
-                        "... Battery now " + batteryLevelPct + "%";
-                System.out.println(msg);
-                log(msg);
-
-                if (batteryLevelPct >= 95) {
-                    finishCharging();
-                    break;
-                }
+    /**
+     * One 5% charging step, run by the {@link ChargingEngine} every 20 seconds.
+     * Console output is batched by the engine; the per-vehicle log still gets every step.
+     * @return true while the vehicle keeps charging
+     */
+    synchronized boolean chargeStep() {
+        if (!isCharging || batteryLevelPct >= 100) return false;
+
+        batteryLevelPct = Math.min(100, batteryLevelPct + 5);
+        fireBatteryChanged();
+        if (logger != null) log(BinaryLogFormat.Event.chargingStep(assignedStation.getName(), batteryLevelPct));
+
+        if (batteryLevelPct >= 95) {
+            finishCharging();
+            return false;
+        }
+        return true;
+    }
+
+    // formatted by the logger, and only if there is one
+    private void log(String template, Object... args) {
+        if (logger != null) {
+            try {
+                logger.logVehicle(name, template, args);
+            } catch (Exception e) {
+                System.err.println("[LOG ERROR] " + e.getMessage());
             }
-        } catch (InterruptedException e) {
-            System.err.println("Charging interrupted for " + name);
         }
     }
 
-    private void log(String msg) {
+    private void log(BinaryLogFormat.Event event) {
         if (logger != null) {
             try {
-                logger.logVehicle(name, msg);
+                logger.logVehicle(name, event);
             } catch (Exception e) {
                 System.err.println("[LOG ERROR] " + e.getMessage());
             }
@@ -196,20 +253,57 @@ public class StorageVehicle implements Runnable {
                 a.setQuantity(a.getQuantity() + b.getQuantity());
                 return a;
             });
+            fireStateChanged();
+            fireInventoryChanged(item.getSku());
         } else {
             System.out.println("⚠️ " + name + " has no capacity to add more items.");
         }
     }
 
-    public void setAssignedStation(ChargingStation station) {
-        this.assignedStation = station;
-        if (isCharging && station != null) {
-            // If already charging, occupy now (rare manual switch case)
-            station.occupy();
+    public StorageItem removeItem(String sku) {
+        StorageItem removed = inventory.remove(sku);
+        if (removed != null) {
+            fireStateChanged();
+            fireInventoryChanged(sku);
+        }
+        return removed;
+    }
+
+    /**
+     * Put back the state saved in a snapshot (inventory is restored with {@link #addItem}). A vehicle
+     * that was charging or queued for a station asks for one again instead of taking back the one it
+     * had, so a restore can never give one station to two vehicles.
+     */
+    public synchronized void restoreState(int batteryPct, ChargingStation station, boolean needsCharge,
+                                          boolean leftQueue, boolean onDelivery) {
+        if (batteryPct < 0 || batteryPct > 100)
+            throw new IllegalArgumentException("Battery level must be 0–100");
+        this.batteryLevelPct = batteryPct;
+        this.assignedStation = needsCharge ? null : station;
+        this.isCharging = false;
+        this.waitingForCharge = false;
+        this.leftQueue = leftQueue;
+        this.onDelivery = onDelivery;
+        if (needsCharge) goCharge();
+        fireStateChanged();
+    }
+
+    public synchronized void setAssignedStation(ChargingStation station) {
+        ChargingStation previous = this.assignedStation;
+        if (isCharging && station != null && station != previous) {
+            // If already charging, move over now (rare manual switch case)
+            if (!station.tryClaim(id)) {
+                System.out.println("⚠️ " + station.getName() + " is in use by " + station.getOwner() +
+                        "; " + name + " stays at " + (previous != null ? previous.getName() : "no station") + ".");
+                return;
+            }
+            if (previous != null) previous.release(id);
         }
+        this.assignedStation = station;
         System.out.println("🚗 " + name + " assigned to " +
                 (station != null ? station.getName() : "no station") +
                 " (will use it when charging is needed).");
+        fireChargingChanged();
     }
 
     // --------------------------------------------
@@ -4,8 +4,9 @@ package med.supply.system.model;
 public class Task {
     public final String id;
     public final String description;
-    public String assigneeVehicleId; // nullable
-    public TaskStatus status = TaskStatus.PENDING;
+    public volatile String assigneeVehicleId; // nullable
+    public volatile TaskStatus status = TaskStatus.PENDING;
+    public volatile TaskPriority priority = TaskPriority.NORMAL;
 
     public Task(String id, String description, String assigneeVehicleId) {
         this.id = id;
@@ -13,6 +14,11 @@ public class Task {
         this.assigneeVehicleId = assigneeVehicleId;
     }
 
+    public Task(String id, String description, String assigneeVehicleId, TaskPriority priority) {
+        this(id, description, assigneeVehicleId);
+        this.priority = priority == null ? TaskPriority.NORMAL : priority;
+    }
+
     @Override
     public String toString() {
         return "Task{" +
@@ -20,6 +26,7 @@ public class Task {
                 ", description='" + description + '\'' +
                 ", assigneeVehicleId='" + assigneeVehicleId + '\'' +
                 ", status=" + status +
+                ", priority=" + priority +
                 '}';
     }
     public void setAssigneeVehicleId(String vehicleId) {
@@ -0,0 +1,5 @@
+package med.supply.system.model;
+
+public enum TaskPriority {
+    LOW, NORMAL, HIGH, URGENT
+}
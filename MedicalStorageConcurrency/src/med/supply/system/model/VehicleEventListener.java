@@ -0,0 +1,16 @@
+package med.supply.system.model;
+
+/**
+ * Notified by {@link StorageVehicle} after its battery level, charging state or inventory
+ * changed. Battery and charging changes are reported while the vehicle is locked, so the changes
+ * of one vehicle arrive in the order they happened.
+ */
+public interface VehicleEventListener {
+    void onBatteryChanged(StorageVehicle vehicle);
+
+    /** Charging, waiting for a station, left the queue or the assigned station changed. */
+    void onChargingChanged(StorageVehicle vehicle);
+
+    /** The quantity of {@code sku} the vehicle holds changed (it may be gone now). */
+    void onInventoryChanged(StorageVehicle vehicle, String sku);
+}
@@ -0,0 +1,9 @@
+package med.supply.system.model;
+
+/**
+ * Notified by {@link StorageVehicle} whenever a state that affects dispatching changes
+ * (inventory, charging, charge queue, delivery).
+ */
+public interface VehicleStateListener {
+    void onStateChanged(StorageVehicle vehicle);
+}
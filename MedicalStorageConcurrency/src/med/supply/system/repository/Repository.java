@@ -1,15 +1,137 @@
 package med.supply.system.repository;
 
 import med.supply.system.model.*;
-import java.util.LinkedHashMap;
-import java.util.HashMap;
-import java.util.Map;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe in-memory store for vehicles, charging stations and tasks.
+ * Vehicles and stations live in concurrent hash maps (per-bin locking, so writers on different
+ * keys do not contend). Tasks live in a {@link TaskStore}, which keeps insertion order like the
+ * LinkedHashMap this class used to expose and indexes tasks by status and assignee.
+ */
 public class Repository {
-    public final Map<String, StorageVehicle> vehicles = new HashMap<>();
-    public final Map<String, ChargingStation> stations = new HashMap<>();
-    public final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final ConcurrentMap<String, StorageVehicle> vehicles = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ChargingStation> stations = new ConcurrentHashMap<>();
+
+    private final TaskStore tasks = new TaskStore();
+
+    // ------------------------------------------------------------
+    // Vehicles
+    // ------------------------------------------------------------
+    public void putVehicle(StorageVehicle v) {
+        vehicles.put(v.getId(), v);
+    }
+
+    /** @return the vehicle already stored under the same id, or null if {@code v} was added */
+    public StorageVehicle putVehicleIfAbsent(StorageVehicle v) {
+        return vehicles.putIfAbsent(v.getId(), v);
+    }
+
+    public StorageVehicle getVehicle(String id) {
+        return id == null ? null : vehicles.get(id);
+    }
+
+    public boolean hasVehicle(String id) {
+        return id != null && vehicles.containsKey(id);
+    }
+
+    public StorageVehicle removeVehicle(String id) {
+        return vehicles.remove(id);
+    }
+
+    /** Atomically recompute the vehicle stored under {@code id}; returning null removes it. */
+    public StorageVehicle computeVehicle(String id,
+                                        BiFunction<String, StorageVehicle, StorageVehicle> fn) {
+        return vehicles.compute(id, fn);
+    }
+
+    /** Live, read-only view; iteration is weakly consistent and never throws CME. */
+    public Collection<StorageVehicle> vehicles() {
+        return Collections.unmodifiableCollection(vehicles.values());
+    }
+
+    public int vehicleCount() {
+        return vehicles.size();
+    }
+
+    // ------------------------------------------------------------
+    // Charging stations
+    // ------------------------------------------------------------
+    public void putStation(ChargingStation s) {
+        stations.put(s.getId(), s);
+    }
+
+    public ChargingStation putStationIfAbsent(ChargingStation s) {
+        return stations.putIfAbsent(s.getId(), s);
+    }
+
+    public ChargingStation getStation(String id) {
+        return id == null ? null : stations.get(id);
+    }
+
+    public boolean hasStation(String id) {
+        return id != null && stations.containsKey(id);
+    }
+
+    public Collection<ChargingStation> stations() {
+        return Collections.unmodifiableCollection(stations.values());
+    }
+
+    public int stationCount() {
+        return stations.size();
+    }
+
+    // ------------------------------------------------------------
+    // Tasks (insertion ordered, indexed by status and assignee)
+    // ------------------------------------------------------------
+    /** Indexed task store; use it for status/assignee queries and compaction. */
+    public TaskStore taskStore() {
+        return tasks;
+    }
+
+    /** Store {@code t}; replacing an existing id keeps its original position. */
+    public void putTask(Task t) {
+        tasks.put(t);
+    }
+
+    /** @return the task already stored under the same id, or null if {@code t} was added */
+    public Task putTaskIfAbsent(Task t) {
+        return tasks.putIfAbsent(t);
+    }
+
+    public Task getTask(String id) {
+        return tasks.get(id);
+    }
+
+    public boolean hasTask(String id) {
+        return tasks.contains(id);
+    }
+
+    public Task removeTask(String id) {
+        return tasks.remove(id);
+    }
 
+    /**
+     * Run {@code update} on the task while holding that task's slot, so concurrent updates of the
+     * same task are serialized while updates of other tasks proceed in parallel.
+     * @return the task, or null if no task has this id
+     */
+    public Task updateTask(String id, Consumer<Task> update) {
+        return tasks.update(id, update);
+    }
 
+    /** Live, read-only view in insertion order. */
+    public Collection<Task> tasks() {
+        return tasks.all();
+    }
 
+    public int taskCount() {
+        return tasks.size();
+    }
 }
@@ -0,0 +1,255 @@
+package med.supply.system.repository;
+
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Insertion-ordered, thread-safe task store with secondary indexes on {@link TaskStatus} and
+ * on the assigned vehicle (and on both together), so "all IN_PROGRESS tasks of vehicle X" is a
+ * single map lookup instead of a scan.
+ * <p>
+ * The indexes only see changes made through this class; code that writes {@code Task.status}
+ * or {@code Task.assigneeVehicleId} directly must call {@link #reindex(String)} afterwards.
+ */
+public class TaskStore {
+
+    private static final class Slot {
+        final long seq;
+        final Task task;
+        TaskStatus indexedStatus;
+        String indexedAssignee;
+
+        Slot(long seq, Task task) {
+            this.seq = seq;
+            this.task = task;
+        }
+    }
+
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Task> inOrder = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextSeq = new AtomicLong();
+
+    private final Map<TaskStatus, Set<String>> byStatus = new EnumMap<>(TaskStatus.class);
+    private final ConcurrentMap<String, Map<TaskStatus, Set<String>>> byAssignee = new ConcurrentHashMap<>();
+
+    public TaskStore() {
+        for (TaskStatus s : TaskStatus.values()) {
+            byStatus.put(s, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Writes (each one runs inside the compute of its own id)
+    // ------------------------------------------------------------
+    /** Store {@code t}; replacing an existing id keeps its original position. */
+    public void put(Task t) {
+        slots.compute(t.id, (id, old) -> {
+            if (old != null) unindex(old);
+            Slot slot = new Slot(old != null ? old.seq : nextSeq.getAndIncrement(), t);
+            inOrder.put(slot.seq, t);
+            index(slot);
+            return slot;
+        });
+    }
+
+    /** @return the task already stored under the same id, or null if {@code t} was added */
+    public Task putIfAbsent(Task t) {
+        Task[] existing = new Task[1];
+        slots.compute(t.id, (id, old) -> {
+            if (old != null) {
+                existing[0] = old.task;
+                return old;
+            }
+            Slot slot = new Slot(nextSeq.getAndIncrement(), t);
+            inOrder.put(slot.seq, t);
+            index(slot);
+            return slot;
+        });
+        return existing[0];
+    }
+
+    public Task remove(String id) {
+        Task[] removed = new Task[1];
+        slots.computeIfPresent(id, (k, slot) -> {
+            unindex(slot);
+            inOrder.remove(slot.seq);
+            removed[0] = slot.task;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Run {@code update} on the task while holding its slot and refresh the indexes afterwards.
+     * @return the task, or null if no task has this id
+     */
+    public Task update(String id, Consumer<Task> update) {
+        Task[] updated = new Task[1];
+        slots.computeIfPresent(id, (k, slot) -> {
+            update.accept(slot.task);
+            reindex(slot);
+            updated[0] = slot.task;
+            return slot;
+        });
+        return updated[0];
+    }
+
+    public Task setStatus(String id, TaskStatus status) {
+        return update(id, t -> t.status = status);
+    }
+
+    public Task assign(String id, String vehicleId) {
+        return update(id, t -> t.setAssigneeVehicleId(vehicleId));
+    }
+
+    /** Refresh the indexes of a task whose fields were changed outside this store. */
+    public void reindex(String id) {
+        slots.computeIfPresent(id, (k, slot) -> {
+            reindex(slot);
+            return slot;
+        });
+    }
+
+    /** Remove and return every DONE task, oldest first (used for compaction). */
+    public List<Task> removeDone() {
+        TreeMap<Long, Task> removed = new TreeMap<>();
+        for (String id : new ArrayList<>(byStatus.get(TaskStatus.DONE))) {
+            slots.computeIfPresent(id, (k, slot) -> {
+                if (slot.task.status != TaskStatus.DONE) return slot; // changed meanwhile
+                unindex(slot);
+                inOrder.remove(slot.seq);
+                removed.put(slot.seq, slot.task);
+                return null;
+            });
+        }
+        return new ArrayList<>(removed.values());
+    }
+
+    // ------------------------------------------------------------
+    // Reads
+    // ------------------------------------------------------------
+    public Task get(String id) {
+        if (id == null) return null;
+        Slot slot = slots.get(id);
+        return slot == null ? null : slot.task;
+    }
+
+    public boolean contains(String id) {
+        return id != null && slots.containsKey(id);
+    }
+
+    /** Live, read-only view in insertion order. */
+    public Collection<Task> all() {
+        return Collections.unmodifiableCollection(inOrder.values());
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public int countWithStatus(TaskStatus status) {
+        return byStatus.get(status).size();
+    }
+
+    public List<Task> withStatus(TaskStatus status) {
+        return resolve(byStatus.get(status));
+    }
+
+    public List<Task> forVehicle(String vehicleId) {
+        Map<TaskStatus, Set<String>> perStatus = byAssignee.get(vehicleId);
+        if (perStatus == null) return List.of();
+        List<Task> result = new ArrayList<>();
+        for (Set<String> ids : perStatus.values()) {
+            result.addAll(resolve(ids));
+        }
+        return sortBySeq(result);
+    }
+
+    public List<Task> forVehicle(String vehicleId, TaskStatus status) {
+        Map<TaskStatus, Set<String>> perStatus = byAssignee.get(vehicleId);
+        if (perStatus == null) return List.of();
+        return resolve(perStatus.get(status));
+    }
+
+    public boolean hasTaskFor(String vehicleId, TaskStatus status) {
+        Map<TaskStatus, Set<String>> perStatus = byAssignee.get(vehicleId);
+        return perStatus != null && !perStatus.get(status).isEmpty();
+    }
+
+    // ------------------------------------------------------------
+    // Index maintenance (callers hold the slot's compute)
+    // ------------------------------------------------------------
+    private void index(Slot slot) {
+        TaskStatus status = slot.task.status;
+        String assignee = slot.task.assigneeVehicleId;
+        byStatus.get(status).add(slot.task.id);
+        if (assignee != null) {
+            byAssignee.computeIfAbsent(assignee, k -> newStatusMap()).get(status).add(slot.task.id);
+        }
+        slot.indexedStatus = status;
+        slot.indexedAssignee = assignee;
+    }
+
+    private void unindex(Slot slot) {
+        if (slot.indexedStatus == null) return;
+        byStatus.get(slot.indexedStatus).remove(slot.task.id);
+        if (slot.indexedAssignee != null) {
+            Map<TaskStatus, Set<String>> perStatus = byAssignee.get(slot.indexedAssignee);
+            if (perStatus != null) perStatus.get(slot.indexedStatus).remove(slot.task.id);
+        }
+        slot.indexedStatus = null;
+        slot.indexedAssignee = null;
+    }
+
+    private void reindex(Slot slot) {
+        if (slot.indexedStatus == slot.task.status
+                && Objects.equals(slot.indexedAssignee, slot.task.assigneeVehicleId)) {
+            return;
+        }
+        unindex(slot);
+        index(slot);
+    }
+
+    private static Map<TaskStatus, Set<String>> newStatusMap() {
+        Map<TaskStatus, Set<String>> m = new EnumMap<>(TaskStatus.class);
+        for (TaskStatus s : TaskStatus.values()) {
+            m.put(s, ConcurrentHashMap.newKeySet());
+        }
+        return m;
+    }
+
+    private List<Task> resolve(Set<String> ids) {
+        List<Task> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Slot slot = slots.get(id);
+            if (slot != null) result.add(slot.task);
+        }
+        return sortBySeq(result);
+    }
+
+    private List<Task> sortBySeq(List<Task> tasks) {
+        tasks.sort((a, b) -> {
+            Slot sa = slots.get(a.id);
+            Slot sb = slots.get(b.id);
+            long qa = sa == null ? Long.MIN_VALUE : sa.seq;
+            long qb = sb == null ? Long.MIN_VALUE : sb.seq;
+            return Long.compare(qa, qb);
+        });
+        return tasks;
+    }
+}
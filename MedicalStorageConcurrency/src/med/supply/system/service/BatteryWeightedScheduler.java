@@ -0,0 +1,58 @@
+package med.supply.system.service;
+
+import med.supply.system.model.StorageVehicle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Requests in arrival order, fullest batteries first. Vehicles below {@code reservePct} are only
+ * used while no vehicle above the reserve is left, so the ones that would have to charge right
+ * after the delivery rest instead when the fleet has spare capacity.
+ */
+public class BatteryWeightedScheduler implements DispatchScheduler {
+
+    /** A delivery costs 10% and charging starts at 14%, so below 25% a vehicle charges right after. */
+    public static final int DEFAULT_RESERVE_PCT = 25;
+
+    private final int reservePct;
+    private final boolean useReserveWhenShort;
+
+    public BatteryWeightedScheduler() {
+        this(DEFAULT_RESERVE_PCT, true);
+    }
+
+    /**
+     * @param reservePct          battery level under which a vehicle is kept back
+     * @param useReserveWhenShort if false, vehicles under the reserve are never dispatched
+     */
+    public BatteryWeightedScheduler(int reservePct, boolean useReserveWhenShort) {
+        if (reservePct < 0 || reservePct > 100)
+            throw new IllegalArgumentException("reservePct must be 0–100");
+        this.reservePct = reservePct;
+        this.useReserveWhenShort = useReserveWhenShort;
+    }
+
+    @Override
+    public String name() {
+        return "battery-weighted";
+    }
+
+    @Override
+    public List<Assignment> schedule(List<DeliveryRequest> requests, List<StorageVehicle> idle) {
+        List<StorageVehicle> byBattery = new ArrayList<>(idle);
+        byBattery.sort(Comparator.comparingInt(StorageVehicle::getBatteryLevelPct).reversed());
+
+        List<Assignment> out = new ArrayList<>();
+        int v = 0;
+        for (DeliveryRequest r : requests) {
+            if (v >= byBattery.size()) break;
+            StorageVehicle candidate = byBattery.get(v);
+            if (candidate.getBatteryLevelPct() < reservePct && !useReserveWhenShort) break;
+            out.add(new Assignment(r, candidate));
+            v++;
+        }
+        return out;
+    }
+}
@@ -66,8 +66,8 @@ public class DataExchangeSimulator {
             roundtrip = new String(data, StandardCharsets.UTF_8);
         }
 
-        logs.logSystem("DataExchange: exchange files created for vehicle=" + vehicle.getId());
-        logs.logSystem("DataExchange: roundtrip payload: " + roundtrip);
+        logs.logSystem("DataExchange: exchange files created for vehicle={}", vehicle.getId());
+        logs.logSystem("DataExchange: roundtrip payload: {}", roundtrip);
 
         System.out.println("Data exchange completed for vehicle " + vehicle.getId());
     }
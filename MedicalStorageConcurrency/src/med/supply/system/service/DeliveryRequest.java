@@ -0,0 +1,31 @@
+package med.supply.system.service;
+
+import med.supply.system.model.TaskPriority;
+
+/** One batch of an item waiting to be loaded onto a vehicle. */
+public class DeliveryRequest {
+    public final String sku;
+    public final String itemName;
+    public final int quantity;
+    public final TaskPriority priority;
+    public final long seq; // arrival order, used as tie-breaker
+
+    public DeliveryRequest(String sku, String itemName, int quantity, TaskPriority priority, long seq) {
+        if (quantity <= 0)
+            throw new IllegalArgumentException("quantity must be positive");
+        this.sku = sku;
+        this.itemName = itemName;
+        this.quantity = quantity;
+        this.priority = priority == null ? TaskPriority.NORMAL : priority;
+        this.seq = seq;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryRequest{" +
+                "sku='" + sku + '\'' +
+                ", quantity=" + quantity +
+                ", priority=" + priority +
+                '}';
+    }
+}
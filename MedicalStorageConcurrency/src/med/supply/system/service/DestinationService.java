@@ -1,33 +1,145 @@
 package med.supply.system.service;
 
-import java.io.FileWriter;
+import med.supply.system.util.DeliveryAnalytics;
+import med.supply.system.util.DeliveryBuffer;
+import med.supply.system.util.DeliveryJournal;
+import med.supply.system.util.SimulationClock;
+
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.nio.file.Path;
 
+/**
+ * Records finished deliveries in {@code resources/destination_log.csv} through a
+ * {@link DeliveryJournal}: history survives restarts, and concurrent deliveries share writes
+ * instead of queueing on one lock. With {@link #enableBuffering} deliveries go through a
+ * {@link DeliveryBuffer} instead and delivery threads do not wait for the disk at all.
+ */
 public class DestinationService {
 
-    private final String destinationFile = "resources/destination_log.csv";
+    public static final Path DEFAULT_FILE = Path.of("resources", "destination_log.csv");
+
+    private final Path destinationFile;
+    private final DeliveryJournal journal; // null if the file could not be opened
+    private final IOException openError;
+    private volatile DeliveryBuffer buffer;
+    private DeliveryAnalytics analytics;
+    private DeliveryAnalytics.ScanReport analyticsScan;
 
     public DestinationService() {
-        initializeFile();
+        this(DEFAULT_FILE);
+    }
+
+    public DestinationService(Path destinationFile) {
+        this.destinationFile = destinationFile;
+        DeliveryJournal j = null;
+        IOException error = null;
+        try {
+            j = DeliveryJournal.open(destinationFile);
+        } catch (IOException e) {
+            error = e;
+            System.err.println("[DESTINATION] ERROR opening " + destinationFile + ": " + e.getMessage());
+        }
+        this.journal = j;
+        this.openError = error;
+    }
+
+    /**
+     * Queue deliveries in per-thread stripes and let a background merger write them in ordered
+     * batches (see {@link DeliveryBuffer}). A delivery is then only durable after the next merge,
+     * at most {@code flushIntervalMs} later, or after {@link #flush()}.
+     */
+    public synchronized void enableBuffering(int batchSize, int capacity, long flushIntervalMs) {
+        if (journal == null) return;
+        DeliveryBuffer previous = buffer;
+        buffer = new DeliveryBuffer(journal, Runtime.getRuntime().availableProcessors(), batchSize, capacity, flushIntervalMs);
+        closeBuffer(previous);
     }
 
-    private void initializeFile() {
-        try (FileWriter writer = new FileWriter(destinationFile, false)) {
-            writer.write("timestamp,vehicle,item,quantity\n");
-        } catch (IOException ignored) {}
+    /** Write buffered deliveries and go back to writing each delivery before returning. */
+    public synchronized void disableBuffering() {
+        DeliveryBuffer previous = buffer;
+        buffer = null;
+        closeBuffer(previous);
     }
 
-    public synchronized void recordDelivery(String vehicleName, String itemName, int qty) {
-        try (FileWriter writer = new FileWriter(destinationFile, true)) {
+    public boolean isBuffered() {
+        return buffer != null;
+    }
+
+    /** The buffer in use, or null when deliveries are written directly. */
+    public DeliveryBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Running totals per item, vehicle and hour: the file is scanned once, in parallel, and every
+     * delivery written afterwards is added as it is written. Null if the journal could not be opened.
+     */
+    public synchronized DeliveryAnalytics analytics() throws IOException {
+        if (analytics == null && journal != null) {
+            DeliveryAnalytics a = new DeliveryAnalytics();
+            analyticsScan = a.attach(journal, Runtime.getRuntime().availableProcessors());
+            analytics = a;
+        }
+        return analytics;
+    }
 
-            writer.write(LocalDateTime.now() + "," +
-                    vehicleName + "," +
-                    itemName + "," +
-                    qty + "\n");
+    /** What the first {@link #analytics()} call read from the file; null until then. */
+    public synchronized DeliveryAnalytics.ScanReport getAnalyticsScan() {
+        return analyticsScan;
+    }
 
+    public void recordDelivery(String vehicleName, String itemName, int qty) {
+        if (journal == null) {
+            System.err.println("[DESTINATION] ERROR writing delivery: " + openError.getMessage());
+            return;
+        }
+        try {
+            String timestamp = SimulationClock.getDefault().now().toLocalDateTime().toString();
+            DeliveryBuffer b = buffer;
+            if (b != null) b.record(timestamp, vehicleName, itemName, qty);
+            else journal.append(timestamp, vehicleName, itemName, qty);
         } catch (IOException e) {
             System.err.println("[DESTINATION] ERROR writing delivery: " + e.getMessage());
         }
     }
+
+    public Path getDestinationFile() {
+        return destinationFile;
+    }
+
+    /** The journal behind this service; null if it could not be opened. */
+    public DeliveryJournal getJournal() {
+        return journal;
+    }
+
+    /** Wait until every delivery recorded so far is written. */
+    public void flush() {
+        DeliveryBuffer b = buffer;
+        if (b == null) return;
+        try {
+            b.flush();
+        } catch (IOException e) {
+            System.err.println("[DESTINATION] ERROR flushing deliveries: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        if (journal == null) return;
+        disableBuffering();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("[DESTINATION] ERROR closing " + destinationFile + ": " + e.getMessage());
+        }
+    }
+
+    private void closeBuffer(DeliveryBuffer b) {
+        if (b == null) return;
+        try {
+            b.close();
+        } catch (IOException e) {
+            System.err.println("[DESTINATION] ERROR writing buffered deliveries: " + e.getMessage());
+        }
+    }
 }
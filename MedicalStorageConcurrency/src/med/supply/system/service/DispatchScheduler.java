@@ -0,0 +1,32 @@
+package med.supply.system.service;
+
+import med.supply.system.model.StorageVehicle;
+
+import java.util.List;
+
+/**
+ * Decides which idle vehicle carries which pending delivery in an auto-distribution round.
+ * Vehicles left out of the returned assignments go back to the idle pool; requests left out
+ * stay in the unassigned item pool for the next round.
+ */
+public interface DispatchScheduler {
+
+    /** A request paired with the vehicle that will carry it. */
+    final class Assignment {
+        public final DeliveryRequest request;
+        public final StorageVehicle vehicle;
+
+        public Assignment(DeliveryRequest request, StorageVehicle vehicle) {
+            this.request = request;
+            this.vehicle = vehicle;
+        }
+    }
+
+    String name();
+
+    /**
+     * @param requests pending deliveries in arrival order
+     * @param idle     vehicles available right now, longest-idle first
+     */
+    List<Assignment> schedule(List<DeliveryRequest> requests, List<StorageVehicle> idle);
+}
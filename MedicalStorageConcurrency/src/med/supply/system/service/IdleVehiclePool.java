@@ -0,0 +1,79 @@
+package med.supply.system.service;
+
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.VehicleStateListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Vehicles that are ready for a new delivery, kept up to date from vehicle state transitions
+ * instead of rescanning the fleet. Taking a vehicle is O(1); entries made stale by a later
+ * transition are skipped lazily when polled.
+ */
+public class IdleVehiclePool implements VehicleStateListener {
+
+    private final ConcurrentLinkedQueue<StorageVehicle> queue = new ConcurrentLinkedQueue<>();
+    private final Set<String> members = ConcurrentHashMap.newKeySet();
+    private volatile Runnable onBecameIdle;
+
+    /** {@code callback} runs on the thread that made a vehicle idle; keep it short. */
+    public void setOnBecameIdle(Runnable callback) {
+        this.onBecameIdle = callback;
+    }
+
+    /** Start following {@code v}'s transitions and add it right away if it is idle. */
+    public void track(StorageVehicle v) {
+        v.attachStateListener(this);
+        onStateChanged(v);
+    }
+
+    @Override
+    public void onStateChanged(StorageVehicle v) {
+        if (v.isIdle()) {
+            if (members.add(v.getId())) {
+                queue.offer(v);
+                Runnable callback = onBecameIdle;
+                if (callback != null) callback.run();
+            }
+        } else {
+            members.remove(v.getId()); // its queue entry is dropped on the next poll
+        }
+    }
+
+    /** Take the longest-idle vehicle, or null if none is idle. */
+    public StorageVehicle poll() {
+        StorageVehicle v;
+        while ((v = queue.poll()) != null) {
+            if (!members.remove(v.getId())) continue; // stale entry
+            if (v.isIdle()) return v;
+        }
+        return null;
+    }
+
+    /** Take every idle vehicle, longest-idle first. */
+    public List<StorageVehicle> drain() {
+        List<StorageVehicle> out = new ArrayList<>();
+        StorageVehicle v;
+        while ((v = poll()) != null) {
+            out.add(v);
+        }
+        return out;
+    }
+
+    /** Put back a vehicle that was polled but not used. */
+    public void release(StorageVehicle v) {
+        onStateChanged(v);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+}
@@ -0,0 +1,41 @@
+package med.supply.system.service;
+
+import med.supply.system.model.StorageVehicle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Most urgent request first (arrival order within a priority), each one given to the idle
+ * vehicle with the most battery left.
+ */
+public class PriorityQueueScheduler implements DispatchScheduler {
+
+    private static final Comparator<DeliveryRequest> URGENT_FIRST =
+            Comparator.comparing((DeliveryRequest r) -> r.priority).reversed()
+                    .thenComparingLong(r -> r.seq);
+
+    private static final Comparator<StorageVehicle> FULLEST_FIRST =
+            Comparator.comparingInt(StorageVehicle::getBatteryLevelPct).reversed();
+
+    @Override
+    public String name() {
+        return "priority-queue";
+    }
+
+    @Override
+    public List<Assignment> schedule(List<DeliveryRequest> requests, List<StorageVehicle> idle) {
+        PriorityQueue<DeliveryRequest> pending = new PriorityQueue<>(Math.max(1, requests.size()), URGENT_FIRST);
+        pending.addAll(requests);
+        PriorityQueue<StorageVehicle> vehicles = new PriorityQueue<>(Math.max(1, idle.size()), FULLEST_FIRST);
+        vehicles.addAll(idle);
+
+        List<Assignment> out = new ArrayList<>();
+        while (!pending.isEmpty() && !vehicles.isEmpty()) {
+            out.add(new Assignment(pending.poll(), vehicles.poll()));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,25 @@
+package med.supply.system.service;
+
+import med.supply.system.model.StorageVehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Requests in arrival order, vehicles in idle order: the original first-come dispatch. */
+public class RoundRobinScheduler implements DispatchScheduler {
+
+    @Override
+    public String name() {
+        return "round-robin";
+    }
+
+    @Override
+    public List<Assignment> schedule(List<DeliveryRequest> requests, List<StorageVehicle> idle) {
+        int n = Math.min(requests.size(), idle.size());
+        List<Assignment> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(new Assignment(requests.get(i), idle.get(i)));
+        }
+        return out;
+    }
+}
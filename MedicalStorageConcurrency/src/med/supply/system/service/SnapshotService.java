@@ -0,0 +1,304 @@
+package med.supply.system.service;
+
+import med.supply.system.model.ChargingStation;
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.Task;
+import med.supply.system.repository.Repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the whole system state ({@link Repository}, the unassigned item pool and vehicle
+ * inventories, deliveries under way) as a {@link StateSnapshot} and brings it back on startup, so
+ * a restart does not mean re-reading {@code default_items.csv} and re-entering every vehicle and
+ * task through the menu.
+ * <p>
+ * {@link #startPeriodic} writes a snapshot in the background every interval; {@link #close}
+ * writes a last one. Capturing runs while no auto-distribution round is in progress.
+ * <p>
+ * With a {@link StateEventLog}, every change between snapshots is logged as well: {@link #restore}
+ * loads the snapshot and replays the events after it, and each {@link #save} compacts the log by
+ * dropping the events the new snapshot contains.
+ */
+public class SnapshotService implements AutoCloseable {
+
+    /** What {@link #restore} brought back. */
+    public static final class RestoreReport {
+        public final Path file;
+        public final StateSnapshot snapshot;
+        public final long replayedEvents;
+        public final long missingEvents;
+        public final int resumedDeliveries;
+        public final long elapsedMs;
+
+        RestoreReport(Path file, StateSnapshot snapshot, long replayedEvents, long missingEvents,
+                      int resumedDeliveries, long elapsedMs) {
+            this.file = file;
+            this.snapshot = snapshot;
+            this.replayedEvents = replayedEvents;
+            this.missingEvents = missingEvents;
+            this.resumedDeliveries = resumedDeliveries;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Restored " + snapshot.vehicles.size() + " vehicle(s), " + snapshot.stations.size() + " station(s), " +
+                    snapshot.tasks.size() + " task(s), " + snapshot.unassigned.size() + " unassigned item(s), " +
+                    resumedDeliveries + " delivery(s) resumed from " + file +
+                    (replayedEvents > 0 ? " + " + replayedEvents + " event(s)" : "") +
+                    (missingEvents > 0 ? " (" + missingEvents + " gap(s) in the event log)" : "") +
+                    " in " + elapsedMs + " ms";
+        }
+    }
+
+    private final Repository repo;
+    private final StorageService storage;
+    private final TaskService tasks;
+    private final Path file;
+    private final StateEventLog events; // null = snapshots only
+    private volatile long restoredSeq;
+
+    private ScheduledExecutorService scheduler;
+    private final Object writeLock = new Object();
+    private volatile long lastWriteMillis;
+    private volatile long lastWriteBytes;
+    private long writes;
+
+    public SnapshotService(Repository repo, StorageService storage, TaskService tasks, Path file) {
+        this(repo, storage, tasks, file, null);
+    }
+
+    /** @param events logs the changes between snapshots; {@link #startRecording} starts it */
+    public SnapshotService(Repository repo, StorageService storage, TaskService tasks, Path file, StateEventLog events) {
+        this.repo = repo;
+        this.storage = storage;
+        this.tasks = tasks;
+        this.file = file;
+        this.events = events;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public StateEventLog getEventLog() {
+        return events;
+    }
+
+    /** Whether there is anything to restore: a snapshot, or events in the log. */
+    public boolean exists() {
+        return Files.isRegularFile(file) || (events != null && events.getRecovery().events > 0);
+    }
+
+    /**
+     * Log every change from now on. Call it once the state is restored (or loaded from defaults),
+     * so restoring itself is not logged.
+     */
+    public void startRecording() {
+        if (events == null) throw new IllegalStateException("no event log");
+        events.advanceSeq(restoredSeq);
+        storage.attachEventLog(events);
+        tasks.attachEventLog(events);
+    }
+
+    // ------------------------------------------------------------
+    // Capture / save
+    // ------------------------------------------------------------
+    /** Copy the current state. */
+    public StateSnapshot capture() {
+        return tasks.whileDistributionPaused(this::captureNow);
+    }
+
+    // Events up to eventSeq happened before the copy starts, so the copy contains them; later ones
+    // may be in it too, which is fine as they are applied again on restore (see StateReplay).
+    private StateSnapshot captureNow() {
+        long eventSeq = events == null ? 0 : events.getLastSeq();
+        List<StateSnapshot.Station> stations = new ArrayList<>();
+        for (ChargingStation s : repo.stations()) stations.add(new StateSnapshot.Station(s.getId(), s.getName(), s.getOwner()));
+
+        List<StateSnapshot.Vehicle> vehicles = new ArrayList<>(repo.vehicleCount());
+        for (StorageVehicle v : repo.vehicles()) {
+            ChargingStation st = v.getAssignedStation();
+            vehicles.add(new StateSnapshot.Vehicle(v.getId(), v.getName(), v.getBatteryLevelPct(), v.isCharging(),
+                    v.isWaitingForCharge(), v.hasLeftQueue(), v.isOnDelivery(), st == null ? null : st.getId(),
+                    items(v.getInventory())));
+        }
+
+        List<Task> taskCopies = new ArrayList<>(repo.taskCount());
+        for (Task t : repo.tasks()) {
+            Task c = new Task(t.id, t.description, t.assigneeVehicleId, t.priority);
+            c.status = t.status;
+            taskCopies.add(c);
+        }
+
+        return new StateSnapshot(tasks.getClock().currentTimeMillis(), tasks.getNextTaskNumber(), tasks.isAutoResumeEnabled(), eventSeq,
+                stations, vehicles, items(storage.getUnassignedItemsRef()),
+                new LinkedHashMap<>(storage.getItemPriorities()), taskCopies, tasks.inFlightDeliveries());
+    }
+
+    private static List<StateSnapshot.Item> items(Map<String, StorageItem> inventory) {
+        List<StateSnapshot.Item> out = new ArrayList<>(inventory.size());
+        for (StorageItem it : inventory.values()) out.add(new StateSnapshot.Item(it.getSku(), it.getName(), it.getQuantity()));
+        return out;
+    }
+
+    /** Capture and write a snapshot, then compact the event log; returns the snapshot size in bytes. */
+    public long save() throws IOException {
+        StateSnapshot s = capture();
+        synchronized (writeLock) {
+            long bytes = s.write(file);
+            lastWriteMillis = s.createdMillis;
+            lastWriteBytes = bytes;
+            writes++;
+            if (events != null) {
+                events.flush(); // so no event the snapshot contains is written after compacting
+                events.compact(s.eventSeq);
+            }
+            return bytes;
+        }
+    }
+
+    /** Save every {@code intervalMs} on a background thread; calling it again changes the interval. */
+    public synchronized void startPeriodic(long intervalMs) {
+        if (intervalMs <= 0) throw new IllegalArgumentException("intervalMs must be positive");
+        stopPeriodic();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "state-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                save();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[SNAPSHOT] ERROR writing " + file + ": " + e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopPeriodic() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    /** Stop the periodic snapshots, write a last one and close the event log. */
+    @Override
+    public void close() throws IOException {
+        stopPeriodic();
+        try {
+            save();
+        } finally {
+            if (events != null) {
+                storage.attachEventLog(null);
+                tasks.attachEventLog(null);
+                events.close();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Restore
+    // ------------------------------------------------------------
+    /**
+     * Load {@link #getFile()} into the (empty) repository and services: stations, vehicles with
+     * their inventories and flags, the unassigned pool and priorities, tasks in their original
+     * order. Deliveries that were under way are scheduled again, and vehicles that were charging
+     * or queued ask for a station again, and if auto-distribution was on, idle vehicles pick up
+     * the items still waiting. With an event log, the events after the snapshot are applied first
+     * (all of them if there is no snapshot).
+     */
+    public RestoreReport restore() throws IOException {
+        return restore(Long.MAX_VALUE);
+    }
+
+    /** Like {@link #restore()}, but stop after event {@code untilSeq}, to look at an earlier state. */
+    public RestoreReport restore(long untilSeq) throws IOException {
+        long t0 = System.nanoTime();
+        StateReplay replay = Files.isRegularFile(file) || events == null
+                ? new StateReplay(StateSnapshot.read(file)) : new StateReplay();
+        if (events != null) {
+            try (Stream<StateEvent> log = StateEventLog.read(events.getFile())) {
+                replay.applyAll(log.takeWhile(e -> e.seq <= untilSeq)::iterator);
+            }
+        }
+        StateSnapshot s = replay.toSnapshot();
+        apply(s);
+        restoredSeq = s.eventSeq;
+        int resumed = tasks.resumeDeliveries(s.deliveries);
+        // vehicles restored as idle never become idle again, so nothing else would start the next round
+        tasks.tryResumeAutoDistributeAsync();
+        return new RestoreReport(file, s, replay.getApplied(), replay.getGaps(), resumed,
+                (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    void apply(StateSnapshot s) {
+        for (StateSnapshot.Station st : s.stations) {
+            ChargingStation cs = repo.getStation(st.id);
+            if (cs == null) {
+                cs = new ChargingStation(st.id, st.name);
+                repo.putStation(cs);
+            }
+            // vehicles claim their stations again when they resume charging
+            if (ChargingStation.OPERATOR.equals(st.owner)) cs.occupy();
+        }
+
+        Map<String, StorageItem> pool = storage.getUnassignedItemsRef();
+        for (StateSnapshot.Item it : s.unassigned) pool.put(it.sku, new StorageItem(it.sku, it.name, it.quantity));
+        s.itemPriorities.forEach(storage::setItemPriority);
+
+        for (Task t : s.tasks) repo.putTask(t);
+        tasks.advanceTaskNumber(s.nextTaskNumber);
+
+        List<StorageVehicle> needsCharge = new ArrayList<>();
+        for (StateSnapshot.Vehicle sv : s.vehicles) {
+            StorageVehicle v = new StorageVehicle(sv.id, sv.name);
+            for (StateSnapshot.Item it : sv.inventory) v.addItem(new StorageItem(it.sku, it.name, it.quantity));
+            storage.restoreVehicle(v);
+            ChargingStation station = sv.stationId == null ? null : repo.getStation(sv.stationId);
+            boolean charge = sv.charging || sv.waitingForCharge;
+            if (charge) needsCharge.add(v);
+            v.restoreState(sv.batteryPct, station, false, sv.leftQueue, sv.onDelivery);
+            tasks.trackVehicle(v);
+        }
+        // after every vehicle is back, so queue order follows the snapshot order
+        for (StorageVehicle v : needsCharge) v.restoreState(v.getBatteryLevelPct(), null, true, v.hasLeftQueue(), v.isOnDelivery());
+
+        if (s.autoResume) tasks.setAutoResumeEnabled(true);
+    }
+
+    // ------------------------------------------------------------
+    // Counters
+    // ------------------------------------------------------------
+    /** Clock time (epoch millis) of the last snapshot written by this service, 0 if none. */
+    public long getLastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    public long getLastWriteBytes() {
+        return lastWriteBytes;
+    }
+
+    public long getWriteCount() {
+        synchronized (writeLock) {
+            return writes;
+        }
+    }
+}
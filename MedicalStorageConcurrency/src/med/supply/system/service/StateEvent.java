@@ -0,0 +1,227 @@
+package med.supply.system.service;
+
+import med.supply.system.model.ChargingStation;
+import med.supply.system.model.StorageItem;
+import med.supply.system.model.StorageVehicle;
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskPriority;
+import med.supply.system.model.TaskStatus;
+import med.supply.system.util.ChecksummedRow;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One change to the system state, as written to the {@link StateEventLog}.
+ * <p>
+ * Events carry the value a field has <em>after</em> the change (battery level, quantity left,
+ * new status), never a difference, so applying an event twice, or to a snapshot that already
+ * contains it, gives the same result. One CSV row per event:
+ * <pre>
+ *   seq,millis,type,arg...,crc
+ *   42,1735725600000,BATTERY_CHANGED,AGV-1,70,1f3a9c02
+ * </pre>
+ */
+public final class StateEvent {
+
+    public enum Type {
+        /** vehicle id, name, battery % */
+        VEHICLE_ADDED(3),
+        /** station id, name */
+        STATION_ADDED(2),
+        /** station id, 1 = taken by the operator, 0 = released */
+        STATION_LOAD_CHANGED(2),
+        /** sku, name, quantity: put into the unassigned pool */
+        ITEM_ADDED(3),
+        /** sku: taken out of the unassigned pool */
+        ITEM_REMOVED(1),
+        /** sku, priority */
+        ITEM_PRIORITY_CHANGED(2),
+        /** vehicle id, sku, name, quantity the vehicle now holds (0 = none left) */
+        ITEM_ASSIGNED(4),
+        /** task id, description, assignee (empty = none), priority, status */
+        TASK_CREATED(5),
+        /** task id, status */
+        TASK_STATUS_CHANGED(2),
+        /** task id: moved to the task archive */
+        TASK_ARCHIVED(1),
+        /** task id, vehicle id, sku, item name, quantity, quantity left in the pool, due (epoch ms) */
+        DELIVERY_STARTED(7),
+        /** task id, vehicle id, due (epoch ms): delivers whatever the vehicle holds */
+        MANUAL_DELIVERY_STARTED(3),
+        /** task id */
+        DELIVERY_FINISHED(1),
+        /** vehicle id, battery % */
+        BATTERY_CHANGED(2),
+        /** vehicle id, charging, waiting for a station, left the queue (1/0 each), station id (empty = none) */
+        CHARGING_CHANGED(5),
+        /** 1 = freed vehicles continue an earlier auto-distribution, 0 = they do not */
+        AUTO_RESUME_CHANGED(1);
+
+        public final int arity;
+
+        Type(int arity) {
+            this.arity = arity;
+        }
+    }
+
+    /** Sequence number; 0 until the event is recorded. */
+    public final long seq;
+    /** Clock time when the event was recorded. */
+    public final long millis;
+    public final Type type;
+    private final String[] args;
+
+    private StateEvent(long seq, long millis, Type type, String... args) {
+        if (args.length != type.arity)
+            throw new IllegalArgumentException(type + " takes " + type.arity + " argument(s), got " + args.length);
+        this.seq = seq;
+        this.millis = millis;
+        this.type = type;
+        for (int i = 0; i < args.length; i++) args[i] = args[i].replace('\r', ' ').replace('\n', ' '); // one row per event
+        this.args = args;
+    }
+
+    /** The same event with its place in the log. */
+    StateEvent numbered(long seq, long millis) {
+        return new StateEvent(seq, millis, type, args);
+    }
+
+    public String arg(int i) {
+        return args[i];
+    }
+
+    /** Argument {@code i}, or null where an empty value stands for "none". */
+    public String optArg(int i) {
+        return args[i].isEmpty() ? null : args[i];
+    }
+
+    public int intArg(int i) {
+        return Integer.parseInt(args[i]);
+    }
+
+    public long longArg(int i) {
+        return Long.parseLong(args[i]);
+    }
+
+    public boolean flag(int i) {
+        return "1".equals(args[i]);
+    }
+
+    /** Vehicle, task, station or SKU the event is about (its first argument). */
+    public String subject() {
+        return args.length == 0 ? "" : args[0];
+    }
+
+    // ------------------------------------------------------------
+    // Factories
+    // ------------------------------------------------------------
+    public static StateEvent vehicleAdded(StorageVehicle v) {
+        return new StateEvent(0, 0, Type.VEHICLE_ADDED, v.getId(), v.getName(), String.valueOf(v.getBatteryLevelPct()));
+    }
+
+    public static StateEvent stationAdded(ChargingStation s) {
+        return new StateEvent(0, 0, Type.STATION_ADDED, s.getId(), s.getName());
+    }
+
+    public static StateEvent stationLoadChanged(String stationId, boolean inUse) {
+        return new StateEvent(0, 0, Type.STATION_LOAD_CHANGED, stationId, bit(inUse));
+    }
+
+    public static StateEvent itemAdded(StorageItem item) {
+        return new StateEvent(0, 0, Type.ITEM_ADDED, item.getSku(), item.getName(), String.valueOf(item.getQuantity()));
+    }
+
+    public static StateEvent itemRemoved(String sku) {
+        return new StateEvent(0, 0, Type.ITEM_REMOVED, sku);
+    }
+
+    public static StateEvent itemPriorityChanged(String sku, TaskPriority priority) {
+        return new StateEvent(0, 0, Type.ITEM_PRIORITY_CHANGED, sku, priority.name());
+    }
+
+    /** {@code v} now holds {@code quantity} of {@code sku} (0 = none). */
+    public static StateEvent itemAssigned(StorageVehicle v, String sku, String name, int quantity) {
+        return new StateEvent(0, 0, Type.ITEM_ASSIGNED, v.getId(), sku, name, String.valueOf(quantity));
+    }
+
+    public static StateEvent taskCreated(Task t) {
+        return new StateEvent(0, 0, Type.TASK_CREATED, t.id, opt(t.description), opt(t.assigneeVehicleId),
+                t.priority.name(), t.status.name());
+    }
+
+    public static StateEvent taskStatusChanged(String taskId, TaskStatus status) {
+        return new StateEvent(0, 0, Type.TASK_STATUS_CHANGED, taskId, status.name());
+    }
+
+    public static StateEvent taskArchived(String taskId) {
+        return new StateEvent(0, 0, Type.TASK_ARCHIVED, taskId);
+    }
+
+    public static StateEvent deliveryStarted(String taskId, StorageVehicle v, String sku, String itemName, int quantity,
+                                             int poolLeft, long dueAtMillis) {
+        return new StateEvent(0, 0, Type.DELIVERY_STARTED, taskId, v.getId(), sku, itemName, String.valueOf(quantity),
+                String.valueOf(poolLeft), String.valueOf(dueAtMillis));
+    }
+
+    public static StateEvent manualDeliveryStarted(String taskId, StorageVehicle v, long dueAtMillis) {
+        return new StateEvent(0, 0, Type.MANUAL_DELIVERY_STARTED, taskId, v.getId(), String.valueOf(dueAtMillis));
+    }
+
+    public static StateEvent deliveryFinished(String taskId) {
+        return new StateEvent(0, 0, Type.DELIVERY_FINISHED, taskId);
+    }
+
+    public static StateEvent batteryChanged(StorageVehicle v) {
+        return new StateEvent(0, 0, Type.BATTERY_CHANGED, v.getId(), String.valueOf(v.getBatteryLevelPct()));
+    }
+
+    public static StateEvent chargingChanged(StorageVehicle v) {
+        ChargingStation st = v.getAssignedStation();
+        return new StateEvent(0, 0, Type.CHARGING_CHANGED, v.getId(), bit(v.isCharging()), bit(v.isWaitingForCharge()),
+                bit(v.hasLeftQueue()), st == null ? "" : st.getId());
+    }
+
+    public static StateEvent autoResumeChanged(boolean enabled) {
+        return new StateEvent(0, 0, Type.AUTO_RESUME_CHANGED, bit(enabled));
+    }
+
+    private static String bit(boolean b) {
+        return b ? "1" : "0";
+    }
+
+    private static String opt(String s) {
+        return s == null ? "" : s;
+    }
+
+    // ------------------------------------------------------------
+    // Rows
+    // ------------------------------------------------------------
+    /** The CSV row including checksum and trailing newline. */
+    public String toRow() {
+        String[] fields = new String[2 + args.length];
+        fields[0] = Long.toString(millis);
+        fields[1] = type.name();
+        System.arraycopy(args, 0, fields, 2, args.length);
+        return ChecksummedRow.format(seq, fields);
+    }
+
+    /** Parse one row; null for the header, a malformed row or a checksum mismatch. */
+    public static StateEvent parse(String line) {
+        List<String> f = ChecksummedRow.parse(line);
+        if (f == null || f.size() < 3) return null;
+        try {
+            Type type = Type.valueOf(f.get(2));
+            if (f.size() != 3 + type.arity) return null;
+            return new StateEvent(Long.parseLong(f.get(0)), Long.parseLong(f.get(1)), type,
+                    f.subList(3, f.size()).toArray(new String[0]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + seq + " " + type + " " + Arrays.toString(args);
+    }
+}
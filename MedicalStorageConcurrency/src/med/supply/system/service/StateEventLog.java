@@ -0,0 +1,438 @@
+package med.supply.system.service;
+
+import med.supply.system.util.LogReader;
+import med.supply.system.util.MetadataWriter;
+import med.supply.system.util.SimulationClock;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of {@link StateEvent}s ({@code data/state/events.log}): every change to
+ * vehicles, inventories, the item pool and tasks, so the state can be rebuilt after a crash and an
+ * incident can be replayed event by event ({@link StateReplay}).
+ * <p>
+ * {@link #record} only numbers the event and queues it; a background thread writes the queue in
+ * one batch once {@code batchSize} events are waiting or {@code flushIntervalMs} has passed, with
+ * at most one fsync per batch. {@link #flush} waits until everything recorded so far is written.
+ * <p>
+ * {@link #record} never blocks and never throws, as it is called while a task slot or a vehicle
+ * is locked: past {@code capacity} waiting events the writer is woken at once and the overflow is
+ * counted, and events recorded after {@link #close} are dropped and counted.
+ * <p>
+ * {@link #open} checks the file like {@link med.supply.system.util.DeliveryJournal} does: rows
+ * after the first torn, damaged or out-of-sequence row are dropped. {@link #compact} drops the
+ * rows a snapshot already contains.
+ */
+public final class StateEventLog implements AutoCloseable {
+
+    public static final String HEADER = "seq,millis,type,args,crc";
+
+    /** What {@link #open} found in the existing file. */
+    public static final class Recovery {
+        public final long firstSeq;
+        public final long lastSeq;
+        public final long events;
+        public final long discardedBytes;
+
+        Recovery(long firstSeq, long lastSeq, long events, long discardedBytes) {
+            this.firstSeq = firstSeq;
+            this.lastSeq = lastSeq;
+            this.events = events;
+            this.discardedBytes = discardedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Recovery{events=" + events + ", seq=" + firstSeq + ".." + lastSeq +
+                    ", discardedBytes=" + discardedBytes + '}';
+        }
+    }
+
+    private final Path file;
+    private final SimulationClock clock;
+    private final MetadataWriter.FsyncPolicy policy;
+    private final int batchSize;
+    private final int capacity;
+    private final long flushIntervalMs;
+    private final Recovery recovery;
+
+    private final Object lock = new Object();
+    private List<StateEvent> pending = new ArrayList<>();
+    private long lastSeq;       // last sequence number handed out
+    private long writtenSeq;    // everything up to here is in the file
+    private boolean flushRequested;
+    private boolean closed;
+    private IOException lastError;
+
+    private final Object ioLock = new Object(); // writer thread and compaction
+    private FileChannel channel;
+    private final Thread writer;
+
+    private long batches;
+    private long written;
+    private long syncs;
+    private long compactions;
+    private long overflows;
+    private long dropped;
+
+    private StateEventLog(Path file, SimulationClock clock, MetadataWriter.FsyncPolicy policy, int batchSize,
+                          int capacity, long flushIntervalMs) throws IOException {
+        if (batchSize <= 0 || capacity < batchSize) throw new IllegalArgumentException("need 0 < batchSize <= capacity");
+        if (flushIntervalMs <= 0) throw new IllegalArgumentException("flushIntervalMs must be positive");
+        this.file = file;
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.flushIntervalMs = flushIntervalMs;
+        this.recovery = recover(file);
+        this.lastSeq = recovery.lastSeq;
+        this.writtenSeq = recovery.lastSeq;
+        this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        writer = new Thread(this::writeLoop, "state-events");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Open (creating if needed): batches of up to 512 events, written at least every 100 ms. */
+    public static StateEventLog open(Path file, SimulationClock clock) throws IOException {
+        return open(file, clock, MetadataWriter.FsyncPolicy.PER_BATCH, 512, 65_536, 100);
+    }
+
+    public static StateEventLog open(Path file, SimulationClock clock, MetadataWriter.FsyncPolicy policy,
+                                     int batchSize, int capacity, long flushIntervalMs) throws IOException {
+        return new StateEventLog(file, clock, policy, batchSize, capacity, flushIntervalMs);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Recovery getRecovery() {
+        return recovery;
+    }
+
+    // ------------------------------------------------------------
+    // Recording
+    // ------------------------------------------------------------
+    /**
+     * Number {@code event}, stamp it with the clock and queue it for writing.
+     * @return its sequence number, 0 if the log is closed and the event was dropped
+     */
+    public long record(StateEvent event) {
+        synchronized (lock) {
+            if (closed) {
+                if (dropped++ == 0) System.err.println("[STATE EVENTS] log closed, dropping " + event);
+                return 0;
+            }
+            long seq = ++lastSeq;
+            pending.add(event.numbered(seq, clock.currentTimeMillis()));
+            if (pending.size() > capacity) overflows++;
+            if (pending.size() == batchSize || pending.size() > capacity) lock.notifyAll();
+            return seq;
+        }
+    }
+
+    /** Continue numbering after {@code seq} (e.g. the last event a restored snapshot contains). */
+    public void advanceSeq(long seq) {
+        synchronized (lock) {
+            if (seq <= lastSeq) return;
+            if (!pending.isEmpty()) throw new IllegalStateException("events recorded before advanceSeq");
+            lastSeq = seq;
+            writtenSeq = seq;
+        }
+    }
+
+    /** Wait until every event recorded so far is written (and synced, per the policy). */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            long target = lastSeq;
+            flushRequested = true;
+            lock.notifyAll();
+            while (writtenSeq < target) {
+                if (lastError != null) throw new IOException("state event log write failed: " + lastError.getMessage(), lastError);
+                if (!writer.isAlive()) throw new IOException("state event log closed: " + file);
+                waitOnLock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing the state event log");
+        }
+        synchronized (ioLock) {
+            if (channel != null) channel.close();
+            channel = null;
+        }
+        synchronized (lock) {
+            if (lastError != null && !pending.isEmpty())
+                throw new IOException(pending.size() + " state event(s) not written: " + lastError.getMessage(), lastError);
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<StateEvent> batch;
+            synchronized (lock) {
+                if (pending.size() < batchSize && !flushRequested && !closed) {
+                    try {
+                        lock.wait(flushIntervalMs);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    flushRequested = false;
+                    if (closed) return;
+                    continue;
+                }
+                batch = pending;
+                pending = new ArrayList<>(Math.min(capacity, batchSize * 2));
+                flushRequested = false;
+                lock.notifyAll(); // flush() waiting
+            }
+
+            try {
+                write(batch);
+                synchronized (lock) {
+                    writtenSeq = batch.get(batch.size() - 1).seq;
+                    lastError = null;
+                    batches++;
+                    written += batch.size();
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                System.err.println("[STATE EVENTS] ERROR writing " + file + ": " + e.getMessage());
+                synchronized (lock) {
+                    batch.addAll(pending); // keep the order: the failed batch goes first
+                    pending = batch;
+                    lastError = e;
+                    lock.notifyAll();
+                    if (closed) return;
+                    try {
+                        lock.wait(flushIntervalMs); // retry on the next tick
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // writer thread only
+    private void write(List<StateEvent> batch) throws IOException {
+        ByteBuffer[] bufs = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < bufs.length; i++) {
+            bufs[i] = ByteBuffer.wrap(batch.get(i).toRow().getBytes(StandardCharsets.UTF_8));
+            remaining += bufs[i].remaining();
+        }
+        synchronized (ioLock) {
+            if (channel == null) throw new IOException("state event log closed: " + file);
+            while (remaining > 0) remaining -= channel.write(bufs);
+            if (policy != MetadataWriter.FsyncPolicy.NONE) {
+                channel.force(false);
+                synchronized (lock) {
+                    syncs++;
+                }
+            }
+        }
+    }
+
+    private void waitOnLock() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the state event log");
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Compaction
+    // ------------------------------------------------------------
+    /**
+     * Drop the events up to {@code throughSeq} from the file, once a snapshot contains them. The
+     * rest is copied to a new file that replaces the old one atomically; events still queued are
+     * written to the new file.
+     * @return number of events dropped
+     */
+    public long compact(long throughSeq) throws IOException {
+        synchronized (ioLock) {
+            if (channel == null) throw new IOException("state event log closed: " + file);
+            Path tmp = file.resolveSibling(file.getFileName() + ".compact.tmp");
+            long dropped = 0;
+            try (Stream<String> lines = LogReader.lines(file);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, HEADER + "\n");
+                for (String line : (Iterable<String>) lines.skip(1)::iterator) {
+                    StateEvent e = StateEvent.parse(line);
+                    if (e == null) continue;
+                    if (e.seq <= throughSeq) dropped++;
+                    else writeFully(out, line + "\n");
+                }
+                out.force(true);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (dropped == 0) {
+                Files.delete(tmp);
+                return 0;
+            }
+            channel.close();
+            channel = null;
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            synchronized (lock) {
+                compactions++;
+            }
+            return dropped;
+        }
+    }
+
+    private static void writeFully(FileChannel out, String s) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+        while (b.hasRemaining()) out.write(b);
+    }
+
+    // ------------------------------------------------------------
+    // Recovery
+    // ------------------------------------------------------------
+    private static Recovery recover(Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            Files.writeString(file, HEADER + "\n", StandardCharsets.UTF_8);
+            return new Recovery(0, 0, 0, 0);
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            BufferedReader in = new BufferedReader(Channels.newReader(ch, StandardCharsets.UTF_8), LogReader.BUFFER_SIZE);
+            String header = in.readLine();
+            if (header == null || !header.trim().equals(HEADER))
+                throw new IOException("not a state event log: " + file + " starts with '" + header + "'");
+
+            long validEnd = header.getBytes(StandardCharsets.UTF_8).length + 1L;
+            long first = 0, last = 0, events = 0;
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    long end = validEnd + line.getBytes(StandardCharsets.UTF_8).length + 1L;
+                    if (end > size) break; // no newline: torn write
+                    StateEvent e = StateEvent.parse(line);
+                    if (e == null || (events > 0 && e.seq != last + 1)) break;
+                    if (events == 0) first = e.seq;
+                    last = e.seq;
+                    events++;
+                    validEnd = end;
+                }
+            } catch (CharacterCodingException e) {
+                // garbage after the last good row, dropped below
+            }
+
+            long discarded = Math.max(0, size - validEnd);
+            if (discarded > 0) {
+                ch.truncate(validEnd);
+                ch.force(true);
+                System.err.println("[STATE EVENTS] dropped " + discarded + " byte(s) of damaged events after #" + last + " in " + file);
+            }
+            return new Recovery(first, last, events, discarded);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Reading
+    // ------------------------------------------------------------
+    /** Valid events of a log file in order; the header and damaged rows are skipped. */
+    public static Stream<StateEvent> read(Path file) throws IOException {
+        return LogReader.lines(file).map(StateEvent::parse).filter(Objects::nonNull);
+    }
+
+    // ------------------------------------------------------------
+    // Counters
+    // ------------------------------------------------------------
+    public long getLastSeq() {
+        synchronized (lock) {
+            return lastSeq;
+        }
+    }
+
+    /** Last sequence number known to be in the file. */
+    public long getWrittenSeq() {
+        synchronized (lock) {
+            return writtenSeq;
+        }
+    }
+
+    public int getPending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /** Batches written; fewer than {@link #getWrittenCount()} means events were grouped. */
+    public long getBatchCount() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    public long getWrittenCount() {
+        synchronized (lock) {
+            return written;
+        }
+    }
+
+    public long getSyncCount() {
+        synchronized (lock) {
+            return syncs;
+        }
+    }
+
+    public long getCompactionCount() {
+        synchronized (lock) {
+            return compactions;
+        }
+    }
+
+    /** Events recorded while more than {@code capacity} were already waiting. */
+    public long getOverflowCount() {
+        synchronized (lock) {
+            return overflows;
+        }
+    }
+
+    /** Events recorded after {@link #close}, not written. */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package med.supply.system.service;
+
+import med.supply.system.model.ChargingStation;
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskPriority;
+import med.supply.system.model.TaskStatus;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds a {@link StateSnapshot} by applying {@link StateEvent}s to an earlier one (or to an
+ * empty state), without touching the running services: recovery is "last snapshot + the events
+ * after it", and an incident can be replayed up to any event and inspected.
+ * <p>
+ * Events up to {@link #getEventSeq()} are skipped. A snapshot is taken while the system runs, so
+ * it may already contain some of the events after its sequence number; since every event carries
+ * absolute values, applying those again does not change the result.
+ */
+public final class StateReplay {
+
+    private static final class VehicleState {
+        final String id;
+        final String name;
+        int batteryPct;
+        boolean charging;
+        boolean waitingForCharge;
+        boolean leftQueue;
+        boolean onDelivery;
+        String stationId;
+        final Map<String, StateSnapshot.Item> inventory = new LinkedHashMap<>();
+
+        VehicleState(String id, String name, int batteryPct) {
+            this.id = id;
+            this.name = name;
+            this.batteryPct = batteryPct;
+        }
+
+        VehicleState(StateSnapshot.Vehicle v) {
+            this(v.id, v.name, v.batteryPct);
+            charging = v.charging;
+            waitingForCharge = v.waitingForCharge;
+            leftQueue = v.leftQueue;
+            onDelivery = v.onDelivery;
+            stationId = v.stationId;
+            for (StateSnapshot.Item it : v.inventory) inventory.put(it.sku, it);
+        }
+
+        StateSnapshot.Vehicle toSnapshot() {
+            return new StateSnapshot.Vehicle(id, name, batteryPct, charging, waitingForCharge, leftQueue, onDelivery,
+                    stationId, new ArrayList<>(inventory.values()));
+        }
+    }
+
+    private long createdMillis;
+    private int nextTaskNumber = 1;
+    private boolean autoResume;
+    private long eventSeq;
+    private final Map<String, StateSnapshot.Station> stations = new LinkedHashMap<>();
+    private final Map<String, VehicleState> vehicles = new LinkedHashMap<>();
+    private final Map<String, StateSnapshot.Item> unassigned = new LinkedHashMap<>();
+    private final Map<String, TaskPriority> priorities = new LinkedHashMap<>();
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final Map<String, StateSnapshot.Delivery> deliveries = new LinkedHashMap<>();
+
+    private long applied;
+    private long unmatched;
+    private long gaps;
+
+    /** Start from nothing: every event of the log is applied. */
+    public StateReplay() {
+    }
+
+    /** Start from {@code base}: only events after {@code base.eventSeq} are applied. */
+    public StateReplay(StateSnapshot base) {
+        createdMillis = base.createdMillis;
+        nextTaskNumber = base.nextTaskNumber;
+        autoResume = base.autoResume;
+        eventSeq = base.eventSeq;
+        for (StateSnapshot.Station s : base.stations) stations.put(s.id, s);
+        for (StateSnapshot.Vehicle v : base.vehicles) vehicles.put(v.id, new VehicleState(v));
+        for (StateSnapshot.Item it : base.unassigned) unassigned.put(it.sku, it);
+        priorities.putAll(base.itemPriorities);
+        for (Task t : base.tasks) tasks.put(t.id, copy(t));
+        for (StateSnapshot.Delivery d : base.deliveries) deliveries.put(d.taskId, d);
+    }
+
+    /**
+     * Apply {@code e} if it comes after everything applied so far.
+     * @return false if it was skipped as already contained
+     */
+    public boolean apply(StateEvent e) {
+        if (e.seq <= eventSeq) return false;
+        if (e.seq != eventSeq + 1) gaps++;
+        eventSeq = e.seq;
+        createdMillis = Math.max(createdMillis, e.millis);
+        applied++;
+
+        switch (e.type) {
+            case VEHICLE_ADDED -> vehicles.put(e.arg(0), new VehicleState(e.arg(0), e.arg(1), e.intArg(2)));
+            case STATION_ADDED -> stations.put(e.arg(0), new StateSnapshot.Station(e.arg(0), e.arg(1), null));
+            case STATION_LOAD_CHANGED -> {
+                StateSnapshot.Station s = stations.get(e.arg(0));
+                if (s == null) unmatched++;
+                else stations.put(s.id, new StateSnapshot.Station(s.id, s.name, e.flag(1) ? ChargingStation.OPERATOR : null));
+            }
+            case ITEM_ADDED -> unassigned.put(e.arg(0), new StateSnapshot.Item(e.arg(0), e.arg(1), e.intArg(2)));
+            case ITEM_REMOVED -> unassigned.remove(e.arg(0));
+            case ITEM_PRIORITY_CHANGED -> {
+                TaskPriority p = TaskPriority.valueOf(e.arg(1));
+                if (p == TaskPriority.NORMAL) priorities.remove(e.arg(0));
+                else priorities.put(e.arg(0), p);
+            }
+            case ITEM_ASSIGNED -> {
+                VehicleState v = vehicle(e.arg(0));
+                if (v == null) break;
+                int qty = e.intArg(3);
+                if (qty <= 0) v.inventory.remove(e.arg(1));
+                else v.inventory.put(e.arg(1), new StateSnapshot.Item(e.arg(1), e.arg(2), qty));
+            }
+            case TASK_CREATED -> {
+                Task t = new Task(e.arg(0), e.optArg(1), e.optArg(2), TaskPriority.valueOf(e.arg(3)));
+                t.status = TaskStatus.valueOf(e.arg(4));
+                tasks.put(t.id, t); // an existing id keeps its place, like TaskStore.put
+                nextTaskNumber = Math.max(nextTaskNumber, autoTaskNumber(t.id) + 1);
+            }
+            case TASK_STATUS_CHANGED -> {
+                Task t = tasks.get(e.arg(0));
+                if (t == null) unmatched++;
+                else t.status = TaskStatus.valueOf(e.arg(1));
+            }
+            case TASK_ARCHIVED -> tasks.remove(e.arg(0));
+            case DELIVERY_STARTED -> {
+                String sku = e.arg(2);
+                int poolLeft = e.intArg(5);
+                if (poolLeft <= 0) unassigned.remove(sku);
+                else unassigned.put(sku, new StateSnapshot.Item(sku, e.arg(3), poolLeft));
+                deliveries.put(e.arg(0), new StateSnapshot.Delivery(e.arg(0), e.arg(1), e.arg(3), e.intArg(4), false, e.longArg(6)));
+                VehicleState v = vehicle(e.arg(1));
+                if (v != null) v.onDelivery = true;
+            }
+            case MANUAL_DELIVERY_STARTED ->
+                    deliveries.put(e.arg(0), new StateSnapshot.Delivery(e.arg(0), e.arg(1), null, 0, true, e.longArg(2)));
+            case DELIVERY_FINISHED -> {
+                StateSnapshot.Delivery d = deliveries.remove(e.arg(0));
+                if (d != null && !d.manual) {
+                    VehicleState v = vehicles.get(d.vehicleId);
+                    if (v != null) v.onDelivery = false;
+                }
+            }
+            case BATTERY_CHANGED -> {
+                VehicleState v = vehicle(e.arg(0));
+                if (v != null) v.batteryPct = e.intArg(1);
+            }
+            case CHARGING_CHANGED -> {
+                VehicleState v = vehicle(e.arg(0));
+                if (v == null) break;
+                v.charging = e.flag(1);
+                v.waitingForCharge = e.flag(2);
+                v.leftQueue = e.flag(3);
+                v.stationId = e.optArg(4);
+                for (StateSnapshot.Station s : new ArrayList<>(stations.values())) {
+                    boolean owns = v.charging && s.id.equals(v.stationId);
+                    if (owns && !v.id.equals(s.owner)) stations.put(s.id, new StateSnapshot.Station(s.id, s.name, v.id));
+                    else if (!owns && v.id.equals(s.owner)) stations.put(s.id, new StateSnapshot.Station(s.id, s.name, null));
+                }
+            }
+            case AUTO_RESUME_CHANGED -> autoResume = e.flag(0);
+        }
+        return true;
+    }
+
+    /** Apply every event in order; returns how many were applied. */
+    public long applyAll(Iterable<StateEvent> events) {
+        long before = applied;
+        for (StateEvent e : events) apply(e);
+        return applied - before;
+    }
+
+    private VehicleState vehicle(String id) {
+        VehicleState v = vehicles.get(id);
+        if (v == null) unmatched++;
+        return v;
+    }
+
+    // "Task 17" -> 17, anything else -> 0
+    private static int autoTaskNumber(String id) {
+        if (!id.startsWith("Task ")) return 0;
+        try {
+            return Integer.parseInt(id.substring(5).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Task copy(Task t) {
+        Task c = new Task(t.id, t.description, t.assigneeVehicleId, t.priority);
+        c.status = t.status;
+        return c;
+    }
+
+    /** The state after the events applied so far. */
+    public StateSnapshot toSnapshot() {
+        List<StateSnapshot.Vehicle> vs = new ArrayList<>(vehicles.size());
+        for (VehicleState v : vehicles.values()) vs.add(v.toSnapshot());
+        List<Task> ts = new ArrayList<>(tasks.size());
+        for (Task t : tasks.values()) ts.add(copy(t));
+        return new StateSnapshot(createdMillis, nextTaskNumber, autoResume, eventSeq, new ArrayList<>(stations.values()),
+                vs, new ArrayList<>(unassigned.values()), new LinkedHashMap<>(priorities), ts,
+                new ArrayList<>(deliveries.values()));
+    }
+
+    // ------------------------------------------------------------
+    // Counters
+    // ------------------------------------------------------------
+    /** Sequence number of the last event applied (or contained in the starting snapshot). */
+    public long getEventSeq() {
+        return eventSeq;
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    /** Events about a vehicle, station or task that did not exist at that point. */
+    public long getUnmatched() {
+        return unmatched;
+    }
+
+    /** Places where sequence numbers were missing, i.e. events were lost. */
+    public long getGaps() {
+        return gaps;
+    }
+}
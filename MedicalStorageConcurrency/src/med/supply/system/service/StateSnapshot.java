@@ -0,0 +1,468 @@
+package med.supply.system.service;
+
+import med.supply.system.model.Task;
+import med.supply.system.model.TaskPriority;
+import med.supply.system.model.TaskStatus;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Everything needed to bring the system back after a restart: charging stations, vehicles with
+ * battery, flags and inventory, tasks in creation order, the unassigned item pool with its
+ * priorities, deliveries that were under way and the next auto-task number.
+ * <p>
+ * Binary layout (big-endian):
+ * <pre>
+ *   header  "MEDSNAP\0" | u16 version | u16 flags | i64 created (epoch ms) | i32 body length | i32 CRC32C of body
+ *   body    strings:    varint count, then varint length + UTF-8 per string
+ *           varint next task number
+ *           varlong last event sequence number contained
+ *           stations:   varint count, then id, name, owner?
+ *           vehicles:   varint count, then id, name, u8 battery, u8 flags, station?, inventory
+ *           unassigned: inventory
+ *           priorities: varint count, then sku, priority
+ *           tasks:      varint count, then id, description?, assignee?, status, priority
+ *           deliveries: varint count, then task, vehicle, item?, varint qty, u8 manual, varint due (epoch ms)
+ *   inventory = varint count, then sku, name, varint quantity
+ * </pre>
+ * Every string (including enum names) is a varint index into the string table, so SKUs and item
+ * names repeated across thousands of inventories are stored once; {@code ?} marks an optional
+ * string (index + 1, 0 = null). {@link #read} maps the file and checks the CRC before decoding.
+ * Files written by another version are rejected.
+ */
+public final class StateSnapshot {
+
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = {'M', 'E', 'D', 'S', 'N', 'A', 'P', 0};
+    private static final int HEADER_BYTES = 28;
+
+    static final int FLAG_AUTO_RESUME = 1;
+
+    private static final int V_CHARGING = 1;
+    private static final int V_WAITING = 2;
+    private static final int V_LEFT_QUEUE = 4;
+    private static final int V_ON_DELIVERY = 8;
+
+    /** One inventory line (a copy, not the live {@code StorageItem}). */
+    public static final class Item {
+        public final String sku;
+        public final String name;
+        public final int quantity;
+
+        public Item(String sku, String name, int quantity) {
+            this.sku = sku;
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+
+    public static final class Station {
+        public final String id;
+        public final String name;
+        public final String owner; // null = free
+
+        public Station(String id, String name, String owner) {
+            this.id = id;
+            this.name = name;
+            this.owner = owner;
+        }
+    }
+
+    public static final class Vehicle {
+        public final String id;
+        public final String name;
+        public final int batteryPct;
+        public final boolean charging;
+        public final boolean waitingForCharge;
+        public final boolean leftQueue;
+        public final boolean onDelivery;
+        public final String stationId; // assigned station, or null
+        public final List<Item> inventory;
+
+        public Vehicle(String id, String name, int batteryPct, boolean charging, boolean waitingForCharge,
+                       boolean leftQueue, boolean onDelivery, String stationId, List<Item> inventory) {
+            this.id = id;
+            this.name = name;
+            this.batteryPct = batteryPct;
+            this.charging = charging;
+            this.waitingForCharge = waitingForCharge;
+            this.leftQueue = leftQueue;
+            this.onDelivery = onDelivery;
+            this.stationId = stationId;
+            this.inventory = inventory;
+        }
+    }
+
+    /** A delivery that was scheduled but not finished; {@link TaskService} runs it again on restore. */
+    public static final class Delivery {
+        public final String taskId;
+        public final String vehicleId;
+        public final String itemName; // null for a manual IN_PROGRESS task (delivers whatever the vehicle holds)
+        public final int quantity;
+        public final boolean manual;
+        public final long dueAtMillis;
+
+        public Delivery(String taskId, String vehicleId, String itemName, int quantity, boolean manual, long dueAtMillis) {
+            this.taskId = taskId;
+            this.vehicleId = vehicleId;
+            this.itemName = itemName;
+            this.quantity = quantity;
+            this.manual = manual;
+            this.dueAtMillis = dueAtMillis;
+        }
+    }
+
+    public final long createdMillis;
+    public final int nextTaskNumber;
+    public final boolean autoResume;
+    /** Every {@link StateEvent} up to this sequence number is contained (0 = none / no event log). */
+    public final long eventSeq;
+    public final List<Station> stations;
+    public final List<Vehicle> vehicles;
+    public final List<Item> unassigned;
+    public final Map<String, TaskPriority> itemPriorities;
+    public final List<Task> tasks; // copies, in creation order
+    public final List<Delivery> deliveries;
+
+    public StateSnapshot(long createdMillis, int nextTaskNumber, boolean autoResume, List<Station> stations,
+                         List<Vehicle> vehicles, List<Item> unassigned, Map<String, TaskPriority> itemPriorities,
+                         List<Task> tasks, List<Delivery> deliveries) {
+        this(createdMillis, nextTaskNumber, autoResume, 0, stations, vehicles, unassigned, itemPriorities, tasks, deliveries);
+    }
+
+    public StateSnapshot(long createdMillis, int nextTaskNumber, boolean autoResume, long eventSeq, List<Station> stations,
+                         List<Vehicle> vehicles, List<Item> unassigned, Map<String, TaskPriority> itemPriorities,
+                         List<Task> tasks, List<Delivery> deliveries) {
+        this.createdMillis = createdMillis;
+        this.nextTaskNumber = nextTaskNumber;
+        this.autoResume = autoResume;
+        this.eventSeq = eventSeq;
+        this.stations = Collections.unmodifiableList(stations);
+        this.vehicles = Collections.unmodifiableList(vehicles);
+        this.unassigned = Collections.unmodifiableList(unassigned);
+        this.itemPriorities = Collections.unmodifiableMap(itemPriorities);
+        this.tasks = Collections.unmodifiableList(tasks);
+        this.deliveries = Collections.unmodifiableList(deliveries);
+    }
+
+    @Override
+    public String toString() {
+        return "StateSnapshot{" + vehicles.size() + " vehicle(s), " + stations.size() + " station(s), " +
+                tasks.size() + " task(s), " + unassigned.size() + " unassigned item(s), " +
+                deliveries.size() + " delivery(s) under way, events up to #" + eventSeq + "}";
+    }
+
+    // ------------------------------------------------------------
+    // Writing
+    // ------------------------------------------------------------
+    /**
+     * Write to {@code file} atomically: a temp file is written and synced, then moved over the old
+     * snapshot, so a crash leaves either the old or the new one. Returns the size in bytes.
+     */
+    public long write(Path file) throws IOException {
+        Encoder enc = new Encoder();
+        ByteBuffer body = enc.encode(this);
+        ByteBuffer table = enc.stringTable();
+
+        CRC32C crc = new CRC32C();
+        crc.update(table.duplicate());
+        crc.update(body.duplicate());
+        int bodyLength = table.remaining() + body.remaining();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.put(MAGIC).putShort((short) VERSION).putShort((short) (autoResume ? FLAG_AUTO_RESUME : 0))
+                .putLong(createdMillis).putInt(bodyLength).putInt((int) crc.getValue()).flip();
+
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] parts = {header, table, body};
+            long remaining = HEADER_BYTES + (long) bodyLength;
+            while (remaining > 0) remaining -= out.write(parts);
+            out.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return HEADER_BYTES + (long) bodyLength;
+    }
+
+    private static final class Encoder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+
+        ByteBuffer encode(StateSnapshot s) {
+            varint(s.nextTaskNumber);
+            varlong(s.eventSeq);
+
+            varint(s.stations.size());
+            for (Station st : s.stations) {
+                str(st.id);
+                str(st.name);
+                optStr(st.owner);
+            }
+
+            varint(s.vehicles.size());
+            for (Vehicle v : s.vehicles) {
+                str(v.id);
+                str(v.name);
+                ensure(2);
+                buf.put((byte) v.batteryPct);
+                buf.put((byte) ((v.charging ? V_CHARGING : 0) | (v.waitingForCharge ? V_WAITING : 0)
+                        | (v.leftQueue ? V_LEFT_QUEUE : 0) | (v.onDelivery ? V_ON_DELIVERY : 0)));
+                optStr(v.stationId);
+                items(v.inventory);
+            }
+
+            items(s.unassigned);
+
+            varint(s.itemPriorities.size());
+            for (Map.Entry<String, TaskPriority> e : s.itemPriorities.entrySet()) {
+                str(e.getKey());
+                str(e.getValue().name());
+            }
+
+            varint(s.tasks.size());
+            for (Task t : s.tasks) {
+                str(t.id);
+                optStr(t.description);
+                optStr(t.assigneeVehicleId);
+                str(t.status.name());
+                str(t.priority.name());
+            }
+
+            varint(s.deliveries.size());
+            for (Delivery d : s.deliveries) {
+                str(d.taskId);
+                str(d.vehicleId);
+                optStr(d.itemName);
+                varint(d.quantity);
+                ensure(1);
+                buf.put((byte) (d.manual ? 1 : 0));
+                varlong(d.dueAtMillis);
+            }
+            return buf.flip();
+        }
+
+        ByteBuffer stringTable() {
+            List<byte[]> utf8 = new ArrayList<>(strings.size());
+            int size = 5;
+            for (String s : strings) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                utf8.add(b);
+                size += 5 + b.length;
+            }
+            ByteBuffer body = buf;
+            buf = ByteBuffer.allocate(size);
+            varint(strings.size());
+            for (byte[] b : utf8) {
+                varint(b.length);
+                buf.put(b);
+            }
+            ByteBuffer table = buf.flip();
+            buf = body;
+            return table;
+        }
+
+        private void items(List<Item> items) {
+            varint(items.size());
+            for (Item it : items) {
+                str(it.sku);
+                str(it.name);
+                varint(it.quantity);
+            }
+        }
+
+        private void str(String s) {
+            varint(id(s));
+        }
+
+        private void optStr(String s) {
+            varint(s == null ? 0 : id(s) + 1);
+        }
+
+        private int id(String s) {
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+
+        private void varint(int v) {
+            varlong(v & 0xFFFFFFFFL);
+        }
+
+        private void varlong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        private void ensure(int bytes) {
+            if (buf.remaining() >= bytes) return;
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+            buf.flip();
+            bigger.put(buf);
+            buf = bigger;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Reading
+    // ------------------------------------------------------------
+    /** Map {@code file}, verify header and checksum, and decode it. */
+    public static StateSnapshot read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES) throw new IOException("not a state snapshot (too short): " + file);
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            byte[] magic = new byte[MAGIC.length];
+            map.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("not a state snapshot: " + file);
+            int version = map.getShort() & 0xFFFF;
+            if (version != VERSION)
+                throw new IOException("state snapshot " + file + " has version " + version + ", this build reads " + VERSION);
+            int flags = map.getShort() & 0xFFFF;
+            long created = map.getLong();
+            int bodyLength = map.getInt();
+            int expectedCrc = map.getInt();
+            if (bodyLength < 0 || HEADER_BYTES + (long) bodyLength != size)
+                throw new IOException("state snapshot " + file + " is truncated or has trailing bytes");
+
+            ByteBuffer body = map.slice();
+            CRC32C crc = new CRC32C();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != expectedCrc) throw new IOException("state snapshot " + file + " failed its checksum");
+
+            try {
+                return new Decoder(body).decode(created, (flags & FLAG_AUTO_RESUME) != 0);
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("corrupt state snapshot " + file + ": " + e, e);
+            }
+        }
+    }
+
+    private static final class Decoder {
+        private final ByteBuffer in;
+        private String[] strings;
+        private byte[] scratch = new byte[256];
+
+        Decoder(ByteBuffer in) {
+            this.in = in;
+        }
+
+        StateSnapshot decode(long created, boolean autoResume) {
+            int n = count();
+            strings = new String[n];
+            for (int i = 0; i < n; i++) {
+                int len = count();
+                if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+                in.get(scratch, 0, len);
+                strings[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+            }
+
+            int nextTaskNumber = (int) varlong();
+            long eventSeq = varlong();
+
+            int ns = count();
+            List<Station> stations = new ArrayList<>(ns);
+            for (int i = 0; i < ns; i++) stations.add(new Station(str(), str(), optStr()));
+
+            int nv = count();
+            List<Vehicle> vehicles = new ArrayList<>(nv);
+            for (int i = 0; i < nv; i++) {
+                String id = str(), name = str();
+                int battery = in.get() & 0xFF;
+                int f = in.get() & 0xFF;
+                String station = optStr();
+                vehicles.add(new Vehicle(id, name, battery, (f & V_CHARGING) != 0, (f & V_WAITING) != 0,
+                        (f & V_LEFT_QUEUE) != 0, (f & V_ON_DELIVERY) != 0, station, items()));
+            }
+
+            List<Item> unassigned = items();
+
+            int np = count();
+            Map<String, TaskPriority> priorities = new LinkedHashMap<>();
+            for (int i = 0; i < np; i++) priorities.put(str(), TaskPriority.valueOf(str()));
+
+            int nt = count();
+            List<Task> tasks = new ArrayList<>(nt);
+            for (int i = 0; i < nt; i++) {
+                String id = str(), description = optStr(), assignee = optStr();
+                TaskStatus status = TaskStatus.valueOf(str());
+                Task t = new Task(id, description, assignee, TaskPriority.valueOf(str()));
+                t.status = status;
+                tasks.add(t);
+            }
+
+            int nd = count();
+            List<Delivery> deliveries = new ArrayList<>(nd);
+            for (int i = 0; i < nd; i++) {
+                String task = str(), vehicle = str(), item = optStr();
+                int qty = (int) varlong();
+                boolean manual = in.get() != 0;
+                deliveries.add(new Delivery(task, vehicle, item, qty, manual, varlong()));
+            }
+            if (in.hasRemaining()) throw new IllegalArgumentException(in.remaining() + " unread byte(s)");
+            return new StateSnapshot(created, nextTaskNumber, autoResume, eventSeq, stations, vehicles, unassigned,
+                    priorities, tasks, deliveries);
+        }
+
+        private List<Item> items() {
+            int n = count();
+            List<Item> items = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) items.add(new Item(str(), str(), (int) varlong()));
+            return items;
+        }
+
+        private String str() {
+            return strings[count()];
+        }
+
+        private String optStr() {
+            int id = count();
+            return id == 0 ? null : strings[id - 1];
+        }
+
+        // a varint used as a count / index: never more than the bytes left
+        private int count() {
+            long v = varlong();
+            if (v > in.capacity()) throw new IllegalArgumentException("count " + v + " larger than the file");
+            return (int) v;
+        }
+
+        private long varlong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.get() & 0xFF;
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IllegalArgumentException("varint too long");
+        }
+    }
+}
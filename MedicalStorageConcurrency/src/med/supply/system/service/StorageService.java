@@ -9,6 +9,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class StorageService {
 
@@ -17,23 +18,60 @@ public class StorageService {
     private TaskService taskService;
 
     // All newly created items live here until deliveries are executed
-    private final Map<String, StorageItem> unassignedItems = new HashMap<>();
+    private final Map<String, StorageItem> unassignedItems = new ConcurrentHashMap<>();
+    // Dispatch priority per SKU; items not listed are NORMAL
+    private final Map<String, TaskPriority> itemPriorities = new ConcurrentHashMap<>();
+
+    private volatile StateEventLog events; // null = changes are not logged
+    // forwards battery, charging and inventory changes of the vehicles added here
+    private final VehicleEventListener vehicleEvents = new VehicleEventListener() {
+        @Override
+        public void onBatteryChanged(StorageVehicle v) {
+            record(StateEvent.batteryChanged(v));
+        }
+
+        @Override
+        public void onChargingChanged(StorageVehicle v) {
+            record(StateEvent.chargingChanged(v));
+        }
+
+        @Override
+        public void onInventoryChanged(StorageVehicle v, String sku) {
+            StorageItem it = v.getInventory().get(sku);
+            record(StateEvent.itemAssigned(v, sku, it == null ? "" : it.getName(), it == null ? 0 : it.getQuantity()));
+        }
+    };
 
     public StorageService(Repository repo, LogManager logs) {
+        this(repo, logs, true);
+    }
+
+    /** @param loadDefaults false when the item pool comes from a snapshot instead of default_items.csv */
+    public StorageService(Repository repo, LogManager logs, boolean loadDefaults) {
         this.repo = repo;
         this.logs = logs;
 
         for (ChargingStation s : ChargingStation.DEFAULT_STATIONS)
-            repo.stations.putIfAbsent(s.getId(), s);
+            repo.putStationIfAbsent(s);
 
-        loadDefaultItems();
+        if (loadDefaults) loadDefaultItems();
     }
 
     public void attachTaskService(TaskService tasks) {
         this.taskService = tasks;
     }
 
-    private void loadDefaultItems() {
+    /** Log every change made through this service (and by its vehicles) to {@code events}; null stops it. */
+    public void attachEventLog(StateEventLog events) {
+        this.events = events;
+    }
+
+    private void record(StateEvent e) {
+        StateEventLog l = events;
+        if (l != null) l.record(e);
+    }
+
+    public void loadDefaultItems() {
         String file = "resources/default_items.csv";
         try (BufferedReader br = new BufferedReader(new FileReader(file))) {
             br.readLine(); // header
@@ -49,6 +87,7 @@ public class StorageService {
 
                 StorageItem it = new StorageItem(sku, name, qty);
                 unassignedItems.put(sku, it);
+                record(StateEvent.itemAdded(it));
             }
 
             System.out.println("Default medical items loaded.");
@@ -73,17 +112,29 @@ public class StorageService {
         requireValidName(v.getName(), "vehicle");
 
         v.attachLogger(logs);
-        repo.vehicles.put(v.getId(), v);
-
-        logs.logSystem("Vehicle added: " + v);
+        v.attachEventListener(vehicleEvents);
+        repo.putVehicle(v);
+        record(StateEvent.vehicleAdded(v));
+        for (StorageItem it : v.getInventory().values())
+            record(StateEvent.itemAssigned(v, it.getSku(), it.getName(), it.getQuantity()));
+        if (v.isCharging() || v.isWaitingForCharge()) record(StateEvent.chargingChanged(v));
+
+        logs.logSystem("Vehicle added: {}", v);
         logs.logVehicle(v.getName(), "created");
 
-        // If auto-distribute was started earlier, resume when a free AGV appears
-        if (taskService != null && v.getInventory().isEmpty() && !v.isCharging()) {
-            taskService.tryResumeAutoDistributeAsync();
+        // Tracking a free AGV resumes an earlier auto-distribute through the idle pool
+        if (taskService != null) {
+            taskService.trackVehicle(v);
         }
     }
 
+    /** Put back a vehicle from a snapshot: no name check and no "created" log lines. */
+    public void restoreVehicle(StorageVehicle v) {
+        v.attachLogger(logs);
+        v.attachEventListener(vehicleEvents);
+        repo.putVehicle(v);
+    }
+
     private void requireValidName(String name, String kind) {
         if (!RegexUtils.isValidEquipment(name)) {
             throw new IllegalArgumentException(kind + " name must be 2–40 characters.");
@@ -95,17 +146,24 @@ public class StorageService {
     // ------------------------------------------------------------
     public void addChargingStation(ChargingStation s) throws IOException {
         requireValidName(s.getName(), "station");
-        repo.stations.put(s.getId(), s);
-        logs.logSystem("Charging station added: " + s);
+        repo.putStation(s);
+        record(StateEvent.stationAdded(s));
+        logs.logSystem("Charging station added: {}", s);
     }
 
     public void updateChargingLoad(String stationId, int status) throws IOException {
-        ChargingStation s = repo.stations.get(stationId);
+        ChargingStation s = repo.getStation(stationId);
         if (s == null)
             throw new IllegalArgumentException("Station not found: " + stationId);
 
-        if (status == 1) s.occupy();
-        else s.release();
+        if (status == 1) {
+            if (s.occupy()) record(StateEvent.stationLoadChanged(stationId, true));
+            else System.out.println("⚠️ " + s.getName() + " is already in use by " + s.getOwner() + ".");
+        } else if (s.release()) {
+            record(StateEvent.stationLoadChanged(stationId, false));
+        } else if (s.isInUse()) {
+            System.out.println("⚠️ " + s.getName() + " is charging " + s.getOwner() + " and is freed when it is done.");
+        }
     }
 
     // ------------------------------------------------------------
@@ -114,7 +172,23 @@ public class StorageService {
     public void addItem(StorageItem item) throws IOException {
         if (item == null) throw new IllegalArgumentException("Item cannot be null");
         unassignedItems.put(item.getSku(), item);
-        logs.logSystem("Added unassigned item: " + item.getSku() + " (" + item.getName() + "), qty=" + item.getQuantity());
+        record(StateEvent.itemAdded(item));
+        logs.logSystem("Added unassigned item: {} ({}), qty={}", item.getSku(), item.getName(), item.getQuantity());
+    }
+
+    public void setItemPriority(String sku, TaskPriority priority) {
+        if (priority == null || priority == TaskPriority.NORMAL) itemPriorities.remove(sku);
+        else itemPriorities.put(sku, priority);
+        record(StateEvent.itemPriorityChanged(sku, priority == null ? TaskPriority.NORMAL : priority));
+    }
+
+    public TaskPriority getItemPriority(String sku) {
+        return itemPriorities.getOrDefault(sku, TaskPriority.NORMAL);
+    }
+
+    /** Read-only view of the SKUs with a priority other than NORMAL. */
+    public Map<String, TaskPriority> getItemPriorities() {
+        return Collections.unmodifiableMap(itemPriorities);
     }
 
     // ------------------------------------------------------------
@@ -125,7 +199,7 @@ public class StorageService {
 
         System.out.println("\nAssigned Items:");
         boolean found = false;
-        for (StorageVehicle v : repo.vehicles.values()) {
+        for (StorageVehicle v : repo.vehicles()) {
             for (StorageItem it : v.getInventory().values()) {
                 System.out.println("  • " + it + " → Vehicle: " + v.getName());
                 found = true;
@@ -3,13 +3,24 @@ package med.supply.system.service;
 import med.supply.system.exception.ExceptionHandler;
 import med.supply.system.model.*;
 import med.supply.system.repository.Repository;
+import med.supply.system.util.BinaryLogFormat;
+import med.supply.system.util.ExecutionMode;
 import med.supply.system.util.LogManager;
+import med.supply.system.util.MetadataManager;
+import med.supply.system.util.SimulationClock;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 public class TaskService {
 
@@ -19,16 +30,100 @@ public class TaskService {
     private StorageService storage;
     private DestinationService destination;
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+    private static final int DELIVERY_POOL_SIZE = 10;
+    private static final long DELIVERY_MS = 60_000; // one delivery takes a minute
 
-    private int nextTaskNumber = 1;
+    private final ExecutionMode executionMode;
+    private final ExecutorService executor;
+    private final SimulationClock clock;
+    private final ChargingEngine chargingEngine; // shared with the other services on the clock
+    private final AtomicBoolean shutDown = new AtomicBoolean(false);
+
+    private final AtomicInteger nextTaskNumber = new AtomicInteger(1);
 
     private final AtomicBoolean autoResumeEnabled = new AtomicBoolean(false);
     private final AtomicBoolean resumeRunning = new AtomicBoolean(false);
+    private final AtomicBoolean resumePending = new AtomicBoolean(false);
+
+    // vehicles ready for a new delivery, maintained from their state transitions
+    private final IdleVehiclePool idleVehicles = new IdleVehiclePool();
+
+    private volatile DispatchScheduler scheduler = new RoundRobinScheduler();
+    private volatile int batchSize = 50; // max units per delivery
+
+    // DONE-task compaction; disabled until enableTaskArchive() is called
+    private final Object archiveLock = new Object();
+    private volatile Path taskArchiveDir;
+    private volatile Path metaIndex;
+    private volatile int archiveThreshold = 0;
+    private final AtomicLong archivedTasks = new AtomicLong();
+
+    // deliveries scheduled on the clock but not finished yet, so a snapshot can resume them
+    private final Map<String, StateSnapshot.Delivery> inFlight = new ConcurrentHashMap<>();
+
+    private volatile StateEventLog events; // null = changes are not logged
 
     public TaskService(Repository repo, LogManager logs) {
+        this(repo, logs, ExecutionMode.getDefault());
+    }
+
+    /**
+     * @param mode threads for delivery completions and resume rounds: a fixed pool (POOLED) or one
+     *             virtual thread each (VIRTUAL). Deliveries in transit are clock events and hold no
+     *             thread, so neither mode limits how many are under way.
+     */
+    public TaskService(Repository repo, LogManager logs, ExecutionMode mode) {
+        this(repo, logs, mode, SimulationClock.getDefault());
+    }
+
+    /**
+     * @param clock times deliveries; tracked vehicles charge on it too. With a discrete-event clock
+     *              all delivery work runs as clock events, so nothing happens until it is advanced.
+     */
+    public TaskService(Repository repo, LogManager logs, ExecutionMode mode, SimulationClock clock) {
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
         this.repo = repo;
         this.logs = logs;
+        this.clock = clock;
+        this.executionMode = mode;
+        this.executor = mode.newExecutor(DELIVERY_POOL_SIZE, "delivery");
+        this.chargingEngine = ChargingEngine.acquire(clock);
+        idleVehicles.setOnBecameIdle(this::tryResumeAutoDistributeAsync);
+        for (StorageVehicle v : repo.vehicles()) {
+            trackVehicle(v);
+        }
+    }
+
+    /** Follow {@code v}'s state so it can be dispatched as soon as it is idle. */
+    public void trackVehicle(StorageVehicle v) {
+        v.attachClock(clock);
+        idleVehicles.track(v);
+    }
+
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public IdleVehiclePool getIdleVehicles() {
+        return idleVehicles;
+    }
+
+    public void setScheduler(DispatchScheduler scheduler) {
+        if (scheduler == null) throw new IllegalArgumentException("scheduler must not be null");
+        this.scheduler = scheduler;
+    }
+
+    public DispatchScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        this.batchSize = batchSize;
     }
 
     public void attachStorage(StorageService storage) {
@@ -39,6 +134,33 @@ public class TaskService {
         this.destination = dst;
     }
 
+    /** Log task, delivery and item pool changes to {@code events}; null stops it. */
+    public void attachEventLog(StateEventLog events) {
+        this.events = events;
+    }
+
+    private void record(StateEvent e) {
+        StateEventLog l = events;
+        if (l != null) l.record(e);
+    }
+
+    // logged once the task's map slot is released, so a busy log never holds up that slot
+    private Task setStatus(String taskId, TaskStatus status) {
+        Task t = repo.updateTask(taskId, task -> task.status = status);
+        if (t != null) record(StateEvent.taskStatusChanged(taskId, status));
+        return t;
+    }
+
+    /**
+     * Move DONE tasks out of memory into daily CSV files under {@code archiveDir}.
+     * Once {@code threshold} DONE tasks have piled up they are archived automatically (0 = manual only).
+     */
+    public void enableTaskArchive(Path archiveDir, Path metaIndex, int threshold) {
+        this.taskArchiveDir = archiveDir;
+        this.metaIndex = metaIndex;
+        this.archiveThreshold = threshold;
+    }
+
     // ============================================================
     // Task Creation
     // ============================================================
@@ -47,34 +169,35 @@ public class TaskService {
             throw new IllegalArgumentException("Task ID cannot be empty");
 
 
-        if (t.assigneeVehicleId != null && !repo.vehicles.containsKey(t.assigneeVehicleId)) {
+        if (t.assigneeVehicleId != null && !repo.hasVehicle(t.assigneeVehicleId)) {
             throw new IllegalArgumentException("Vehicle with ID '" + t.assigneeVehicleId + "' does not exist.");
         }
 
 
-        repo.tasks.put(t.id, t);
-        logs.logSystem("Task created: " + t);
+        repo.putTask(t);
+        record(StateEvent.taskCreated(t));
+        logs.logSystem("Task created: {}", t);
 
 
         if (t.assigneeVehicleId != null && storage != null) {
-            StorageVehicle v = repo.vehicles.get(t.assigneeVehicleId);
+            StorageVehicle v = repo.getVehicle(t.assigneeVehicleId);
             if (v != null) {
                 Map<String, StorageItem> unassigned = storage.getUnassignedItemsRef();
-                if (!unassigned.isEmpty()) {
-                    StorageItem first = unassigned.values().iterator().next();
-                    unassigned.remove(first.getSku());
+                StorageItem first = unassigned.values().stream().findFirst().orElse(null);
+                // remove(key, value) so two concurrent creators cannot take the same item
+                if (first != null && unassigned.remove(first.getSku(), first)) {
+                    record(StateEvent.itemRemoved(first.getSku()));
                     v.addItem(first);
                     logs.logVehicle(v.getName(),
-                            "Assigned item '" + first.getName() +
-                                    "' from unassigned pool when creating manual task " + t.id);
+                            "Assigned item '{}' from unassigned pool when creating manual task {}", first.getName(), t.id);
                 }
             }
         }
 
         if (t.assigneeVehicleId != null) {
-            StorageVehicle v = repo.vehicles.get(t.assigneeVehicleId);
+            StorageVehicle v = repo.getVehicle(t.assigneeVehicleId);
             if (v != null)
-                logs.logVehicle(v.getName(), "Assigned task " + t.id);
+                logs.logVehicle(v.getName(), "Assigned task {}", t.id);
         }
     }
 
@@ -82,81 +205,85 @@ public class TaskService {
     // Task Status Updates (battery drop + manual delivery sim)
     // ============================================================
     public void updateStatus(String taskId, TaskStatus status) throws Exception {
-        Task t = repo.tasks.get(taskId);
+        Task t = setStatus(taskId, status);
         if (t == null) {
             ExceptionHandler.handleTaskNotFound(taskId,
                     new IllegalArgumentException("Task not found."));
             return;
         }
+        if (status == TaskStatus.DONE) archiveDoneIfNeeded();
 
-        t.status = status;
-        logs.logSystem("Task " + taskId + " -> " + status);
+        logs.logSystem(BinaryLogFormat.Event.taskStatus(taskId, String.valueOf(status)));
 
         if (t.assigneeVehicleId != null) {
-            StorageVehicle v = repo.vehicles.get(t.assigneeVehicleId);
+            StorageVehicle v = repo.getVehicle(t.assigneeVehicleId);
             if (v != null) {
                 int before = v.getBatteryLevelPct();
                 int after = Math.max(0, before - 5);
                 v.setBatteryLevelPct(after);
-                logs.logVehicle(v.getName(),
-                        "Battery drop after update: " + before + "% → " + after + "%");
+                logs.logVehicle(v.getName(), BinaryLogFormat.Event.batteryDrop("update", before, after));
 
 
                 if (status == TaskStatus.IN_PROGRESS) {
-                    executor.submit(() -> {
-                        try {
-                            System.out.println("[TASK " + taskId + "] Running 1-minute delivery for vehicle " + v.getName());
-                            Thread.sleep(60_000); // simulate delivery time
-
+                    System.out.println("[TASK " + taskId + "] Running 1-minute delivery for vehicle " + v.getName());
+                    long due = clock.currentTimeMillis() + DELIVERY_MS;
+                    inFlight.put(taskId, new StateSnapshot.Delivery(taskId, v.getId(), null, 0, true, due));
+                    record(StateEvent.manualDeliveryStarted(taskId, v, due));
+                    clock.schedule(() -> dispatch(() -> finishManualDelivery(taskId, v)), DELIVERY_MS);
+                }
 
-                            StorageItem assignedItem = v.getInventory().values().stream()
-                                    .filter(it -> it.getQuantity() > 0)
-                                    .findFirst()
-                                    .orElse(null);
+            } else {
+                throw new IllegalArgumentException("Vehicle with ID '" + t.assigneeVehicleId + "' does not exist.");
+            }
+        }
+    }
 
-                            if (assignedItem != null) {
-                                int deliverQty = Math.min(assignedItem.getQuantity(), 50); // batch max 50
-                                String itemName = assignedItem.getName();
+    private void finishManualDelivery(String taskId, StorageVehicle v) {
+        inFlight.remove(taskId);
+        record(StateEvent.deliveryFinished(taskId));
+        try {
+            StorageItem assignedItem = v.getInventory().values().stream()
+                    .filter(it -> it.getQuantity() > 0)
+                    .findFirst()
+                    .orElse(null);
 
+            if (assignedItem != null) {
+                int deliverQty = Math.min(assignedItem.getQuantity(), 50); // batch max 50
+                String itemName = assignedItem.getName();
 
-                                if (destination != null)
-                                    destination.recordDelivery(v.getName(), itemName, deliverQty);
 
+                if (destination != null)
+                    destination.recordDelivery(v.getName(), itemName, deliverQty);
 
-                                t.status = TaskStatus.DONE;
-                                logs.logSystem("[TASK " + taskId + "] Delivered " + deliverQty + " of " + itemName + " from vehicle " + v.getName());
-                                System.out.println("[TASK " + taskId + "] Delivered " + deliverQty + " of " + itemName + " from vehicle " + v.getName());
 
+                setStatus(taskId, TaskStatus.DONE);
+                archiveDoneIfNeeded();
+                logs.logSystem(BinaryLogFormat.Event.delivery(taskId, deliverQty, itemName, v.getName()));
+                System.out.println("[TASK " + taskId + "] Delivered " + deliverQty + " of " + itemName + " from vehicle " + v.getName());
 
-                                assignedItem.setQuantity(assignedItem.getQuantity() - deliverQty);
-                                if (assignedItem.getQuantity() <= 0) {
-                                    v.getInventory().remove(assignedItem.getSku());
-                                    logs.logVehicle(v.getName(), "Item " + itemName + " fully delivered and removed from inventory.");
-                                }
-                            } else {
-                                System.out.println("[TASK " + taskId + "] No items found in vehicle " + v.getName() + " to deliver.");
-                            }
 
-                        } catch (InterruptedException e) {
-                            System.err.println("Interrupted during delivery for " + v.getName());
-                            Thread.currentThread().interrupt();
-                        } catch (IOException e) {
-                            System.err.println("Error writing to destination file: " + e.getMessage());
-                        }
-                    });
+                assignedItem.setQuantity(assignedItem.getQuantity() - deliverQty);
+                if (assignedItem.getQuantity() > 0)
+                    record(StateEvent.itemAssigned(v, assignedItem.getSku(), itemName, assignedItem.getQuantity()));
+                if (assignedItem.getQuantity() <= 0) {
+                    v.removeItem(assignedItem.getSku());
+                    logs.logVehicle(v.getName(), "Item {} fully delivered and removed from inventory.", itemName);
                 }
-
             } else {
-                throw new IllegalArgumentException("Vehicle with ID '" + t.assigneeVehicleId + "' does not exist.");
+                System.out.println("[TASK " + taskId + "] No items found in vehicle " + v.getName() + " to deliver.");
             }
+
+        } catch (IOException e) {
+            System.err.println("Error writing to destination file: " + e.getMessage());
         }
     }
 
     // ============================================================
     // AUTO-DISTRIBUTE (unchanged)
     // ============================================================
-    public void autoDistribute(String masterTaskId) {
-        autoResumeEnabled.set(true);
+    // synchronized: the menu thread and the resume task may both start a distribution round
+    public synchronized void autoDistribute(String masterTaskId) {
+        if (!autoResumeEnabled.getAndSet(true)) record(StateEvent.autoResumeChanged(true));
 
         if (storage == null) {
             System.out.println("[AUTO " + masterTaskId + "] ERROR: StorageService missing.");
@@ -173,47 +300,54 @@ public class TaskService {
             return;
         }
 
-        List<StorageVehicle> freeAgvs = new ArrayList<>();
-        for (StorageVehicle v : repo.vehicles.values()) {
-            if (v.getInventory().isEmpty() && !v.isCharging()
-                    && !v.isWaitingForCharge() && !v.hasLeftQueue()) {
-                freeAgvs.add(v);
-            }
-
-        }
-        if (freeAgvs.isEmpty()) {
+        if (idleVehicles.isEmpty()) {
             System.out.println("[AUTO " + masterTaskId + "] No free AGVs.");
             return;
         }
 
-        System.out.println("[AUTO-DIST " + masterTaskId + "] Starting distribution...");
-        Iterator<StorageVehicle> agvQueue = freeAgvs.iterator();
-        Map<String, Integer> leftovers = new LinkedHashMap<>();
-        List<StorageItem> items = new ArrayList<>(unassigned.values());
+        System.out.println("[AUTO-DIST " + masterTaskId + "] Starting distribution (" + scheduler.name() + ")...");
+        List<StorageVehicle> idle = idleVehicles.drain();
+        Task master = repo.getTask(masterTaskId);
+        TaskPriority roundPriority = master != null ? master.priority : TaskPriority.NORMAL;
 
-        for (StorageItem item : items) {
+        // Only the first idle.size() batches of an item can be served this round
+        List<DeliveryRequest> requests = new ArrayList<>();
+        long seq = 0;
+        for (StorageItem item : unassigned.values()) {
             int remaining = item.getQuantity();
-            if (remaining <= 0) continue;
-
-            while (remaining > 0 && agvQueue.hasNext()) {
-                StorageVehicle agv = agvQueue.next();
-                int batch = Math.min(50, remaining);
-                int qtyToSend = batch;
-
-                String tid = "Task " + (nextTaskNumber++);
-                Task nt = new Task(tid, "Deliver " + qtyToSend + " " + item.getName(), agv.getId());
-                repo.tasks.put(tid, nt);
+            TaskPriority p = max(roundPriority, storage.getItemPriority(item.getSku()));
+            for (int i = 0; remaining > 0 && i < idle.size(); i++) {
+                int qty = Math.min(batchSize, remaining);
+                requests.add(new DeliveryRequest(item.getSku(), item.getName(), qty, p, seq++));
+                remaining -= qty;
+            }
+        }
 
-                String sku = item.getSku();
-                String itemName = item.getName();
-                executor.submit(() -> simulateDelivery(tid, agv, sku, itemName, qtyToSend));
+        Set<StorageVehicle> used = new HashSet<>();
+        for (DispatchScheduler.Assignment a : scheduler.schedule(requests, idle)) {
+            DeliveryRequest r = a.request;
+            StorageVehicle agv = a.vehicle;
+            StorageItem item = unassigned.get(r.sku);
+            if (item == null || item.getQuantity() <= 0 || !used.add(agv)) continue;
+            int qtyToSend = Math.min(r.quantity, item.getQuantity());
+
+            String tid = "Task " + nextTaskNumber.getAndIncrement();
+            Task nt = new Task(tid, "Deliver " + qtyToSend + " " + r.itemName, agv.getId(), r.priority);
+            repo.putTask(nt);
+            record(StateEvent.taskCreated(nt));
+
+            agv.setOnDelivery(true);
+            item.setQuantity(item.getQuantity() - qtyToSend);
+            startDelivery(tid, agv, r.sku, r.itemName, qtyToSend, item.getQuantity());
+        }
 
-                remaining -= batch;
-                item.setQuantity(remaining);
-            }
+        for (StorageVehicle v : idle) {
+            if (!used.contains(v)) idleVehicles.release(v);
+        }
 
-            if (remaining > 0) leftovers.put(item.getName(), remaining);
-            if (!agvQueue.hasNext()) break;
+        Map<String, Integer> leftovers = new LinkedHashMap<>();
+        for (StorageItem item : unassigned.values()) {
+            if (item.getQuantity() > 0) leftovers.put(item.getName(), item.getQuantity());
         }
 
         unassigned.entrySet().removeIf(e -> e.getValue().getQuantity() <= 0);
@@ -223,15 +357,25 @@ public class TaskService {
         System.out.println("[AUTO-DIST " + masterTaskId + "]Completed.");
     }
 
-    private void simulateDelivery(String taskId, StorageVehicle agv,
-                                  String sku, String itemName, int qty) {
+    private static TaskPriority max(TaskPriority a, TaskPriority b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private void startDelivery(String taskId, StorageVehicle agv, String sku, String itemName, int qty, int poolLeft) {
         System.out.println("[TASK " + taskId + "] Assigned to AGV " + agv.getName());
         System.out.println("[TASK " + taskId + "] AGV " + agv.getName() +
                 " transporting " + qty + " " + itemName + " (~1 minute)");
-        try {
-            Thread.sleep(60_000);
-
+        setStatus(taskId, TaskStatus.IN_PROGRESS);
+        long due = clock.currentTimeMillis() + DELIVERY_MS;
+        inFlight.put(taskId, new StateSnapshot.Delivery(taskId, agv.getId(), itemName, qty, false, due));
+        record(StateEvent.deliveryStarted(taskId, agv, sku, itemName, qty, poolLeft, due));
+        clock.schedule(() -> dispatch(() -> finishDelivery(taskId, agv, itemName, qty)), DELIVERY_MS);
+    }
 
+    private void finishDelivery(String taskId, StorageVehicle agv, String itemName, int qty) {
+        inFlight.remove(taskId);
+        record(StateEvent.deliveryFinished(taskId));
+        try {
             destination.recordDelivery(agv.getName(), itemName, qty);
             System.out.println("[TASK " + taskId + "]Delivered " + qty + " " + itemName);
 
@@ -239,43 +383,175 @@ public class TaskService {
             int before = agv.getBatteryLevelPct();
             int after = Math.max(0, before - 10);
             agv.setBatteryLevelPct(after);  // ⚙️ triggers auto-charging if ≤ 14
-            logs.logVehicle(agv.getName(),
-                    "Battery drop after auto-distribution: " + before + "% → " + after + "%");
-
+            logs.logVehicle(agv.getName(), BinaryLogFormat.Event.batteryDrop("auto-distribution", before, after));
 
-            Task t = repo.tasks.get(taskId);
-            if (t != null) t.status = TaskStatus.DONE;
 
-            tryResumeAutoDistributeAsync();
+            setStatus(taskId, TaskStatus.DONE);
+            archiveDoneIfNeeded();
 
-        } catch (InterruptedException ignored) {}
-        catch (IOException e) {
+        } catch (IOException e) {
             System.err.println("Error writing to destination file: " + e.getMessage());
+        } finally {
+            // back into the idle pool (unless now charging); the pool triggers the resume
+            agv.setOnDelivery(false);
         }
     }
 
+    // real time: hand work to the delivery executor; virtual time: run it as the next clock event
+    private void dispatch(Runnable task) {
+        if (clock.isRealTime()) executor.execute(task);
+        else clock.schedule(task, 0);
+    }
+
 
+    /**
+     * Continue an earlier auto-distribution once a vehicle becomes idle. Called by the idle pool
+     * on every idle transition; requests arriving while a round runs are coalesced into one more round.
+     */
     public void tryResumeAutoDistributeAsync() {
         if (!autoResumeEnabled.get()) return;
+        resumePending.set(true);
         if (!resumeRunning.compareAndSet(false, true)) return;
-        executor.submit(() -> {
-            try {
+        dispatch(this::runResumeRounds);
+    }
+
+    private void runResumeRounds() {
+        try {
+            while (resumePending.getAndSet(false)) {
                 Map<String, StorageItem> unassigned = storage.getUnassignedItemsRef();
-                if (unassigned.isEmpty()) return;
-                boolean hasFree = repo.vehicles.values().stream()
-                        .anyMatch(v -> v.getInventory().isEmpty() && !v.isCharging());
-                if (hasFree) {
-                    String id = "RESUME-" + System.currentTimeMillis();
-                    System.out.println("[AUTO-RESUME] Free AGV detected → continuing distribution...");
-                    autoDistribute(id);
-                }
-            } finally {
-                resumeRunning.set(false);
+                if (unassigned.isEmpty() || idleVehicles.isEmpty()) continue;
+                String id = "RESUME-" + clock.currentTimeMillis();
+                System.out.println("[AUTO-RESUME] Free AGV detected → continuing distribution...");
+                autoDistribute(id);
+            }
+        } finally {
+            resumeRunning.set(false);
+        }
+        // a transition may have slipped in between the last check and the reset above
+        if (resumePending.get() && resumeRunning.compareAndSet(false, true)) {
+            dispatch(this::runResumeRounds);
+        }
+    }
+
+    // ============================================================
+    // DONE-task compaction
+    // ============================================================
+    private void archiveDoneIfNeeded() {
+        int threshold = archiveThreshold;
+        if (threshold <= 0 || taskArchiveDir == null) return;
+        if (repo.taskStore().countWithStatus(TaskStatus.DONE) < threshold) return;
+        try {
+            archiveDoneTasks();
+        } catch (IOException e) {
+            System.err.println("[TASK ARCHIVE] " + e.getMessage());
+        }
+    }
+
+    /**
+     * Remove all DONE tasks from the repository and append them to today's task archive.
+     * @return number of archived tasks
+     */
+    public int archiveDoneTasks() throws IOException {
+        if (taskArchiveDir == null)
+            throw new IllegalStateException("Task archive is not configured.");
+
+        synchronized (archiveLock) {
+            List<Task> done = repo.taskStore().removeDone();
+            if (done.isEmpty()) return 0;
+            for (Task t : done) record(StateEvent.taskArchived(t.id));
+
+            Path file = taskArchiveDir.resolve("tasks-" + clock.today() + ".csv");
+            Files.createDirectories(file.getParent());
+            StringBuilder sb = new StringBuilder();
+            if (!Files.exists(file)) sb.append("id,description,assigneeVehicleId,status,archivedUtc\n");
+            String now = clock.instant().toString();
+            for (Task t : done) {
+                sb.append(MetadataManager.escape(t.id)).append(',')
+                        .append(MetadataManager.escape(String.valueOf(t.description))).append(',')
+                        .append(t.assigneeVehicleId == null ? "" : MetadataManager.escape(t.assigneeVehicleId)).append(',')
+                        .append(t.status).append(',')
+                        .append(now).append('\n');
+            }
+            Files.writeString(file, sb, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+            if (metaIndex != null)
+                MetadataManager.append(metaIndex, file, "TASK_ARCHIVE", "archived " + done.size() + " done tasks");
+            archivedTasks.addAndGet(done.size());
+            logs.logSystem("Archived {} completed tasks to {}", done.size(), file);
+            return done.size();
+        }
+    }
+
+    // ============================================================
+    // Snapshot support
+    // ============================================================
+    /**
+     * Run {@code action} while no auto-distribution round is running, so it sees items either
+     * still in the unassigned pool or already on their way, never half moved.
+     */
+    public synchronized <T> T whileDistributionPaused(Supplier<T> action) {
+        return action.get();
+    }
+
+    /** Deliveries scheduled but not finished yet. */
+    public List<StateSnapshot.Delivery> inFlightDeliveries() {
+        return new ArrayList<>(inFlight.values());
+    }
+
+    /**
+     * Schedule deliveries saved in a snapshot again, each finishing when it originally would have
+     * (or right away if that time has passed). Deliveries of unknown vehicles are skipped.
+     * @return number of deliveries resumed
+     */
+    public int resumeDeliveries(Collection<StateSnapshot.Delivery> deliveries) {
+        int resumed = 0;
+        for (StateSnapshot.Delivery d : deliveries) {
+            StorageVehicle v = repo.getVehicle(d.vehicleId);
+            if (v == null || !repo.hasTask(d.taskId)) {
+                System.out.println("[TASK " + d.taskId + "] Not resumed: vehicle or task " + d.vehicleId + " is gone.");
+                continue;
             }
-        });
+            long delay = Math.max(0, Math.min(DELIVERY_MS, d.dueAtMillis - clock.currentTimeMillis()));
+            inFlight.put(d.taskId, d);
+            if (d.manual) {
+                clock.schedule(() -> dispatch(() -> finishManualDelivery(d.taskId, v)), delay);
+            } else {
+                v.setOnDelivery(true);
+                clock.schedule(() -> dispatch(() -> finishDelivery(d.taskId, v, d.itemName, d.quantity)), delay);
+            }
+            resumed++;
+        }
+        return resumed;
+    }
+
+    /** Number the next auto-distribution task gets ("Task N"). */
+    public int getNextTaskNumber() {
+        return nextTaskNumber.get();
+    }
+
+    /** Never goes backwards, so restored task ids are not handed out again. */
+    public void advanceTaskNumber(int next) {
+        nextTaskNumber.accumulateAndGet(next, Math::max);
+    }
+
+    /** Whether freed vehicles continue an earlier auto-distribution. */
+    public boolean isAutoResumeEnabled() {
+        return autoResumeEnabled.get();
+    }
+
+    public void setAutoResumeEnabled(boolean enabled) {
+        if (autoResumeEnabled.getAndSet(enabled) != enabled) record(StateEvent.autoResumeChanged(enabled));
+    }
+
+    /** Tasks moved to the archive since this service started. */
+    public long getArchivedTaskCount() {
+        return archivedTasks.get();
     }
 
     public void shutdown() {
         executor.shutdown();
+        if (shutDown.compareAndSet(false, true)) chargingEngine.release();
+        logs.shutdown(); // drain the async log queue, if any
     }
 }
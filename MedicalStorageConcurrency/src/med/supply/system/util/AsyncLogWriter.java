@@ -0,0 +1,228 @@
+package med.supply.system.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Background writer used by {@link LogManager} in async mode.
+ * Callers only enqueue records; a single flusher thread groups them per file and writes each
+ * group through the shared {@link LogHandleCache} once enough lines or enough time has accumulated.
+ */
+public class AsyncLogWriter {
+
+    /** What {@link #submit} does when the queue is full. */
+    public enum Backpressure {
+        /** Wait until the flusher frees a slot. */
+        BLOCK,
+        /** Discard the record and count it in {@link #getDropped()}. */
+        DROP,
+        /**
+         * Write the record on the calling thread, together with the lines queued before it, so
+         * each file keeps the order lines were submitted in.
+         */
+        SPILL
+    }
+
+    private static final class Record {
+        final Path file;
+        final String line;
+
+        Record(Path file, String line) {
+            this.file = file;
+            this.line = line;
+        }
+    }
+
+    private static final Record POISON = new Record(null, null);
+
+    private final LogHandleCache handles;
+    private final BlockingQueue<Record> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Backpressure policy;
+    private final Thread flusher;
+
+    // guarded by writeLock; shared between the flusher and SPILL callers
+    private final Object writeLock = new Object();
+    private final Map<Path, StringBuilder> pending = new LinkedHashMap<>();
+    private int unflushedLines = 0;
+    private long lastFlush = System.currentTimeMillis();
+
+    // submitters hold the read lock from the closed check to the enqueue; close() takes the write
+    // lock, so no record can enter the queue after the poison pill
+    private final ReadWriteLock gate = new ReentrantReadWriteLock();
+    private boolean closed = false;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    public AsyncLogWriter(LogHandleCache handles, int capacity, int batchSize, long flushIntervalMs, Backpressure policy) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        if (flushIntervalMs <= 0) throw new IllegalArgumentException("flushIntervalMs must be positive");
+        this.handles = handles;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.policy = policy == null ? Backpressure.BLOCK : policy;
+
+        this.flusher = new Thread(this::runFlusher, "log-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /** Enqueue one line for {@code file}. Falls back to a direct write once the writer is closed. */
+    public void submit(Path file, String line) throws IOException {
+        Record r = new Record(file, line);
+        gate.readLock().lock();
+        try {
+            if (closed) {
+                writeThrough(r);
+                return;
+            }
+            switch (policy) {
+                case BLOCK -> {
+                    try {
+                        queue.put(r);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        writeThrough(r);
+                    }
+                }
+                case DROP -> {
+                    if (!queue.offer(r)) dropped.incrementAndGet();
+                }
+                case SPILL -> {
+                    if (!queue.offer(r)) {
+                        spilled.incrementAndGet();
+                        writeThrough(r);
+                    }
+                }
+            }
+        } finally {
+            gate.readLock().unlock();
+        }
+    }
+
+    // Writes whatever is still queued ahead of r first. The flusher takes records off the queue only
+    // while holding writeLock, so nothing older than the queue's head can be written after r.
+    private void writeThrough(Record r) throws IOException {
+        synchronized (writeLock) {
+            boolean poisoned = false;
+            Record q;
+            while ((q = queue.poll()) != null) {
+                if (q == POISON) poisoned = true;
+                else append(q);
+            }
+            if (poisoned) queue.offer(POISON); // still for the flusher, which close() is waiting on
+            append(r);
+            flushAll();
+        }
+    }
+
+    private void runFlusher() {
+        List<Record> batch = new ArrayList<>(batchSize);
+        boolean stop = false;
+        while (!stop) {
+            // the wait only happens while the queue is empty, when no SPILL caller needs the lock
+            synchronized (writeLock) {
+                try {
+                    Record first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, batchSize - 1);
+                    }
+                } catch (InterruptedException e) {
+                    stop = true;
+                }
+
+                for (Record r : batch) {
+                    if (r == POISON) {
+                        stop = true;
+                        continue;
+                    }
+                    append(r);
+                }
+                boolean due = unflushedLines >= batchSize
+                        || System.currentTimeMillis() - lastFlush >= flushIntervalMs
+                        || stop;
+                if (due && unflushedLines > 0) {
+                    try {
+                        flushAll();
+                    } catch (IOException e) {
+                        System.err.println("[LOG ERROR] " + e.getMessage());
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    // caller holds writeLock
+    private void append(Record r) {
+        pending.computeIfAbsent(r.file, f -> new StringBuilder(256))
+                .append(r.line).append(System.lineSeparator());
+        unflushedLines++;
+        written.incrementAndGet();
+    }
+
+    // caller holds writeLock; one write per file per batch
+    private void flushAll() throws IOException {
+        IOException first = null;
+        for (Map.Entry<Path, StringBuilder> e : pending.entrySet()) {
+            try {
+                handles.write(e.getKey(), LogFormatter.encodeLine(e.getValue()));
+            } catch (IOException ex) {
+                if (first == null) first = ex;
+            }
+        }
+        pending.clear();
+        unflushedLines = 0;
+        lastFlush = System.currentTimeMillis();
+        if (first != null) throw first;
+    }
+
+    /** Drain everything already queued and write it out. Open handles belong to the cache. */
+    public void close() {
+        gate.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            gate.writeLock().unlock();
+        }
+        try {
+            queue.put(POISON);
+            flusher.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            // left behind if the flusher did not finish in time
+            Record r;
+            while ((r = queue.poll()) != null) {
+                if (r != POISON) append(r);
+            }
+            try {
+                flushAll();
+            } catch (IOException e) {
+                System.err.println("[LOG ERROR] " + e.getMessage());
+            }
+        }
+    }
+
+    public long getWritten() { return written.get(); }
+    public long getDropped() { return dropped.get(); }
+    public long getSpilled() { return spilled.get(); }
+    public int getQueued() { return queue.size(); }
+}
@@ -0,0 +1,288 @@
+package med.supply.system.util;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads {@link BinaryLogFormat} records and renders them as the usual text log lines.
+ * <p>
+ * A record cut off at the end of the file (the writer died mid-write) ends the stream quietly,
+ * the same way a text log would end in a half line. {@link #getPosition()} stays at the start of
+ * that record, so a reader following a growing file can {@link #resume} there once more bytes
+ * are written.
+ * <p>
+ * Command line: {@code java med.supply.system.util.BinaryLogDecoder <file.blog>...} prints the
+ * files as text, one line per record.
+ */
+public final class BinaryLogDecoder implements AutoCloseable {
+
+    /** One decoded record. */
+    public static final class Record {
+        public final LogSearch.Kind kind;
+        public final String equipment; // null for SYSTEM
+        public final long epochMicros;
+        public final ZoneOffset offset;
+        public final BinaryLogFormat.Event event;
+
+        Record(LogSearch.Kind kind, String equipment, long epochMicros, ZoneOffset offset, BinaryLogFormat.Event event) {
+            this.kind = kind;
+            this.equipment = equipment;
+            this.epochMicros = epochMicros;
+            this.offset = offset;
+            this.event = event;
+        }
+
+        public Instant instant() {
+            return Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L), Math.floorMod(epochMicros, 1_000_000L) * 1_000L);
+        }
+
+        /** The line exactly as the text log writes it. */
+        public String toLine() {
+            String ts = OffsetDateTime.ofInstant(instant(), offset).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+            String prefix = kind == LogSearch.Kind.SYSTEM ? kind.prefix : kind.prefix + equipment + "]";
+            return prefix + " " + ts + " " + event.message(equipment);
+        }
+
+        @Override
+        public String toString() {
+            return toLine();
+        }
+    }
+
+    private InputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private long lastMicros;
+    private ZoneOffset offset = ZoneOffset.UTC;
+    private long records;
+    private long read;     // bytes taken from the stream
+    private long position; // bytes of the complete records decoded so far
+
+    public BinaryLogDecoder(InputStream in) {
+        this.in = buffered(in);
+    }
+
+    private static InputStream buffered(InputStream in) {
+        return in instanceof BufferedInputStream ? in : new BufferedInputStream(in, LogReader.BUFFER_SIZE);
+    }
+
+    public static BinaryLogDecoder open(Path file) throws IOException {
+        return new BinaryLogDecoder(Files.newInputStream(file));
+    }
+
+    /** Next event, or null at the end of the stream. */
+    public Record next() throws IOException {
+        try {
+            while (true) {
+                int tag = in.read();
+                if (tag < 0) return null;
+                read++;
+                switch (tag) {
+                    case BinaryLogFormat.TAG_RESET:
+                        readReset();
+                        break;
+                    case BinaryLogFormat.TAG_STRING:
+                        readString();
+                        break;
+                    case BinaryLogFormat.TAG_ZONE:
+                        offset = ZoneOffset.ofTotalSeconds((int) unzigzag(readVarlong()));
+                        break;
+                    case BinaryLogFormat.TAG_EVENT:
+                        Record r = readEvent();
+                        records++;
+                        position = read;
+                        return r;
+                    default:
+                        throw new IOException("corrupt binary log: unknown record tag " + tag + " after " + records + " record(s)");
+                }
+                position = read;
+            }
+        } catch (EOFException e) {
+            return null; // truncated last record
+        }
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    /** Bytes from the start of the file up to the end of the last complete record. */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Go on decoding from {@code in}, which must start at {@link #getPosition()} of the same file,
+     * with the string table and time base built so far. The previous stream is closed.
+     */
+    public void resume(InputStream in) throws IOException {
+        this.in.close();
+        this.in = buffered(in);
+        read = position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ------------------------------------------------------------
+    private void readReset() throws IOException {
+        for (byte m : BinaryLogFormat.MAGIC) {
+            if (readByte() != m) throw new IOException("not a binary log (bad magic)");
+        }
+        int version = readByte();
+        if (version != BinaryLogFormat.VERSION) throw new IOException("unsupported binary log version " + version);
+        strings.clear();
+        lastMicros = 0;
+    }
+
+    private void readString() throws IOException {
+        int id = (int) readVarlong();
+        String s = readText();
+        if (id == strings.size()) {
+            strings.add(s);
+        } else if (id < strings.size()) {
+            strings.set(id, s);
+        } else {
+            throw new IOException("corrupt binary log: string id " + id + " out of order");
+        }
+    }
+
+    private Record readEvent() throws IOException {
+        int kindCode = readByte();
+        LogSearch.Kind[] kinds = LogSearch.Kind.values();
+        if (kindCode >= kinds.length) throw new IOException("corrupt binary log: unknown kind " + kindCode);
+        LogSearch.Kind kind = kinds[kindCode];
+        String equipment = kind == LogSearch.Kind.SYSTEM ? null : string(readVarlong());
+        BinaryLogFormat.EventType type;
+        try {
+            type = BinaryLogFormat.EventType.of(readByte());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("corrupt binary log: " + e.getMessage());
+        }
+        long micros = lastMicros + unzigzag(readVarlong());
+
+        int i0 = type.ints > 0 ? (int) unzigzag(readVarlong()) : 0;
+        int i1 = type.ints > 1 ? (int) unzigzag(readVarlong()) : 0;
+        String s0 = type.strings > 0 ? string(readVarlong()) : null;
+        String s1 = type.strings > 1 ? string(readVarlong()) : null;
+        String s2 = type.strings > 2 ? string(readVarlong()) : null;
+        String text = type == BinaryLogFormat.EventType.TEXT ? readText() : null;
+        lastMicros = micros; // only once the record is complete, so a torn one can be read again
+        return new Record(kind, equipment, micros, offset,
+                new BinaryLogFormat.Event(type, i0, i1, s0, s1, s2, text));
+    }
+
+    private String string(long id) throws IOException {
+        if (id >= strings.size()) throw new IOException("corrupt binary log: undefined string id " + id);
+        return strings.get((int) id);
+    }
+
+    private String readText() throws IOException {
+        int len = (int) readVarlong();
+        byte[] bytes = in.readNBytes(len);
+        read += bytes.length;
+        if (bytes.length < len) throw new EOFException();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException();
+        read++;
+        return b;
+    }
+
+    private long readVarlong() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("corrupt binary log: varint too long");
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    // ------------------------------------------------------------
+    // Text view
+    // ------------------------------------------------------------
+    /** The file rendered as text lines, decoded lazily. Close the stream to release the file. */
+    public static Stream<String> lines(Path file) throws IOException {
+        return lines(Files.newInputStream(file));
+    }
+
+    public static Stream<String> lines(InputStream in) {
+        BinaryLogDecoder d = new BinaryLogDecoder(in);
+        Iterator<String> it = new Iterator<>() {
+            private Record next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = d.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Record r = next;
+                next = null;
+                return r.toLine();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        d.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java med.supply.system.util.BinaryLogDecoder <file.blog>...");
+            System.exit(2);
+        }
+        int failed = 0;
+        for (String a : args) {
+            try (Stream<String> lines = lines(Path.of(a))) {
+                lines.forEach(System.out::println);
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("[BLOG] " + a + ": " + e.getMessage());
+                failed++;
+            }
+        }
+        System.out.flush();
+        if (failed > 0) System.exit(1);
+    }
+}
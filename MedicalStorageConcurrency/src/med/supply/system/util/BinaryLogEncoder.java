@@ -0,0 +1,181 @@
+package med.supply.system.util;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes log events into the {@link BinaryLogFormat} for one file at a time.
+ * <p>
+ * The output buffer and the string table are reused for every record, so an event costs no
+ * allocation beyond the first time a string is seen. Not thread-safe: {@link LogManager} holds the
+ * encoder's lock around each {@link LogHandleCache} write, which also keeps the records of one
+ * file in order.
+ */
+public final class BinaryLogEncoder {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private ByteBuffer buf = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private final Map<String, Integer> ids = new HashMap<>();
+    private Path file;          // file the string table belongs to
+    private volatile boolean fresh = true; // also set from outside the lock by reset()
+    private long lastMicros;
+    private int lastOffset;
+
+    private long records;
+    private long resets;
+
+    /**
+     * Encode one event for {@code target}. Starts over with a RESET record when the target changed
+     * or is still empty (new, or replaced behind our back). The returned buffer is only valid
+     * until the next call.
+     */
+    public ByteBuffer encode(Path target, boolean targetEmpty, LogSearch.Kind kind, String equipment,
+                             long epochMicros, int offsetSeconds, BinaryLogFormat.Event event) {
+        buf.clear();
+        if (fresh || targetEmpty || !target.equals(file)) {
+            file = target;
+            ids.clear();
+            lastMicros = 0;
+            ensure(1 + BinaryLogFormat.MAGIC.length + 1);
+            buf.put(BinaryLogFormat.TAG_RESET).put(BinaryLogFormat.MAGIC).put(BinaryLogFormat.VERSION);
+            fresh = false;
+            resets++;
+            writeZone(offsetSeconds);
+        } else if (offsetSeconds != lastOffset) {
+            writeZone(offsetSeconds);
+        }
+
+        // string definitions have to come before the event that uses them
+        int equipmentId = kind == LogSearch.Kind.SYSTEM ? -1 : intern(equipment);
+        BinaryLogFormat.EventType type = event.type;
+        int s0 = type.strings > 0 ? intern(event.stringField(0)) : -1;
+        int s1 = type.strings > 1 ? intern(event.stringField(1)) : -1;
+        int s2 = type.strings > 2 ? intern(event.stringField(2)) : -1;
+
+        ensure(3 + 5 + 10 + 5 * (type.ints + type.strings));
+        buf.put(BinaryLogFormat.TAG_EVENT).put((byte) kind.ordinal());
+        if (equipmentId >= 0) putVarint(equipmentId);
+        buf.put((byte) type.code);
+        putVarlong(zigzag(epochMicros - lastMicros));
+        lastMicros = epochMicros;
+        for (int i = 0; i < type.ints; i++) putVarlong(zigzag(event.intField(i)));
+        if (s0 >= 0) putVarint(s0);
+        if (s1 >= 0) putVarint(s1);
+        if (s2 >= 0) putVarint(s2);
+        if (type == BinaryLogFormat.EventType.TEXT) putString(event.text);
+
+        records++;
+        return buf.flip();
+    }
+
+    /** Forget the string table; the next record starts with a RESET. */
+    public void reset() {
+        fresh = true;
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    public long getResetCount() {
+        return resets;
+    }
+
+    // ------------------------------------------------------------
+    private void writeZone(int offsetSeconds) {
+        ensure(1 + 5);
+        buf.put(BinaryLogFormat.TAG_ZONE);
+        putVarlong(zigzag(offsetSeconds));
+        lastOffset = offsetSeconds;
+    }
+
+    private int intern(String s) {
+        String key = String.valueOf(s);
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        int next = ids.size();
+        ids.put(key, next);
+        ensure(1 + 5);
+        buf.put(BinaryLogFormat.TAG_STRING);
+        putVarint(next);
+        putString(key);
+        return next;
+    }
+
+    // varint length + UTF-8 bytes, encoded straight into the buffer
+    private void putString(String s) {
+        if (s == null) s = "null";
+        int len = utf8Length(s);
+        ensure(5 + len);
+        putVarint(len);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf.put((byte) c);
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buf.put((byte) '?'); // unpaired surrogate, same as String.getBytes
+            } else {
+                buf.put((byte) (0xE0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static int utf8Length(String s) {
+        int len = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                len++;
+            } else if (c < 0x800) {
+                len += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                len += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                len++;
+            } else {
+                len += 3;
+            }
+        }
+        return len;
+    }
+
+    private void putVarint(int v) {
+        putVarlong(v & 0xFFFFFFFFL);
+    }
+
+    private void putVarlong(long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    // grow (rarely: long free text) keeping what is already in the buffer
+    private void ensure(int bytes) {
+        if (buf.remaining() >= bytes) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+}
@@ -0,0 +1,165 @@
+package med.supply.system.util;
+
+import java.nio.file.Path;
+
+/**
+ * Compact binary alternative to the text log lines (file extension {@code .blog}).
+ * <p>
+ * A file is a sequence of records, each starting with a one-byte tag. Integers are unsigned
+ * LEB128 varints; signed values are zigzag-encoded first.
+ * <pre>
+ *   RESET   0x00 'M' 'L' 'B' version      forget all strings, next timestamp is absolute
+ *   STRING  0x01 id len utf8[len]          defines string id (equipment, station, item, ...)
+ *   EVENT   0x02 kind [equipment-id] type zigzag(micros - previous micros)
+ *                ints... string-ids... [len utf8[len]]
+ *   ZONE    0x03 zigzag(offset seconds)    UTC offset of the following timestamps
+ * </pre>
+ * Timestamps are epoch microseconds. Strings that repeat (vehicle and station names, item names,
+ * task ids) are written once per file and then referred to by id; only free text
+ * ({@link EventType#TEXT}) is stored inline. A RESET may appear anywhere: the encoder writes one
+ * whenever it starts on a file it has no state for (new file, restart, file replaced).
+ * <p>
+ * {@link BinaryLogEncoder} writes the format, {@link BinaryLogDecoder} renders it back to the
+ * usual {@code [VEHICLE:name] <timestamp> message} lines.
+ */
+public final class BinaryLogFormat {
+
+    public static final String EXTENSION = ".blog";
+    public static final byte VERSION = 1;
+
+    static final byte TAG_RESET = 0x00;
+    static final byte TAG_STRING = 0x01;
+    static final byte TAG_EVENT = 0x02;
+    static final byte TAG_ZONE = 0x03;
+    static final byte[] MAGIC = {'M', 'L', 'B'};
+
+    private BinaryLogFormat() {
+    }
+
+    /** Event type codes; each type has a fixed number of int and string fields. */
+    public enum EventType {
+        TEXT(0, 0, 0),
+        BATTERY_DROP(1, 2, 1),
+        BATTERY_LOW(2, 1, 1),
+        CHARGING_STEP(3, 1, 1),
+        FULLY_CHARGED(4, 0, 0),
+        TASK_STATUS(5, 0, 2),
+        DELIVERY(6, 1, 3);
+
+        public final int code;
+        final int ints;
+        final int strings;
+
+        EventType(int code, int ints, int strings) {
+            this.code = code;
+            this.ints = ints;
+            this.strings = strings;
+        }
+
+        private static final EventType[] BY_CODE = new EventType[values().length];
+
+        static {
+            for (EventType t : values()) BY_CODE[t.code] = t;
+        }
+
+        static EventType of(int code) {
+            if (code < 0 || code >= BY_CODE.length) throw new IllegalArgumentException("unknown event type " + code);
+            return BY_CODE[code];
+        }
+    }
+
+    /**
+     * One log message as typed fields. {@link #message(String)} gives the text the plain log has
+     * always written for it, so text and binary logs read the same.
+     */
+    public static final class Event {
+        public final EventType type;
+        final int i0;
+        final int i1;
+        final String s0;
+        final String s1;
+        final String s2;
+        final String text;
+
+        Event(EventType type, int i0, int i1, String s0, String s1, String s2, String text) {
+            this.type = type;
+            this.i0 = i0;
+            this.i1 = i1;
+            this.s0 = s0;
+            this.s1 = s1;
+            this.s2 = s2;
+            this.text = text;
+        }
+
+        public static Event text(String text) {
+            return new Event(EventType.TEXT, 0, 0, null, null, null, text);
+        }
+
+        /** "Battery drop after {reason}: {before}% → {after}%" */
+        public static Event batteryDrop(String reason, int beforePct, int afterPct) {
+            return new Event(EventType.BATTERY_DROP, beforePct, afterPct, reason, null, null, null);
+        }
+
+        public static Event batteryLow(int pct, String station) {
+            return new Event(EventType.BATTERY_LOW, pct, 0, station, null, null, null);
+        }
+
+        public static Event chargingStep(String station, int pct) {
+            return new Event(EventType.CHARGING_STEP, pct, 0, station, null, null, null);
+        }
+
+        public static Event fullyCharged() {
+            return new Event(EventType.FULLY_CHARGED, 0, 0, null, null, null, null);
+        }
+
+        public static Event taskStatus(String taskId, String status) {
+            return new Event(EventType.TASK_STATUS, 0, 0, taskId, status, null, null);
+        }
+
+        public static Event delivery(String taskId, int qty, String item, String vehicle) {
+            return new Event(EventType.DELIVERY, qty, 0, taskId, item, vehicle, null);
+        }
+
+        int intField(int i) {
+            return i == 0 ? i0 : i1;
+        }
+
+        String stringField(int i) {
+            return i == 0 ? s0 : i == 1 ? s1 : s2;
+        }
+
+        /** The text-log message; {@code equipment} is the vehicle / station the line belongs to. */
+        public String message(String equipment) {
+            switch (type) {
+                case TEXT:
+                    return text;
+                case BATTERY_DROP:
+                    return "Battery drop after " + s0 + ": " + i0 + "% → " + i1 + "%";
+                case BATTERY_LOW:
+                    return "⚠️ Battery low (" + i0 + "%). " + equipment + " going to " + s0 + " for charging...";
+                case CHARGING_STEP:
+                    return "🔌 " + equipment + " charging at " + s0 + "... Battery now " + i0 + "%";
+                case FULLY_CHARGED:
+                    return "🔋 " + equipment + " fully charged and ready to resume tasks.";
+                case TASK_STATUS:
+                    return "Task " + s0 + " -> " + s1;
+                case DELIVERY:
+                    return "[TASK " + s0 + "] Delivered " + i0 + " of " + s1 + " from vehicle " + s2;
+                default:
+                    throw new IllegalStateException("unhandled event type " + type);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return type + "{" + message("?") + "}";
+        }
+    }
+
+    /** The binary file next to a daily text log: {@code 2025-01-01.log} -> {@code 2025-01-01.blog}. */
+    public static Path binaryFileFor(Path textLog) {
+        String name = textLog.getFileName().toString();
+        String base = name.endsWith(".log") ? name.substring(0, name.length() - 4) : name;
+        return textLog.resolveSibling(base + EXTENSION);
+    }
+}
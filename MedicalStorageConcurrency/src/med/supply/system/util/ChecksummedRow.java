@@ -0,0 +1,41 @@
+package med.supply.system.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * CSV rows framed as {@code seq,field...,crc}: a sequence number first and a CRC32C (8 hex digits)
+ * of the rest of the row last, so a torn or zero-filled row is recognised when a file is read back.
+ * Used by the {@link DeliveryJournal} and the state event log.
+ */
+public final class ChecksummedRow {
+
+    private ChecksummedRow() {
+    }
+
+    /** The row for {@code seq} and {@code fields} (escaped here), with checksum and trailing newline. */
+    public static String format(long seq, String... fields) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(seq);
+        for (String f : fields) sb.append(',').append(MetadataManager.escape(f));
+        String body = sb.toString();
+        return body + "," + crcHex(body) + "\n";
+    }
+
+    /** Fields of a row, the sequence number first; null if the checksum is missing or does not match. */
+    public static List<String> parse(String line) {
+        int lastComma = line.lastIndexOf(',');
+        if (lastComma < 0) return null;
+        String body = line.substring(0, lastComma);
+        if (!line.substring(lastComma + 1).trim().equals(crcHex(body))) return null;
+        return MetadataManager.parseRow(body);
+    }
+
+    private static String crcHex(String body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        String hex = Long.toHexString(crc.getValue());
+        return "00000000".substring(hex.length()) + hex;
+    }
+}
@@ -0,0 +1,537 @@
+package med.supply.system.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Running delivery totals per item, vehicle and hour, so questions like "units of SYR20 delivered
+ * per hour by vehicle" are answered from memory instead of rescanning
+ * {@code resources/destination_log.csv}.
+ * <p>
+ * Deliveries are counted in (item, vehicle, hour) cells plus per-item, per-vehicle and per-hour
+ * totals, all {@link LongAdder}s, so {@link #add} can be called from many threads. The hour is
+ * the local hour of the delivery timestamp.
+ * <p>
+ * Two ways in:
+ * <ul>
+ *   <li>{@link #load} scans an existing file (journal or old four-column format) in parallel
+ *       chunks: the file is split at line boundaries, each chunk is memory-mapped and summed
+ *       into a private table on a fork-join pool, and the tables are merged at the end.</li>
+ *   <li>{@link #attach} loads a {@link DeliveryJournal}'s file and then follows it: every batch
+ *       the journal writes afterwards is added as it is written, each row exactly once.</li>
+ * </ul>
+ */
+public final class DeliveryAnalytics implements Consumer<List<DeliveryJournal.Entry>> {
+
+    private static final int MIN_CHUNK = 1 << 20;
+    private static final int MAX_CHUNK = 1 << 30; // one mapping each
+
+    /** Units and number of deliveries. */
+    public static final class Totals {
+        public final long units;
+        public final long deliveries;
+
+        public Totals(long units, long deliveries) {
+            this.units = units;
+            this.deliveries = deliveries;
+        }
+
+        @Override
+        public String toString() {
+            return units + " unit(s) in " + deliveries + " deliver" + (deliveries == 1 ? "y" : "ies");
+        }
+    }
+
+    /** What {@link #load} read. */
+    public static final class ScanReport {
+        public final Path file;
+        public final long rows;
+        public final long skipped;
+        public final int chunks;
+        public final long bytes;
+        public final long elapsedMs;
+
+        ScanReport(Path file, long rows, long skipped, int chunks, long bytes, long elapsedMs) {
+            this.file = file;
+            this.rows = rows;
+            this.skipped = skipped;
+            this.chunks = chunks;
+            this.bytes = bytes;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d row(s) in %d chunk(s), %d skipped, %.1f MB in %d ms",
+                    file, rows, chunks, skipped, bytes / 1_048_576.0, elapsedMs);
+        }
+    }
+
+    private static final class Cell {
+        final LongAdder units = new LongAdder();
+        final LongAdder deliveries = new LongAdder();
+
+        void add(long u, long d) {
+            units.add(u);
+            deliveries.add(d);
+        }
+
+        Totals totals() {
+            return new Totals(units.sum(), deliveries.sum());
+        }
+    }
+
+    // item -> vehicle -> hour
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentSkipListMap<LocalDateTime, Cell>>> cells = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Cell> byItem = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Cell> byVehicle = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<LocalDateTime, Cell> byHour = new ConcurrentSkipListMap<>();
+    private final Cell total = new Cell();
+    private final AtomicLong lastSeq = new AtomicLong();
+    private final LongAdder unparsable = new LongAdder();
+
+    // ------------------------------------------------------------
+    // Feeding
+    // ------------------------------------------------------------
+    /** Count one delivery. */
+    public void add(String timestamp, String vehicle, String item, int quantity) {
+        LocalDateTime hour = hourOf(timestamp);
+        if (hour == null) {
+            unparsable.increment();
+            return;
+        }
+        add(item, vehicle, hour, quantity, 1);
+    }
+
+    public void add(DeliveryJournal.Entry e) {
+        add(e.timestamp, e.vehicle, e.item, e.quantity);
+        lastSeq.accumulateAndGet(e.seq, Math::max);
+    }
+
+    /** Journal listener: count a written batch. */
+    @Override
+    public void accept(List<DeliveryJournal.Entry> batch) {
+        for (DeliveryJournal.Entry e : batch) add(e);
+    }
+
+    private void add(String item, String vehicle, LocalDateTime hour, long units, long deliveries) {
+        cells.computeIfAbsent(item, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(vehicle, k -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(hour, k -> new Cell()).add(units, deliveries);
+        byItem.computeIfAbsent(item, k -> new Cell()).add(units, deliveries);
+        byVehicle.computeIfAbsent(vehicle, k -> new Cell()).add(units, deliveries);
+        byHour.computeIfAbsent(hour, k -> new Cell()).add(units, deliveries);
+        total.add(units, deliveries);
+    }
+
+    /**
+     * Load what is already in {@code journal}'s file, then count every batch it writes from now on.
+     * Rows are counted once even if deliveries are recorded while the file is being scanned.
+     */
+    public ScanReport attach(DeliveryJournal journal, int parallelism) throws IOException {
+        long through = journal.subscribe(this);
+        journal.flush(); // rows numbered up to 'through' are now in the file
+        return load(journal.getFile(), through, parallelism);
+    }
+
+    public void detach(DeliveryJournal journal) {
+        journal.unsubscribe(this);
+    }
+
+    // ------------------------------------------------------------
+    // Batch scan
+    // ------------------------------------------------------------
+    /** Scan a delivery file on {@code parallelism} threads and add every row. */
+    public ScanReport load(Path file, int parallelism) throws IOException {
+        return load(file, Long.MAX_VALUE, parallelism);
+    }
+
+    /** Same, counting only journal rows numbered up to {@code maxSeq}. */
+    public ScanReport load(Path file, long maxSeq, int parallelism) throws IOException {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive");
+        long t0 = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            String header = firstLine(ch);
+            boolean legacy = header.trim().equals(DeliveryJournal.LEGACY_HEADER);
+            if (!legacy && !header.trim().equals(DeliveryJournal.HEADER))
+                throw new IOException("not a delivery file: " + file + " starts with '" + header + "'");
+            long start = Math.min(size, header.getBytes(StandardCharsets.UTF_8).length + 1L);
+
+            List<long[]> ranges = split(ch, start, size, parallelism);
+            List<Callable<Partial>> tasks = new ArrayList<>();
+            for (long[] r : ranges) tasks.add(() -> scanChunk(ch, r[0], r[1], legacy, maxSeq));
+
+            List<Partial> parts = new ArrayList<>();
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                for (Future<Partial> f : pool.invokeAll(tasks)) parts.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("delivery scan interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable c = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                throw c instanceof IOException io ? io : new IOException(c);
+            } finally {
+                pool.shutdownNow();
+            }
+
+            long rows = 0, skipped = 0;
+            for (Partial p : parts) {
+                p.mergeInto(this);
+                rows += p.rows;
+                skipped += p.skipped;
+            }
+            return new ScanReport(file, rows, skipped, ranges.size(), size - start, (System.nanoTime() - t0) / 1_000_000);
+        }
+    }
+
+    /** Shorthand: a new aggregate over {@code file}. */
+    public static DeliveryAnalytics scan(Path file, int parallelism) throws IOException {
+        DeliveryAnalytics a = new DeliveryAnalytics();
+        a.load(file, parallelism);
+        return a;
+    }
+
+    private static String firstLine(FileChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(ch.size(), 4096));
+        ch.read(buf, 0);
+        String s = new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8);
+        int nl = s.indexOf('\n');
+        return nl < 0 ? s : s.substring(0, nl);
+    }
+
+    // [from, to) ranges of whole lines, at least MIN_CHUNK long (except the last)
+    private static List<long[]> split(FileChannel ch, long start, long size, int parallelism) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long n0 = Math.max(1, Math.min(parallelism * 4L, (size - start) / MIN_CHUNK));
+        int n = (int) Math.max(n0, (size - start + MAX_CHUNK - 1) / MAX_CHUNK);
+        long step = (size - start) / n;
+        long from = start;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < n && from < size; i++) {
+            long to = Math.max(from, start + i * step);
+            // move the cut just past the next '\n'
+            boolean found = false;
+            while (!found && to < size) {
+                probe.clear();
+                int read = ch.read(probe, to);
+                if (read <= 0) break;
+                for (int k = 0; k < read; k++) {
+                    if (probe.get(k) == '\n') {
+                        to += k + 1;
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) to += read;
+            }
+            if (to >= size) break;
+            ranges.add(new long[]{from, to});
+            from = to;
+        }
+        if (from < size || ranges.isEmpty()) ranges.add(new long[]{from, size});
+        return ranges;
+    }
+
+    private static Partial scanChunk(FileChannel ch, long from, long to, boolean legacy, long maxSeq) throws IOException {
+        Partial p = new Partial();
+        if (to <= from) return p;
+        MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        byte[] line = new byte[256];
+        int len = 0;
+        while (map.hasRemaining()) {
+            byte b = map.get();
+            if (b == '\n') {
+                p.line(new String(line, 0, len, StandardCharsets.UTF_8), legacy, maxSeq);
+                len = 0;
+            } else {
+                if (len == line.length) line = Arrays.copyOf(line, len * 2);
+                line[len++] = b;
+            }
+        }
+        if (len > 0) p.skipped++; // no newline: a row still being written
+        return p;
+    }
+
+    // one chunk's sums, merged into the shared tables at the end
+    private static final class Partial {
+        final Map<String, Map<String, Map<LocalDateTime, long[]>>> sums = new HashMap<>();
+        long rows;
+        long skipped;
+        long lastSeq;
+        private String lastStamp;          // rows come in time order, so most share the previous hour
+        private LocalDateTime lastHour;
+
+        void line(String line, boolean legacy, long maxSeq) {
+            if (line.isBlank()) return;
+            String ts, vehicle, item;
+            int qty;
+            if (legacy) {
+                List<String> f = MetadataManager.parseRow(line);
+                if (f.size() != 4) {
+                    skipped++;
+                    return;
+                }
+                try {
+                    qty = Integer.parseInt(f.get(3).trim());
+                } catch (NumberFormatException e) {
+                    skipped++;
+                    return;
+                }
+                ts = f.get(0);
+                vehicle = f.get(1);
+                item = f.get(2);
+            } else {
+                DeliveryJournal.Entry e = DeliveryJournal.Entry.parse(line);
+                if (e == null) {
+                    skipped++;
+                    return;
+                }
+                if (e.seq > maxSeq) return;
+                lastSeq = Math.max(lastSeq, e.seq);
+                ts = e.timestamp;
+                vehicle = e.vehicle;
+                item = e.item;
+                qty = e.quantity;
+            }
+            LocalDateTime hour;
+            if (lastStamp != null && ts.length() >= 13 && ts.regionMatches(0, lastStamp, 0, 13)) {
+                hour = lastHour;
+            } else {
+                hour = hourOf(ts);
+                if (hour == null) {
+                    skipped++;
+                    return;
+                }
+                lastStamp = ts;
+                lastHour = hour;
+            }
+            long[] cell = sums.computeIfAbsent(item, k -> new HashMap<>())
+                    .computeIfAbsent(vehicle, k -> new HashMap<>())
+                    .computeIfAbsent(hour, k -> new long[2]);
+            cell[0] += qty;
+            cell[1]++;
+            rows++;
+        }
+
+        void mergeInto(DeliveryAnalytics a) {
+            sums.forEach((item, byVehicle) -> byVehicle.forEach((vehicle, byHour) ->
+                    byHour.forEach((hour, c) -> a.add(item, vehicle, hour, c[0], c[1]))));
+            a.lastSeq.accumulateAndGet(lastSeq, Math::max);
+        }
+    }
+
+    // local hour of an ISO timestamp (yyyy-MM-ddTHH...), null if it is not one
+    static LocalDateTime hourOf(String ts) {
+        if (ts.length() >= 13 && ts.charAt(4) == '-' && ts.charAt(7) == '-' && ts.charAt(10) == 'T') {
+            int y = digits(ts, 0, 4), mo = digits(ts, 5, 7), d = digits(ts, 8, 10), h = digits(ts, 11, 13);
+            if (y >= 0 && mo >= 1 && mo <= 12 && d >= 1 && d <= 31 && h >= 0 && h <= 23) {
+                try {
+                    return LocalDateTime.of(y, mo, d, h, 0);
+                } catch (DateTimeException ignored) {
+                    return null;
+                }
+            }
+        }
+        try {
+            return LocalDateTime.parse(ts).truncatedTo(ChronoUnit.HOURS);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    // ------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------
+    public Totals total() {
+        return total.totals();
+    }
+
+    public Totals item(String item) {
+        Cell c = byItem.get(item);
+        return c == null ? new Totals(0, 0) : c.totals();
+    }
+
+    public Totals vehicle(String vehicle) {
+        Cell c = byVehicle.get(vehicle);
+        return c == null ? new Totals(0, 0) : c.totals();
+    }
+
+    /** Totals per item, by name. */
+    public SortedMap<String, Totals> byItem() {
+        return snapshot(byItem);
+    }
+
+    /** Totals per vehicle, by name. */
+    public SortedMap<String, Totals> byVehicle() {
+        return snapshot(byVehicle);
+    }
+
+    /** Totals per hour for all items and vehicles. */
+    public SortedMap<LocalDateTime, Totals> byHour() {
+        return snapshot(byHour);
+    }
+
+    /** Units of {@code item} delivered per hour, for each vehicle that delivered it. */
+    public SortedMap<String, SortedMap<LocalDateTime, Long>> unitsPerHourByVehicle(String item) {
+        SortedMap<String, SortedMap<LocalDateTime, Long>> out = new TreeMap<>();
+        Map<String, ConcurrentSkipListMap<LocalDateTime, Cell>> vehicles = cells.get(item);
+        if (vehicles == null) return out;
+        vehicles.forEach((vehicle, hours) -> {
+            SortedMap<LocalDateTime, Long> perHour = new TreeMap<>();
+            hours.forEach((hour, c) -> perHour.put(hour, c.units.sum()));
+            out.put(vehicle, perHour);
+        });
+        return out;
+    }
+
+    /**
+     * Totals of the hours starting in [{@code from}, {@code to}); {@code item} / {@code vehicle}
+     * null for any, {@code from} / {@code to} null for open ends.
+     */
+    public Totals between(String item, String vehicle, LocalDateTime from, LocalDateTime to) {
+        if (item == null && vehicle == null) return sum(range(byHour, from, to));
+        long u = 0, d = 0;
+        for (Map.Entry<String, ConcurrentHashMap<String, ConcurrentSkipListMap<LocalDateTime, Cell>>> i : cells.entrySet()) {
+            if (item != null && !item.equals(i.getKey())) continue;
+            for (Map.Entry<String, ConcurrentSkipListMap<LocalDateTime, Cell>> v : i.getValue().entrySet()) {
+                if (vehicle != null && !vehicle.equals(v.getKey())) continue;
+                Totals t = sum(range(v.getValue(), from, to));
+                u += t.units;
+                d += t.deliveries;
+            }
+        }
+        return new Totals(u, d);
+    }
+
+    /**
+     * Throughput per window of {@code hours} hours (aligned to midnight) for {@code item}, or all
+     * items if null. Windows without deliveries are left out.
+     */
+    public SortedMap<LocalDateTime, Totals> perWindow(String item, int hours) {
+        if (hours <= 0 || 24 % hours != 0) throw new IllegalArgumentException("hours must divide 24: " + hours);
+        Map<LocalDateTime, long[]> sums = new TreeMap<>();
+        Consumer<Map<LocalDateTime, Cell>> addAll = m -> m.forEach((hour, c) -> {
+            long[] s = sums.computeIfAbsent(hour.withHour(hour.getHour() / hours * hours), k -> new long[2]);
+            s[0] += c.units.sum();
+            s[1] += c.deliveries.sum();
+        });
+        if (item == null) {
+            addAll.accept(byHour);
+        } else {
+            Map<String, ConcurrentSkipListMap<LocalDateTime, Cell>> vehicles = cells.get(item);
+            if (vehicles != null) vehicles.values().forEach(addAll);
+        }
+        SortedMap<LocalDateTime, Totals> out = new TreeMap<>();
+        sums.forEach((w, s) -> out.put(w, new Totals(s[0], s[1])));
+        return out;
+    }
+
+    /** Highest journal sequence number counted (0 for old-format files). */
+    public long getLastSeq() {
+        return lastSeq.get();
+    }
+
+    /** Deliveries passed to {@link #add} with a timestamp that is not an ISO date-time. */
+    public long getUnparsable() {
+        return unparsable.sum();
+    }
+
+    private static NavigableMap<LocalDateTime, Cell> range(ConcurrentSkipListMap<LocalDateTime, Cell> m,
+                                                           LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null) return m.subMap(from, true, to, false);
+        if (from != null) return m.tailMap(from, true);
+        if (to != null) return m.headMap(to, false);
+        return m;
+    }
+
+    private static Totals sum(Map<LocalDateTime, Cell> m) {
+        long u = 0, d = 0;
+        for (Cell c : m.values()) {
+            u += c.units.sum();
+            d += c.deliveries.sum();
+        }
+        return new Totals(u, d);
+    }
+
+    private static <K> SortedMap<K, Totals> snapshot(Map<K, Cell> m) {
+        SortedMap<K, Totals> out = new TreeMap<>();
+        m.forEach((k, c) -> out.put(k, c.totals()));
+        return out;
+    }
+
+    // ------------------------------------------------------------
+    // CLI: java med.supply.system.util.DeliveryAnalytics <file.csv> [item]
+    // ------------------------------------------------------------
+    public static void main(String[] args) {
+        if (args.length == 0 || args.length > 2) {
+            System.err.println("Usage: java med.supply.system.util.DeliveryAnalytics <destination_log.csv> [item]");
+            System.exit(2);
+        }
+        DeliveryAnalytics a = new DeliveryAnalytics();
+        try {
+            System.out.println(a.load(Path.of(args[0]), Runtime.getRuntime().availableProcessors()));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("[DESTINATION] " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+        a.print(args.length > 1 ? args[1] : null, System.out);
+        System.out.flush();
+    }
+
+    /** Totals per item and vehicle, or units per hour by vehicle for one item. */
+    public void print(String item, PrintStream out) {
+        if (item == null) {
+            out.println("Total: " + total());
+            out.println("By item:");
+            byItem().forEach((k, t) -> out.println("  " + k + ": " + t));
+            out.println("By vehicle:");
+            byVehicle().forEach((k, t) -> out.println("  " + k + ": " + t));
+            return;
+        }
+        out.println(item + ": " + item(item));
+        unitsPerHourByVehicle(item).forEach((vehicle, hours) -> {
+            out.println("  " + vehicle + ":");
+            hours.forEach((hour, units) -> out.println("    " + hour + "  " + units));
+        });
+    }
+}
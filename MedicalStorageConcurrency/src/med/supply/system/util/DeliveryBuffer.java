@@ -0,0 +1,243 @@
+package med.supply.system.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free front end for a {@link DeliveryJournal}.
+ * <p>
+ * {@link #record} takes a ticket from an atomic counter and drops the delivery into one of several
+ * striped queues (picked by thread id), so delivery threads never wait on each other or on the
+ * disk. A single merger thread drains all stripes every {@code flushIntervalMs} (or as soon as
+ * {@code batchSize} deliveries are waiting), puts them back in ticket order and hands them to
+ * {@link DeliveryJournal#appendAll} as one batch. Only an unbroken run of tickets is written: a
+ * delivery whose thread took a ticket but has not reached its stripe yet holds back the ones after
+ * it until the next round, so the journal order is always the order deliveries were recorded in.
+ * <p>
+ * Recording only blocks when more than {@code capacity} deliveries are waiting to be written.
+ */
+public final class DeliveryBuffer implements AutoCloseable {
+
+    private static final class Pending {
+        final long ticket;
+        final DeliveryJournal.Delivery delivery;
+
+        Pending(long ticket, DeliveryJournal.Delivery delivery) {
+            this.ticket = ticket;
+            this.delivery = delivery;
+        }
+    }
+
+    private final DeliveryJournal journal;
+    private final List<ConcurrentLinkedQueue<Pending>> stripes;
+    private final int mask;
+    private final int batchSize;
+    private final int capacity;
+    private final long flushIntervalNanos;
+    private final Thread merger;
+
+    // last ticket handed out; close() adds CLOSED so that a recorder racing with it sees a flagged
+    // ticket and writes through instead
+    private static final long CLOSED = 1L << 62;
+    private final AtomicLong tickets = new AtomicLong();
+    private volatile long writtenThrough;                  // every ticket up to this one is in the journal
+    private volatile boolean closed;
+    private volatile long closedAt;                        // last ticket the merger still has to write
+    private volatile IOException lastError;                // failure of the latest round, null once one succeeds
+
+    // merger only
+    private final PriorityQueue<Pending> holdback = new PriorityQueue<>((a, b) -> Long.compare(a.ticket, b.ticket));
+
+    // merger rounds, for flush()
+    private final Object progress = new Object();
+    private long rounds;
+
+    private long batches;
+    private long merged;
+
+    public DeliveryBuffer(DeliveryJournal journal, int stripes, int batchSize, int capacity, long flushIntervalMs) {
+        if (stripes <= 0) throw new IllegalArgumentException("stripes must be positive");
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        if (capacity < batchSize) throw new IllegalArgumentException("capacity must be at least batchSize");
+        if (flushIntervalMs <= 0) throw new IllegalArgumentException("flushIntervalMs must be positive");
+        this.journal = journal;
+        int n = Integer.highestOneBit(stripes - 1) << 1;
+        if (n <= 0) n = 1;
+        List<ConcurrentLinkedQueue<Pending>> queues = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) queues.add(new ConcurrentLinkedQueue<>());
+        this.stripes = List.copyOf(queues);
+        this.mask = n - 1;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+
+        this.merger = new Thread(this::runMerger, "delivery-merger");
+        this.merger.setDaemon(true);
+        this.merger.start();
+    }
+
+    /** One stripe per available processor, batches of 256, at most 64k waiting, merged every 50 ms. */
+    public DeliveryBuffer(DeliveryJournal journal) {
+        this(journal, Runtime.getRuntime().availableProcessors(), 256, 65_536, 50);
+    }
+
+    // ------------------------------------------------------------
+    // Recording
+    // ------------------------------------------------------------
+    /**
+     * Queue one delivery for the journal. Returns immediately unless {@code capacity} deliveries
+     * are already waiting; once the buffer is closed the delivery is written straight through.
+     */
+    public void record(String timestamp, String vehicle, String item, int quantity) throws IOException {
+        DeliveryJournal.Delivery d = new DeliveryJournal.Delivery(timestamp, vehicle, item, quantity);
+        long ticket = closed ? CLOSED : tickets.incrementAndGet();
+        if (ticket >= CLOSED) {
+            journal.appendAll(List.of(d));
+            return;
+        }
+        stripes.get((int) Thread.currentThread().getId() & mask).offer(new Pending(ticket, d));
+        if (ticket % batchSize == 0) LockSupport.unpark(merger);
+        if (ticket - writtenThrough > capacity) awaitWritten(ticket - capacity);
+    }
+
+    /** Wait until every delivery recorded so far is in the journal. */
+    public void flush() throws IOException {
+        awaitWritten(getRecorded());
+    }
+
+    private void awaitWritten(long ticket) throws IOException {
+        synchronized (progress) {
+            while (writtenThrough < ticket) {
+                if (!merger.isAlive()) throw new IOException("delivery merger stopped with " + (ticket - writtenThrough) + " delivery(s) unwritten");
+                long seen = rounds;
+                LockSupport.unpark(merger);
+                while (rounds == seen && merger.isAlive()) {
+                    try {
+                        progress.wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("interrupted while waiting for the delivery journal");
+                    }
+                }
+                IOException e = lastError;
+                if (e != null && writtenThrough < ticket) throw new IOException("delivery journal write failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Merging
+    // ------------------------------------------------------------
+    private void runMerger() {
+        while (true) {
+            boolean stop = closed;
+            boolean ok = mergeRound();
+            if (stop) {
+                if (writtenThrough >= closedAt || !ok) break;
+                // a recorder that took its ticket before close() is still on its way to a stripe
+                Thread.onSpinWait();
+                continue;
+            }
+            LockSupport.parkNanos(this, flushIntervalNanos);
+        }
+    }
+
+    // false if the journal write failed
+    private boolean mergeRound() {
+        for (ConcurrentLinkedQueue<Pending> stripe : stripes) {
+            Pending p;
+            while ((p = stripe.poll()) != null) holdback.add(p);
+        }
+        List<DeliveryJournal.Delivery> batch = new ArrayList<>(holdback.size());
+        long next = writtenThrough + 1;
+        List<Pending> taken = new ArrayList<>(holdback.size());
+        while (!holdback.isEmpty() && holdback.peek().ticket == next) {
+            Pending p = holdback.poll();
+            taken.add(p);
+            batch.add(p.delivery);
+            next++;
+        }
+
+        IOException error = null;
+        if (!batch.isEmpty()) {
+            try {
+                journal.appendAll(batch);
+                writtenThrough = next - 1;
+            } catch (IOException e) {
+                holdback.addAll(taken); // retried next round
+                error = e;
+                System.err.println("[DESTINATION] ERROR writing " + batch.size() + " buffered delivery(s): " + e.getMessage());
+            }
+        }
+        lastError = error;
+        synchronized (progress) {
+            if (!batch.isEmpty() && error == null) {
+                batches++;
+                merged += batch.size();
+            }
+            rounds++;
+            progress.notifyAll();
+        }
+        return error == null;
+    }
+
+    /**
+     * Write everything recorded so far and stop the merger; later deliveries are written straight
+     * through. The journal itself stays open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closedAt = tickets.getAndAdd(CLOSED);
+        closed = true;
+        LockSupport.unpark(merger);
+        try {
+            merger.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException e = lastError;
+        if (e != null) throw new IOException("delivery journal write failed: " + e.getMessage(), e);
+    }
+
+    // ------------------------------------------------------------
+    // Counters
+    // ------------------------------------------------------------
+    public DeliveryJournal getJournal() {
+        return journal;
+    }
+
+    public int getStripeCount() {
+        return stripes.size();
+    }
+
+    /** Deliveries recorded through the buffer (not counting write-through ones after close). */
+    public long getRecorded() {
+        return closed ? closedAt : tickets.get();
+    }
+
+    /** Deliveries recorded but not in the journal yet. */
+    public long getPending() {
+        return getRecorded() - writtenThrough;
+    }
+
+    /** Batches handed to the journal by the merger. */
+    public long getBatchCount() {
+        synchronized (progress) {
+            return batches;
+        }
+    }
+
+    public long getMerged() {
+        synchronized (progress) {
+            return merged;
+        }
+    }
+}
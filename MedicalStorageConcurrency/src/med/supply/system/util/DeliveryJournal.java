@@ -0,0 +1,463 @@
+package med.supply.system.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of deliveries ({@code resources/destination_log.csv}) with group commit and
+ * crash recovery.
+ * <p>
+ * Every row carries a sequence number and a CRC32C of the rest of the row:
+ * <pre>
+ *   seq,timestamp,vehicle,item,quantity,crc
+ *   17,2025-01-01T10:00:00.123,Van_1,Gloves,50,5d1c0a7e
+ * </pre>
+ * The file is never truncated on start. {@link #open} checks the tail: a last row that is cut
+ * off, or fails its checksum (e.g. zero-filled after a power loss), is dropped, and numbering
+ * resumes after the last good row. A file in the old four-column format is converted once.
+ * <p>
+ * Writes work like {@link MetadataWriter}: the channel stays open, and rows that arrive while a
+ * batch is being written are written together by the next thread, with at most one fsync per
+ * batch. Row order in the file is sequence order.
+ */
+public final class DeliveryJournal implements AutoCloseable {
+
+    public static final String HEADER = "seq,timestamp,vehicle,item,quantity,crc";
+    static final String LEGACY_HEADER = "timestamp,vehicle,item,quantity";
+
+    private static final int TAIL_CHUNK = 64 * 1024;
+
+    /** One delivery row. */
+    public static final class Entry {
+        public final long seq;
+        public final String timestamp;
+        public final String vehicle;
+        public final String item;
+        public final int quantity;
+
+        public Entry(long seq, String timestamp, String vehicle, String item, int quantity) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+            this.vehicle = vehicle;
+            this.item = item;
+            this.quantity = quantity;
+        }
+
+        /** The CSV row including checksum and trailing newline. */
+        public String toRow() {
+            return ChecksummedRow.format(seq, timestamp, vehicle, item, Integer.toString(quantity));
+        }
+
+        /** Parse one row; null for the header, a malformed row or a checksum mismatch. */
+        public static Entry parse(String line) {
+            List<String> f = ChecksummedRow.parse(line);
+            if (f == null || f.size() != 5) return null;
+            try {
+                return new Entry(Long.parseLong(f.get(0)), f.get(1), f.get(2), f.get(3), Integer.parseInt(f.get(4)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "#" + seq + " " + timestamp + " " + vehicle + " " + item + " x" + quantity;
+        }
+    }
+
+    /** A delivery that has not been numbered yet (see {@link #appendAll}). */
+    public static final class Delivery {
+        public final String timestamp;
+        public final String vehicle;
+        public final String item;
+        public final int quantity;
+
+        public Delivery(String timestamp, String vehicle, String item, int quantity) {
+            this.timestamp = timestamp;
+            this.vehicle = vehicle;
+            this.item = item;
+            this.quantity = quantity;
+        }
+    }
+
+    /** What {@link #open} found in the existing file. */
+    public static final class Recovery {
+        public final long lastSeq;
+        public final long validBytes;
+        public final long discardedBytes;
+        public final int migratedRows;
+
+        Recovery(long lastSeq, long validBytes, long discardedBytes, int migratedRows) {
+            this.lastSeq = lastSeq;
+            this.validBytes = validBytes;
+            this.discardedBytes = discardedBytes;
+            this.migratedRows = migratedRows;
+        }
+
+        @Override
+        public String toString() {
+            return "Recovery{lastSeq=" + lastSeq + ", validBytes=" + validBytes +
+                    ", discardedBytes=" + discardedBytes + ", migratedRows=" + migratedRows + '}';
+        }
+    }
+
+    private static final class Listener {
+        final Consumer<List<Entry>> target;
+        final long after; // rows up to this one were handed out before subscribing
+
+        Listener(Consumer<List<Entry>> target, long after) {
+            this.target = target;
+            this.after = after;
+        }
+    }
+
+    private static final class Batch {
+        final List<Entry> entries = new ArrayList<>();
+        final List<byte[]> rows = new ArrayList<>();
+        boolean done;
+        IOException error;
+
+        void add(Entry e) {
+            entries.add(e);
+            rows.add(e.toRow().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private final Path file;
+    private final MetadataWriter.FsyncPolicy policy;
+    private final Recovery recovery;
+
+    private final Object lock = new Object();
+    private Batch current = new Batch();
+    private boolean writing;
+    private boolean closed;
+    private long lastSeq;         // last sequence number handed out
+    private FileChannel channel;  // only touched by the current leader
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private long batches;
+    private long rows;
+    private long syncs;
+
+    private DeliveryJournal(Path file, MetadataWriter.FsyncPolicy policy) throws IOException {
+        this.file = file;
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.recovery = recover(file);
+        this.lastSeq = recovery.lastSeq;
+        this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /** Open (creating if needed) with one fsync per batch. */
+    public static DeliveryJournal open(Path file) throws IOException {
+        return open(file, MetadataWriter.FsyncPolicy.PER_BATCH);
+    }
+
+    public static DeliveryJournal open(Path file, MetadataWriter.FsyncPolicy policy) throws IOException {
+        return new DeliveryJournal(file, policy);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Recovery getRecovery() {
+        return recovery;
+    }
+
+    // ------------------------------------------------------------
+    // Appending
+    // ------------------------------------------------------------
+    /**
+     * Record one delivery and return its sequence number once it is written (and synced, per the
+     * policy).
+     */
+    public long append(String timestamp, String vehicle, String item, int quantity) throws IOException {
+        Batch mine;
+        long seq;
+        synchronized (lock) {
+            if (closed) throw new IOException("delivery journal closed: " + file);
+            seq = ++lastSeq;
+            mine = current;
+            mine.add(new Entry(seq, timestamp, vehicle, item, quantity));
+        }
+        commit(mine);
+        return seq;
+    }
+
+    /**
+     * Record several deliveries in list order, numbered consecutively and written in one batch.
+     * Returns the sequence number of the last one (the current last number if the list is empty).
+     */
+    public long appendAll(List<Delivery> deliveries) throws IOException {
+        Batch mine;
+        long seq;
+        synchronized (lock) {
+            if (closed) throw new IOException("delivery journal closed: " + file);
+            mine = current;
+            for (Delivery d : deliveries) {
+                mine.add(new Entry(++lastSeq, d.timestamp, d.vehicle, d.item, d.quantity));
+            }
+            seq = lastSeq;
+        }
+        commit(mine);
+        return seq;
+    }
+
+    /**
+     * Call {@code listener} with the rows of every batch written from now on, after the batch is
+     * written (and synced), one batch at a time and in sequence order. Returns the last sequence
+     * number handed out before the listener was added: every later row goes to the listener, every
+     * earlier one is in the file once {@link #flush()} returns.
+     */
+    public long subscribe(Consumer<List<Entry>> listener) {
+        Objects.requireNonNull(listener, "listener");
+        synchronized (lock) {
+            listeners.add(new Listener(listener, lastSeq));
+            return lastSeq;
+        }
+    }
+
+    public void unsubscribe(Consumer<List<Entry>> listener) {
+        listeners.removeIf(l -> l.target == listener);
+    }
+
+    /** Wait until everything appended so far is written. */
+    public void flush() throws IOException {
+        Batch mine;
+        synchronized (lock) {
+            mine = current;
+        }
+        commit(mine);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        synchronized (lock) {
+            while (writing) waitOnLock();
+            closed = true;
+            if (channel != null) channel.close();
+            channel = null;
+        }
+    }
+
+    private void commit(Batch mine) throws IOException {
+        synchronized (lock) {
+            while (!mine.done && writing) waitOnLock();
+            if (mine.done) {
+                if (mine.error != null) throw new IOException("delivery journal write failed: " + mine.error.getMessage(), mine.error);
+                return;
+            }
+            writing = true; // lead this batch, with whatever rows other threads added to it
+            current = new Batch();
+        }
+
+        try {
+            if (!mine.rows.isEmpty()) {
+                write(mine.rows);
+                notifyListeners(mine.entries);
+            }
+        } catch (IOException e) {
+            mine.error = e;
+        } finally {
+            synchronized (lock) {
+                mine.done = true;
+                writing = false;
+                if (!mine.rows.isEmpty()) {
+                    batches++;
+                    rows += mine.rows.size();
+                }
+                lock.notifyAll();
+            }
+        }
+        if (mine.error != null) throw mine.error;
+    }
+
+    // leader only, so listeners see batches one at a time and in sequence order
+    private void notifyListeners(List<Entry> entries) {
+        List<Entry> view = Collections.unmodifiableList(entries);
+        for (Listener l : listeners) {
+            int from = 0;
+            while (from < view.size() && view.get(from).seq <= l.after) from++;
+            if (from == view.size()) continue;
+            try {
+                l.target.accept(from == 0 ? view : view.subList(from, view.size()));
+            } catch (RuntimeException e) {
+                System.err.println("[DESTINATION] ERROR in journal listener: " + e);
+            }
+        }
+    }
+
+    // leader only
+    private void write(List<byte[]> batch) throws IOException {
+        if (channel == null) throw new IOException("delivery journal closed: " + file);
+        ByteBuffer[] bufs = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < bufs.length; i++) {
+            bufs[i] = ByteBuffer.wrap(batch.get(i));
+            remaining += bufs[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(bufs);
+        }
+        if (policy != MetadataWriter.FsyncPolicy.NONE) {
+            channel.force(false);
+            synchronized (lock) {
+                syncs++;
+            }
+        }
+    }
+
+    private void waitOnLock() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the delivery journal");
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Recovery
+    // ------------------------------------------------------------
+    private static Recovery recover(Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            Files.writeString(file, HEADER + "\n", StandardCharsets.UTF_8);
+            return new Recovery(0, HEADER.length() + 1, 0, 0);
+        }
+        String header;
+        try (Stream<String> lines = LogReader.lines(file)) {
+            header = lines.findFirst().orElse("");
+        }
+        if (header.trim().equals(LEGACY_HEADER)) return migrate(file);
+        if (!header.trim().equals(HEADER)) throw new IOException("not a delivery journal: " + file + " starts with '" + header + "'");
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            long headerEnd = header.getBytes(StandardCharsets.UTF_8).length + 1L;
+            for (int chunk = TAIL_CHUNK; ; chunk *= 2) {
+                long from = Math.max(headerEnd, size - chunk);
+                long[] found = lastValidRow(ch, from, size, headerEnd); // {seq, end offset} or null
+                if (found != null || from == headerEnd) {
+                    long lastSeq = found == null ? 0 : found[0];
+                    long validEnd = found == null ? headerEnd : found[1];
+                    long discarded = Math.max(0, size - validEnd);
+                    if (discarded > 0) {
+                        ch.truncate(validEnd);
+                        ch.force(true);
+                        System.err.println("[DESTINATION] dropped " + discarded + " byte(s) of incomplete rows after #" + lastSeq + " in " + file);
+                    }
+                    return new Recovery(lastSeq, validEnd, discarded, 0);
+                }
+            }
+        }
+    }
+
+    // last row in [from, to) that ends with '\n' and passes its checksum
+    private static long[] lastValidRow(FileChannel ch, long from, long to, long headerEnd) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, from + buf.position()) < 0) break;
+        }
+        byte[] b = buf.array();
+        int end = buf.position();
+        // walk back over complete lines; the bytes after the last '\n' are a torn row
+        int lineEnd = end;
+        while (lineEnd > 0 && b[lineEnd - 1] != '\n') lineEnd--;
+        while (lineEnd > 0) {
+            int lineStart = lineEnd - 1;
+            while (lineStart > 0 && b[lineStart - 1] != '\n') lineStart--;
+            if (lineStart == 0 && from > headerEnd) return null; // may start before the chunk: read a bigger one
+            Entry e = Entry.parse(new String(b, lineStart, lineEnd - 1 - lineStart, StandardCharsets.UTF_8));
+            if (e != null) return new long[]{e.seq, from + lineEnd};
+            lineEnd = lineStart;
+        }
+        return null;
+    }
+
+    // old files had no seq / crc: number the rows in order and rewrite the file once
+    private static Recovery migrate(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".migrate.tmp");
+        long seq = 0;
+        try (Stream<String> lines = LogReader.lines(file);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(out, HEADER + "\n");
+            for (String line : (Iterable<String>) lines.skip(1)::iterator) {
+                List<String> f = MetadataManager.parseRow(line);
+                if (f.size() != 4) continue;
+                int qty;
+                try {
+                    qty = Integer.parseInt(f.get(3).trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                write(out, new Entry(++seq, f.get(0), f.get(1), f.get(2), qty).toRow());
+            }
+            out.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long size = Files.size(tmp);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("[DESTINATION] converted " + seq + " delivery row(s) in " + file + " to the journal format");
+        return new Recovery(seq, size, 0, (int) seq);
+    }
+
+    private static void write(FileChannel out, String s) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+        while (b.hasRemaining()) out.write(b);
+    }
+
+    // ------------------------------------------------------------
+    // Reading
+    // ------------------------------------------------------------
+    /** Valid rows of a journal file in order; the header and damaged rows are skipped. */
+    public static Stream<Entry> read(Path file) throws IOException {
+        return LogReader.lines(file).map(Entry::parse).filter(Objects::nonNull);
+    }
+
+    // ------------------------------------------------------------
+    // Counters
+    // ------------------------------------------------------------
+    public long getLastSeq() {
+        synchronized (lock) {
+            return lastSeq;
+        }
+    }
+
+    /** Batches written; fewer than {@link #getRowCount()} means deliveries were grouped. */
+    public long getBatchCount() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    public long getRowCount() {
+        synchronized (lock) {
+            return rows;
+        }
+    }
+
+    public long getSyncCount() {
+        synchronized (lock) {
+            return syncs;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package med.supply.system.util;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How delivery work (finishing a delivery, resume rounds) gets its threads.
+ * <p>
+ * {@link #POOLED} is the original setup: a fixed pool. {@link #VIRTUAL} runs every task on its own
+ * virtual thread. Deliveries in transit and charging hold no thread at all; they are timed by the
+ * SimulationClock and the ChargingEngine.
+ * <p>
+ * Virtual threads need JDK 21+; they are looked up reflectively so the project still builds on 17,
+ * and on older runtimes VIRTUAL falls back to an unbounded cached pool of platform threads.
+ * <p>
+ * The default comes from {@code -Dmed.exec.mode=pooled|virtual} and can be changed with
+ * {@link #setDefault(ExecutionMode)} before services are created.
+ */
+public enum ExecutionMode {
+    POOLED,
+    VIRTUAL;
+
+    private static final Method NEW_VIRTUAL_EXECUTOR = lookup(Executors.class, "newVirtualThreadPerTaskExecutor");
+
+    private static volatile ExecutionMode defaultMode = fromSystemProperty();
+
+    public static ExecutionMode getDefault() {
+        return defaultMode;
+    }
+
+    public static void setDefault(ExecutionMode mode) {
+        if (mode == null) throw new IllegalArgumentException("mode must not be null");
+        defaultMode = mode;
+    }
+
+    public static ExecutionMode fromSystemProperty() {
+        String v = System.getProperty("med.exec.mode", "pooled").trim().toUpperCase(Locale.ROOT);
+        try {
+            return valueOf(v);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown med.exec.mode '" + v + "', using POOLED.");
+            return POOLED;
+        }
+    }
+
+    /** True when the running JVM actually provides virtual threads. */
+    public static boolean virtualThreadsAvailable() {
+        return NEW_VIRTUAL_EXECUTOR != null;
+    }
+
+    /** Executor for short-lived tasks (deliveries). {@code poolSize} only applies to POOLED. */
+    public ExecutorService newExecutor(int poolSize, String namePrefix) {
+        if (this == VIRTUAL) {
+            if (NEW_VIRTUAL_EXECUTOR != null) {
+                try {
+                    return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    System.err.println("Virtual threads unavailable: " + e.getMessage());
+                }
+            }
+            return Executors.newCachedThreadPool(namedFactory(namePrefix));
+        }
+        return Executors.newFixedThreadPool(poolSize, namedFactory(namePrefix));
+    }
+
+    private static ThreadFactory namedFactory(String namePrefix) {
+        AtomicInteger n = new AtomicInteger(1);
+        return r -> new Thread(r, namePrefix + "-" + n.getAndIncrement());
+    }
+
+    private static Method lookup(Class<?> owner, String name, Class<?>... params) {
+        try {
+            return owner.getMethod(name, params);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
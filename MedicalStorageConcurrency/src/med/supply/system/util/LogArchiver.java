@@ -0,0 +1,425 @@
+package med.supply.system.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Archives a log directory into a ZIP, deflating the files in parallel.
+ * <p>
+ * Files up to 4 MB are compressed on their own on a fork-join pool (raw deflate + CRC), and one
+ * thread writes the finished entries to the ZIP in order; at most {@code 2 x parallelism} of them,
+ * and 64 MB of their input, wait in memory at a time. Larger files are deflated by the writer
+ * thread straight into the ZIP. Archives that would need ZIP64 (4 GB or 65535 entries) are
+ * written sequentially with {@link ZipOutputStream} instead.
+ * <p>
+ * Incremental runs take the files from the {@link MetadataIndex} and keep only those modified
+ * since the last ARCHIVE row for the same directory. With {@code deleteSources}, archived files
+ * are deleted through {@link MetadataManager#delete} once the ZIP is on disk. Today's files are
+ * still being written, so they are archived but never deleted; with {@link #logs}, "today" is the
+ * day of the {@link LogManager}'s clock and cached handles are closed before a file is deleted.
+ */
+public class LogArchiver {
+
+    /** What one run did. */
+    public static final class Report {
+        public final Path zip;
+        public final int files;
+        public final long bytesIn;
+        public final long bytesOut;
+        public final int deleted;
+        public final long elapsedMs;
+        public final boolean parallel;
+
+        Report(Path zip, int files, long bytesIn, long bytesOut, int deleted, long elapsedMs, boolean parallel) {
+            this.zip = zip;
+            this.files = files;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.deleted = deleted;
+            this.elapsedMs = elapsedMs;
+            this.parallel = parallel;
+        }
+
+        /** Uncompressed MB archived per second. */
+        public double throughputMBps() {
+            return elapsedMs == 0 ? 0 : bytesIn / 1_048_576.0 / (elapsedMs / 1000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d file(s), %.1f MB -> %.1f MB (%.0f%%) in %d ms, %.1f MB/s%s%s",
+                    files, bytesIn / 1_048_576.0, bytesOut / 1_048_576.0,
+                    bytesIn == 0 ? 100.0 : 100.0 * bytesOut / bytesIn, elapsedMs, throughputMBps(),
+                    parallel ? "" : " (sequential)", deleted > 0 ? ", " + deleted + " original(s) deleted" : "");
+        }
+    }
+
+    private static final long ZIP32_LIMIT = 0xFFFF_FFFFL;
+    private static final int ZIP32_MAX_ENTRIES = 0xFFFF;
+    // file times come from a coarser clock than Instant.now() (and some file systems round them),
+    // so a file written just after the previous run started can look older than that run
+    private static final Duration MTIME_SLACK = Duration.ofSeconds(2);
+    private static final long MAX_BUFFERED_ENTRY = 4L << 20; // larger files are streamed by the writer
+    private static final long MAX_BUFFERED_BYTES = 64L << 20;
+
+    private final Path metaIndex;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private boolean incremental;
+    private boolean deleteSources;
+    private LogManager logs; // null = no live logs under the source directory
+
+    public LogArchiver(Path metaIndex) {
+        this.metaIndex = metaIndex;
+    }
+
+    public LogArchiver parallelism(int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public LogArchiver level(int level) {
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * Only archive files modified since the last archive of the same directory (files touched up
+     * to two seconds before that run started are taken again rather than risk missing them).
+     */
+    public LogArchiver incremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /** Delete archived files (except today's) after the ZIP is written. */
+    public LogArchiver deleteSources(boolean deleteSources) {
+        this.deleteSources = deleteSources;
+        return this;
+    }
+
+    /**
+     * The manager writing the logs being archived: its clock says which day is today, and its
+     * cached handles are closed before a file is deleted.
+     */
+    public LogArchiver logs(LogManager logs) {
+        this.logs = logs;
+        return this;
+    }
+
+    // ------------------------------------------------------------
+    // Archive
+    // ------------------------------------------------------------
+    public Report archive(Path sourceDir, Path zipTarget) throws IOException {
+        long t0 = System.nanoTime();
+        Instant startedAt = Instant.now();
+        List<Path> files = select(sourceDir, zipTarget);
+
+        long total = 0;
+        for (Path f : files) total += Files.size(f);
+        // leave room for headers and for deflate expanding incompressible data
+        boolean parallel = files.size() < ZIP32_MAX_ENTRIES && total + total / 8 + files.size() * 1024L < ZIP32_LIMIT;
+
+        if (zipTarget.getParent() != null) Files.createDirectories(zipTarget.getParent());
+        long out = parallel ? writeParallel(sourceDir, files, zipTarget) : writeSequential(sourceDir, files, zipTarget);
+
+        MetadataManager.append(metaIndex, zipTarget, "ARCHIVE", "archived " + sourceDir + " as of " + startedAt +
+                " (" + files.size() + " file(s)" + (incremental ? ", incremental" : "") + ")");
+
+        int deleted = 0;
+        if (deleteSources) {
+            LogHandleCache handles = logs == null ? null : logs.getHandleCache();
+            LocalDate today = handles == null ? LocalDate.now() : handles.today();
+            for (Path f : files) {
+                if (today.equals(MetadataIndex.dateOf(f))) continue;
+                if (handles != null) handles.invalidate(f);
+                MetadataManager.delete(f, metaIndex);
+                deleted++;
+            }
+        }
+        return new Report(zipTarget, files.size(), total, out, deleted, (System.nanoTime() - t0) / 1_000_000, parallel);
+    }
+
+    private List<Path> select(Path sourceDir, Path zipTarget) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path zipAbs = zipTarget.toAbsolutePath().normalize();
+        if (!incremental) {
+            try (Stream<Path> s = Files.walk(sourceDir)) {
+                for (Path p : (Iterable<Path>) s::iterator) {
+                    if (Files.isRegularFile(p) && !p.toAbsolutePath().normalize().equals(zipAbs)) files.add(p);
+                }
+            }
+            files.sort(null);
+            return files;
+        }
+
+        MetadataIndex index = MetadataIndex.forFile(metaIndex);
+        index.reconcile(sourceDir);
+        Instant since = lastArchive(index, sourceDir);
+        for (MetadataIndex.Entry e : index.under(sourceDir)) {
+            Path p = e.path;
+            if (!Files.isRegularFile(p) || p.toAbsolutePath().normalize().equals(zipAbs)) continue;
+            if (since == null || !Files.getLastModifiedTime(p).toInstant().isBefore(since.minus(MTIME_SLACK))) files.add(p);
+        }
+        return files;
+    }
+
+    // start time of the newest archive of sourceDir, or null if there is none
+    private static Instant lastArchive(MetadataIndex index, Path sourceDir) throws IOException {
+        String prefix = "archived " + sourceDir + " as of ";
+        MetadataIndex.Entry last = index.latest("ARCHIVE", prefix);
+        if (last != null) {
+            String rest = last.notes.substring(prefix.length());
+            int end = rest.indexOf(' ');
+            try {
+                return Instant.parse(end < 0 ? rest : rest.substring(0, end));
+            } catch (DateTimeParseException ignored) {
+                return last.recordedAt();
+            }
+        }
+        // rows written before archives recorded their start time
+        last = index.latest("ARCHIVE", "archived " + sourceDir);
+        return last != null && last.notes.equals("archived " + sourceDir) ? last.recordedAt() : null;
+    }
+
+    // ------------------------------------------------------------
+    // Parallel: deflate entries on the pool, write them here in order
+    // ------------------------------------------------------------
+    private static final class Deflated {
+        final String name;
+        final byte[] data;
+        final long crc;
+        final long size;
+        final long modified;
+
+        Deflated(String name, byte[] data, long crc, long size, long modified) {
+            this.name = name;
+            this.data = data;
+            this.crc = crc;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    private static final class Pending {
+        final Future<Deflated> future;
+        final long size;
+
+        Pending(Future<Deflated> future, long size) {
+            this.future = future;
+            this.size = size;
+        }
+    }
+
+    private long writeParallel(Path sourceDir, List<Path> files, Path zipTarget) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel ch = FileChannel.open(zipTarget, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ZipWriter zip = new ZipWriter(ch);
+            Deque<Pending> window = new ArrayDeque<>();
+            long buffered = 0;
+            int next = 0;
+            while (next < files.size() || !window.isEmpty()) {
+                while (next < files.size() && window.size() < 2 * parallelism) {
+                    Path f = files.get(next);
+                    long size = Files.size(f);
+                    if (size > MAX_BUFFERED_ENTRY) break;
+                    if (!window.isEmpty() && buffered + size > MAX_BUFFERED_BYTES) break;
+                    window.add(new Pending(pool.submit(() -> deflate(sourceDir, f)), size));
+                    buffered += size;
+                    next++;
+                }
+                if (window.isEmpty()) {
+                    // a large file, and every entry before it is written
+                    Path f = files.get(next++);
+                    zip.stream(entryName(sourceDir, f), f, level);
+                    continue;
+                }
+                Pending p = window.removeFirst();
+                buffered -= p.size;
+                zip.add(await(p.future));
+            }
+            zip.finish();
+            ch.force(true);
+            return ch.size();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Deflated await(Future<Deflated> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("archiving interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    private Deflated deflate(Path sourceDir, Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long size = deflateTo(file, level, crc, out);
+        return new Deflated(entryName(sourceDir, file), out.toByteArray(), crc.getValue(), size,
+                Files.getLastModifiedTime(file).toMillis());
+    }
+
+    // raw deflate of file into out; returns the uncompressed size
+    private static long deflateTo(Path file, int level, CRC32 crc, OutputStream out) throws IOException {
+        Deflater deflater = new Deflater(level, true);
+        byte[] in = new byte[64 * 1024];
+        byte[] buf = new byte[64 * 1024];
+        long size = 0;
+        try (InputStream is = Files.newInputStream(file)) {
+            int n;
+            while ((n = is.read(in)) > 0) {
+                crc.update(in, 0, n);
+                size += n;
+                deflater.setInput(in, 0, n);
+                while (!deflater.needsInput()) out.write(buf, 0, deflater.deflate(buf));
+            }
+            deflater.finish();
+            while (!deflater.finished()) out.write(buf, 0, deflater.deflate(buf));
+        } finally {
+            deflater.end();
+        }
+        return size;
+    }
+
+    private static String entryName(Path sourceDir, Path file) {
+        return sourceDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    /** Writes local headers, data and the central directory of a plain (non-ZIP64) archive. */
+    private static final class ZipWriter {
+        private final FileChannel ch;
+        private final List<byte[]> directory = new ArrayList<>();
+        private long offset;
+
+        ZipWriter(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        void add(Deflated e) throws IOException {
+            byte[] name = e.name.getBytes(StandardCharsets.UTF_8);
+            int dosTime = dosTime(e.modified);
+            directory.add(central(name, dosTime, e.crc, e.data.length, e.size, offset));
+            offset += writeFully(local(name, dosTime, e.crc, e.data.length, e.size));
+            offset += writeFully(ByteBuffer.wrap(e.data));
+        }
+
+        /** Deflate {@code file} straight into the archive, then fill in the sizes in its local header. */
+        void stream(String entryName, Path file, int level) throws IOException {
+            byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+            int dosTime = dosTime(Files.getLastModifiedTime(file).toMillis());
+            long header = offset;
+            long start = header + writeFully(local(name, dosTime, 0, 0, 0));
+
+            CRC32 crc = new CRC32();
+            long size = deflateTo(file, level, crc, Channels.newOutputStream(ch)); // not closed: that would close ch
+            long compressed = ch.position() - start;
+
+            ByteBuffer sizes = le(12);
+            sizes.putInt((int) crc.getValue()).putInt((int) compressed).putInt((int) size).flip();
+            for (long at = header + 14; sizes.hasRemaining(); ) at += ch.write(sizes, at);
+
+            directory.add(central(name, dosTime, crc.getValue(), compressed, size, header));
+            offset = start + compressed;
+        }
+
+        private static ByteBuffer local(byte[] name, int dosTime, long crc, long compressed, long size) {
+            ByteBuffer local = le(30 + name.length);
+            local.putInt(0x04034b50).putShort((short) 20).putShort((short) 0x0800).putShort((short) 8)
+                    .putInt(dosTime).putInt((int) crc).putInt((int) compressed).putInt((int) size)
+                    .putShort((short) name.length).putShort((short) 0).put(name).flip();
+            return local;
+        }
+
+        private static byte[] central(byte[] name, int dosTime, long crc, long compressed, long size, long offset) {
+            ByteBuffer cen = le(46 + name.length);
+            cen.putInt(0x02014b50).putShort((short) 20).putShort((short) 20).putShort((short) 0x0800)
+                    .putShort((short) 8).putInt(dosTime).putInt((int) crc).putInt((int) compressed).putInt((int) size)
+                    .putShort((short) name.length).putShort((short) 0).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) 0).putInt(0).putInt((int) offset).put(name);
+            return cen.array();
+        }
+
+        void finish() throws IOException {
+            long start = offset;
+            long size = 0;
+            for (byte[] cen : directory) size += writeFully(ByteBuffer.wrap(cen));
+            ByteBuffer end = le(22);
+            end.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) directory.size()).putShort((short) directory.size())
+                    .putInt((int) size).putInt((int) start).putShort((short) 0).flip();
+            writeFully(end);
+        }
+
+        private long writeFully(ByteBuffer b) throws IOException {
+            long n = b.remaining();
+            while (b.hasRemaining()) ch.write(b);
+            return n;
+        }
+
+        private static ByteBuffer le(int size) {
+            return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        // MS-DOS date and time in one int: time in the low 16 bits, date in the high 16 bits
+        private static int dosTime(long millis) {
+            LocalDateTime t = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+            if (t.getYear() < 1980) t = LocalDateTime.of(1980, 1, 1, 0, 0);
+            int time = (t.getHour() << 11) | (t.getMinute() << 5) | (t.getSecond() >> 1);
+            int date = ((t.getYear() - 1980) << 9) | (t.getMonthValue() << 5) | t.getDayOfMonth();
+            return (date << 16) | time;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Sequential fallback (ZipOutputStream switches to ZIP64 by itself)
+    // ------------------------------------------------------------
+    private long writeSequential(Path sourceDir, List<Path> files, Path zipTarget) throws IOException {
+        try (OutputStream os = Files.newOutputStream(zipTarget); ZipOutputStream zos = new ZipOutputStream(os)) {
+            zos.setLevel(level);
+            for (Path p : files) {
+                ZipEntry entry = new ZipEntry(entryName(sourceDir, p));
+                entry.setTime(Files.getLastModifiedTime(p).toMillis());
+                zos.putNextEntry(entry);
+                Files.copy(p, zos);
+                zos.closeEntry();
+            }
+        }
+        return Files.size(zipTarget);
+    }
+}
@@ -0,0 +1,155 @@
+package med.supply.system.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Builds log lines with as little garbage as possible.
+ * <ul>
+ *   <li>Messages are templates with {@code {}} placeholders, filled in only when a line is
+ *       actually written ({@link #appendFormatted}).</li>
+ *   <li>The ISO timestamp is formatted once per millisecond and shared ({@link #stamp}); the same
+ *       stamp gives the UTC offset and the date of the daily file.</li>
+ *   <li>Every thread reuses one {@link StringBuilder} and one UTF-8 output buffer
+ *       ({@link #encodeLine}).</li>
+ * </ul>
+ */
+public final class LogFormatter {
+
+    /** Builders above this size are not kept for reuse, so one huge line does not pin memory. */
+    static final int MAX_RETAINED_CHARS = 16 * 1024;
+
+    /** Timestamp text, offset and date for one millisecond. Immutable, shared between threads. */
+    public static final class Stamp {
+        public final long millis;
+        public final String text;
+        public final int offsetSeconds;
+        public final LocalDate date;
+
+        Stamp(long millis, ZoneId zone) {
+            Instant instant = Instant.ofEpochMilli(millis);
+            ZoneOffset offset = zone.getRules().getOffset(instant);
+            OffsetDateTime t = OffsetDateTime.ofInstant(instant, offset);
+            this.millis = millis;
+            this.text = t.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+            this.offsetSeconds = offset.getTotalSeconds();
+            this.date = t.toLocalDate();
+        }
+    }
+
+    private static final class Buffers {
+        StringBuilder line = new StringBuilder(256);
+        ByteBuffer bytes = ByteBuffer.allocate(1024);
+        final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private volatile Stamp last = new Stamp(Long.MIN_VALUE / 2, ZoneId.systemDefault());
+    private long stampMisses;
+
+    /** The stamp for {@code millis}; formatted only when the millisecond changed since the last call. */
+    public Stamp stamp(long millis) {
+        Stamp s = last;
+        if (s.millis == millis) return s;
+        s = new Stamp(millis, ZoneId.systemDefault());
+        last = s;
+        stampMisses++; // racy on purpose, only a statistic
+        return s;
+    }
+
+    /** How often {@link #stamp} had to format (roughly: distinct milliseconds logged). */
+    public long getStampMisses() {
+        return stampMisses;
+    }
+
+    // ------------------------------------------------------------
+    // Templates
+    // ------------------------------------------------------------
+    /**
+     * Append {@code template} with each {@code {}} replaced by the next argument. Extra arguments
+     * are ignored, missing ones leave the {@code {}} in place; {@code \{}} writes a literal {@code {}}.
+     */
+    public static StringBuilder appendFormatted(StringBuilder sb, String template, Object... args) {
+        int argIndex = 0;
+        int n = template.length();
+        int from = 0;
+        for (int i = 0; i < n - 1; i++) {
+            char c = template.charAt(i);
+            if (c == '\\' && template.charAt(i + 1) == '{') {
+                sb.append(template, from, i);
+                from = i + 1; // keep the '{', drop the backslash
+                i++;
+            } else if (c == '{' && template.charAt(i + 1) == '}') {
+                if (args == null || argIndex >= args.length) continue;
+                sb.append(template, from, i);
+                appendArg(sb, args[argIndex++]);
+                from = i + 2;
+                i++;
+            }
+        }
+        return sb.append(template, from, n);
+    }
+
+    /** The filled-in template as a string (for console output next to the log line). */
+    public static String format(String template, Object... args) {
+        return appendFormatted(new StringBuilder(template.length() + 16), template, args).toString();
+    }
+
+    private static void appendArg(StringBuilder sb, Object arg) {
+        // primitives without going through toString()
+        if (arg instanceof Integer i) {
+            sb.append(i.intValue());
+        } else if (arg instanceof Long l) {
+            sb.append(l.longValue());
+        } else if (arg instanceof CharSequence cs) {
+            sb.append(cs);
+        } else {
+            sb.append(arg);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Per-thread buffers
+    // ------------------------------------------------------------
+    /** This thread's line builder, emptied. Do not keep it past the next call on this thread. */
+    public static StringBuilder builder() {
+        Buffers b = BUFFERS.get();
+        if (b.line.capacity() > MAX_RETAINED_CHARS) b.line = new StringBuilder(256);
+        b.line.setLength(0);
+        return b.line;
+    }
+
+    /**
+     * {@code line} as UTF-8 in this thread's reusable buffer (flipped, ready to write). The buffer
+     * is overwritten by the next call on this thread.
+     */
+    public static ByteBuffer encodeLine(CharSequence line) {
+        Buffers b = BUFFERS.get();
+        int worstCase = line.length() * 3;
+        if (b.bytes.capacity() < worstCase) {
+            b.bytes = ByteBuffer.allocate(Math.max(worstCase, b.bytes.capacity() * 2));
+        } else if (b.bytes.capacity() > MAX_RETAINED_CHARS * 3 && worstCase < 1024) {
+            b.bytes = ByteBuffer.allocate(1024);
+        }
+        ByteBuffer out = b.bytes;
+        out.clear();
+        b.utf8.reset();
+        CoderResult r = b.utf8.encode(CharBuffer.wrap(line), out, true);
+        if (!r.isUnderflow()) throw new IllegalStateException("log line encoding: " + r);
+        b.utf8.flush(out);
+        return out.flip();
+    }
+}
@@ -0,0 +1,303 @@
+package med.supply.system.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps recently used log files open so {@link LogManager} does not reopen a file for every line.
+ * Handles are evicted in LRU order once {@code maxOpen} is reached, and all handles are closed
+ * when the date changes so yesterday's daily files are released at midnight.
+ * <p>
+ * Writes lock only their file's stripe, so writers to different vehicles' logs do not wait for
+ * each other; the cache monitor guards just the LRU bookkeeping. A handle evicted while in use
+ * is closed by the last writer done with it. Days and segment ages follow the attached
+ * {@link SimulationClock}.
+ */
+public class LogHandleCache {
+
+    /** Called once for every file this cache creates on disk. */
+    public interface CreateListener {
+        void created(Path file) throws IOException;
+    }
+
+    public static final int DEFAULT_MAX_OPEN = 256;
+    private static final int STRIPES = 64; // power of two
+
+    private static final class Handle {
+        final FileChannel ch;
+        int users;       // writers using the channel right now; guarded by the cache monitor
+        boolean retired; // no longer in the cache, closed once users drops to 0
+
+        Handle(FileChannel ch) {
+            this.ch = ch;
+        }
+    }
+
+    private final int maxOpen;
+    private final CreateListener onCreate;
+    private final Object[] stripes = new Object[STRIPES];
+
+    // guarded by the cache monitor
+    private final LinkedHashMap<Path, Handle> open = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Long> segmentOpened = new HashMap<>(); // first open of the current segment
+    private LocalDate openDay;
+
+    private volatile LogRotator rotator; // null = never roll
+    private volatile SimulationClock clock; // null = follow the default clock
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rollovers;
+
+    public LogHandleCache(int maxOpen, CreateListener onCreate) {
+        if (maxOpen <= 0) throw new IllegalArgumentException("maxOpen must be positive");
+        this.maxOpen = maxOpen;
+        this.onCreate = onCreate;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+        this.openDay = today();
+    }
+
+    /** Roll files into segments according to {@code rotator}'s policy; null switches rotation off. */
+    public void attachRotator(LogRotator rotator) {
+        this.rotator = rotator;
+    }
+
+    /** Take the day and segment ages from {@code clock} (e.g. virtual time in a simulation). */
+    public synchronized void attachClock(SimulationClock clock) {
+        this.clock = clock;
+        this.openDay = today();
+    }
+
+    private long now() {
+        SimulationClock c = clock;
+        return (c != null ? c : SimulationClock.getDefault()).currentTimeMillis();
+    }
+
+    /** The day on the attached clock; daily log files are named after it. */
+    public LocalDate today() {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(now()), ZoneId.systemDefault());
+    }
+
+    // lock order: stripe, then the cache monitor
+    private Object stripe(Path file) {
+        int h = file.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /** Bytes for {@link #write(Path, Payload)}, produced once the file is open. */
+    public interface Payload {
+        /** @param empty the file has no content yet (new, or replaced since the last write) */
+        ByteBuffer encode(boolean empty) throws IOException;
+    }
+
+    /** Append {@code data} to {@code file}, opening (and possibly creating) it if it is not cached. */
+    public void write(Path file, byte[] data) throws IOException {
+        write(file, ByteBuffer.wrap(data));
+    }
+
+    /** Append the remaining bytes of {@code data}; the caller may reuse the buffer afterwards. */
+    public void write(Path file, ByteBuffer data) throws IOException {
+        synchronized (stripe(file)) {
+            Handle h = acquire(file);
+            try {
+                LogRotator r = rotator;
+                if (r != null && r.shouldRoll(h.ch.size(), segmentOpened(file), now())) {
+                    release(h);
+                    h = null;
+                    Path segment = rollInternal(file, r);
+                    if (segment != null) r.compressLater(segment);
+                    h = acquire(file);
+                }
+                writeFully(file, h, data);
+            } finally {
+                if (h != null) release(h);
+            }
+        }
+    }
+
+    /**
+     * Append what {@code payload} encodes, under the file's lock, so the payload sees the file as it
+     * is at the moment of the write. Used for binary logs, whose records depend on what the file
+     * already holds; these files are not rolled (segment names assume text logs).
+     */
+    public void write(Path file, Payload payload) throws IOException {
+        synchronized (stripe(file)) {
+            Handle h = acquire(file);
+            try {
+                writeFully(file, h, payload.encode(h.ch.size() == 0));
+            } finally {
+                release(h);
+            }
+        }
+    }
+
+    // caller holds the file's stripe
+    private void writeFully(Path file, Handle h, ByteBuffer buf) throws IOException {
+        try {
+            while (buf.hasRemaining()) {
+                h.ch.write(buf);
+            }
+        } catch (IOException e) {
+            // drop the broken handle so the next write reopens the file
+            synchronized (this) {
+                if (open.get(file) == h) retire(open.remove(file));
+            }
+            throw e;
+        }
+    }
+
+    // caller holds the file's stripe, so nobody else opens or rolls this file meanwhile
+    private Handle acquire(Path file) throws IOException {
+        synchronized (this) {
+            rollOverIfNewDay();
+            Handle h = open.get(file);
+            if (h != null && h.ch.isOpen()) {
+                hits++;
+                h.users++;
+                return h;
+            }
+            if (h != null) retire(open.remove(file));
+            misses++;
+        }
+
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        boolean creating = !Files.exists(file);
+        Handle h = new Handle(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND));
+        synchronized (this) {
+            h.users++;
+            open.put(file, h);
+            segmentOpened.putIfAbsent(file, now());
+            evictIfNeeded();
+        }
+
+        if (creating && onCreate != null) {
+            try {
+                onCreate.created(file);
+            } catch (IOException | RuntimeException e) {
+                release(h);
+                throw e;
+            }
+        }
+        return h;
+    }
+
+    private synchronized void release(Handle h) {
+        h.users--;
+        if (h.retired && h.users == 0) closeQuietly(h.ch);
+    }
+
+    // caller holds the monitor
+    private void retire(Handle h) {
+        if (h == null || h.retired) return;
+        h.retired = true;
+        if (h.users == 0) closeQuietly(h.ch);
+    }
+
+    private synchronized Long segmentOpened(Path file) {
+        return segmentOpened.get(file);
+    }
+
+    // caller holds the monitor
+    private void rollOverIfNewDay() {
+        LocalDate today = today();
+        if (!today.equals(openDay)) {
+            closeAllInternal();
+            segmentOpened.clear();
+            openDay = today;
+            rollovers++;
+        }
+    }
+
+    // caller holds the monitor
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Path, Handle>> it = open.entrySet().iterator();
+        while (open.size() > maxOpen && it.hasNext()) {
+            Map.Entry<Path, Handle> eldest = it.next();
+            retire(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Close {@code file} and let the rotator rename it to its next segment; the next write starts
+     * a fresh file. Returns the segment, or null if there is no rotator or no file.
+     */
+    public Path roll(Path file) throws IOException {
+        synchronized (stripe(file)) {
+            return rollInternal(file, rotator);
+        }
+    }
+
+    // caller holds the file's stripe, so no write is using the handle
+    private Path rollInternal(Path file, LogRotator r) throws IOException {
+        if (r == null) return null;
+        synchronized (this) {
+            retire(open.remove(file));
+            segmentOpened.remove(file);
+        }
+        return r.roll(file);
+    }
+
+    /** Close the handle for {@code file}, e.g. before it is moved or deleted. */
+    public void invalidate(Path file) {
+        synchronized (stripe(file)) {
+            synchronized (this) {
+                retire(open.remove(file));
+                segmentOpened.remove(file);
+            }
+        }
+    }
+
+    public synchronized void closeAll() {
+        closeAllInternal();
+    }
+
+    // caller holds the monitor
+    private void closeAllInternal() {
+        for (Handle h : open.values()) {
+            retire(h);
+        }
+        open.clear();
+    }
+
+    private static void closeQuietly(FileChannel ch) {
+        if (ch == null) return;
+        try {
+            ch.close();
+        } catch (IOException e) {
+            System.err.println("[LOG ERROR] " + e.getMessage());
+        }
+    }
+
+    public int getMaxOpen() { return maxOpen; }
+    public synchronized int getOpenCount() { return open.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getRollovers() { return rollovers; }
+
+    @Override
+    public synchronized String toString() {
+        return "LogHandleCache{" +
+                "open=" + open.size() + "/" + maxOpen +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", rollovers=" + rollovers +
+                '}';
+    }
+}
@@ -2,108 +2,331 @@ package med.supply.system.util;
 
 import med.supply.system.exception.ExceptionHandler;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDate;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 public class LogManager {
     private final PathsConfig cfg;
     private final DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private final LogHandleCache handles;
+    private volatile AsyncLogWriter async; // null = synchronous mode
+    private volatile SimulationClock clock; // null = follow the default clock
+    private LogSearch search;               // created on first search
+    private LogRotator rotator;             // null = files only change name at midnight
+    private volatile boolean binary;        // write .blog records instead of text lines
+    // one encoder per log directory (equipment / system); writers lock it around the write
+    private final Map<Path, BinaryLogEncoder> encoders = new ConcurrentHashMap<>();
+    private final LogFormatter formatter = new LogFormatter();
+    private final Map<LogSearch.Kind, Map<String, DailyFile>> dailyFiles = new EnumMap<>(LogSearch.Kind.class);
 
     public LogManager(PathsConfig cfg) {
+        this(cfg, LogHandleCache.DEFAULT_MAX_OPEN);
+    }
+
+    public LogManager(PathsConfig cfg, int maxOpenFiles) {
         this.cfg = cfg;
+        this.handles = new LogHandleCache(maxOpenFiles,
+                file -> MetadataManager.append(cfg.metaIndex, file, "LOG", "created"));
+        for (LogSearch.Kind k : LogSearch.Kind.values()) dailyFiles.put(k, new ConcurrentHashMap<>());
+    }
+
+    /** Date log files and stamp lines with {@code clock} (e.g. virtual time in a simulation). */
+    public void attachClock(SimulationClock clock) {
+        this.clock = clock;
+        handles.attachClock(clock);
+    }
+
+    private SimulationClock clock() {
+        SimulationClock c = clock;
+        return c != null ? c : SimulationClock.getDefault();
+    }
+
+    public LogHandleCache getHandleCache() {
+        return handles;
+    }
+
+    /**
+     * Switch to async mode: lines are queued and written in batches by a single flusher thread.
+     * Calling it again replaces the current writer after draining it.
+     */
+    public synchronized void enableAsync(int capacity, int batchSize, long flushIntervalMs,
+                                         AsyncLogWriter.Backpressure policy) {
+        AsyncLogWriter previous = async;
+        async = new AsyncLogWriter(handles, capacity, batchSize, flushIntervalMs, policy);
+        if (previous != null) previous.close();
+    }
+
+    /**
+     * Roll log files into gzip-compressed segments by size / age and cap the disk used per
+     * equipment (see {@link LogRotator}). Files left over from earlier days are rolled and
+     * compressed in the background.
+     */
+    public synchronized void enableRotation(LogRotator.Policy policy) {
+        disableRotation();
+        rotator = new LogRotator(handles, cfg.metaIndex, policy);
+        handles.attachRotator(rotator);
+        rotator.sweep(cfg.logsRoot);
+    }
+
+    /** Stop rolling; compressions already queued still finish. */
+    public synchronized void disableRotation() {
+        LogRotator r = rotator;
+        rotator = null;
+        if (r == null) return;
+        handles.attachRotator(null);
+        r.close();
+    }
+
+    public synchronized LogRotator getRotator() {
+        return rotator;
+    }
+
+    /**
+     * Write {@link BinaryLogFormat} records to {@code <date>.blog} files instead of text lines.
+     * Binary records are written synchronously (not through the async queue) and are not rolled;
+     * {@link BinaryLogDecoder} turns them back into text, and the readers / search decode them
+     * on the fly.
+     */
+    public void enableBinary() {
+        binary = true;
     }
 
-    private Path dailySystemLog(LocalDate date) {
-        return cfg.logsSystem.resolve(df.format(date) + ".log");
+    public void disableBinary() {
+        binary = false;
     }
 
-    private Path dailyVehicleLog(String vehicleName, LocalDate date) {
-        return cfg.logsVehicles.resolve(vehicleName).resolve(df.format(date) + ".log");
+    public boolean isBinary() {
+        return binary;
     }
 
-    private Path dailyChargingLog(String stationName, LocalDate date) {
-        return cfg.logsCharging.resolve(stationName).resolve(df.format(date) + ".log");
+    public boolean isAsync() {
+        return async != null;
     }
 
+    public AsyncLogWriter getAsyncWriter() {
+        return async;
+    }
+
+    /** Drain pending async lines, close cached file handles and go back to synchronous writes. */
+    public synchronized void shutdown() {
+        AsyncLogWriter w = async;
+        async = null;
+        if (w != null) w.close();
+        disableRotation();
+        handles.closeAll();
+        MetadataWriter.closeAll();
+        if (search != null) search.close();
+        search = null;
+    }
+
+    // ------------------------------------------------------------
+    // Daily files, resolved once per equipment and day
+    // ------------------------------------------------------------
+    private static final class DailyFile {
+        final LocalDate date;
+        final Path text;
+        final Path binary;
+
+        DailyFile(LocalDate date, Path text) {
+            this.date = date;
+            this.text = text;
+            this.binary = BinaryLogFormat.binaryFileFor(text);
+        }
+    }
+
+    private DailyFile dailyFile(LogSearch.Kind kind, String equipment, LocalDate date) {
+        Map<String, DailyFile> files = dailyFiles.get(kind);
+        String key = equipment == null ? "" : equipment;
+        DailyFile f = files.get(key);
+        if (f != null && f.date.equals(date)) return f;
+        Path dir = switch (kind) {
+            case SYSTEM -> cfg.logsSystem;
+            case VEHICLE -> cfg.logsVehicles.resolve(equipment);
+            case CHARGING -> cfg.logsCharging.resolve(equipment);
+        };
+        f = new DailyFile(date, dir.resolve(df.format(date) + ".log"));
+        files.put(key, f);
+        return f;
+    }
+
+    // ------------------------------------------------------------
+    // Logging
+    // ------------------------------------------------------------
     public void logSystem(String line) throws IOException {
-        writeLine(dailySystemLog(LocalDate.now()), "[SYSTEM] " + timestamp() + " " + line);
+        log(LogSearch.Kind.SYSTEM, null, line, null);
     }
 
     public void logVehicle(String vehicleName, String line) throws IOException {
-        Path p = dailyVehicleLog(vehicleName, LocalDate.now());
-        writeLine(p, "[VEHICLE:" + vehicleName + "] " + timestamp() + " " + line);
+        log(LogSearch.Kind.VEHICLE, vehicleName, line, null);
     }
 
     public void logCharging(String stationName, String line) throws IOException {
-        Path p = dailyChargingLog(stationName, LocalDate.now());
-        writeLine(p, "[CHARGING:" + stationName + "] " + timestamp() + " " + line);
+        log(LogSearch.Kind.CHARGING, stationName, line, null);
+    }
+
+    /**
+     * Log {@code template} with each {@code {}} replaced by the next argument, e.g.
+     * {@code logSystem("Task {} -> {}", id, status)}. The message is only built when the line is
+     * written, straight into a reused per-thread buffer (see {@link LogFormatter}).
+     */
+    public void logSystem(String template, Object... args) throws IOException {
+        log(LogSearch.Kind.SYSTEM, null, template, args);
     }
 
-    private String timestamp() {
-        return ZonedDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    /** Templated vehicle line, see {@link #logSystem(String, Object...)}. */
+    public void logVehicle(String vehicleName, String template, Object... args) throws IOException {
+        log(LogSearch.Kind.VEHICLE, vehicleName, template, args);
     }
 
-    private void writeLine(Path file, String line) throws IOException {
-        Files.createDirectories(file.getParent());
-        boolean creating = !Files.exists(file);
-        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-            w.write(line);
-            w.newLine();
+    /** Templated charging-station line, see {@link #logSystem(String, Object...)}. */
+    public void logCharging(String stationName, String template, Object... args) throws IOException {
+        log(LogSearch.Kind.CHARGING, stationName, template, args);
+    }
+
+    /** Typed system event: a compact record in binary mode, the usual line otherwise. */
+    public void logSystem(BinaryLogFormat.Event event) throws IOException {
+        logEvent(LogSearch.Kind.SYSTEM, null, event);
+    }
+
+    /** Typed vehicle event: a compact record in binary mode, the usual line otherwise. */
+    public void logVehicle(String vehicleName, BinaryLogFormat.Event event) throws IOException {
+        logEvent(LogSearch.Kind.VEHICLE, vehicleName, event);
+    }
+
+    private void logEvent(LogSearch.Kind kind, String equipment, BinaryLogFormat.Event event) throws IOException {
+        if (!binary) {
+            log(kind, equipment, event.message(equipment), null);
+            return;
         }
-        if (creating) {
-            MetadataManager.append(cfg.metaIndex, file, "LOG", "created");
+        LogFormatter.Stamp stamp = formatter.stamp(clock().currentTimeMillis());
+        writeEvent(kind, equipment, dailyFile(kind, equipment, stamp.date), stamp, event);
+    }
+
+    // args == null: template is the finished message
+    private void log(LogSearch.Kind kind, String equipment, String template, Object[] args) throws IOException {
+        LogFormatter.Stamp stamp = formatter.stamp(clock().currentTimeMillis());
+        DailyFile file = dailyFile(kind, equipment, stamp.date);
+        if (binary) {
+            String message = args == null ? template : LogFormatter.format(template, args);
+            writeEvent(kind, equipment, file, stamp, BinaryLogFormat.Event.text(message));
+            return;
+        }
+
+        StringBuilder line = LogFormatter.builder().append(kind.prefix);
+        if (kind != LogSearch.Kind.SYSTEM) line.append(equipment).append(']');
+        line.append(' ').append(stamp.text).append(' ');
+        if (args == null) {
+            line.append(template);
+        } else {
+            LogFormatter.appendFormatted(line, template, args);
         }
+
+        AsyncLogWriter writer = async;
+        if (writer != null) {
+            writer.submit(file.text, line.toString());
+            return;
+        }
+        line.append(System.lineSeparator());
+        handles.write(file.text, LogFormatter.encodeLine(line));
+    }
+
+    private void writeEvent(LogSearch.Kind kind, String equipment, DailyFile daily, LogFormatter.Stamp stamp,
+                            BinaryLogFormat.Event event) throws IOException {
+        Path file = daily.binary;
+        BinaryLogEncoder encoder = encoders.computeIfAbsent(file.getParent(), d -> new BinaryLogEncoder());
+        synchronized (encoder) {
+            try {
+                handles.write(file, empty -> encoder.encode(file, empty, kind, equipment,
+                        stamp.millis * 1000, stamp.offsetSeconds, event));
+            } catch (IOException e) {
+                encoder.reset(); // the record may be half written; start the next one with a clean table
+                throw e;
+            }
+        }
+    }
+
+    /** The shared index over {@code log_metadata.csv} that backs {@link #findByEquipmentOrDate}. */
+    public MetadataIndex getMetadataIndex() {
+        return MetadataIndex.forFile(cfg.metaIndex);
     }
 
+    /**
+     * Log files for an equipment name (vehicle or station), an ISO date, or "system". Answered from
+     * the metadata index, so the cost depends on the number of matches, not on the size of the log
+     * tree. Files removed without a metadata row are skipped.
+     */
     public List<Path> findByEquipmentOrDate(String equipmentNameOrDate) throws IOException {
-        List<Path> results = new ArrayList<>();
+        MetadataIndex index = getMetadataIndex();
+        index.reconcile(cfg.logsRoot); // no-op after the first call
+        List<Path> candidates;
         if (RegexUtils.isIsoDate(equipmentNameOrDate)) {
-            String fname = equipmentNameOrDate + ".log";
-            try (var stream = Files.walk(cfg.logsRoot)) {
-                stream.filter(p -> p.getFileName().toString().equals(fname)).forEach(results::add);
-            }
+            candidates = index.byDate(LocalDate.parse(equipmentNameOrDate));
         } else if (RegexUtils.isValidEquipment(equipmentNameOrDate)) {
-            Path veh = cfg.logsVehicles.resolve(equipmentNameOrDate);
-            Path chg = cfg.logsCharging.resolve(equipmentNameOrDate);
-            if (Files.exists(veh)) {
-                try (var stream = Files.list(veh)) {
-                    stream.filter(Files::isRegularFile).forEach(results::add);
-                }
-            }
-            if (Files.exists(chg)) {
-                try (var stream = Files.list(chg)) {
-                    stream.filter(Files::isRegularFile).forEach(results::add);
-                }
-            }
-        } else if ("system".equalsIgnoreCase(equipmentNameOrDate)) {
-            try (var stream = Files.list(cfg.logsSystem)) {
-                stream.filter(Files::isRegularFile).forEach(results::add);
-            }
+            candidates = index.byEquipment(equipmentNameOrDate);
+        } else {
+            return new ArrayList<>();
+        }
+        List<Path> results = new ArrayList<>(candidates.size());
+        for (Path p : candidates) {
+            if (Files.isRegularFile(p)) results.add(p);
         }
         results.sort(Comparator.naturalOrder());
         return results;
     }
 
+    /** Whole file as one string; for big logs use {@link #streamLog}, {@link #tailLog} or {@link #readLogPage}. */
     public String readLog(Path p) throws IOException {
         return Files.readString(p, StandardCharsets.UTF_8);
     }   //  this closing brace was missing!
 
+    /** Lines of {@code p}, read lazily in constant memory; close the stream when done. */
+    public Stream<String> streamLog(Path p) throws IOException {
+        return LogReader.lines(p);
+    }
+
+    public List<String> tailLog(Path p, int lines) throws IOException {
+        return LogReader.tail(p, lines);
+    }
+
+    /** Up to {@code maxBytes} of whole lines from byte {@code offset}; continue at {@code nextOffset}. */
+    public LogReader.Page readLogPage(Path p, long offset, int maxBytes) throws IOException {
+        return LogReader.page(p, offset, maxBytes);
+    }
+
+    /** Follow {@code p} from its current end, like tail -f. */
+    public LogReader.Follower followLog(Path p) throws IOException {
+        return LogReader.follow(p, Files.exists(p) ? LogReader.length(p) : 0);
+    }
+
+    /** Search live logs and the ZIP archives (see {@link LogSearch}). */
+    public LogSearch.Result search(LogSearch.Query query) throws IOException {
+        LogSearch s;
+        synchronized (this) {
+            if (search == null) search = new LogSearch(cfg.logsRoot, cfg.archiveRoot);
+            s = search;
+        }
+        return s.search(query);
+    }
+
     /**
      * Archive a log file using the centralized ExceptionHandler (multiple exceptions demo).
      * This DOES NOT replace existing behavior; it's an additional utility you can call.
      */
     public void archiveLogWithHandler(java.nio.file.Path source, java.nio.file.Path archive) {
         try {
+            handles.invalidate(source);
             ExceptionHandler.moveLogFile(source, archive);
+            MetadataManager.append(cfg.metaIndex, archive, "MOVE", "moved from " + source);
             logSystem("Archived log " + source + " -> " + archive);
             System.out.println("SUCCESS: Log file moved successfully.");
         } catch (Exception e) {
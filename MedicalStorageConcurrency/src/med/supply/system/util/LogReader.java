@@ -0,0 +1,579 @@
+package med.supply.system.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads log files in bounded memory, however large they get: a lazy stream of lines, the last N
+ * lines, pages by byte offset, and a follower that picks up lines as they are appended (tail -f).
+ * <p>
+ * Everything goes through a {@link FileChannel} and one fixed read buffer; only the lines handed
+ * back are kept. Lines are split on '\n' (a trailing '\r' is dropped), which is safe for UTF-8.
+ */
+public final class LogReader {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private LogReader() {
+    }
+
+    // ------------------------------------------------------------
+    // Streaming
+    // ------------------------------------------------------------
+    /** All lines of {@code file}, read lazily. Close the stream to release the file. */
+    public static Stream<String> lines(Path file) throws IOException {
+        return lines(file, 0);
+    }
+
+    /**
+     * Lines starting at byte {@code offset} (which should be the start of a line). Rotated
+     * {@code .gz} segments are decompressed on the fly; there the offset counts decompressed characters.
+     * Binary {@code .blog} files are rendered as text; there the offset counts records.
+     */
+    public static Stream<String> lines(Path file, long offset) throws IOException {
+        if (file.getFileName().toString().endsWith(BinaryLogFormat.EXTENSION)) {
+            return BinaryLogDecoder.lines(file).skip(offset);
+        }
+        if (file.getFileName().toString().endsWith(".gz")) {
+            BufferedReader r = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8));
+            try {
+                r.skip(offset);
+            } catch (IOException e) {
+                r.close();
+                throw e;
+            }
+            return r.lines().onClose(() -> {
+                try {
+                    r.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ch.position(offset);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        LineIterator it = new LineIterator(ch);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(it::close);
+    }
+
+    private static final class LineIterator implements Iterator<String> {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private String next;
+        private boolean eof;
+
+        LineIterator(FileChannel ch) {
+            this.ch = ch;
+            buf.limit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !eof) next = readLine();
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String s = next;
+            next = null;
+            return s;
+        }
+
+        private String readLine() {
+            try {
+                while (true) {
+                    while (buf.hasRemaining()) {
+                        byte b = buf.get();
+                        if (b == '\n') return decode(line);
+                        line.write(b);
+                    }
+                    buf.clear();
+                    int n = ch.read(buf);
+                    buf.flip();
+                    if (n <= 0) {
+                        eof = true;
+                        return line.size() > 0 ? decode(line) : null; // last line without '\n'
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Tail
+    // ------------------------------------------------------------
+    /**
+     * The last {@code n} lines of {@code file}; reads backwards from the end, so size does not
+     * matter (a {@code .gz} segment or {@code .blog} file is read through once).
+     */
+    public static List<String> tail(Path file, int n) throws IOException {
+        if (n <= 0) return Collections.emptyList();
+        long start = isDecoded(file) ? 0 : startOfLastLines(file, n);
+        Deque<String> last = new ArrayDeque<>(n);
+        try (Stream<String> s = lines(file, start)) {
+            s.forEach(l -> {
+                if (last.size() == n) last.removeFirst();
+                last.addLast(l);
+            });
+        }
+        return new ArrayList<>(last);
+    }
+
+    // byte offset where the last n lines begin
+    private static long startOfLastLines(Path file, int n) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+            int newlines = 0;
+            long pos = end;
+            boolean skipTrailing = true; // a '\n' at the very end closes the last line, it does not start one
+            while (pos > 0) {
+                int len = (int) Math.min(buf.capacity(), pos);
+                pos -= len;
+                buf.clear().limit(len);
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf, pos + buf.position()) < 0) break;
+                }
+                for (int i = len - 1; i >= 0; i--) {
+                    if (buf.get(i) != '\n') {
+                        skipTrailing = false;
+                        continue;
+                    }
+                    if (skipTrailing) {
+                        skipTrailing = false;
+                        continue;
+                    }
+                    if (++newlines == n) return pos + i + 1;
+                }
+            }
+            return 0;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Pages
+    // ------------------------------------------------------------
+    /** One page of whole lines; ask for the next one at {@link #nextOffset}. */
+    public static final class Page {
+        public final List<String> lines;
+        public final long offset;
+        public final long nextOffset;
+        /** Size in the unit of the offsets, -1 where it is not known without reading the whole file. */
+        public final long fileSize;
+        /** What the offsets count: "bytes", "chars" in a {@code .gz} segment, "records" in a {@code .blog} file. */
+        public final String unit;
+        private final boolean last;
+
+        Page(List<String> lines, long offset, long nextOffset, long fileSize) {
+            this(lines, offset, nextOffset, fileSize, "bytes", nextOffset >= fileSize);
+        }
+
+        Page(List<String> lines, long offset, long nextOffset, long fileSize, String unit, boolean last) {
+            this.lines = lines;
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.fileSize = fileSize;
+            this.unit = unit;
+            this.last = last;
+        }
+
+        public boolean isLast() {
+            return last;
+        }
+    }
+
+    /**
+     * Up to {@code maxBytes} of whole lines starting at {@code offset}. A line longer than
+     * {@code maxBytes} is cut and continues on the next page. A {@code .gz} segment is
+     * decompressed and a {@code .blog} file rendered as text, with offsets counting characters and
+     * records respectively, as in {@link #lines(Path, long)}; there a long line is not cut.
+     */
+    public static Page page(Path file, long offset, int maxBytes) throws IOException {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+        if (isDecoded(file)) return decodedPage(file, offset, maxBytes);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (offset >= size) return new Page(Collections.emptyList(), offset, size, size);
+
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(maxBytes, size - offset));
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, offset + buf.position()) < 0) break;
+            }
+            buf.flip();
+            boolean reachesEnd = offset + buf.limit() >= size;
+
+            List<String> lines = new ArrayList<>();
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int consumed = 0;
+            for (int i = 0; i < buf.limit(); i++) {
+                byte b = buf.get(i);
+                if (b == '\n') {
+                    lines.add(decode(line));
+                    consumed = i + 1;
+                } else {
+                    line.write(b);
+                }
+            }
+            if (line.size() > 0 && (reachesEnd || lines.isEmpty())) {
+                lines.add(decode(line)); // end of file, or one line bigger than the page
+                consumed = buf.limit();
+            }
+            return new Page(lines, offset, offset + consumed, size);
+        }
+    }
+
+    // whole lines up to maxBytes of UTF-8, at least one
+    private static Page decodedPage(Path file, long offset, int maxBytes) throws IOException {
+        List<String> lines = new ArrayList<>();
+        long next = offset;
+        boolean last = false;
+        try (DecodedLines in = DecodedLines.open(file, offset)) {
+            long bytes = 0;
+            while (true) {
+                String l = in.next();
+                if (l == null) {
+                    last = true;
+                    break;
+                }
+                bytes += l.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (!lines.isEmpty() && bytes > maxBytes) break;
+                lines.add(l);
+                next = in.position();
+            }
+            return new Page(lines, offset, next, -1, in.unit(), last);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Follow (tail -f)
+    // ------------------------------------------------------------
+    /** Follow {@code file} from {@code offset}; use {@link #length} to see only new lines. */
+    public static Follower follow(Path file, long offset) {
+        return new Follower(file, offset);
+    }
+
+    /** Size of {@code file} in the unit of its offsets: bytes, characters of a {@code .gz} segment or {@code .blog} records. */
+    public static long length(Path file) throws IOException {
+        if (!isDecoded(file)) return Files.size(file);
+        try (DecodedLines in = DecodedLines.open(file, 0)) {
+            while (in.next() != null) {
+                // read through
+            }
+            return in.position();
+        }
+    }
+
+    /**
+     * Picks up lines appended to a file since the last {@link #poll()}. Only complete lines are
+     * returned; a half-written line waits for its '\n'. If the file shrinks or disappears (rotated),
+     * reading starts again from the beginning of the new file. A {@code .gz} segment is decoded,
+     * with the position counted in characters, and read again only when its size changes. A
+     * {@code .blog} file is counted in records; its decoder is kept between polls, so each poll
+     * decodes only the bytes appended since the last one.
+     */
+    public static final class Follower implements AutoCloseable {
+        private final Path file;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteArrayOutputStream partial = new ByteArrayOutputStream(256);
+        private final boolean decoded;
+        private final boolean binary;
+        private long position;
+        private long lastSize = -1; // .gz segments: file size when last read
+        private BinaryLogDecoder blog; // .blog files: string table and time base so far
+        private long restarts;
+        private volatile Thread poller;
+        private volatile boolean closed;
+
+        Follower(Path file, long offset) {
+            this.file = file;
+            this.position = offset;
+            this.decoded = isDecoded(file);
+            this.binary = file.getFileName().toString().endsWith(BinaryLogFormat.EXTENSION);
+        }
+
+        /** New complete lines since the last call (empty if nothing was appended). */
+        public synchronized List<String> poll() throws IOException {
+            if (closed) return Collections.emptyList();
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (NoSuchFileException e) {
+                return Collections.emptyList();
+            }
+            if (binary) return pollBinary(size);
+            if (decoded) return pollDecoded(size);
+            if (size < position) {
+                position = 0;
+                partial.reset();
+                restarts++;
+            }
+            if (size == position) return Collections.emptyList();
+
+            List<String> lines = new ArrayList<>();
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (position < size) {
+                    buf.clear();
+                    int n = ch.read(buf, position);
+                    if (n <= 0) break;
+                    position += n;
+                    buf.flip();
+                    while (buf.hasRemaining()) {
+                        byte b = buf.get();
+                        if (b == '\n') {
+                            lines.add(decode(partial));
+                        } else {
+                            partial.write(b);
+                        }
+                    }
+                }
+            }
+            return lines;
+        }
+
+        // a .blog file goes on from the end of the last complete record; a torn one is read again
+        private List<String> pollBinary(long size) throws IOException {
+            if (blog != null && size < blog.getPosition()) {
+                blog = null;
+                position = 0;
+                restarts++;
+            }
+            if (blog != null && size == blog.getPosition()) return Collections.emptyList();
+
+            List<String> lines = new ArrayList<>();
+            if (blog == null) {
+                blog = BinaryLogDecoder.open(file);
+                long skipped = 0;
+                while (skipped < position && blog.next() != null) skipped++;
+                position = skipped;
+            } else {
+                FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+                ch.position(blog.getPosition());
+                blog.resume(Channels.newInputStream(ch));
+            }
+            try {
+                BinaryLogDecoder.Record r;
+                while ((r = blog.next()) != null) {
+                    lines.add(r.toLine());
+                    position++;
+                }
+            } finally {
+                blog.close();
+            }
+            return lines;
+        }
+
+        // a .gz segment is read from its start up to the position, so only when its size changed
+        private List<String> pollDecoded(long size) throws IOException {
+            if (size == lastSize) return Collections.emptyList();
+            if (size < lastSize) {
+                position = 0;
+                restarts++;
+            }
+            lastSize = size;
+            List<String> lines = new ArrayList<>();
+            try (DecodedLines in = DecodedLines.open(file, position)) {
+                String l;
+                while ((l = in.next()) != null) lines.add(l);
+                position = in.position();
+            }
+            return lines;
+        }
+
+        /** Poll every {@code intervalMs} on a daemon thread and hand each new line to {@code sink}. */
+        public Follower start(Consumer<String> sink, long intervalMs) {
+            Thread t = new Thread(() -> {
+                while (!closed) {
+                    try {
+                        poll().forEach(sink);
+                        Thread.sleep(intervalMs);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (IOException e) {
+                        System.err.println("[LOG-FOLLOW] " + e.getMessage());
+                        return;
+                    }
+                }
+            }, "log-follow");
+            t.setDaemon(true);
+            poller = t;
+            t.start();
+            return this;
+        }
+
+        /** Offset up to which the file has been read (characters in a {@code .gz} segment, records in a {@code .blog} file). */
+        public synchronized long getPosition() {
+            return position;
+        }
+
+        /** How often the file was found truncated or replaced. */
+        public synchronized long getRestartCount() {
+            return restarts;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            Thread t = poller;
+            if (t != null) t.interrupt();
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Compressed segments and binary logs
+    // ------------------------------------------------------------
+    private static boolean isDecoded(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".gz") || name.endsWith(BinaryLogFormat.EXTENSION);
+    }
+
+    /**
+     * Text lines of a {@code .gz} segment (offsets in characters) or a {@code .blog} file (offsets
+     * in records) from an offset, keeping track of the offset.
+     */
+    private abstract static class DecodedLines implements AutoCloseable {
+        protected long position;
+
+        static DecodedLines open(Path file, long offset) throws IOException {
+            return file.getFileName().toString().endsWith(BinaryLogFormat.EXTENSION)
+                    ? new BinaryLines(file, offset) : new GzipLines(file, offset);
+        }
+
+        /** Next line, or null at the end. */
+        abstract String next() throws IOException;
+
+        /** Offset just after the last line returned. */
+        long position() {
+            return position;
+        }
+
+        abstract String unit();
+
+        @Override
+        public abstract void close() throws IOException;
+    }
+
+    private static final class GzipLines extends DecodedLines {
+        private final Reader in;
+        private final StringBuilder line = new StringBuilder(256);
+
+        GzipLines(Path file, long offset) throws IOException {
+            in = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8), BUFFER_SIZE);
+            try {
+                position = in.skip(offset);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        @Override
+        String next() throws IOException {
+            line.setLength(0);
+            int c;
+            while ((c = in.read()) >= 0) {
+                position++;
+                if (c == '\n') break;
+                line.append((char) c);
+            }
+            if (c < 0 && line.length() == 0) return null;
+            int len = line.length();
+            return len > 0 && line.charAt(len - 1) == '\r' ? line.substring(0, len - 1) : line.toString();
+        }
+
+        @Override
+        String unit() {
+            return "chars";
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // a record cut off mid-write ends the file for now; it is read once it is complete
+    private static final class BinaryLines extends DecodedLines {
+        private final BinaryLogDecoder in;
+
+        BinaryLines(Path file, long offset) throws IOException {
+            in = BinaryLogDecoder.open(file);
+            try {
+                while (position < offset && in.next() != null) position++;
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        @Override
+        String next() throws IOException {
+            BinaryLogDecoder.Record r = in.next();
+            if (r == null) return null;
+            position++;
+            return r.toLine();
+        }
+
+        @Override
+        String unit() {
+            return "records";
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // ------------------------------------------------------------
+    private static String decode(ByteArrayOutputStream line) {
+        String s = line.toString(StandardCharsets.UTF_8);
+        line.reset();
+        return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+    }
+}
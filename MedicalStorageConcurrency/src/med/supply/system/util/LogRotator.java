@@ -0,0 +1,263 @@
+package med.supply.system.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rolls log files into numbered segments and gzips closed segments in the background.
+ * <p>
+ * The active file keeps its daily name ({@code 2025-01-01.log}), so writers and lookups do not
+ * change. When it passes {@link Policy#maxSegmentBytes} or has been open for
+ * {@link Policy#maxSegmentAge}, {@link LogHandleCache} closes it and this class renames it to the
+ * next segment ({@code 2025-01-01.3.log}). A background thread then compresses the segment to
+ * {@code 2025-01-01.3.log.gz}. Once an equipment directory holds more than
+ * {@link Policy#maxBytesPerEquipment}, its oldest compressed segments are deleted.
+ * <p>
+ * Every step is recorded in the metadata CSV: MOVE for the roll, ROTATE for the .gz, and DELETE
+ * for the plain segment and for anything the disk cap removes.
+ */
+public class LogRotator implements AutoCloseable {
+
+    /** When to roll and how much to keep; 0 / null switches a limit off. */
+    public static final class Policy {
+        public final long maxSegmentBytes;
+        public final Duration maxSegmentAge;
+        public final long maxBytesPerEquipment;
+
+        public Policy(long maxSegmentBytes, Duration maxSegmentAge, long maxBytesPerEquipment) {
+            if (maxSegmentBytes < 0 || maxBytesPerEquipment < 0) throw new IllegalArgumentException("limits must not be negative");
+            this.maxSegmentBytes = maxSegmentBytes;
+            this.maxSegmentAge = maxSegmentAge;
+            this.maxBytesPerEquipment = maxBytesPerEquipment;
+        }
+
+        /** 64 MB segments, rolled at least every 6 hours, 512 MB per vehicle / station. */
+        public static Policy defaults() {
+            return new Policy(64L << 20, Duration.ofHours(6), 512L << 20);
+        }
+
+        @Override
+        public String toString() {
+            return "Policy{segment=" + maxSegmentBytes + " B, age=" + maxSegmentAge + ", perEquipment=" + maxBytesPerEquipment + " B}";
+        }
+    }
+
+    // 2025-01-01.log (active) and 2025-01-01.3.log (rolled, not compressed yet)
+    private static final Pattern ACTIVE = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2})\\.log$");
+    private static final Pattern SEGMENT = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2})\\.(\\d+)\\.log(\\.gz)?$");
+
+    private final LogHandleCache handles;
+    private final Path metaIndex;
+    private final Policy policy;
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "log-rotate");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong rolls = new AtomicLong();
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong capDeletes = new AtomicLong();
+
+    public LogRotator(LogHandleCache handles, Path metaIndex, Policy policy) {
+        this.handles = handles;
+        this.metaIndex = metaIndex;
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    // ------------------------------------------------------------
+    // Called by LogHandleCache, under the file's lock
+    // ------------------------------------------------------------
+    /** @param openedAtMillis when the segment was opened, {@code nowMillis} on the cache's clock */
+    boolean shouldRoll(long size, Long openedAtMillis, long nowMillis) {
+        if (size == 0) return false;
+        if (policy.maxSegmentBytes > 0 && size >= policy.maxSegmentBytes) return true;
+        return policy.maxSegmentAge != null && openedAtMillis != null &&
+                nowMillis - openedAtMillis >= policy.maxSegmentAge.toMillis();
+    }
+
+    /** Rename {@code active} (already closed) to its next segment; null if there is nothing to roll. */
+    Path roll(Path active) throws IOException {
+        if (!Files.exists(active)) return null;
+        Path segment = nextSegment(active);
+        MetadataManager.move(active, segment, metaIndex);
+        rolls.incrementAndGet();
+        return segment;
+    }
+
+    void compressLater(Path segment) {
+        try {
+            background.execute(() -> compress(segment));
+        } catch (RejectedExecutionException e) {
+            compress(segment); // closed while a last write rolled the file
+        }
+    }
+
+    private static Path nextSegment(Path active) throws IOException {
+        String name = active.getFileName().toString();
+        String base = name.endsWith(".log") ? name.substring(0, name.length() - 4) : name;
+        Pattern sibling = Pattern.compile(Pattern.quote(base) + "\\.(\\d+)\\.log(\\.gz)?");
+        int max = 0;
+        Path dir = active.toAbsolutePath().getParent();
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                Matcher m = sibling.matcher(p.getFileName().toString());
+                if (m.matches()) max = Math.max(max, Integer.parseInt(m.group(1)));
+            }
+        }
+        return active.resolveSibling(base + "." + (max + 1) + ".log");
+    }
+
+    // ------------------------------------------------------------
+    // Background work
+    // ------------------------------------------------------------
+    private void compress(Path segment) {
+        Path gz = segment.resolveSibling(segment.getFileName() + ".gz");
+        Path tmp = segment.resolveSibling(segment.getFileName() + ".gz.tmp");
+        try {
+            try (InputStream in = Files.newInputStream(segment);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                in.transferTo(out);
+            }
+            Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            MetadataManager.append(metaIndex, gz, "ROTATE", "compressed " + segment);
+            MetadataManager.delete(segment, metaIndex);
+            compressed.incrementAndGet();
+            enforceCap(gz.getParent());
+        } catch (IOException e) {
+            System.err.println("[LOG-ROTATE] compressing " + segment + " failed: " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // best effort; the next sweep compresses the segment again
+            }
+        }
+    }
+
+    // delete the oldest compressed segments until the directory fits the cap
+    private void enforceCap(Path dir) throws IOException {
+        if (policy.maxBytesPerEquipment <= 0 || dir == null) return;
+        long total = 0;
+        List<Path> compressedSegments = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (!Files.isRegularFile(p)) continue;
+                total += Files.size(p);
+                if (p.getFileName().toString().endsWith(".log.gz")) compressedSegments.add(p);
+            }
+        }
+        if (total <= policy.maxBytesPerEquipment) return;
+        compressedSegments.sort(Comparator.comparing(LogRotator::lastModified));
+        for (Path p : compressedSegments) {
+            if (total <= policy.maxBytesPerEquipment) break;
+            long size = Files.size(p);
+            MetadataManager.delete(p, metaIndex);
+            total -= size;
+            capDeletes.incrementAndGet();
+        }
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * In the background: roll and compress daily files from before today (on the handle cache's
+     * clock), compress segments a previous run left uncompressed, and apply the disk cap to every
+     * directory under {@code root}.
+     */
+    public void sweep(Path root) {
+        background.execute(() -> {
+            try {
+                sweepNow(root);
+            } catch (IOException e) {
+                System.err.println("[LOG-ROTATE] sweep failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void sweepNow(Path root) throws IOException {
+        if (!Files.isDirectory(root)) return;
+        LocalDate today = handles.today(); // the day the cache's clock is on, not the wall clock's
+        List<Path> dirs = new ArrayList<>();
+        try (Stream<Path> s = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (Files.isDirectory(p)) {
+                    dirs.add(p);
+                    continue;
+                }
+                String name = p.getFileName().toString();
+                Matcher active = ACTIVE.matcher(name);
+                Matcher segment = SEGMENT.matcher(name);
+                if (active.matches() && LocalDate.parse(active.group(1)).isBefore(today)) {
+                    Path rolled = handles.roll(p); // through the cache, so no writer has the file open meanwhile
+                    if (rolled != null) compress(rolled);
+                } else if (segment.matches() && segment.group(3) == null) {
+                    compress(p);
+                }
+            }
+        }
+        for (Path d : dirs) enforceCap(d);
+    }
+
+    /** Wait for queued compressions to finish (tests, shutdown). */
+    public void awaitIdle() {
+        try {
+            background.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("[LOG-ROTATE] " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        background.shutdown();
+        try {
+            if (!background.awaitTermination(30, TimeUnit.SECONDS)) background.shutdownNow();
+        } catch (InterruptedException e) {
+            background.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getRollCount() {
+        return rolls.get();
+    }
+
+    public long getCompressedCount() {
+        return compressed.get();
+    }
+
+    /** Compressed segments deleted to stay under {@link Policy#maxBytesPerEquipment}. */
+    public long getCapDeleteCount() {
+        return capDeletes.get();
+    }
+}
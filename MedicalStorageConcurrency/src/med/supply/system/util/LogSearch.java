@@ -0,0 +1,447 @@
+package med.supply.system.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Searches log lines in the live log tree and in the ZIP archives, one task per file on a
+ * fork-join pool.
+ * <p>
+ * Lines look like {@code [VEHICLE:Van_1] 2025-01-01T10:00:00+01:00 message}, and within one file
+ * they are in time order. Files and archive entries are pruned by the equipment and date in their
+ * path before they are opened. For plain files a {@link BlockIndex} (first timestamp of every
+ * 64 KB block) lets a time-range query seek straight to the first block that can match, and
+ * reading stops once lines are past the end of the range. Compressed files and ZIP entries are
+ * read from the start but still stop early; binary {@code .blog} files are decoded to the same lines.
+ */
+public final class LogSearch implements AutoCloseable {
+
+    /** Which logger wrote the line. */
+    public enum Kind {
+        SYSTEM("[SYSTEM]"), VEHICLE("[VEHICLE:"), CHARGING("[CHARGING:");
+
+        public final String prefix;
+
+        Kind(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    /** Search filters; anything left unset matches everything. */
+    public static final class Query {
+        private Instant from;
+        private Instant to;
+        private String equipment;
+        private Kind kind;
+        private String contains;
+        private Pattern regex;
+        private int limit = 1_000;
+
+        /** Lines stamped at or after {@code from}. */
+        public Query from(Instant from) {
+            this.from = from;
+            return this;
+        }
+
+        /** Lines stamped at or before {@code to}. */
+        public Query to(Instant to) {
+            this.to = to;
+            return this;
+        }
+
+        /** Vehicle or station name ("system" for the system log). */
+        public Query equipment(String equipment) {
+            this.equipment = equipment;
+            return this;
+        }
+
+        public Query kind(Kind kind) {
+            this.kind = kind;
+            return this;
+        }
+
+        public Query contains(String text) {
+            this.contains = text;
+            return this;
+        }
+
+        public Query regex(String regex) {
+            this.regex = Pattern.compile(regex);
+            return this;
+        }
+
+        /** Keep the earliest {@code limit} hits. */
+        public Query limit(int limit) {
+            if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+            this.limit = limit;
+            return this;
+        }
+
+        boolean matchesLine(String line) {
+            if (kind != null && !line.startsWith(kind.prefix)) return false;
+            if (equipment != null && !"system".equals(equipment)
+                    && !line.startsWith("[VEHICLE:" + equipment + "]")
+                    && !line.startsWith("[CHARGING:" + equipment + "]")) return false;
+            if (equipment != null && "system".equals(equipment) && !line.startsWith(Kind.SYSTEM.prefix)) return false;
+            if (contains != null && !line.contains(contains)) return false;
+            return regex == null || regex.matcher(line).find();
+        }
+
+        boolean beforeRange(Instant t) {
+            return from != null && t != null && t.isBefore(from);
+        }
+
+        boolean afterRange(Instant t) {
+            return to != null && t != null && t.isAfter(to);
+        }
+
+        // could a file written on that day hold lines in range? (one day of slack for time zones)
+        boolean mayContain(LocalDate day) {
+            if (day == null) return true;
+            ZoneId zone = ZoneId.systemDefault();
+            if (from != null && day.isBefore(LocalDate.ofInstant(from, zone).minusDays(1))) return false;
+            return to == null || !day.isAfter(LocalDate.ofInstant(to, zone).plusDays(1));
+        }
+
+        boolean mayContain(String fileEquipment) {
+            if (fileEquipment == null || equipment == null) return true;
+            return fileEquipment.equals(equipment);
+        }
+    }
+
+    /** One matching line. */
+    public static final class Hit {
+        public final String source;   // file path, or zip!entry
+        public final Instant time;    // null if the line carries no timestamp
+        public final String line;
+
+        Hit(String source, Instant time, String line) {
+            this.source = source;
+            this.time = time;
+            this.line = line;
+        }
+
+        @Override
+        public String toString() {
+            return source + ": " + line;
+        }
+    }
+
+    public static final class Result {
+        public final List<Hit> hits;
+        public final int sourcesScanned;
+        public final int sourcesSkipped;
+        public final long linesRead;
+        public final long elapsedMs;
+
+        Result(List<Hit> hits, int sourcesScanned, int sourcesSkipped, long linesRead, long elapsedMs) {
+            this.hits = hits;
+            this.sourcesScanned = sourcesScanned;
+            this.sourcesSkipped = sourcesSkipped;
+            this.linesRead = linesRead;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return hits.size() + " hit(s) in " + sourcesScanned + " file(s) (" + sourcesSkipped + " skipped), " +
+                    linesRead + " line(s) read, " + elapsedMs + " ms";
+        }
+    }
+
+    private static final Comparator<Hit> BY_TIME = Comparator
+            .comparing((Hit h) -> h.time, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(h -> h.source);
+
+    private final Path logsRoot;
+    private final Path archiveRoot;
+    private final ForkJoinPool pool;
+    private final Map<Path, BlockIndex> blockIndexes = new ConcurrentHashMap<>();
+
+    public LogSearch(Path logsRoot, Path archiveRoot) {
+        this(logsRoot, archiveRoot, Runtime.getRuntime().availableProcessors());
+    }
+
+    public LogSearch(Path logsRoot, Path archiveRoot, int parallelism) {
+        this.logsRoot = logsRoot;
+        this.archiveRoot = archiveRoot;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    // ------------------------------------------------------------
+    // Search
+    // ------------------------------------------------------------
+    public Result search(Query q) throws IOException {
+        long t0 = System.nanoTime();
+        List<Callable<List<Hit>>> tasks = new ArrayList<>();
+        int[] skipped = {0};
+        AtomicLong linesRead = new AtomicLong();
+        List<ZipFile> archives = new ArrayList<>(); // open until the search is done, shared by their entries' tasks
+
+        List<Hit> hits = new ArrayList<>();
+        try {
+            if (logsRoot != null && Files.isDirectory(logsRoot)) {
+                try (Stream<Path> s = Files.walk(logsRoot)) {
+                    for (Path p : (Iterable<Path>) s::iterator) {
+                        if (!Files.isRegularFile(p)) continue;
+                        Path rel = logsRoot.relativize(p);
+                        if (!q.mayContain(MetadataIndex.equipmentOf(rel)) || !q.mayContain(MetadataIndex.dateOf(rel))) {
+                            skipped[0]++;
+                            continue;
+                        }
+                        tasks.add(() -> scanFile(p, q, linesRead));
+                    }
+                }
+            }
+            if (archiveRoot != null && Files.isDirectory(archiveRoot)) {
+                try (Stream<Path> s = Files.walk(archiveRoot)) {
+                    for (Path zip : (Iterable<Path>) s::iterator) {
+                        if (!Files.isRegularFile(zip) || !zip.getFileName().toString().endsWith(".zip")) continue;
+                        ZipFile zf = new ZipFile(zip.toFile());
+                        archives.add(zf);
+                        zf.stream().filter(e -> !e.isDirectory()).forEach(e -> {
+                            Path rel = Path.of(e.getName());
+                            if (!q.mayContain(MetadataIndex.equipmentOf(rel)) || !q.mayContain(MetadataIndex.dateOf(rel))) {
+                                skipped[0]++;
+                            } else {
+                                tasks.add(() -> scanZipEntry(zip, zf, e, q, linesRead));
+                            }
+                        });
+                    }
+                }
+            }
+
+            for (Future<List<Hit>> f : pool.invokeAll(tasks)) hits.addAll(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("search interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            throw c instanceof IOException io ? io : new IOException(c);
+        } finally {
+            for (ZipFile zf : archives) {
+                try {
+                    zf.close();
+                } catch (IOException e) {
+                    System.err.println("[LOG-SEARCH] " + e.getMessage());
+                }
+            }
+        }
+        hits.sort(BY_TIME);
+        if (hits.size() > q.limit) hits = new ArrayList<>(hits.subList(0, q.limit));
+        return new Result(hits, tasks.size(), skipped[0], linesRead.get(), (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private List<Hit> scanFile(Path file, Query q, AtomicLong linesRead) throws IOException {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".gz")) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                return scan(file.toString(), reader(in), q, linesRead);
+            }
+        }
+        if (name.endsWith(".zip")) return List.of();
+        if (name.endsWith(BinaryLogFormat.EXTENSION)) {
+            try (Stream<String> lines = BinaryLogDecoder.lines(file)) {
+                return scan(file.toString(), lines.iterator(), q, linesRead);
+            }
+        }
+
+        long start = 0;
+        if (q.from != null) start = blockIndex(file).seek(q.from);
+        try (Stream<String> lines = LogReader.lines(file, start)) {
+            return scan(file.toString(), lines.iterator(), q, linesRead);
+        }
+    }
+
+    // zf is shared with the other entries' tasks; ZipFile reads entries concurrently
+    private List<Hit> scanZipEntry(Path zip, ZipFile zf, ZipEntry e, Query q, AtomicLong linesRead) throws IOException {
+        String entry = e.getName();
+        try (InputStream raw = zf.getInputStream(e);
+             InputStream in = entry.endsWith(".gz") ? new GZIPInputStream(raw) : raw) {
+            if (entry.endsWith(BinaryLogFormat.EXTENSION)) {
+                return scan(zip + "!" + entry, BinaryLogDecoder.lines(in).iterator(), q, linesRead);
+            }
+            return scan(zip + "!" + entry, reader(in), q, linesRead);
+        }
+    }
+
+    private static Iterator<String> reader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).lines().iterator();
+    }
+
+    // lines of one file are in time order: skip until the range starts, stop once it is over
+    private static List<Hit> scan(String source, Iterator<String> lines, Query q, AtomicLong linesRead) {
+        List<Hit> hits = new ArrayList<>();
+        Instant last = null; // lines without a timestamp belong to the line before
+        long read = 0;
+        try {
+            while (lines.hasNext() && hits.size() < q.limit) {
+                String line = lines.next();
+                read++;
+                Instant t = timestampOf(line);
+                if (t != null) last = t;
+                if (q.afterRange(last)) break;
+                if (q.beforeRange(last) || ((q.from != null || q.to != null) && last == null)) continue;
+                if (q.matchesLine(line)) hits.add(new Hit(source, last, line));
+            }
+        } finally {
+            linesRead.addAndGet(read);
+        }
+        return hits;
+    }
+
+    /** Timestamp of a line written by {@link LogManager}, or null. */
+    static Instant timestampOf(String line) {
+        if (!line.startsWith("[")) return null;
+        int close = line.indexOf("] ");
+        if (close < 0) return null;
+        int start = close + 2;
+        int end = line.indexOf(' ', start);
+        if (end < 0) end = line.length();
+        if (end - start < 20 || !Character.isDigit(line.charAt(start))) return null;
+        try {
+            return OffsetDateTime.parse(line.substring(start, end)).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Block index
+    // ------------------------------------------------------------
+    BlockIndex blockIndex(Path file) throws IOException {
+        BlockIndex idx = blockIndexes.computeIfAbsent(file.toAbsolutePath().normalize(), BlockIndex::new);
+        idx.update();
+        return idx;
+    }
+
+    /**
+     * Offset and first timestamp of every {@link #BLOCK}-byte block of one log file. Logs only
+     * grow, so a later update reads just the new bytes; a file that shrank is indexed again.
+     */
+    static final class BlockIndex {
+        static final int BLOCK = 64 * 1024;
+        // "[CHARGING:" + a name of up to 40 characters (RegexUtils) + "] " + a timestamp of up to
+        // 35 ("2025-01-01T10:00:00.123456789+01:00") is 87 bytes; leave room to spare
+        static final int HEAD = 128;
+
+        private final Path file;
+        private long[] offsets = new long[16];
+        private long[] millis = new long[16];
+        private int blocks;
+        private long indexedTo;      // start of the first line not yet looked at
+        private long nextBoundary;   // record the first stamped line starting at or after this
+
+        BlockIndex(Path file) {
+            this.file = file;
+        }
+
+        synchronized void update() throws IOException {
+            long size = Files.size(file);
+            if (size < indexedTo) {
+                blocks = 0;
+                indexedTo = 0;
+                nextBoundary = 0;
+            }
+            if (size == indexedTo) return;
+
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer buf = ByteBuffer.allocate(LogReader.BUFFER_SIZE);
+                byte[] head = new byte[HEAD];
+                int headLen = 0;
+                long pos = indexedTo;
+                long lineStart = indexedTo;
+                while (pos < size) {
+                    buf.clear();
+                    int n = ch.read(buf, pos);
+                    if (n <= 0) break;
+                    buf.flip();
+                    for (int i = 0; i < n; i++) {
+                        byte b = buf.get(i);
+                        if (b != '\n') {
+                            if (headLen < head.length) head[headLen++] = b;
+                            continue;
+                        }
+                        if (lineStart >= nextBoundary) {
+                            Instant t = timestampOf(new String(head, 0, headLen, StandardCharsets.UTF_8));
+                            if (t != null) {
+                                add(lineStart, t.toEpochMilli());
+                                nextBoundary = lineStart + BLOCK;
+                            }
+                        }
+                        lineStart = pos + i + 1;
+                        headLen = 0;
+                    }
+                    pos += n;
+                }
+                indexedTo = lineStart; // a half-written last line is looked at next time
+            }
+        }
+
+        private void add(long offset, long ms) {
+            if (blocks == offsets.length) {
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+                millis = Arrays.copyOf(millis, blocks * 2);
+            }
+            offsets[blocks] = offset;
+            millis[blocks] = ms;
+            blocks++;
+        }
+
+        /** Offset of the last block that starts strictly before {@code from} (0 if none). */
+        synchronized long seek(Instant from) {
+            long target = from.toEpochMilli();
+            int lo = 0, hi = blocks - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (millis[mid] < target) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found < 0 ? 0 : offsets[found];
+        }
+
+        synchronized int blockCount() {
+            return blocks;
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,339 @@
+package med.supply.system.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory view of the files recorded in a metadata CSV (see {@link MetadataManager}), looked up
+ * by equipment name, date or kind without touching the log tree.
+ * <p>
+ * The CSV is an event trail, so the index replays it: LOG / ARCHIVE / TASK_ARCHIVE rows add a
+ * file, MOVE rows move it (the source is in the notes), DELETE rows drop it. Every query first
+ * checks the CSV size and reads only the bytes appended since the last look; a half-written last
+ * row is left for the next refresh. If the CSV shrinks or is replaced, the index is rebuilt.
+ * <p>
+ * Equipment and date come from the log layout: {@code .../vehicles/<name>/<date>.log},
+ * {@code .../charging/<name>/<date>.log} and {@code .../system/<date>.log} (equipment "system").
+ */
+public final class MetadataIndex {
+
+    private static final Map<Path, MetadataIndex> INDEXES = new ConcurrentHashMap<>();
+    private static final Pattern LEADING_DATE = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2})");
+    private static final Pattern MOVED_FROM = Pattern.compile("^moved from (.+)$");
+    private static final int CHUNK = 64 * 1024;
+
+    /** Shared index over {@code csv}. */
+    public static MetadataIndex forFile(Path csv) {
+        return INDEXES.computeIfAbsent(csv.toAbsolutePath().normalize(), MetadataIndex::new);
+    }
+
+    /** One live file as the CSV last described it. */
+    public static final class Entry {
+        public final Path path;
+        public final String equipment; // null when the path is not a log file
+        public final LocalDate date;    // null when the name does not start with a date
+        public final String kind;
+        public final String recordedUtc;
+        public final String notes;
+
+        Entry(Path path, String equipment, LocalDate date, String kind, String recordedUtc, String notes) {
+            this.path = path;
+            this.equipment = equipment;
+            this.date = date;
+            this.kind = kind;
+            this.recordedUtc = recordedUtc;
+            this.notes = notes;
+        }
+
+        /** {@link #recordedUtc} as an instant (the epoch if the row holds something else). */
+        public Instant recordedAt() {
+            try {
+                return Instant.parse(recordedUtc);
+            } catch (DateTimeParseException e) {
+                return Instant.EPOCH;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + path + (equipment != null ? " [" + equipment + "]" : "") + " @ " + recordedUtc;
+        }
+    }
+
+    private final Path csv;
+
+    // all guarded by this
+    private final Map<Path, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Path>> byEquipment = new HashMap<>();
+    private final Map<LocalDate, Set<Path>> byDate = new HashMap<>();
+    private final Map<String, Set<Path>> byKind = new HashMap<>();
+    private final Set<Path> reconciledRoots = new HashSet<>();
+    private long offset;      // bytes of the CSV already applied
+    private Object fileKey;
+    private long rowsRead;
+    private long rebuilds;
+
+    private MetadataIndex(Path csv) {
+        this.csv = csv;
+    }
+
+    public Path getFile() {
+        return csv;
+    }
+
+    // ------------------------------------------------------------
+    // Queries (each one picks up rows appended since the last call)
+    // ------------------------------------------------------------
+    public synchronized List<Path> byEquipment(String equipment) throws IOException {
+        refresh();
+        return sorted(byEquipment.get(equipment));
+    }
+
+    public synchronized List<Path> byDate(LocalDate date) throws IOException {
+        refresh();
+        return sorted(byDate.get(date));
+    }
+
+    public synchronized List<Path> byKind(String kind) throws IOException {
+        refresh();
+        return sorted(byKind.get(kind));
+    }
+
+    /** Live files below {@code dir}. */
+    public synchronized List<Entry> under(Path dir) throws IOException {
+        refresh();
+        Path d = key(dir);
+        List<Entry> result = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            if (e.path.startsWith(d)) result.add(e);
+        }
+        result.sort(Comparator.comparing(e -> e.path));
+        return result;
+    }
+
+    /** Most recently recorded live entry of {@code kind} whose notes start with {@code notesPrefix}. */
+    public synchronized Entry latest(String kind, String notesPrefix) throws IOException {
+        refresh();
+        Entry best = null;
+        Set<Path> paths = byKind.get(kind);
+        if (paths == null) return null;
+        for (Path p : paths) {
+            Entry e = entries.get(p);
+            if (!e.notes.startsWith(notesPrefix)) continue;
+            if (best == null || e.recordedAt().isAfter(best.recordedAt())) best = e;
+        }
+        return best;
+    }
+
+    public synchronized Entry get(Path file) throws IOException {
+        refresh();
+        return entries.get(key(file));
+    }
+
+    public synchronized int size() throws IOException {
+        refresh();
+        return entries.size();
+    }
+
+    private static List<Path> sorted(Set<Path> paths) {
+        return paths == null ? Collections.emptyList() : new ArrayList<>(paths);
+    }
+
+    // ------------------------------------------------------------
+    // Loading
+    // ------------------------------------------------------------
+    /** Apply rows appended since the last refresh (or rebuild if the CSV was truncated / replaced). */
+    public synchronized void refresh() throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(csv, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            if (offset > 0 || !entries.isEmpty()) reset();
+            return;
+        }
+        if (attrs.size() < offset || (fileKey != null && !fileKey.equals(attrs.fileKey()))) reset();
+        fileKey = attrs.fileKey();
+        if (attrs.size() == offset) return;
+
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ch.position(offset);
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long pos = offset;
+            while (ch.read(buf) > 0) {
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    byte b = buf.get();
+                    pos++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                    apply(line.toString(StandardCharsets.UTF_8));
+                    line.reset();
+                    offset = pos; // only whole rows count as read
+                }
+                buf.clear();
+            }
+        }
+    }
+
+    /**
+     * Bring the CSV in line with the files under {@code root}, once per root: files that exist
+     * but were never recorded (created before the CSV, copied in by hand) get a LOG row, and
+     * recorded files under the root that are gone get a DELETE row. This is the only tree walk.
+     *
+     * @return number of rows appended
+     */
+    public synchronized int reconcile(Path root) throws IOException {
+        Path r = key(root);
+        if (!reconciledRoots.add(r)) return 0;
+        refresh();
+        if (!Files.isDirectory(root)) return 0;
+
+        int appended = 0;
+        Set<Path> seen = new HashSet<>();
+        try (var stream = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) stream::iterator) {
+                if (!Files.isRegularFile(p)) continue;
+                Path k = key(p);
+                seen.add(k);
+                if (!entries.containsKey(k)) {
+                    MetadataManager.append(csv, p, "LOG", "indexed existing file");
+                    appended++;
+                }
+            }
+        }
+        for (Path k : new ArrayList<>(entries.keySet())) {
+            if (k.startsWith(r) && !seen.contains(k)) {
+                MetadataManager.append(csv, k, "DELETE", "missing on disk");
+                appended++;
+            }
+        }
+        refresh();
+        return appended;
+    }
+
+    private void reset() {
+        entries.clear();
+        byEquipment.clear();
+        byDate.clear();
+        byKind.clear();
+        offset = 0;
+        fileKey = null;
+        rebuilds++;
+    }
+
+    private void apply(String line) {
+        if (line.isBlank()) return;
+        List<String> f = MetadataManager.parseRow(line);
+        if (f.size() < 3 || ("path".equals(f.get(0)) && "kind".equals(f.get(2)))) return; // header
+        rowsRead++;
+        Path path = key(f.get(0));
+        String kind = f.get(2);
+        String notes = f.size() > 3 ? f.get(3) : "";
+
+        switch (kind) {
+            case "DELETE" -> remove(path);
+            case "MOVE" -> {
+                Matcher m = MOVED_FROM.matcher(notes);
+                if (m.matches()) remove(key(m.group(1)));
+                add(path, kind, f.get(1), notes);
+            }
+            default -> add(path, kind, f.get(1), notes);
+        }
+    }
+
+    private void add(Path path, String kind, String recordedUtc, String notes) {
+        remove(path);
+        Entry e = new Entry(path, equipmentOf(path), dateOf(path), kind, recordedUtc, notes);
+        entries.put(path, e);
+        if (e.equipment != null) bucket(byEquipment, e.equipment).add(path);
+        if (e.date != null) bucket(byDate, e.date).add(path);
+        bucket(byKind, kind).add(path);
+    }
+
+    private void remove(Path path) {
+        Entry e = entries.remove(path);
+        if (e == null) return;
+        if (e.equipment != null) unbucket(byEquipment, e.equipment, path);
+        if (e.date != null) unbucket(byDate, e.date, path);
+        unbucket(byKind, e.kind, path);
+    }
+
+    private static <K> Set<Path> bucket(Map<K, Set<Path>> map, K k) {
+        return map.computeIfAbsent(k, x -> new TreeSet<>());
+    }
+
+    private static <K> void unbucket(Map<K, Set<Path>> map, K k, Path path) {
+        Set<Path> s = map.get(k);
+        if (s != null && s.remove(path) && s.isEmpty()) map.remove(k);
+    }
+
+    // rows written on Windows use backslashes
+    private static Path key(String raw) {
+        return Path.of(raw.replace('\\', '/')).normalize();
+    }
+
+    private static Path key(Path p) {
+        return key(p.toString());
+    }
+
+    // also used by LogSearch for files and ZIP entries laid out like data/logs
+    static String equipmentOf(Path p) {
+        Path parent = p.getParent();
+        if (parent == null) return null;
+        String dir = parent.getFileName().toString();
+        if ("system".equals(dir)) return "system";
+        Path grand = parent.getParent();
+        if (grand == null) return null;
+        String group = grand.getFileName().toString();
+        return "vehicles".equals(group) || "charging".equals(group) ? dir : null;
+    }
+
+    static LocalDate dateOf(Path p) {
+        Matcher m = LEADING_DATE.matcher(p.getFileName().toString());
+        if (!m.find()) return null;
+        try {
+            return LocalDate.parse(m.group(1));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Counters
+    // ------------------------------------------------------------
+    /** CSV rows applied so far (across rebuilds). */
+    public synchronized long getRowsRead() {
+        return rowsRead;
+    }
+
+    /** How often the CSV was found truncated or replaced and the index rebuilt. */
+    public synchronized long getRebuildCount() {
+        return rebuilds;
+    }
+}
@@ -1,26 +1,56 @@
 package med.supply.system.util;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.Instant;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MetadataManager {
+    /** Append one row through the file's shared {@link MetadataWriter} (batched, row-atomic). */
     public static void append(Path metadataCsv, Path filePath, String kind, String notes) throws IOException {
         String row = String.join(",", escape(filePath.toString()), escape(Instant.now().toString()),
-                escape(kind), escape(notes)) + "\n";
-        Files.writeString(metadataCsv, row, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+                escape(kind), escape(notes));
+        MetadataWriter.forFile(metadataCsv).append(row);
     }
 
-    private static String escape(String s) {
+    /** Quote a CSV field if it contains a comma or a quote. */
+    public static String escape(String s) {
         if (s.contains(",") || s.contains("\"")) {
             return "\"" + s.replace("\"", "\"\"") + "\"";
         }
         return s;
     }
 
+    /** Split one CSV row written by {@link #append} back into its fields (undoes {@link #escape}). */
+    public static List<String> parseRow(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else if (c != '\r') {
+                cur.append(c);
+            }
+        }
+        fields.add(cur.toString());
+        return fields;
+    }
+
     public static void move(Path from, Path to, Path metaIndex) throws IOException {
         Files.createDirectories(to.getParent());
         Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
@@ -32,21 +62,8 @@ public class MetadataManager {
         append(metaIndex, file, "DELETE", "deleted");
     }
 
+    /** Archive everything under {@code sourceDir} (see {@link LogArchiver} for incremental runs). */
     public static Path archiveZip(Path sourceDir, Path zipTarget, Path metaIndex) throws IOException {
-        Files.createDirectories(zipTarget.getParent());
-        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipTarget))) {
-            try (var stream = Files.walk(sourceDir)) {
-                for (Path p : (Iterable<Path>) stream::iterator) {
-                    if (Files.isRegularFile(p)) {
-                        String entryName = sourceDir.relativize(p).toString().replace('\\', '/');
-                        zos.putNextEntry(new ZipEntry(entryName));
-                        Files.copy(p, zos);
-                        zos.closeEntry();
-                    }
-                }
-            }
-        }
-        append(metaIndex, zipTarget, "ARCHIVE", "archived " + sourceDir);
-        return zipTarget;
+        return new LogArchiver(metaIndex).archive(sourceDir, zipTarget).zip;
     }
 }
@@ -0,0 +1,284 @@
+package med.supply.system.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Appends rows to one metadata CSV with group commit.
+ * <p>
+ * The channel stays open between rows. A thread that appends while another thread is writing does
+ * not queue up for the file: its row joins the next batch, and whichever thread gets there first
+ * writes the whole batch with one gather write (and at most one fsync). {@link #append} returns
+ * once the caller's row is on disk according to the {@link FsyncPolicy}, and rows are always
+ * written whole, so concurrent writers never interleave inside a row.
+ * <p>
+ * If the file is deleted or replaced behind our back, the next batch reopens it.
+ */
+public final class MetadataWriter {
+
+    public enum FsyncPolicy {
+        /** Leave flushing to the OS (what Files.writeString did). */
+        NONE,
+        /** One fsync per batch: every row is durable when append returns. */
+        PER_BATCH,
+        /** One fsync per row, even when rows are written together. */
+        PER_ROW
+    }
+
+    /** Told about every batch just before it is written, on the thread that writes it. */
+    public interface BatchListener {
+        void beforeWrite(int rows) throws IOException;
+    }
+
+    private static final Map<Path, MetadataWriter> WRITERS = new ConcurrentHashMap<>();
+    private static volatile FsyncPolicy defaultPolicy = fromSystemProperty();
+
+    /** Shared writer for {@code csv}; all appends to that file should go through it. */
+    public static MetadataWriter forFile(Path csv) {
+        return WRITERS.computeIfAbsent(csv.toAbsolutePath().normalize(), MetadataWriter::new);
+    }
+
+    /** Policy for writers created from now on; {@code -Dmed.meta.fsync=none|batch|row}. */
+    public static void setDefaultFsyncPolicy(FsyncPolicy policy) {
+        defaultPolicy = Objects.requireNonNull(policy, "policy");
+    }
+
+    public static FsyncPolicy getDefaultFsyncPolicy() {
+        return defaultPolicy;
+    }
+
+    private static FsyncPolicy fromSystemProperty() {
+        String v = System.getProperty("med.meta.fsync", "none").trim().toLowerCase(Locale.ROOT);
+        switch (v) {
+            case "none": return FsyncPolicy.NONE;
+            case "batch": return FsyncPolicy.PER_BATCH;
+            case "row": return FsyncPolicy.PER_ROW;
+            default:
+                System.err.println("Unknown med.meta.fsync '" + v + "', using none.");
+                return FsyncPolicy.NONE;
+        }
+    }
+
+    /** Flush and close every shared writer; they reopen on the next append. */
+    public static void closeAll() {
+        for (MetadataWriter w : WRITERS.values()) {
+            try {
+                w.close();
+            } catch (IOException e) {
+                System.err.println("[METADATA] " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Batch {
+        final List<byte[]> rows = new ArrayList<>();
+        boolean done;
+        IOException error;
+    }
+
+    private final Path file;
+    private volatile FsyncPolicy policy = defaultPolicy;
+    private volatile BatchListener listener; // null = none
+
+    private final Object lock = new Object();
+    private Batch current = new Batch(); // collecting rows for the next write
+    private boolean writing;             // a leader is writing a batch
+
+    // only touched by the current leader
+    private FileChannel channel;
+    private Object fileKey;
+
+    // counters, guarded by lock
+    private long batches;
+    private long rows;
+    private long syncs;
+
+    private MetadataWriter(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return policy;
+    }
+
+    public void setFsyncPolicy(FsyncPolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "policy");
+    }
+
+    /** Watch batches as they are written (e.g. to measure them); null removes the listener. */
+    public void setBatchListener(BatchListener listener) {
+        this.listener = listener;
+    }
+
+    /** Append one CSV row (a line separator is added if missing). */
+    public void append(String row) throws IOException {
+        String line = row.endsWith("\n") ? row : row + "\n";
+        commit(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Write any rows still waiting for a batch. */
+    public void flush() throws IOException {
+        commit(null);
+    }
+
+    /** Flush, then close the channel. A later append reopens it. */
+    public void close() throws IOException {
+        flush();
+        synchronized (lock) {
+            while (writing) waitOnLock(); // the channel belongs to the leader while it writes
+            closeChannel();
+        }
+    }
+
+    private void commit(byte[] row) throws IOException {
+        Batch mine;
+        synchronized (lock) {
+            mine = current;
+            if (row != null) mine.rows.add(row);
+            while (!mine.done && writing) {
+                waitOnLock();
+            }
+            if (mine.done) {
+                if (mine.error != null) throw new IOException("metadata write failed: " + mine.error.getMessage(), mine.error);
+                return;
+            }
+            // nobody is writing: lead this batch (it may hold rows of other threads too)
+            writing = true;
+            current = new Batch();
+        }
+
+        try {
+            if (!mine.rows.isEmpty()) {
+                BatchListener l = listener;
+                if (l != null) l.beforeWrite(mine.rows.size());
+                write(mine.rows);
+            }
+        } catch (IOException e) {
+            mine.error = e;
+        } finally {
+            synchronized (lock) {
+                mine.done = true;
+                writing = false;
+                if (!mine.rows.isEmpty()) {
+                    batches++;
+                    rows += mine.rows.size();
+                }
+                lock.notifyAll();
+            }
+        }
+        if (mine.error != null) throw mine.error;
+    }
+
+    private void write(List<byte[]> batch) throws IOException {
+        FileChannel ch = channel();
+        FsyncPolicy p = policy;
+        if (p == FsyncPolicy.PER_ROW) {
+            for (byte[] r : batch) {
+                ByteBuffer b = ByteBuffer.wrap(r);
+                while (b.hasRemaining()) ch.write(b);
+                ch.force(false);
+                countSync();
+            }
+            return;
+        }
+
+        ByteBuffer[] bufs = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < bufs.length; i++) {
+            bufs[i] = ByteBuffer.wrap(batch.get(i));
+            remaining += bufs[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= ch.write(bufs);
+        }
+        if (p == FsyncPolicy.PER_BATCH) {
+            ch.force(false);
+            countSync();
+        }
+    }
+
+    private void countSync() {
+        synchronized (lock) {
+            syncs++;
+        }
+    }
+
+    // open lazily; reopen if the file was deleted or swapped for another one
+    private FileChannel channel() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            Object key = currentFileKey();
+            if (key != null && key.equals(fileKey)) return channel;
+            if (key == null && fileKey == null && Files.exists(file)) return channel;
+            closeChannel();
+        }
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        fileKey = currentFileKey();
+        return channel;
+    }
+
+    private Object currentFileKey() throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        FileChannel ch = channel;
+        channel = null;
+        fileKey = null;
+        if (ch != null) ch.close();
+    }
+
+    private void waitOnLock() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for metadata write");
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Counters
+    // ------------------------------------------------------------
+    /** Batches written so far; fewer than {@link #getRowCount()} means rows were grouped. */
+    public long getBatchCount() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    public long getRowCount() {
+        synchronized (lock) {
+            return rows;
+        }
+    }
+
+    public long getSyncCount() {
+        synchronized (lock) {
+            return syncs;
+        }
+    }
+}
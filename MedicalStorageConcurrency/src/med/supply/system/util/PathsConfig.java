@@ -13,8 +13,12 @@ public class PathsConfig {
     public final Path logsSystem = logsRoot.resolve("system");
     public final Path metaRoot = root.resolve("metadata");
     public final Path archiveRoot = root.resolve("archive");
+    public final Path tasksArchive = archiveRoot.resolve("tasks");
     public final Path exchangeRoot = root.resolve("exchange");
     public final Path metaIndex = metaRoot.resolve("log_metadata.csv");
+    public final Path stateRoot = root.resolve("state");
+    public final Path stateSnapshot = stateRoot.resolve("state.snap");
+    public final Path stateEvents = stateRoot.resolve("events.log");
 
     public void ensure() throws IOException {
         Files.createDirectories(logsVehicles);
@@ -22,7 +26,9 @@ public class PathsConfig {
         Files.createDirectories(logsSystem);
         Files.createDirectories(metaRoot);
         Files.createDirectories(archiveRoot);
+        Files.createDirectories(tasksArchive);
         Files.createDirectories(exchangeRoot);
+        Files.createDirectories(stateRoot);
         if (!Files.exists(metaIndex)) {
             Files.writeString(metaIndex, "path,createdUtc,kind,notes\n", StandardCharsets.UTF_8,
                     StandardOpenOption.CREATE, StandardOpenOption.APPEND);
@@ -0,0 +1,59 @@
+package med.supply.system.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock time. Scheduled work runs on one daemon timer thread, so it should be short or hand
+ * itself to an executor.
+ */
+public final class RealTimeClock implements SimulationClock {
+
+    public static final RealTimeClock INSTANCE = new RealTimeClock();
+
+    private ScheduledExecutorService timer; // started on first use
+
+    private RealTimeClock() {}
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public Scheduled schedule(Runnable task, long delayMs) {
+        ScheduledFuture<?> f = timer().schedule(guarded(task), Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+        return () -> f.cancel(false);
+    }
+
+    @Override
+    public Scheduled scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        ScheduledFuture<?> f = timer().scheduleAtFixedRate(guarded(task),
+                Math.max(0, initialDelayMs), periodMs, TimeUnit.MILLISECONDS);
+        return () -> f.cancel(false);
+    }
+
+    private synchronized ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sim-clock");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return timer;
+    }
+
+    // an exception must not cancel a periodic task or kill the timer thread
+    private static Runnable guarded(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("[CLOCK] " + e.getMessage());
+            }
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package med.supply.system.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Source of time and delayed work for the simulation.
+ * <p>
+ * Everything that used to sleep or read the wall clock (deliveries, charging, queue timeouts, log
+ * timestamps) goes through a clock instead. {@link RealTimeClock} is the wall clock with a timer
+ * thread; {@link DiscreteEventClock} keeps virtual time and runs due events only when it is
+ * advanced, so a simulated shift takes as long as the work in it, not as long as the shift.
+ * <p>
+ * Components take a clock in their constructor or an {@code attachClock} method; without one they
+ * follow {@link #getDefault()}, which can be changed before services are created.
+ */
+public interface SimulationClock {
+
+    /** Handle for scheduled work. */
+    interface Scheduled {
+        void cancel();
+    }
+
+    /** Current time in epoch milliseconds. */
+    long currentTimeMillis();
+
+    /** Run {@code task} once after {@code delayMs}. */
+    Scheduled schedule(Runnable task, long delayMs);
+
+    /** Run {@code task} every {@code periodMs}, starting after {@code initialDelayMs}. */
+    Scheduled scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs);
+
+    /** False for virtual time: scheduled work runs on the thread that advances the clock. */
+    default boolean isRealTime() {
+        return true;
+    }
+
+    default Instant instant() {
+        return Instant.ofEpochMilli(currentTimeMillis());
+    }
+
+    default ZonedDateTime now() {
+        return ZonedDateTime.ofInstant(instant(), ZoneId.systemDefault());
+    }
+
+    default LocalDate today() {
+        return now().toLocalDate();
+    }
+
+    // ------------------------------------------------------------
+    // Default clock
+    // ------------------------------------------------------------
+    static SimulationClock getDefault() {
+        return Holder.defaultClock;
+    }
+
+    static void setDefault(SimulationClock clock) {
+        if (clock == null) throw new IllegalArgumentException("clock must not be null");
+        Holder.defaultClock = clock;
+    }
+
+    final class Holder {
+        private static volatile SimulationClock defaultClock = RealTimeClock.INSTANCE;
+
+        private Holder() {}
+    }
+}